@@ -78,8 +78,14 @@ public class StartCritics implements Runnable {
         Project p = ProjectManager.getManager().getCurrentProject();
         dsgr.spawnCritiquer(p);
         dsgr.setChildGenerator(new ChildGenUML());
-        for (Object model : p.getUserDefinedModelList()) {
-            Model.getPump().addModelEventListener(dsgr, model);
+        // Listen to the elements of every model, also of the ones which
+        // are loaded later, so that only the changed elements need to be
+        // critiqued again
+        Object modelElement = Model.getMetaTypes().getModelElement();
+        Model.getPump().addClassModelEventListener(dsgr, modelElement,
+                (String[]) null);
+        if (modelElement instanceof Class) {
+            dsgr.trackChanges((Class) modelElement);
         }
         LOG.log(Level.INFO, "spawned critiquing thread");
         dsgr.getDecisionModel().startConsidering(UMLDecision.CLASS_SELECTION);
@@ -382,15 +382,20 @@ public class Agency extends Observable { //implements java.io.Serialization
      * TODO: should loop over simpler list of critics, not CompoundCritics
      *
      * @param d the designer
+     * @return true if some critic has become active or inactive
      */
-    public void determineActiveCritics(Designer d) {
+    public boolean determineActiveCritics(Designer d) {
+        boolean changed = false;
         for (Critic c : critics) {
+            boolean wasActive = c.isActive();
             if (controlMech.isRelevant(c, d)) {
                 c.beActive();
             } else {
                 c.beInactive();
             }
+            changed |= wasActive != c.isActive();
         }
+        return changed;
     }
 
     /**
@@ -0,0 +1,273 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2026 Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *****************************************************************************
+ */
+
+package org.argouml.cognitive;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.argouml.model.InvalidElementException;
+import org.tigris.gef.util.ChildGenerator;
+
+/**
+ * Applies critics to batches of design materials using a pool of
+ * worker threads.<p>
+ *
+ * The workers of a batch share a cursor into the list of design
+ * materials, so a worker which is done with its element takes the next
+ * one which nobody has taken yet. Critics of a single design material
+ * are always applied by the same worker, but critics of different design
+ * materials run in parallel. Critics only read the model and post their
+ * ToDoItems to the ToDoList, which adds them under its own lock, so they
+ * don't need any other locking.<p>
+ *
+ * With a single worker the batch is processed on the calling thread.
+ * If the calling thread is interrupted while it waits for the workers,
+ * they stop taking new elements, the untaken ones are returned as
+ * leftovers and the interrupt status of the thread is restored.
+ */
+class CritiquingPool {
+    /**
+     * Logger.
+     */
+    private static final Logger LOG =
+        Logger.getLogger(CritiquingPool.class.getName());
+
+    /**
+     * Never use more workers than this, critics contend for the
+     * repository anyway.
+     */
+    private static final int MAX_WORKERS = 4;
+
+    private final int workerCount;
+
+    private final ExecutorService executor;
+
+    /**
+     * The result of applying critics to a batch.
+     */
+    static class Result {
+        /**
+         * Children of the critiqued design materials, if a child generator
+         * was given.
+         */
+        private final List<Object> children = new ArrayList<Object>();
+
+        /**
+         * Design materials which weren't critiqued before the cutoff time.
+         */
+        private final List<Object> leftovers = new ArrayList<Object>();
+
+        /**
+         * Time spent by all workers applying critics.
+         */
+        private long busyNanos;
+
+        List<Object> getChildren() {
+            return children;
+        }
+
+        List<Object> getLeftovers() {
+            return leftovers;
+        }
+
+        long getBusyNanos() {
+            return busyNanos;
+        }
+    }
+
+    /**
+     * Create a pool with one worker per spare processor.
+     *
+     * @param priority the priority of the worker threads
+     */
+    CritiquingPool(int priority) {
+        this(Math.min(MAX_WORKERS,
+                Runtime.getRuntime().availableProcessors() - 1), priority);
+    }
+
+    /**
+     * @param workers the number of worker threads
+     * @param priority the priority of the worker threads
+     */
+    CritiquingPool(int workers, final int priority) {
+        workerCount = Math.max(1, workers);
+        if (workerCount == 1) {
+            executor = null;
+        } else {
+            executor = Executors.newFixedThreadPool(workerCount,
+                    new ThreadFactory() {
+                        private int count;
+
+                        public synchronized Thread newThread(Runnable r) {
+                            Thread t = new Thread(r,
+                                    "CritiquingThread-" + (++count));
+                            t.setDaemon(true);
+                            t.setPriority(priority);
+                            return t;
+                        }
+                    });
+        }
+    }
+
+    /**
+     * @return the number of design materials which are critiqued at once
+     */
+    int getWorkerCount() {
+        return workerCount;
+    }
+
+    /**
+     * Apply all critics to the given design materials.
+     *
+     * @param dms the design materials
+     * @param reasonCodes the reason code for each design material, or null
+     *            to apply the critics regardless of the reason
+     * @param cutoffTime the time in milliseconds after which workers stop
+     *            taking new design materials, or <code>Long.MAX_VALUE</code>
+     * @param minElements the number of design materials which are critiqued
+     *            even if the cutoff time has passed
+     * @param childGenerator the generator of children to be critiqued later,
+     *            or null
+     * @param designer the designer
+     * @return the result
+     */
+    Result critique(List<Object> dms, List<Long> reasonCodes,
+            long cutoffTime, int minElements,
+            ChildGenerator childGenerator, Designer designer) {
+        Batch batch = new Batch(dms, reasonCodes, cutoffTime, minElements,
+                childGenerator, designer);
+        Result result = new Result();
+        if (executor == null || dms.size() < 2) {
+            result.busyNanos = batch.call().longValue();
+        } else {
+            List<Future<Long>> futures = new ArrayList<Future<Long>>();
+            for (int i = 0; i < Math.min(workerCount, dms.size()); i++) {
+                futures.add(executor.submit(batch));
+            }
+            boolean interrupted = false;
+            for (Future<Long> f : futures) {
+                while (true) {
+                    try {
+                        result.busyNanos += f.get().longValue();
+                        break;
+                    } catch (InterruptedException e) {
+                        // The workers only finish the elements they
+                        // have taken, so this doesn't wait long
+                        interrupted = true;
+                        batch.cancel();
+                    } catch (ExecutionException e) {
+                        LOG.log(Level.SEVERE, "Critiquing worker failed",
+                                e.getCause());
+                        break;
+                    }
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        result.children.addAll(batch.children);
+        // Every index below the cursor was taken by some worker
+        for (int i = Math.min(batch.cursor.get(), dms.size());
+                i < dms.size(); i++) {
+            result.leftovers.add(dms.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * A batch of design materials shared by the workers. Each call
+     * takes design materials one by one until there are none left or
+     * the cutoff time has passed.
+     */
+    private static class Batch implements Callable<Long> {
+        private final List<Object> dms;
+        private final List<Long> reasonCodes;
+        private final long cutoffTime;
+        private final int minElements;
+        private final ChildGenerator childGenerator;
+        private final Designer designer;
+        private final AtomicInteger cursor = new AtomicInteger();
+        private final AtomicInteger started = new AtomicInteger();
+        private volatile boolean cancelled;
+        private final List<Object> children =
+            Collections.synchronizedList(new ArrayList<Object>());
+
+        Batch(List<Object> theDms, List<Long> theReasonCodes,
+                long theCutoffTime, int theMinElements,
+                ChildGenerator theChildGenerator, Designer theDesigner) {
+            dms = theDms;
+            reasonCodes = theReasonCodes;
+            cutoffTime = theCutoffTime;
+            minElements = theMinElements;
+            childGenerator = theChildGenerator;
+            designer = theDesigner;
+        }
+
+        /**
+         * Stop taking new design materials.
+         */
+        void cancel() {
+            cancelled = true;
+        }
+
+        public Long call() {
+            long busy = 0;
+            while (!cancelled) {
+                if (started.get() >= minElements
+                        && System.currentTimeMillis() >= cutoffTime) {
+                    break;
+                }
+                int i = cursor.getAndIncrement();
+                if (i >= dms.size()) {
+                    break;
+                }
+                started.incrementAndGet();
+                long start = System.nanoTime();
+                critique(dms.get(i), reasonCodes == null
+                        ? -1L : reasonCodes.get(i).longValue(),
+                        childGenerator, designer, children);
+                busy += System.nanoTime() - start;
+            }
+            return Long.valueOf(busy);
+        }
+    }
+
+    private static void critique(Object dm, long reasonCode,
+            ChildGenerator childGenerator, Designer designer,
+            List<Object> children) {
+        try {
+            Agency.applyAllCritics(dm, designer, reasonCode);
+            if (childGenerator != null) {
+                Enumeration subDMs = childGenerator.gen(dm);
+                while (subDMs.hasMoreElements()) {
+                    children.add(subDMs.nextElement());
+                }
+            }
+        } catch (InvalidElementException e) {
+            // Don't let a transient error kill the thread
+            LOG.log(Level.WARNING, "Element " + dm
+                    + "caused an InvalidElementException.  "
+                    + "Ignoring for this pass.");
+        }
+    }
+}
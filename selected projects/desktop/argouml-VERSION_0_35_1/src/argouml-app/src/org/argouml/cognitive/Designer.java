@@ -43,8 +43,14 @@ import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
 import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -54,7 +60,6 @@ import javax.swing.Icon;
 import org.argouml.application.api.Argo;
 import org.argouml.configuration.Configuration;
 import org.argouml.configuration.ConfigurationKey;
-import org.argouml.model.InvalidElementException;
 import org.tigris.gef.util.ChildGenerator;
 import org.tigris.gef.util.EnumerationEmpty;
 
@@ -124,6 +129,13 @@ public final class Designer
     public static final ConfigurationKey AUTO_CRITIQUE =
         Configuration.makeKey("cognitive", "autocritique");
 
+    /**
+     * The key to remember persistently whether the whole design is
+     * critiqued again after every pause in editing, see {@link #run()}.
+     */
+    public static final ConfigurationKey PERIODIC_SWEEP =
+        Configuration.makeKey("cognitive", "periodicsweep");
+
     ////////////////////////////////////////////////////////////////
     // instance variables
 
@@ -180,22 +192,50 @@ public final class Designer
 
     private Thread critiquerThread;
 
+    private CritiquingPool critiquingPool;
+
     private int critiquingInterval;
 
+    /**
+     * The share of the CPU time which critiquing takes
+     * when the designer is editing the model.
+     */
     private int critiqueCPUPercent;
 
-   /**
-     * dm's that should be critiqued ASAP.
+    /**
+     * The share of the CPU time which critiquing may take now.
+     * It grows while the designer is not editing and there are
+     * elements waiting to be critiqued, and goes back to
+     * critiqueCPUPercent otherwise.
+     */
+    private int currentCPUPercent;
+
+    /**
+     * The upper limit of currentCPUPercent.
      */
-    private List<Object> hotQueue;
+    private static final int MAX_CPU_PERCENT = 50;
 
-    private List<Long> hotReasonQueue;
+    /**
+     * The designer is considered to be editing the model if it has
+     * changed during this many milliseconds.
+     */
+    private static final long EDITING_PAUSE = 5000;
+
+    /**
+     * The number of elements from the warm queue which are critiqued
+     * in every pass, even if the pass takes too long.
+     */
+    private static final int MIN_WARM_ELEMENTS = 5;
 
-    private List<Object> addQueue;
+    private long lastChangeTime;
 
-    private List<Long> addReasonQueue;
+   /**
+     * dm's that should be critiqued ASAP with the reason codes
+     * why they should be critiqued.
+     */
+    private Map<Object, Long> addQueue;
 
-    private List<Object> removeQueue;
+    private Set<Object> removeQueue;
 
     private static int longestAdd;
 
@@ -204,7 +244,37 @@ public final class Designer
     /**
      * dm's that should be critiqued relatively soon.
      */
-    private List<Object> warmQueue;
+    private Set<Object> warmQueue;
+
+    /**
+     * Incremented when the queues are cleared, so that the results of
+     * the pass which was running at that time are thrown away.
+     */
+    private int queueGeneration;
+
+    /**
+     * The class of the design materials which report their changes
+     * to this designer, or null if they don't.
+     */
+    private Class trackedClass;
+
+    /**
+     * Tracked design materials which all critics have been applied to.
+     * Changes of other design materials are critiqued regardless of the
+     * reason, since they have never been critiqued at all.
+     */
+    private Map<Object, Boolean> critiquedElements;
+
+    /**
+     * True if the whole design must be critiqued in the next pass.
+     */
+    private boolean sweepRequired;
+
+    /**
+     * Design materials which have changed since the last pause in
+     * editing.
+     */
+    private Map<Object, Boolean> dirtyElements;
 
     private ChildGenerator childGenerator;
 
@@ -247,16 +317,17 @@ public final class Designer
 
         critiquingInterval = 8000;
         critiqueCPUPercent = 10;
+        currentCPUPercent = critiqueCPUPercent;
 
-        hotQueue = new ArrayList<Object>();
-        hotReasonQueue = new ArrayList<Long>();
-        addQueue = new ArrayList<Object>();
-        addReasonQueue = new ArrayList<Long>();
-        removeQueue = new ArrayList<Object>();
+        addQueue = new LinkedHashMap<Object, Long>();
+        removeQueue = new HashSet<Object>();
         longestAdd = 0;
         longestHot = 0;
 
-        warmQueue = new ArrayList<Object>();
+        warmQueue = new LinkedHashSet<Object>();
+        critiquedElements = new WeakHashMap<Object, Boolean>();
+        dirtyElements = new WeakHashMap<Object, Boolean>();
+        sweepRequired = true;
 
         childGenerator = new EmptyChildGenerator();
 
@@ -282,6 +353,11 @@ public final class Designer
      */
     public void spawnCritiquer(Object root) {
         /* TODO: really should be a separate class */
+        if (critiquingPool == null) {
+            // The workers are kept for the following critiquers
+            critiquingPool =
+                new CritiquingPool(Thread.currentThread().getPriority() - 1);
+        }
         critiquerThread = new Thread(this, "CritiquingThread");
         critiquerThread.setDaemon(true);
         critiquerThread.setPriority(Thread.currentThread().getPriority() - 1);
@@ -292,18 +368,31 @@ public final class Designer
     /**
      * Continuously select and execute critics against this designer's
      * design. {@link #spawnCritiquer(Object)} is used to start a
-     * Thread that runs this.
+     * Thread that runs this.<p>
+     *
+     * Each pass critiques all the elements which have changed and then
+     * as many elements from the warm queue as fit in the time limit.
+     * The critics are applied by a {@link CritiquingPool} outside of
+     * the lock on this designer, so that changes may be queued
+     * while the pass is running. The pause after a pass is chosen
+     * so that critiquing takes the current share of the CPU time.<p>
+     *
+     * If the design materials report their changes, see
+     * {@link #trackChanges(Class)}, a changed element is only checked
+     * by the critics which are triggered by the changed property and
+     * the other ToDoItems are left as they are. Once the designer has
+     * stopped editing for the critiquing interval, the elements changed
+     * since the last pause are checked by all critics, to catch the
+     * critics whose triggers don't list every property they read.
+     * The whole design is critiqued again only when the set of active
+     * critics changes, or after every pause in editing if
+     * {@link #PERIODIC_SWEEP} is set, which also catches the critics
+     * that look at more than one element. In between the thread is idle.
      */
     public void run() {
         try {
             while (true) {
 
-                // local variables - what do they do?
-                long critiqueStartTime;
-                long cutoffTime;
-                int minWarmElements = 5;
-                int size;
-
                 // the critiquing thread should wait if disabled.
                 synchronized (this) {
                     while (!Configuration.getBoolean(
@@ -316,82 +405,88 @@ public final class Designer
                     }
                 }
 
+                long critiqueStartTime = System.currentTimeMillis();
+                long busyNanos = 0;
+                boolean backlog = false;
+
                 // why?
                 if (critiquingRoot != null
 //                      && getAutoCritique()
                         && critiqueLock <= 0) {
 
-                    // why?
+                    List<Object> hotQueue;
+                    List<Long> hotReasonQueue;
+                    int generation;
                     synchronized (this) {
                         critiqueStartTime = System.currentTimeMillis();
-                        cutoffTime = critiqueStartTime + 3000;
-
-                        size = addQueue.size();
-                        for (int i = 0; i < size; i++) {
-                            hotQueue.add(addQueue.get(i));
-                            hotReasonQueue.add(addReasonQueue.get(i));
+                        generation = queueGeneration;
+                        hotQueue = new ArrayList<Object>(addQueue.size());
+                        hotReasonQueue = new ArrayList<Long>(addQueue.size());
+                        for (Map.Entry<Object, Long> e : addQueue.entrySet()) {
+                            hotQueue.add(e.getKey());
+                            hotReasonQueue.add(isCritiqued(e.getKey())
+                                    ? e.getValue() : Long.valueOf(-1L));
                         }
                         addQueue.clear();
-                        addReasonQueue.clear();
 
                         longestHot = Math.max(longestHot, hotQueue.size());
-                        agency.determineActiveCritics(this);
-
-                        while (hotQueue.size() > 0) {
-                            Object dm = hotQueue.get(0);
-                            Long reasonCode =
-                                    hotReasonQueue.get(0);
-                            hotQueue.remove(0);
-                            hotReasonQueue.remove(0);
-                            Agency.applyAllCritics(dm, theDesigner(),
-                                    reasonCode.longValue());
+                        if (agency.determineActiveCritics(this)) {
+                            sweepRequired = true;
                         }
+                    }
+                    busyNanos += critiquingPool.critique(hotQueue,
+                            hotReasonQueue, Long.MAX_VALUE, 0, null, this)
+                            .getBusyNanos();
 
-                        size = removeQueue.size();
-                        for (int i = 0; i < size; i++) {
-                            warmQueue.remove(removeQueue.get(i));
-                        }
+                    List<Object> warmBatch;
+                    List<Object> dirtyBatch = null;
+                    synchronized (this) {
+                        warmQueue.removeAll(removeQueue);
                         removeQueue.clear();
 
-                        if (warmQueue.size() == 0) {
+                        if (warmQueue.isEmpty() && isSweepDue()) {
                             warmQueue.add(critiquingRoot);
+                            sweepRequired = false;
+                            dirtyElements.clear();
+                        } else if (isPauseAfterChanges()) {
+                            dirtyBatch = new ArrayList<Object>(
+                                    dirtyElements.keySet());
+                            dirtyElements.clear();
                         }
-                        while (warmQueue.size() > 0
-                                && (System.currentTimeMillis() < cutoffTime
-                                        || minWarmElements > 0)) {
-                            if (minWarmElements > 0) {
-                                minWarmElements--;
-                            }
-                            Object dm = warmQueue.get(0);
-                            warmQueue.remove(0);
-                            try {
-                                Agency.applyAllCritics(dm, theDesigner());
-                                java.util.Enumeration subDMs =
-                                        childGenerator.gen(dm);
-                                while (subDMs.hasMoreElements()) {
-                                    Object nextDM = subDMs.nextElement();
-                                    if (!(warmQueue.contains(nextDM))) {
-                                        warmQueue.add(nextDM);
-                                    }
-                                }
-                            } catch (InvalidElementException e) {
-                                // Don't let a transient error kill the thread
-                                LOG.log(Level.WARNING, "Element " + dm
-                                        + "caused an InvalidElementException.  "
-                                        + "Ignoring for this pass.");
-                            }
+                        warmBatch = new ArrayList<Object>(warmQueue);
+                        warmQueue.clear();
+                    }
+                    if (dirtyBatch != null) {
+                        busyNanos += critiquingPool.critique(dirtyBatch,
+                                null, Long.MAX_VALUE, 0, null, this)
+                                .getBusyNanos();
+                    }
+                    CritiquingPool.Result warm = critiquingPool.critique(
+                            warmBatch, null, critiqueStartTime + 3000,
+                            MIN_WARM_ELEMENTS, childGenerator, this);
+                    busyNanos += warm.getBusyNanos();
+
+                    synchronized (this) {
+                        if (generation == queueGeneration) {
+                            markCritiqued(warmBatch.subList(0,
+                                    warmBatch.size()
+                                    - warm.getLeftovers().size()));
+                            // Elements which didn't fit in this pass go first
+                            Set<Object> queue = new LinkedHashSet<Object>(
+                                    warm.getLeftovers());
+                            queue.addAll(warmQueue);
+                            queue.addAll(warm.getChildren());
+                            warmQueue = queue;
                         }
+                        // Children of this pass are a backlog too, so that
+                        // critiquing a deep tree doesn't stay at the baseline
+                        backlog = !warmQueue.isEmpty() || !addQueue.isEmpty();
                     }
-                } else {
-                    critiqueStartTime = System.currentTimeMillis();
                 }
                 critiqueDuration =
                         System.currentTimeMillis() - critiqueStartTime;
-                long cycleDuration =
-                    (critiqueDuration * 100) / critiqueCPUPercent;
                 long sleepDuration =
-                    Math.min(cycleDuration - critiqueDuration, 3000);
-                sleepDuration = Math.max(sleepDuration, 1000);
+                    getSleepDuration(busyNanos / 1000000, backlog);
                 LOG.log(Level.FINE, "sleepDuration= {0}", sleepDuration);
                 try {
                     Thread.sleep(sleepDuration);
@@ -404,6 +499,93 @@ public final class Designer
         }
     }
 
+    /**
+     * @return true if it is time to critique the whole design
+     */
+    private boolean isSweepDue() {
+        if (trackedClass == null || sweepRequired) {
+            return true;
+        }
+        return Configuration.getBoolean(PERIODIC_SWEEP, false)
+            && isPauseAfterChanges();
+    }
+
+    /**
+     * @return true if the designer has stopped editing for the
+     *         critiquing interval after changing some design materials
+     */
+    private boolean isPauseAfterChanges() {
+        return !dirtyElements.isEmpty()
+            && System.currentTimeMillis() - lastChangeTime
+                >= critiquingInterval;
+    }
+
+    /**
+     * Must be called with the lock on this designer held.
+     *
+     * @param dm the design material
+     * @return true if dm doesn't need to be critiqued regardless of
+     *         the reason
+     */
+    private boolean isCritiqued(Object dm) {
+        if (trackedClass == null || !trackedClass.isInstance(dm)) {
+            return true;
+        }
+        return critiquedElements.put(dm, Boolean.TRUE) != null;
+    }
+
+    private void markCritiqued(List<Object> dms) {
+        if (trackedClass != null) {
+            for (Object dm : dms) {
+                if (trackedClass.isInstance(dm)) {
+                    critiquedElements.put(dm, Boolean.TRUE);
+                }
+            }
+        }
+    }
+
+    /**
+     * Critique the design materials of the given class only when they
+     * change instead of critiquing the whole design over and over again.
+     * The caller is responsible for making all of them report their
+     * changes to {@link #propertyChange(PropertyChangeEvent)}.
+     *
+     * @param dmClass the class of the design materials
+     */
+    public synchronized void trackChanges(Class dmClass) {
+        trackedClass = dmClass;
+        critiquedElements.clear();
+        sweepRequired = true;
+    }
+
+    /**
+     * Adapt the share of the CPU time which critiquing may take and
+     * calculate the pause after a pass which keeps critiquing within
+     * that share.
+     *
+     * @param busyMillis the CPU time spent by all workers in the pass
+     * @param backlog true if some elements are still waiting
+     * @return the pause in milliseconds
+     */
+    private synchronized long getSleepDuration(long busyMillis,
+            boolean backlog) {
+        boolean editing =
+            System.currentTimeMillis() - lastChangeTime < EDITING_PAUSE;
+        if (backlog && !editing) {
+            currentCPUPercent =
+                Math.min(MAX_CPU_PERCENT, currentCPUPercent * 2);
+        } else {
+            currentCPUPercent = critiqueCPUPercent;
+        }
+        int processors = Runtime.getRuntime().availableProcessors();
+        long cycleDuration =
+            (busyMillis * 100) / (currentCPUPercent * processors);
+        long sleepDuration =
+            Math.min(cycleDuration - critiqueDuration, 3000);
+        // Without a backlog there is no point to come back soon
+        return Math.max(sleepDuration, backlog ? 250 : 1000);
+    }
+
     /**
      * A modelelement has been changed.
      * Now we give it priority to be checked by the critics ASAP.
@@ -425,19 +607,14 @@ public final class Designer
             return;
         }
         LOG.log(Level.FINE, "critiqueASAP: {0}", dm);
-        int addQueueIndex = addQueue.indexOf(dm);
-        if (addQueueIndex == -1) {
-            addQueue.add(dm);
-            Long reasonCodeObj = new Long(rCode);
-            addReasonQueue.add(reasonCodeObj);
-        } else {
-            Long reasonCodeObj =
-		addReasonQueue.get(addQueueIndex);
-            long rc = reasonCodeObj.longValue() | rCode;
-            Long newReasonCodeObj = new Long(rc);
-            addReasonQueue.set(addQueueIndex, newReasonCodeObj);
+        Long reasonCodeObj = addQueue.get(dm);
+        if (reasonCodeObj != null) {
+            rCode |= reasonCodeObj.longValue();
         }
+        addQueue.put(dm, Long.valueOf(rCode));
         removeQueue.add(dm);
+        lastChangeTime = System.currentTimeMillis();
+        dirtyElements.put(dm, Boolean.TRUE);
         longestAdd = Math.max(longestAdd, addQueue.size());
     }
 
@@ -536,9 +713,9 @@ public final class Designer
      * control how the critiquing thread operates. If autoCritique is
      * false then now critiquing is done in the background. The
      * critiquingInterval determines how often the critiquing thread
-     * executes. The concept of an interval between runs will become
-     * less important as Argo is redesigned to be more trigger
-     * driven.
+     * executes. If the design materials report their changes, it is
+     * rather the pause in editing after which the changed elements are
+     * checked by all critics, see {@link #run()}.
      *
      * @return autoCritique
      */
@@ -602,12 +779,13 @@ public final class Designer
     public static void clearCritiquing() {
         synchronized (theDesigner()) {
             theDesigner().toDoList.removeAllElements(); //v71
-            theDesigner().hotQueue.clear();
-            theDesigner().hotReasonQueue.clear();
             theDesigner().addQueue.clear();
-            theDesigner().addReasonQueue.clear();
             theDesigner().removeQueue.clear();
             theDesigner().warmQueue.clear();
+            theDesigner().queueGeneration++;
+            theDesigner().critiquedElements.clear();
+            theDesigner().dirtyElements.clear();
+            theDesigner().sweepRequired = true;
         }
         //clear out queues! @@@
     }
@@ -618,6 +796,7 @@ public final class Designer
     public static void setCritiquingRoot(Object d) {
         synchronized (theDesigner()) {
             critiquingRoot = d;
+            theDesigner().sweepRequired = true;
         }
         /* Don't clear everything here, breaks loading! */
     }
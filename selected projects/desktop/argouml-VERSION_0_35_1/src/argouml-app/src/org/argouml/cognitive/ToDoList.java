@@ -384,24 +384,19 @@ public class ToDoList extends Observable implements Runnable {
         // this method is running.
         ListSet all = allOffenders;
         if (all == null) {
-            int size = items.size();
-            all = new ListSet(size * 2);
             synchronized (items) {
+                all = new ListSet(items.size() * 2);
                 for (ToDoItem item : items) {
                     all.addAll(item.getOffenders());
                 }
+                // Published under the lock, so that an item which is
+                // added meanwhile resets it afterwards
+                allOffenders = all;
             }
-            allOffenders = all;
         }
         return all;
     }
 
-    private void addOffenders(ListSet newoffs) {
-        if (allOffenders != null) {
-            allOffenders.addAll(newoffs);
-        }
-    }
-
     /**
      * @return the set of all the posters
      */
@@ -410,23 +405,17 @@ public class ToDoList extends Observable implements Runnable {
         // this method is running.
         ListSet<Poster> all = allPosters;
         if (all == null) {
-            all = new ListSet<Poster>();
             synchronized (items) {
+                all = new ListSet<Poster>();
                 for (ToDoItem item : items) {
                     all.add(item.getPoster());
                 }
+                allPosters = all;
             }
-            allPosters = all;
         }
         return all;
     }
 
-    private void addPosters(Poster newp) {
-        if (allPosters != null) {
-            allPosters.add(newp);
-        }
-    }
-
 
     /**
      * @return the list of Decisions (empty by default).
@@ -444,19 +433,25 @@ public class ToDoList extends Observable implements Runnable {
     }
 
     /*
-     * TODO: needs documenting, why synchronized?
+     * Critics may post items from several critiquing threads at once.
+     * The check for an identical item and the addition are done under
+     * the lock on the items, the same one that guards iterating them
+     * and building the cached offenders and posters. The cached sets
+     * are reset rather than updated, so that a set which has been
+     * returned is never modified. Observers are notified without
+     * holding the lock.
      */
     private void addE(ToDoItem item) {
-        /* skip any identical items already on the list */
-        if (itemSet.contains(item)) {
-            return;
-        }
-
+        ResolvedCritic rc = null;
         if (item.getPoster() instanceof Critic) {
-            ResolvedCritic rc;
             try {
                 rc = new ResolvedCritic((Critic) item.getPoster(), item
                         .getOffenders(), false);
+            } catch (UnresolvableException ure) {
+            }
+        }
+        if (rc != null) {
+            synchronized (resolvedItems) {
                 Iterator<ResolvedCritic> elems = resolvedItems.iterator();
                 // cat.debug("Checking for inhibitors " + rc);
                 while (elems.hasNext()) {
@@ -465,15 +460,19 @@ public class ToDoList extends Observable implements Runnable {
                         return;
                     }
                 }
-            } catch (UnresolvableException ure) {
             }
         }
 
-        items.add(item);
-        itemSet.add(item);
-        longestToDoList = Math.max(longestToDoList, items.size());
-        addOffenders(item.getOffenders());
-        addPosters(item.getPoster());
+        synchronized (items) {
+            /* skip any identical items already on the list */
+            if (!itemSet.add(item)) {
+                return;
+            }
+            items.add(item);
+            longestToDoList = Math.max(longestToDoList, items.size());
+            recomputeAllOffenders();
+            recomputeAllPosters();
+        }
         // if (item.getPoster() instanceof Designer)
         // History.TheHistory.addItem(item, "note: ");
         // else
@@ -510,8 +509,10 @@ public class ToDoList extends Observable implements Runnable {
      *         <code>false</code> otherwise
      */
     private boolean removeE(ToDoItem item) {
-        itemSet.remove(item);
-        return items.remove(item);
+        synchronized (items) {
+            itemSet.remove(item);
+            return items.remove(item);
+        }
     }
 
     /**
@@ -586,9 +587,12 @@ public class ToDoList extends Observable implements Runnable {
      */
     public void removeAllElements() {
         LOG.log(Level.FINE, "removing all todo items");
-        List<ToDoItem> oldItems = new ArrayList<ToDoItem>(items);
-        items.clear();
-        itemSet.clear();
+        List<ToDoItem> oldItems;
+        synchronized (items) {
+            oldItems = new ArrayList<ToDoItem>(items);
+            items.clear();
+            itemSet.clear();
+        }
 
         recomputeAllOffenders();
         recomputeAllPosters();
@@ -71,9 +71,13 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import javax.xml.transform.Result;
+import javax.xml.transform.Source;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
 
@@ -341,21 +345,17 @@ public class UmlFilePersister extends AbstractFilePersister {
                         + '~' + release));
 
                 progressMgr.setNumberOfPhases(progressMgr.getNumberOfPhases()
-                        + (PERSISTENCE_VERSION - fileVersion));
+                        + 1);
 
-                while (fileVersion < PERSISTENCE_VERSION) {
-                    ++fileVersion;
+                LOG.log(Level.INFO, "Upgrading from version {0}", fileVersion);
 
-                    LOG.log(Level.INFO, "Upgrading to version {0}", fileVersion);
+                long startTime = System.currentTimeMillis();
+                file = transform(file, fileVersion, PERSISTENCE_VERSION);
 
-                    long startTime = System.currentTimeMillis();
-                    file = transform(file, fileVersion);
-
-                    long endTime = System.currentTimeMillis();
-                    LOG.log(Level.INFO, "Upgrading took " + ((endTime - startTime) / 1000)
-                            + " seconds");
-                    progressMgr.nextPhase();
-                }
+                long endTime = System.currentTimeMillis();
+                LOG.log(Level.INFO, "Upgrading took " + ((endTime - startTime) / 1000)
+                        + " seconds");
+                progressMgr.nextPhase();
             }
 
             progressMgr.nextPhase();
@@ -447,46 +447,114 @@ public class UmlFilePersister extends AbstractFilePersister {
      * @throws OpenException on XSLT transformation error or file read
      */
     public final File transform(File file, int version) throws OpenException {
+        return transform(file, version - 1, version);
+    }
+
+    /**
+     * Transform a string of XML data through the upgrade stylesheets of all
+     * the versions from the given one to the required one.<p>
+     *
+     * If the XSLT processor supports SAX, the stylesheets are chained so
+     * that the output of one goes straight into the next one. The file is
+     * then parsed and written only once, however many versions behind it
+     * is. Otherwise the stylesheets are applied one by one, each of them
+     * writing a temporary file.
+     *
+     * @param file The XML file to be transformed
+     * @param fromVersion the version of the persistence format of the file
+     * @param toVersion the version of the persistence format the XML is to
+     *            be transformed to.
+     * @return the transformed XML file
+     * @throws OpenException on XSLT transformation error or file read
+     */
+    public final File transform(File file, int fromVersion, int toVersion)
+        throws OpenException {
 
         try {
-            String upgradeFilesPath = "/org/argouml/persistence/upgrades/";
-            String upgradeFile = "upgrade" + version + ".xsl";
+            TransformerFactory factory = TransformerFactory.newInstance();
+            if (!factory.getFeature(SAXTransformerFactory.FEATURE)
+                    || !factory.getFeature(SAXResult.FEATURE)) {
+                for (int version = fromVersion + 1; version <= toVersion;
+                        version++) {
+                    file = transform(file, version,
+                            factory.newTransformer(getUpgradeSource(version)),
+                            null, null);
+                }
+                return file;
+            }
+
+            SAXTransformerFactory saxFactory = (SAXTransformerFactory) factory;
+            TransformerHandler first = null;
+            TransformerHandler last = null;
+            for (int version = fromVersion + 1; version <= toVersion;
+                    version++) {
+                TransformerHandler handler = saxFactory.newTransformerHandler(
+                        getUpgradeSource(version));
+                if (last == null) {
+                    first = handler;
+                } else {
+                    last.setResult(new SAXResult(handler));
+                }
+                last = handler;
+            }
+            if (first == null) {
+                return file;
+            }
+            // The identity transformer feeds the file to the first stylesheet
+            return transform(file, toVersion, factory.newTransformer(),
+                    first, last);
+        } catch (IOException e) {
+            throw new OpenException(e);
+        } catch (TransformerException e) {
+            throw new OpenException(e);
+        }
+    }
 
-            String xsltFileName = upgradeFilesPath + upgradeFile;
-            URL xsltUrl = UmlFilePersister.class.getResource(xsltFileName);
+    /**
+     * Write the output of the transformer, or of the last stylesheet
+     * of the chain if there is one, to a temporary file.
+     */
+    private File transform(File file, int version, Transformer transformer,
+            TransformerHandler first, TransformerHandler last)
+        throws IOException, TransformerException {
 
-            LOG.log(Level.INFO, "Resource is {0}", xsltUrl);
+        File transformedFile = File.createTempFile("upgrade_" + version
+                + "_", ".uml");
+        transformedFile.deleteOnExit();
 
-            // Read xsltStream into a temporary file
-            // Get url for temp file.
-            // openStream from url and wrap in StreamSource
-            StreamSource xsltStreamSource = new StreamSource(xsltUrl
-                    .openStream());
-            xsltStreamSource.setSystemId(xsltUrl.toExternalForm());
+        FileOutputStream stream = new FileOutputStream(transformedFile);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(stream,
+                Argo.getEncoding()));
+        Result result = new StreamResult(writer);
 
-            TransformerFactory factory = TransformerFactory.newInstance();
-            Transformer transformer = factory.newTransformer(xsltStreamSource);
+        StreamSource inputStreamSource = new StreamSource(file);
+        inputStreamSource.setSystemId(file);
+        try {
+            if (first == null) {
+                transformer.transform(inputStreamSource, result);
+            } else {
+                last.setResult(result);
+                transformer.transform(inputStreamSource, new SAXResult(first));
+            }
+        } finally {
+            writer.close();
+        }
+        return transformedFile;
+    }
 
-            File transformedFile = File.createTempFile("upgrade_" + version
-                    + "_", ".uml");
-            transformedFile.deleteOnExit();
+    private Source getUpgradeSource(int version) throws IOException {
+        String upgradeFilesPath = "/org/argouml/persistence/upgrades/";
+        String upgradeFile = "upgrade" + version + ".xsl";
 
-            FileOutputStream stream = new FileOutputStream(transformedFile);
-            Writer writer = new BufferedWriter(new OutputStreamWriter(stream,
-                    Argo.getEncoding()));
-            Result result = new StreamResult(writer);
+        String xsltFileName = upgradeFilesPath + upgradeFile;
+        URL xsltUrl = UmlFilePersister.class.getResource(xsltFileName);
 
-            StreamSource inputStreamSource = new StreamSource(file);
-            inputStreamSource.setSystemId(file);
-            transformer.transform(inputStreamSource, result);
+        LOG.log(Level.INFO, "Resource is {0}", xsltUrl);
 
-            writer.close();
-            return transformedFile;
-        } catch (IOException e) {
-            throw new OpenException(e);
-        } catch (TransformerException e) {
-            throw new OpenException(e);
-        }
+        StreamSource xsltStreamSource = new StreamSource(xsltUrl
+                .openStream());
+        xsltStreamSource.setSystemId(xsltUrl.toExternalForm());
+        return xsltStreamSource;
     }
 
     /**
@@ -53,13 +53,18 @@ import java.io.PrintWriter;
 import java.io.Reader;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Enumeration;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
@@ -88,6 +93,8 @@ class ZargoFilePersister extends UmlFilePersister {
     private static final Logger LOG =
         Logger.getLogger(ZargoFilePersister.class.getName());
 
+    private long lastLoadAllocatedBytes = -1;
+
     /**
      * The constructor.
      */
@@ -230,7 +237,15 @@ class ZargoFilePersister extends UmlFilePersister {
         return false;
     }
 
-    /*
+    /**
+     * Load a zargo file.<p>
+     *
+     * The persistence version is read from the .argo entry. A file saved
+     * in the current format is loaded straight from the zip, one member
+     * after the other, without writing a temporary file. Older files are
+     * combined into a single uml file which is upgraded by the XSLT
+     * stylesheets first.
+     *
      * @see org.argouml.persistence.ProjectFilePersister#doLoad(java.io.File)
      */
     @Override
@@ -241,25 +256,36 @@ class ZargoFilePersister extends UmlFilePersister {
         progressMgr.setNumberOfPhases(3 + UML_PHASES_LOAD);
         ThreadUtils.checkIfInterrupted();
 
+        long startTime = System.currentTimeMillis();
+        long startAllocatedBytes = getAllocatedBytes();
+
         int fileVersion;
         String releaseVersion;
         try {
-            String argoEntry = getEntryNames(file, ".argo").iterator().next();
-            URL argoUrl = makeZipEntryUrl(toURL(file), argoEntry);
-            fileVersion = getPersistenceVersion(argoUrl.openStream());
-            releaseVersion = getReleaseVersion(argoUrl.openStream());
-        } catch (MalformedURLException e) {
-            throw new OpenException(e);
+            ZipFile zip = new ZipFile(file);
+            try {
+                ZipEntry argoEntry =
+                    getEntry(zip, FileConstants.PROJECT_FILE_EXT);
+                if (argoEntry == null) {
+                    throw new OpenException(
+                            "There is no .argo file in the .zargo");
+                }
+                fileVersion =
+                    getPersistenceVersion(zip.getInputStream(argoEntry));
+                releaseVersion =
+                    getReleaseVersion(zip.getInputStream(argoEntry));
+            } finally {
+                zip.close();
+            }
         } catch (IOException e) {
             throw new OpenException(e);
         }
 
-        // TODO: The commented code below was commented out by Bob Tarling
-        // in order to resolve bugs 4845 and 4857. Hopefully we can
-        // determine the cause and reintroduce.
-
-        //boolean upgradeRequired = !checkVersion(fileVersion, releaseVersion)
-        boolean upgradeRequired = true;
+        // The upgrade used to be forced for all files to resolve bugs 4845
+        // and 4857, because the direct loader read the model before the
+        // profile configuration. loadFromZargo now loads the members in
+        // the same order as a combined file.
+        boolean upgradeRequired = !checkVersion(fileVersion, releaseVersion);
 
         // Upgrade is in the way for UML2 projects, so we turn it off in that case:
         if (Model.getFacade().getUmlVersion().charAt(0) == '2') {
@@ -278,52 +304,70 @@ class ZargoFilePersister extends UmlFilePersister {
 
         progressMgr.nextPhase();
 
+        lastLoadAllocatedBytes = startAllocatedBytes < 0
+            ? -1 : getAllocatedBytes() - startAllocatedBytes;
+        LOG.log(Level.INFO, "Loading took {0} ms and allocated {1} KB",
+                new Object[] {System.currentTimeMillis() - startTime,
+                              lastLoadAllocatedBytes / 1024});
+
         PersistenceManager.getInstance().setProjectURI(file.toURI(), p);
         return p;
 
     }
 
+    /**
+     * Load the members of a zargo file in the current format. They are
+     * loaded in the same order as from a combined uml file: the profile
+     * configuration, the model, the diagrams and the todo items last,
+     * since they may refer to both model elements and figs.<p>
+     *
+     * The entries are streamed from the zip, except the model. The XMI
+     * reader needs a source it can read again, so it gets the URL of
+     * the entry rather than a stream it would copy to a temporary file.
+     */
     private Project loadFromZargo(File file, ProgressMgr progressMgr)
         throws OpenException {
 
         Project p = ProjectFactory.getInstance().createProject(file.toURI());
+        ZipFile zip = null;
         try {
+            zip = new ZipFile(file);
             progressMgr.nextPhase();
 
             // Load .argo project descriptor
             ArgoParser parser = new ArgoParser();
-            String argoEntry = getEntryNames(file, ".argo").iterator().next();
-            parser.readProject(p, new InputSource(makeZipEntryUrl(toURL(file),
-                    argoEntry).toExternalForm()));
+            ZipEntry argoEntry = getEntry(zip, FileConstants.PROJECT_FILE_EXT);
+            parser.readProject(p, createInputSource(file, zip, argoEntry));
 
             List memberList = parser.getMemberList();
 
             LOG.log(Level.INFO,memberList.size() + " members");
 
-            // Load .xmi file before any PGML files
-            // FIXME: the following is loading the model before anything else.
-            // Due to the Zargo containing the profiles, currently we have
-            // removed this hack in UmlFilePersister and I think it should be
-            // removed from here also.
-            String xmiEntry = getEntryNames(file, ".xmi").iterator().next();
-            MemberFilePersister persister = getMemberFilePersister("xmi");
-            URL url = makeZipEntryUrl(toURL(file), xmiEntry);
-            persister.load(p, new InputSource(url.toExternalForm()));
-
-            // Load the rest
-            List<String> entries = getEntryNames(file, null);
-            for (String name : entries) {
+            for (ZipEntry entry : getMemberEntries(zip)) {
+                String name = entry.getName();
                 String ext = name.substring(name.lastIndexOf('.') + 1);
-                if (!"argo".equals(ext) && !"xmi".equals(ext)) {
-                    persister = getMemberFilePersister(ext);
+                MemberFilePersister persister = getMemberFilePersister(ext);
+                if (persister == null) {
+                    LOG.log(Level.WARNING, "Ignoring unknown member {0}", name);
+                    continue;
+                }
 
-                    LOG.log(Level.INFO,
-                            "Loading member with "
-                            + persister.getClass().getName());
+                LOG.log(Level.INFO,
+                        "Loading member with "
+                        + persister.getClass().getName());
 
-                    url = makeZipEntryUrl(toURL(file), name);
+                if ("xmi".equals(ext)) {
+                    URL url = makeZipEntryUrl(toURL(file), name);
                     persister.load(p, new InputSource(url.toExternalForm()));
+                } else {
+                    InputSource source = createInputSource(file, zip, entry);
+                    try {
+                        persister.load(p, source);
+                    } finally {
+                        source.getByteStream().close();
+                    }
                 }
+                ThreadUtils.checkIfInterrupted();
             }
 
             progressMgr.nextPhase();
@@ -338,6 +382,103 @@ class ZargoFilePersister extends UmlFilePersister {
             throw new OpenException(e);
         } catch (SAXException e) {
             throw new OpenException(e);
+        } finally {
+            if (zip != null) {
+                try {
+                    zip.close();
+                } catch (IOException e) {
+                    // No more we can do here on failure
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the member entries of the zip in the order of loading
+     */
+    private List<ZipEntry> getMemberEntries(ZipFile zip) {
+        String profileExt = "." + ProfileConfiguration.EXTENSION;
+        List<ZipEntry> profiles = new ArrayList<ZipEntry>();
+        List<ZipEntry> models = new ArrayList<ZipEntry>();
+        List<ZipEntry> others = new ArrayList<ZipEntry>();
+        List<ZipEntry> todos = new ArrayList<ZipEntry>();
+        Enumeration<? extends ZipEntry> entries = zip.entries();
+        while (entries.hasMoreElements()) {
+            ZipEntry entry = entries.nextElement();
+            String name = entry.getName();
+            if (name.endsWith(FileConstants.PROJECT_FILE_EXT)) {
+                continue;
+            } else if (name.endsWith(profileExt)) {
+                profiles.add(entry);
+            } else if (name.endsWith(".xmi")) {
+                models.add(entry);
+            } else if (name.endsWith(".todo")) {
+                todos.add(entry);
+            } else {
+                others.add(entry);
+            }
+        }
+        List<ZipEntry> result = new ArrayList<ZipEntry>(profiles);
+        result.addAll(models);
+        result.addAll(others);
+        result.addAll(todos);
+        return result;
+    }
+
+    /**
+     * Create an input source streaming the entry. The URL of the entry
+     * is set as the system id, so that relative references, e.g. to
+     * DTDs, are resolved as if the entry was read from the URL.
+     */
+    private InputSource createInputSource(File file, ZipFile zip,
+            ZipEntry entry) throws IOException {
+        InputSource source = new InputSource(zip.getInputStream(entry));
+        source.setSystemId(makeZipEntryUrl(toURL(file), entry.getName())
+                .toExternalForm());
+        return source;
+    }
+
+    /**
+     * @return the first entry of the zip with the given extension or null
+     */
+    private ZipEntry getEntry(ZipFile zip, String ext) {
+        Enumeration<? extends ZipEntry> entries = zip.entries();
+        while (entries.hasMoreElements()) {
+            ZipEntry entry = entries.nextElement();
+            if (entry.getName().endsWith(ext)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the number of bytes allocated on the heap by the last call
+     *         of {@link #doLoad(File)} on the calling thread, or -1 if the
+     *         virtual machine can't tell
+     */
+    long getLastLoadAllocatedBytes() {
+        return lastLoadAllocatedBytes;
+    }
+
+    /**
+     * Unlike the heap usage, the bytes allocated by a thread don't depend
+     * on other threads or on when the garbage collector runs. The method
+     * is specific to the Sun virtual machines, so it is looked up by name.
+     *
+     * @return the number of bytes allocated on the heap by the current
+     *         thread so far, or -1 if the virtual machine can't tell
+     */
+    private static long getAllocatedBytes() {
+        try {
+            ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            Method method = Class.forName("com.sun.management.ThreadMXBean")
+                    .getMethod("getThreadAllocatedBytes", long.class);
+            return ((Long) method.invoke(bean,
+                    Long.valueOf(Thread.currentThread().getId())))
+                    .longValue();
+        } catch (Exception e) {
+            return -1;
         }
     }
 
@@ -346,7 +487,12 @@ class ZargoFilePersister extends UmlFilePersister {
     }
 
 
-    private File zargoToUml(File file, ProgressMgr progressMgr)
+    /**
+     * Combine the members of a zargo into a temporary uml file.<p>
+     *
+     * Package scope to allow testing.
+     */
+    File zargoToUml(File file, ProgressMgr progressMgr)
         throws OpenException, InterruptedException {
 
         File combinedFile = null;
@@ -823,62 +823,69 @@ public class DnDExplorerTree
                 Collection<Object> newTargets = new ArrayList<Object>();
                 try {
                     dropTargetDropEvent.acceptDrop(action);
-                    for (Object me : modelElements) {
-                        if (Model.getFacade().isAUMLElement(me)) {
-                            if (Model.getModelManagementHelper().isReadOnly(me)) {
-                                continue;
+                    // Deliver the events of each element together
+                    // once everything has been moved or copied
+                    Model.getPump().startCoalescing();
+                    try {
+                        for (Object me : modelElements) {
+                            if (Model.getFacade().isAUMLElement(me)) {
+                                if (Model.getModelManagementHelper().isReadOnly(me)) {
+                                    continue;
+                                }
                             }
-                        }
                         
-                        LOG.log(Level.FINE,(moveAction ? "move " : "copy ") + me);
+                            LOG.log(Level.FINE,(moveAction ? "move " : "copy ") + me);
                         
-                        if (Model.getCoreHelper().isValidNamespace(me, dest)) {
-                            if (moveAction) {
-                                Model.getCoreHelper().setNamespace(me, dest);
-                                newTargets.add(me);
+                            if (Model.getCoreHelper().isValidNamespace(me, dest)) {
+                                if (moveAction) {
+                                    Model.getCoreHelper().setNamespace(me, dest);
+                                    newTargets.add(me);
+                                }
+                                if (copyAction) {
+                                    try {
+                                        newTargets.add(Model.getCopyHelper()
+                                                .copy(me, dest));
+                                    } catch (RuntimeException e) {
+                                        /* TODO: The copy function is not yet
+                                         * completely implemented - so we will
+                                         * have some exceptions here and there.*/
+                                        LOG.log(Level.SEVERE, "Exception", e);
+                                    }
+                                }
                             }
-                            if (copyAction) {
-                                try {
-                                    newTargets.add(Model.getCopyHelper()
-                                            .copy(me, dest));
-                                } catch (RuntimeException e) {
-                                    /* TODO: The copy function is not yet
-                                     * completely implemented - so we will
-                                     * have some exceptions here and there.*/
-                                    LOG.log(Level.SEVERE, "Exception", e);
+                            if (me instanceof Relocatable) {
+                                Relocatable d = (Relocatable) me;
+                                if (d.isRelocationAllowed(dest)) {
+                                    if (d.relocate(dest)) {
+                                        ExplorerEventAdaptor.getInstance()
+                                            .modelElementChanged(src);
+                                        ExplorerEventAdaptor.getInstance()
+                                            .modelElementChanged(dest);
+                                        /*TODO: Make the tree refresh and expand
+                                         * really work in all cases!
+                                         */
+                                        makeVisible(destinationPath);
+                                        expandPath(destinationPath);
+                                        newTargets.add(me);
+                                    }
                                 }
                             }
-                        }
-                        if (me instanceof Relocatable) {
-                            Relocatable d = (Relocatable) me;
-                            if (d.isRelocationAllowed(dest)) {
-                                if (d.relocate(dest)) {
-                                    ExplorerEventAdaptor.getInstance()
-                                        .modelElementChanged(src);
-                                    ExplorerEventAdaptor.getInstance()
-                                        .modelElementChanged(dest);
-                                    /*TODO: Make the tree refresh and expand
-                                     * really work in all cases!
-                                     */
-                                    makeVisible(destinationPath);
-                                    expandPath(destinationPath);
+                            if (Model.getFacade().isAFeature(me)
+                                    && Model.getFacade().isAClassifier(dest)) {
+                                if (moveAction) {
+                                    Model.getCoreHelper().removeFeature(
+                                            Model.getFacade().getOwner(me), me);
+                                    Model.getCoreHelper().addFeature(dest, me);
                                     newTargets.add(me);
                                 }
+                                if (copyAction) {
+                                    newTargets.add(
+                                            Model.getCopyHelper().copy(me, dest));
+                                }
                             }
                         }
-                        if (Model.getFacade().isAFeature(me)
-                                && Model.getFacade().isAClassifier(dest)) {
-                            if (moveAction) {
-                                Model.getCoreHelper().removeFeature(
-                                        Model.getFacade().getOwner(me), me);
-                                Model.getCoreHelper().addFeature(dest, me);
-                                newTargets.add(me);
-                            }
-                            if (copyAction) {
-                                newTargets.add(
-                                        Model.getCopyHelper().copy(me, dest));
-                            }
-                        }
+                    } finally {
+                        Model.getPump().stopCoalescing();
                     }
                     dropTargetDropEvent.getDropTargetContext()
                         .dropComplete(true);
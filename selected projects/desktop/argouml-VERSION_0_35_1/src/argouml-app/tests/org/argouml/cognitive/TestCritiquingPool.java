@@ -0,0 +1,158 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2026 Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *****************************************************************************
+ */
+
+package org.argouml.cognitive;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.Vector;
+
+import junit.framework.TestCase;
+
+import org.tigris.gef.util.ChildGenerator;
+
+/**
+ * Testing the application of critics by the CritiquingPool.
+ */
+public class TestCritiquingPool extends TestCase {
+
+    /**
+     * The design material criticized by the test critic.
+     */
+    static class Material {
+    }
+
+    /**
+     * A critic which records the design materials it was applied to.
+     */
+    static class RecordingCritic extends Critic {
+        private Set<Object> seen =
+            Collections.synchronizedSet(new HashSet<Object>());
+
+        private int calls;
+
+        @Override
+        public boolean predicate(Object dm, Designer dsgr) {
+            synchronized (this) {
+                calls++;
+            }
+            seen.add(dm);
+            return false;
+        }
+    }
+
+    private RecordingCritic critic;
+
+    public TestCritiquingPool(String arg0) {
+        super(arg0);
+    }
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        critic = new RecordingCritic();
+        Agency.register(critic, Material.class);
+    }
+
+    protected void tearDown() throws Exception {
+        // The Agency has no way to unregister critics, the next
+        // registration flushes its cache of critics for Material
+        Agency.criticListForSpecificClass(Material.class).remove(critic);
+        Agency.getCriticList().remove(critic);
+        super.tearDown();
+    }
+
+    private static List<Object> createMaterials(int count) {
+        List<Object> result = new ArrayList<Object>();
+        for (int i = 0; i < count; i++) {
+            result.add(new Material());
+        }
+        return result;
+    }
+
+    /**
+     * Test that every design material is critiqued exactly once
+     * and that the children of all of them are collected.
+     */
+    public void testAllCritiqued() {
+        List<Object> dms = createMaterials(200);
+        ChildGenerator twoChildren = new ChildGenerator() {
+            public Enumeration gen(Object o) {
+                Vector<Object> children = new Vector<Object>();
+                children.add(o.toString() + "-1");
+                children.add(o.toString() + "-2");
+                return children.elements();
+            }
+        };
+        CritiquingPool pool = new CritiquingPool(4, Thread.MIN_PRIORITY);
+        CritiquingPool.Result result = pool.critique(dms, null,
+                Long.MAX_VALUE, 0, twoChildren, null);
+
+        assertEquals(200, critic.calls);
+        assertEquals(200, critic.seen.size());
+        assertTrue(result.getLeftovers().isEmpty());
+        assertEquals(400, result.getChildren().size());
+    }
+
+    /**
+     * Test that the critic is applied only when the reason matches.
+     */
+    public void testReasonCodes() {
+        List<Object> dms = createMaterials(2);
+        List<Long> reasons = new ArrayList<Long>();
+        reasons.add(Long.valueOf(0L));
+        reasons.add(Long.valueOf(Critic.reasonCodeFor("test")));
+        critic.addTrigger("test");
+        new CritiquingPool(1, Thread.MIN_PRIORITY).critique(dms, reasons,
+                Long.MAX_VALUE, 0, null, null);
+
+        assertEquals(1, critic.calls);
+        assertTrue(critic.seen.contains(dms.get(1)));
+    }
+
+    /**
+     * Test that the design materials which didn't fit before the
+     * cutoff time are returned.
+     */
+    public void testCutoff() {
+        List<Object> dms = createMaterials(10);
+        CritiquingPool.Result result =
+            new CritiquingPool(1, Thread.MIN_PRIORITY).critique(dms, null,
+                    0, 3, null, null);
+
+        assertEquals(3, critic.calls);
+        assertEquals(dms.subList(3, 10), result.getLeftovers());
+        for (Object dm : result.getLeftovers()) {
+            assertFalse(critic.seen.contains(dm));
+        }
+    }
+
+    /**
+     * Test that an interrupted caller gets the untaken design materials
+     * back and keeps its interrupt status.
+     */
+    public void testInterrupted() {
+        List<Object> dms = createMaterials(1000);
+        Thread.currentThread().interrupt();
+        CritiquingPool.Result result =
+            new CritiquingPool(4, Thread.MIN_PRIORITY).critique(dms, null,
+                    Long.MAX_VALUE, 0, null, null);
+
+        assertTrue(Thread.interrupted());
+        assertEquals(dms.size() - result.getLeftovers().size(),
+                critic.calls);
+        for (Object dm : result.getLeftovers()) {
+            assertFalse(critic.seen.contains(dm));
+        }
+    }
+}
@@ -38,6 +38,10 @@
 
 package org.argouml.cognitive;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 import junit.framework.TestCase;
 
 import org.argouml.model.InitializeModel;
@@ -107,4 +111,47 @@ public class TestToDoItemList extends TestCase {
         // size should be 0 since item was removed
         assertTrue("ToDoList.size() is incorrect", list.size() == 0);
     }
+
+    /**
+     * Test that items posted by several critiquing threads at once are
+     * all added exactly once, together with their offenders.
+     *
+     * @throws InterruptedException if the test is interrupted
+     */
+    public void testConcurrentAdd() throws InterruptedException {
+        final Critic critic = new Critic();
+        final List<ToDoItem> items = new ArrayList<ToDoItem>();
+        for (int i = 0; i < 500; i++) {
+            ListSet offenders = new ListSet();
+            offenders.add("offender " + i);
+            items.add(new ToDoItem(critic, "Headline " + i,
+                    ToDoItem.HIGH_PRIORITY, "", "", offenders));
+        }
+        final ToDoList list = new ToDoList();
+        final List<Throwable> failures =
+            Collections.synchronizedList(new ArrayList<Throwable>());
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread() {
+                public void run() {
+                    try {
+                        for (ToDoItem item : items) {
+                            list.addElement(item);
+                            list.getOffenders().size();
+                        }
+                    } catch (Throwable e) {
+                        failures.add(e);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals("Failures " + failures, 0, failures.size());
+        assertEquals(items.size(), list.size());
+        assertEquals(items.size(), list.getOffenders().size());
+    }
 }
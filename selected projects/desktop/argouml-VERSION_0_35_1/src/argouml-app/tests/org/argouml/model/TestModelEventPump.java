@@ -40,6 +40,8 @@ package org.argouml.model;
 
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.List;
 
 import junit.framework.TestCase;
 
@@ -58,6 +60,7 @@ public class TestModelEventPump extends TestCase {
     private Object model;
     private boolean eventcalled;
     private TestListener listener;
+    private List<PropertyChangeEvent> events;
 
     /**
      * A mock listener used for the tests.
@@ -76,6 +79,7 @@ public class TestModelEventPump extends TestCase {
 //                    	       + e.getOldValue() + ", "
 //                    	       + e.getNewValue());
             eventcalled = true;
+            events.add(e);
         }
     }
 
@@ -100,6 +104,7 @@ public class TestModelEventPump extends TestCase {
         model = Model.getModelManagementFactory().createModel();
         Model.getCoreHelper().addOwnedElement(model, elem);
         eventcalled = false;
+        events = new ArrayList<PropertyChangeEvent>();
         listener = new TestListener();
         Model.getPump().flushModelEvents();
     }
@@ -311,6 +316,96 @@ public class TestModelEventPump extends TestCase {
         assertFalse(eventcalled);
     }
 
+    /**
+     * Tests that a class listener which is added after events of the
+     * class have been dispatched gets the following events, and that
+     * listeners registered for a supertype get the events of subtypes.
+     */
+    public void testAddClassListenerAfterDispatch() {
+        TestListener other = new TestListener();
+        Model.getPump().addClassModelEventListener(other, elem.getClass(),
+                new String[] {"isAbstract"});
+        Model.getCoreHelper().setAbstract(elem, true);
+        Model.getPump().flushModelEvents();
+        assertEquals(1, events.size());
+
+        Model.getPump().addClassModelEventListener(listener,
+                Model.getMetaTypes().getModelElement(),
+                new String[] {"isAbstract"});
+        Model.getCoreHelper().setAbstract(elem, false);
+        Model.getPump().flushModelEvents();
+        assertEquals(3, events.size());
+
+        Model.getPump().removeClassModelEventListener(other, elem.getClass(),
+                new String[] {"isAbstract"});
+        Model.getPump().removeClassModelEventListener(listener,
+                Model.getMetaTypes().getModelElement(),
+                new String[] {"isAbstract"});
+    }
 
+    /**
+     * Tests that events are held back while coalescing and that repeated
+     * changes of a property are delivered as a single event.
+     */
+    public void testCoalescing() {
+        Model.getPump().addModelEventListener(listener, elem,
+                new String[] {"isAbstract"});
+        Model.getCoreHelper().setAbstract(elem, false);
+        Model.getPump().flushModelEvents();
+        events.clear();
+        eventcalled = false;
+
+        Model.getPump().startCoalescing();
+        Model.getCoreHelper().setAbstract(elem, true);
+        Model.getCoreHelper().setAbstract(elem, false);
+        Model.getCoreHelper().setAbstract(elem, true);
+        Model.getPump().flushModelEvents();
+        assertFalse(eventcalled);
+
+        Model.getPump().stopCoalescing();
+        assertEquals(1, events.size());
+        PropertyChangeEvent event = events.get(0);
+        assertEquals("isAbstract", event.getPropertyName());
+        assertEquals(Boolean.FALSE, event.getOldValue());
+        assertEquals(Boolean.TRUE, event.getNewValue());
+    }
+
+    /**
+     * Tests that nested bulk operations deliver their events when the
+     * outermost one stops coalescing.
+     */
+    public void testNestedCoalescing() {
+        Model.getPump().addModelEventListener(listener, elem,
+                new String[] {"isAbstract"});
+
+        Model.getPump().startCoalescing();
+        Model.getPump().startCoalescing();
+        Model.getCoreHelper().setAbstract(elem, true);
+        Model.getPump().stopCoalescing();
+        assertFalse(eventcalled);
+
+        Model.getPump().stopCoalescing();
+        assertTrue(eventcalled);
+    }
+
+    /**
+     * Tests that an element which is deleted while coalescing only gets
+     * its delete event.
+     */
+    public void testCoalescingDelete() {
+        Model.getPump().addModelEventListener(listener, elem,
+                new String[] {"isAbstract", "remove"});
+
+        Model.getPump().startCoalescing();
+        Model.getCoreHelper().setAbstract(elem, true);
+        Model.getUmlFactory().delete(elem);
+        Model.getPump().stopCoalescing();
+
+        assertEquals(1, events.size());
+        assertEquals("remove", events.get(0).getPropertyName());
+        elem = null;
+        Model.getUmlFactory().delete(model);
+        model = null;
+    }
 
 }
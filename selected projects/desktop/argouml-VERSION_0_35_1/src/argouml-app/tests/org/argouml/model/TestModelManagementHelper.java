@@ -154,6 +154,40 @@ public class TestModelManagementHelper extends TestCase {
         assertTrue("Elements not in namespace returned", elements.isEmpty());
     }
     
+    /**
+     * Test that getAllModelElementsOfKind() follows elements which are
+     * moved, created and deleted.
+     */
+    public void testGetAllModelElementsOfKindAfterChanges() {
+        setUpTestsOfTagDefinitionContainedInStereotype();
+        ModelManagementHelper helper = Model.getModelManagementHelper();
+        Object umlClass = Model.getMetaTypes().getUMLClass();
+        assertTrue(helper.getAllModelElementsOfKind(theModel, umlClass)
+                .contains(theClass));
+
+        Model.getCoreHelper().setNamespace(theClass, theBadPackage);
+        assertFalse("Moved element returned", helper
+                .getAllModelElementsOfKind(theGoodPackage, umlClass)
+                .contains(theClass));
+        assertTrue("Moved element not returned", helper
+                .getAllModelElementsOfKind(theBadPackage, umlClass)
+                .contains(theClass));
+        assertTrue(helper.getAllModelElementsOfKind(theModel, umlClass)
+                .contains(theClass));
+
+        Object newClass = Model.getCoreFactory().buildClass("NewClass",
+                theGoodPackage);
+        assertTrue("New element not returned", helper
+                .getAllModelElementsOfKind(theGoodPackage, umlClass)
+                .contains(newClass));
+        assertTrue(helper.getAllNamespaces(theModel).contains(newClass));
+
+        Model.getUmlFactory().delete(theBadPackage);
+        assertFalse("Deleted element returned", helper
+                .getAllModelElementsOfKind(theModel, umlClass)
+                .contains(theClass));
+    }
+
     /**
      * Test to make sure that we can get UmlClass since its name is different
      */
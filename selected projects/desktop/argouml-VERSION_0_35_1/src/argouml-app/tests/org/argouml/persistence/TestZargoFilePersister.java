@@ -40,7 +40,10 @@ package org.argouml.persistence;
 
 import java.io.File;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 
 import junit.framework.Test;
 import junit.framework.TestCase;
@@ -197,6 +200,66 @@ public class TestZargoFilePersister extends TestCase {
         p.remove();
     }
 
+    /**
+     * Test loading a zargo of the current version, which is loaded
+     * straight from the zip without combining its members into a
+     * temporary file first.
+     *
+     * @throws Exception when e.g. the file is not found
+     */
+    public void testDoLoadCurrentVersion() throws Exception {
+        Project p = doLoad("/testmodels/uml14/Alittlebitofeverything.zargo");
+        int diagramCount = p.getDiagramList().size();
+        File file = File.createTempFile("Alittlebitofeverything", ".zargo");
+        file.deleteOnExit();
+        new OldZargoFilePersister().save(p, file);
+        p.remove();
+
+        final List<File> combinedFiles = new ArrayList<File>();
+        ZargoFilePersister persister = new ZargoFilePersister() {
+            @Override
+            File zargoToUml(File zargo, ProgressMgr progressMgr)
+                throws OpenException, InterruptedException {
+                File combinedFile = super.zargoToUml(zargo, progressMgr);
+                combinedFiles.add(combinedFile);
+                return combinedFile;
+            }
+        };
+        p = persister.doLoad(file);
+        assertEquals("Combined into a temporary file",
+                Collections.emptyList(), combinedFiles);
+        assertEquals(diagramCount, p.getDiagramList().size());
+        assertFalse("No top level elements", p.getRoots().isEmpty());
+        assertTrue("Allocation not measured",
+                persister.getLastLoadAllocatedBytes() != 0);
+        p.remove();
+    }
+
+    /**
+     * Test that a zargo of an older version is combined into a single
+     * uml file, so that it can be upgraded.
+     *
+     * @throws Exception when e.g. the file is not found
+     */
+    public void testDoLoadOldVersionIsUpgraded() throws Exception {
+        final List<File> combinedFiles = new ArrayList<File>();
+        ZargoFilePersister persister = new ZargoFilePersister() {
+            @Override
+            File zargoToUml(File zargo, ProgressMgr progressMgr)
+                throws OpenException, InterruptedException {
+                File combinedFile = super.zargoToUml(zargo, progressMgr);
+                combinedFiles.add(combinedFile);
+                return combinedFile;
+            }
+        };
+        URL url = TestZargoFilePersister.class.getResource(
+                "/testmodels/uml14/Alittlebitofeverything.zargo");
+        // Saved with persistence version 5
+        Project p = persister.doLoad(new File(url.getFile()));
+        assertEquals(1, combinedFiles.size());
+        p.remove();
+    }
+
     /**
      * Test loading some garbage in a zargo.
      */
@@ -0,0 +1,369 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2026 Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *****************************************************************************
+ */
+
+package org.argouml.model.mdr;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.jmi.model.AggregationKindEnum;
+import javax.jmi.model.Association;
+import javax.jmi.model.AssociationEnd;
+import javax.jmi.model.NameNotFoundException;
+import javax.jmi.reflect.InvalidObjectException;
+import javax.jmi.reflect.RefAssociation;
+import javax.jmi.reflect.RefBaseObject;
+import javax.jmi.reflect.RefClass;
+import javax.jmi.reflect.RefFeatured;
+import javax.jmi.reflect.RefObject;
+import javax.jmi.reflect.RefPackage;
+
+import org.netbeans.api.mdr.events.AssociationEvent;
+import org.netbeans.api.mdr.events.AttributeEvent;
+import org.netbeans.api.mdr.events.InstanceEvent;
+import org.netbeans.api.mdr.events.MDRChangeEvent;
+import org.netbeans.api.mdr.events.MDRPreChangeListener;
+
+/**
+ * Index of the model elements contained in other model elements by
+ * metatype.<p>
+ *
+ * The elements of an extent are numbered in the depth first order of
+ * their composition tree, so that the transitive contents of every element
+ * have the numbers following its own. The elements of a metatype, which
+ * MDR already keeps with the class proxy, are sorted by these numbers the
+ * first time they are asked for. The elements of that metatype contained
+ * in some element are then found with two binary searches.<p>
+ *
+ * The numbering of an extent is dropped when its composition changes, that
+ * is when an element is deleted or a link of a composite association or
+ * attribute is added or removed, and built again by the next query. Other
+ * changes, e.g. renaming, keep it. The changes are seen synchronously as
+ * they are planned, so the thread making a change never gets a stale
+ * answer, even while the event pump is stopped.
+ */
+class ContentsIndex implements MDRPreChangeListener {
+
+    private static final Logger LOG =
+        Logger.getLogger(ContentsIndex.class.getName());
+
+    /**
+     * The events which may change the composition.
+     */
+    static final int EVENT_MASK = AssociationEvent.EVENTMASK_ASSOCIATION
+        | AttributeEvent.EVENTMASK_ATTRIBUTE
+        | InstanceEvent.EVENT_INSTANCE_DELETE;
+
+    private static final javax.jmi.model.AggregationKind MOF_COMPOSITE =
+        AggregationKindEnum.COMPOSITE;
+
+    private MDRModelImplementation modelImpl;
+
+    /**
+     * The current numbering of each extent.
+     */
+    private final ConcurrentMap<RefPackage, Numbering> numberings =
+        new ConcurrentHashMap<RefPackage, Numbering>();
+
+    /**
+     * Count of changes of composition in any extent. Numberings which were
+     * being built during a change are not kept.
+     */
+    private final AtomicLong changeCount = new AtomicLong();
+
+    /**
+     * Whether each association of the metamodel is a composition.
+     */
+    private final ConcurrentMap<RefObject, Boolean> compositions =
+        new ConcurrentHashMap<RefObject, Boolean>();
+
+    /**
+     * The numbers of the elements of an extent.
+     */
+    private static class Numbering {
+        /**
+         * The number of each element and the last number of its contents.
+         */
+        private final Map<RefObject, int[]> ranges =
+            new HashMap<RefObject, int[]>();
+
+        private final ConcurrentMap<RefClass, Kind> kinds =
+            new ConcurrentHashMap<RefClass, Kind>();
+    }
+
+    /**
+     * The elements of a metatype in an extent.
+     */
+    private static class Kind {
+        /**
+         * The numbered elements in the order of their numbers.
+         */
+        private RefObject[] elements;
+
+        private int[] numbers;
+
+        /**
+         * Elements which aren't numbered. These are elements created after
+         * the numbering, which can't be contained in anything yet, and
+         * elements of metatypes outside of the Element hierarchy.
+         */
+        private List<RefObject> others = new ArrayList<RefObject>();
+    }
+
+    /**
+     * @param implementation the model implementation
+     */
+    ContentsIndex(MDRModelImplementation implementation) {
+        modelImpl = implementation;
+    }
+
+    /**
+     * Get the elements of a metatype which are contained in a model element,
+     * directly or indirectly.
+     *
+     * @param container the containing element
+     * @param classProxy the class proxy of the metatype in the extent of the
+     *            container
+     * @return the contained elements in depth first order
+     */
+    Collection<RefObject> getContents(RefObject container,
+            RefClass classProxy) {
+        Numbering numbering = getNumbering(container.refOutermostPackage());
+        int[] range = numbering.ranges.get(container);
+        if (range == null) {
+            // Created after the numbering, so it has no contents yet
+            return Collections.emptyList();
+        }
+        Kind kind = numbering.kinds.get(classProxy);
+        if (kind == null) {
+            kind = createKind(numbering, classProxy);
+            numbering.kinds.putIfAbsent(classProxy, kind);
+        }
+        int from = findAfter(kind.numbers, range[0]);
+        int to = findAfter(kind.numbers, range[1]);
+        List<RefObject> result = new ArrayList<RefObject>(to - from);
+        result.addAll(Arrays.asList(kind.elements).subList(from, to));
+        for (RefObject other : kind.others) {
+            if (contained(container, other)) {
+                result.add(other);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the index of the first number which is greater than the
+     *         given one
+     */
+    private static int findAfter(int[] numbers, int number) {
+        int index = Arrays.binarySearch(numbers, number);
+        return index < 0 ? -index - 1 : index + 1;
+    }
+
+    /**
+     * Check whether model element is contained in given container.
+     */
+    static boolean contained(Object container, Object candidate) {
+        Object current = ((RefObject) candidate).refImmediateComposite();
+        while (current != null) {
+            if (container.equals(current)) {
+                return true;
+            }
+            current = ((RefObject) current).refImmediateComposite();
+        }
+        return false;
+    }
+
+    private Numbering getNumbering(RefPackage extent) {
+        Numbering numbering = numberings.get(extent);
+        if (numbering == null) {
+            long count = changeCount.get();
+            long startTime = System.currentTimeMillis();
+            numbering = createNumbering(extent);
+            numberings.put(extent, numbering);
+            // Changes are counted before numberings are dropped,
+            // so either this sees the change or the change drops this
+            if (changeCount.get() != count) {
+                numberings.remove(extent, numbering);
+            }
+            if (LOG.isLoggable(Level.FINE)) {
+                long duration = System.currentTimeMillis() - startTime;
+                LOG.log(Level.FINE, "Numbering {0} elements took {1} msec.",
+                        new Object[] {numbering.ranges.size(), duration});
+            }
+        }
+        return numbering;
+    }
+
+    private Numbering createNumbering(RefPackage extent) {
+        RefClass elementProxy = ((FacadeMDRImpl) modelImpl.getFacade())
+                .getProxy("Element", extent);
+        Map<RefObject, List<RefObject>> children =
+            new HashMap<RefObject, List<RefObject>>();
+        List<RefObject> roots = new ArrayList<RefObject>();
+        Numbering numbering = new Numbering();
+        for (Object o : elementProxy.refAllOfType()) {
+            RefObject element = (RefObject) o;
+            // Containers which aren't Elements get numbered too
+            while (element != null && !numbering.ranges.containsKey(element)) {
+                numbering.ranges.put(element, null);
+                RefFeatured composite = element.refImmediateComposite();
+                if (composite instanceof RefObject) {
+                    RefObject parent = (RefObject) composite;
+                    List<RefObject> contents = children.get(parent);
+                    if (contents == null) {
+                        contents = new ArrayList<RefObject>();
+                        children.put(parent, contents);
+                    }
+                    contents.add(element);
+                    element = parent;
+                } else {
+                    roots.add(element);
+                    element = null;
+                }
+            }
+        }
+        int next = 0;
+        for (RefObject root : roots) {
+            next = number(root, next, children, numbering.ranges) + 1;
+        }
+        return numbering;
+    }
+
+    /**
+     * Number an element and its contents.
+     *
+     * @return the last number used
+     */
+    private static int number(RefObject element, int number,
+            Map<RefObject, List<RefObject>> children,
+            Map<RefObject, int[]> ranges) {
+        int[] range = new int[] {number, number};
+        ranges.put(element, range);
+        List<RefObject> contents = children.get(element);
+        if (contents != null) {
+            for (RefObject child : contents) {
+                range[1] = number(child, range[1] + 1, children, ranges);
+            }
+        }
+        return range[1];
+    }
+
+    private static Kind createKind(Numbering numbering, RefClass classProxy) {
+        final Map<RefObject, int[]> ranges = numbering.ranges;
+        List<RefObject> numbered = new ArrayList<RefObject>();
+        Kind kind = new Kind();
+        for (Object o : classProxy.refAllOfType()) {
+            RefObject element = (RefObject) o;
+            if (ranges.containsKey(element)) {
+                numbered.add(element);
+            } else {
+                kind.others.add(element);
+            }
+        }
+        Collections.sort(numbered, new Comparator<RefObject>() {
+            public int compare(RefObject o1, RefObject o2) {
+                return ranges.get(o1)[0] - ranges.get(o2)[0];
+            }
+        });
+        kind.elements = numbered.toArray(new RefObject[numbered.size()]);
+        kind.numbers = new int[kind.elements.length];
+        for (int i = 0; i < kind.elements.length; i++) {
+            kind.numbers[i] = ranges.get(kind.elements[i])[0];
+        }
+        return kind;
+    }
+
+    /**
+     * Drop the numbering of the extent of the given object.
+     */
+    private void invalidate(Object source) {
+        changeCount.incrementAndGet();
+        if (numberings.isEmpty()) {
+            return;
+        }
+        try {
+            numberings.remove(((RefBaseObject) source).refOutermostPackage());
+        } catch (InvalidObjectException e) {
+            numberings.clear();
+        }
+    }
+
+    private boolean isComposition(AssociationEvent e) {
+        RefObject association =
+            ((RefAssociation) e.getSource()).refMetaObject();
+        Boolean composition = compositions.get(association);
+        if (composition == null) {
+            try {
+                AssociationEnd end = (AssociationEnd) ((Association) association)
+                        .lookupElementExtended(e.getEndName());
+                composition = Boolean.valueOf(
+                        end.getAggregation() == MOF_COMPOSITE
+                        || end.otherEnd().getAggregation() == MOF_COMPOSITE);
+            } catch (NameNotFoundException ex) {
+                LOG.log(Level.SEVERE, "Failed to find end of association : "
+                        + e.getSource() + " -> " + e.getEndName());
+                return true;
+            }
+            compositions.put(association, composition);
+        }
+        return composition.booleanValue();
+    }
+
+    /**
+     * Only attributes with objects as values can be compositions.
+     */
+    private static boolean isObject(Object value) {
+        return value instanceof RefObject || value instanceof Collection;
+    }
+
+    /*
+     * @see org.netbeans.api.mdr.events.MDRPreChangeListener#plannedChange
+     */
+    public void plannedChange(MDRChangeEvent e) {
+        if (e instanceof AssociationEvent) {
+            if (isComposition((AssociationEvent) e)) {
+                invalidate(e.getSource());
+            }
+        } else if (e instanceof AttributeEvent) {
+            AttributeEvent ae = (AttributeEvent) e;
+            if (isObject(ae.getOldElement()) || isObject(ae.getNewElement())) {
+                invalidate(e.getSource());
+            }
+        } else if (e.isOfType(InstanceEvent.EVENT_INSTANCE_DELETE)) {
+            invalidate(e.getSource());
+        }
+    }
+
+    /*
+     * @see org.netbeans.api.mdr.events.MDRPreChangeListener#changeCancelled
+     */
+    public void changeCancelled(MDRChangeEvent e) {
+        // The numbering is simply built again
+    }
+
+    /*
+     * @see org.netbeans.api.mdr.events.MDRChangeListener#change
+     */
+    public void change(MDRChangeEvent e) {
+        // Changes were handled when they were planned
+    }
+}
@@ -40,14 +40,17 @@ package org.argouml.model.mdr;
 
 import java.beans.PropertyChangeListener;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -94,6 +97,11 @@ import org.netbeans.api.mdr.events.VetoChangeException;
  * for all events and then re-dispatch events to those listeners
  * who have requested them.<p>
  *
+ * Registrations are copy-on-write, so that dispatching an event doesn't
+ * need any lock. The listeners of a metaclass and a property name are
+ * looked up once and kept in a dispatch table until the next class
+ * registration changes.<p>
+ *
  * @since ARGO0.19.5
  * @author Ludovic Ma&icirc;tre
  * @author Tom Morris
@@ -132,6 +140,32 @@ class ModelEventPumpMDRImpl extends AbstractModelEventPump implements
     private Registry<PropertyChangeListener> listenedClasses =
         new Registry<PropertyChangeListener>();
 
+    /**
+     * Dispatch table of listeners registered for the class of the source of
+     * an event and its property name, including the listeners of the
+     * supertypes and of all properties. Filled in lazily and replaced by an
+     * empty one whenever a class registration changes.
+     */
+    private volatile Map<Class, Map<String, PropertyChangeListener[]>>
+    classDispatch =
+        new ConcurrentHashMap<Class, Map<String, PropertyChangeListener[]>>();
+
+    private static final PropertyChangeListener[] NO_LISTENERS =
+        new PropertyChangeListener[0];
+
+    private Object coalescingMutex = new Byte[0];
+
+    /**
+     * Number of nested bulk operations which coalesce events.
+     */
+    private int coalescingDepth;
+
+    /**
+     * Events held back while coalescing, grouped by source element,
+     * or null if events are delivered as they come.
+     */
+    private Map<Object, Map<Object, UmlChangeEvent>> coalescedEvents;
+
     /**
      * Map of subtypes for all types in our metamodel.
      */
@@ -283,16 +317,39 @@ class ModelEventPumpMDRImpl extends AbstractModelEventPump implements
             eventThread = Thread.currentThread();
         }
 
-        // TODO: This should be done after all events are delivered, but leave
-        // it here for now to avoid last minute synchronization problems
-        decrementEvents();
-
         // Quick exit if it's a transaction event
         // (we get a lot of them and they are all ignored)
         if (mdrEvent instanceof TransactionEvent) {
+            decrementEvents();
             return;
         }
 
+        boolean held;
+        List<UmlChangeEvent> events;
+        try {
+            events = createEvents(mdrEvent);
+
+            // Held events must be queued before the event is no longer
+            // pending, so that stopCoalescing doesn't miss them
+            held = coalesce(events, mdrEvent);
+        } finally {
+            // TODO: This should be done after all events are delivered, but
+            // leave it here for now to avoid last minute synchronization
+            // problems. It must be done even if the event can't be
+            // translated, otherwise flushModelEvents would wait forever.
+            decrementEvents();
+        }
+
+        if (!held) {
+            fire(events);
+        }
+    }
+
+    /**
+     * Translate an MDR event into the events which are delivered to our
+     * listeners.
+     */
+    private List<UmlChangeEvent> createEvents(MDRChangeEvent mdrEvent) {
         List<UmlChangeEvent> events = new ArrayList<UmlChangeEvent>();
 
         if (mdrEvent instanceof AttributeEvent) {
@@ -383,6 +440,10 @@ class ModelEventPumpMDRImpl extends AbstractModelEventPump implements
             }
         }
 
+        return events;
+    }
+
+    private void fire(Collection<UmlChangeEvent> events) {
         for (UmlChangeEvent event : events) {
             fire(event);
             // Unregister deleted instances after all events have been delivered
@@ -393,6 +454,92 @@ class ModelEventPumpMDRImpl extends AbstractModelEventPump implements
         }
     }
 
+    /*
+     * @see org.argouml.model.ModelEventPump#startCoalescing()
+     */
+    public void startCoalescing() {
+        synchronized (coalescingMutex) {
+            if (coalescingDepth++ == 0) {
+                coalescedEvents =
+                    new LinkedHashMap<Object, Map<Object, UmlChangeEvent>>();
+            }
+        }
+    }
+
+    /*
+     * @see org.argouml.model.ModelEventPump#stopCoalescing()
+     */
+    public void stopCoalescing() {
+        synchronized (coalescingMutex) {
+            if (coalescingDepth == 0) {
+                LOG.log(Level.WARNING, "stopCoalescing without startCoalescing");
+                return;
+            }
+            if (coalescingDepth > 1) {
+                coalescingDepth--;
+                return;
+            }
+        }
+        // Wait for the events of the operation which MDR still delivers
+        flushModelEvents();
+        Map<Object, Map<Object, UmlChangeEvent>> held;
+        synchronized (coalescingMutex) {
+            if (--coalescingDepth > 0) {
+                // Another operation has started meanwhile
+                return;
+            }
+            held = coalescedEvents;
+            coalescedEvents = null;
+        }
+        LOG.log(Level.FINE, "Delivering coalesced events of {0} elements",
+                held.size());
+        for (Map<Object, UmlChangeEvent> elementEvents : held.values()) {
+            fire(elementEvents.values());
+        }
+    }
+
+    /**
+     * Hold back the events if a bulk operation is in progress. The change
+     * events of a property replace the earlier ones of the same element
+     * and property, keeping the original old value. A delete event replaces
+     * all the earlier events of the element.
+     *
+     * @return true if the events have been held back
+     */
+    private boolean coalesce(List<UmlChangeEvent> events,
+            MDRChangeEvent mdrEvent) {
+        synchronized (coalescingMutex) {
+            if (coalescedEvents == null) {
+                return false;
+            }
+            for (UmlChangeEvent event : events) {
+                Object source = event.getSource();
+                Map<Object, UmlChangeEvent> elementEvents =
+                    coalescedEvents.get(source);
+                if (elementEvents == null
+                        || event instanceof DeleteInstanceEvent) {
+                    elementEvents = new LinkedHashMap<Object, UmlChangeEvent>();
+                    coalescedEvents.put(source, elementEvents);
+                }
+                if (event instanceof AttributeChangeEvent) {
+                    String key = event.getPropertyName();
+                    UmlChangeEvent first = elementEvents.remove(key);
+                    if (first != null) {
+                        event = new AttributeChangeEvent(source, key,
+                                first.getOldValue(), event.getNewValue(),
+                                mdrEvent);
+                    }
+                    elementEvents.put(key, event);
+                } else {
+                    // Association events are kept, each of them is about a
+                    // different element
+                    elementEvents.put(event, event);
+                }
+            }
+            return true;
+        }
+    }
+
     private boolean isReadOnly(RefBaseObject object) {
         return modelImpl.isReadOnly(object.refOutermostPackage());
     }
@@ -480,19 +627,22 @@ class ModelEventPumpMDRImpl extends AbstractModelEventPump implements
      */
     private void fire(UmlChangeEvent event) {
         String mofId = ((RefBaseObject) event.getSource()).refMofId();
-        String className  = getClassName(event.getSource());
+
+        // This will include all subtypes registered
+        PropertyChangeListener[] classListeners =
+            getClassListeners(event.getSource(), event.getPropertyName());
+        Collection<PropertyChangeListener> elementListeners =
+            elements.getMatches(mofId, event.getPropertyName());
 
         // Any given listener is only called once even if it is
         // registered for multiple relevant matches
-        Set<PropertyChangeListener> listeners =
-                new HashSet<PropertyChangeListener>();
-        synchronized (registrationMutex) {
-            listeners.addAll(elements.getMatches(mofId, event
-                    .getPropertyName()));
-
-            // This will include all subtypes registered
-            listeners.addAll(listenedClasses.getMatches(className, event
-                    .getPropertyName()));
+        Collection<PropertyChangeListener> listeners;
+        if (elementListeners.isEmpty()) {
+            listeners = Arrays.asList(classListeners);
+        } else {
+            listeners =
+                new LinkedHashSet<PropertyChangeListener>(elementListeners);
+            listeners.addAll(Arrays.asList(classListeners));
         }
 
         if (LOG.isLoggable(Level.FINE)) {
@@ -620,6 +770,7 @@ class ModelEventPumpMDRImpl extends AbstractModelEventPump implements
                 for (String subtype : subtypes) {
                     listenedClasses.register(listener, subtype, propertyNames);
                 }
+                invalidateClassDispatch();
             }
             return;
         }
@@ -649,6 +800,7 @@ class ModelEventPumpMDRImpl extends AbstractModelEventPump implements
                     listenedClasses.unregister(listener, subtype,
                             propertyNames);
                 }
+                invalidateClassDispatch();
             }
             return;
         }
@@ -657,6 +809,45 @@ class ModelEventPumpMDRImpl extends AbstractModelEventPump implements
                         + modelClass);
     }
 
+    /**
+     * Look up the listeners for the class of the given element and property
+     * in the dispatch table, filling it in on a miss.
+     */
+    private PropertyChangeListener[] getClassListeners(Object element,
+            String propertyName) {
+        Map<Class, Map<String, PropertyChangeListener[]>> dispatch =
+            classDispatch;
+        Map<String, PropertyChangeListener[]> properties =
+            dispatch.get(element.getClass());
+        if (properties == null) {
+            properties =
+                new ConcurrentHashMap<String, PropertyChangeListener[]>();
+            dispatch.put(element.getClass(), properties);
+        }
+        // ConcurrentHashMap doesn't take null keys
+        String key = propertyName == null ? "" : propertyName;
+        PropertyChangeListener[] result = properties.get(key);
+        if (result == null) {
+            Collection<PropertyChangeListener> matches =
+                new LinkedHashSet<PropertyChangeListener>(
+                        listenedClasses.getMatches(getClassName(element),
+                                propertyName));
+            result = matches.isEmpty() ? NO_LISTENERS
+                    : matches.toArray(new PropertyChangeListener[matches
+                            .size()]);
+            properties.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * Throw away the dispatch table after class registrations have changed.
+     */
+    private void invalidateClassDispatch() {
+        classDispatch =
+            new ConcurrentHashMap<Class, Map<String, PropertyChangeListener[]>>();
+    }
+
     private String getClassName(Object elementOrClass) {
         return modelImpl.getMetaTypes().getName(elementOrClass);
     }
@@ -980,7 +1171,11 @@ class ModelEventPumpMDRImpl extends AbstractModelEventPump implements
 
 
 /**
- * A simple typed registry which supports two levels of string keys.
+ * A simple typed registry which supports two levels of string keys.<p>
+ *
+ * The registry is copy-on-write. Registrations replace the maps and lists
+ * of a primary key instead of changing them, so that matches can be looked
+ * up without locking while the registrations change.
  *
  * @param <T> type of object to be registered
  * @author Tom Morris
@@ -995,8 +1190,7 @@ class Registry<T> {
      * Construct a new registry for the given type of object.
      */
     Registry() {
-        registry = Collections
-                .synchronizedMap(new HashMap<String, Map<String, List<T>>>());
+        registry = new ConcurrentHashMap<String, Map<String, List<T>>>();
     }
 
     /**
@@ -1012,14 +1206,15 @@ class Registry<T> {
      *                only. The special value of the empty string ("") must not
      *                be used as a subkey by the caller.
      */
-    void register(T item, String key,
+    synchronized void register(T item, String key,
             String[] subkeys) {
 
         // Lookup primary key, creating new entry if needed
         Map<String, List<T>> entry = registry.get(key);
         if (entry == null) {
             entry = new HashMap<String, List<T>>();
-            registry.put(key, entry);
+        } else {
+            entry = new HashMap<String, List<T>>(entry);
         }
 
         // If there are no subkeys, register using our special value
@@ -1035,15 +1230,17 @@ class Registry<T> {
             List<T> list = entry.get(subkeys[i]);
             if (list == null) {
                 list = new ArrayList<T>();
-                entry.put(subkeys[i], list);
             }
             if (!list.contains(item)) {
+                list = new ArrayList<T>(list);
                 list.add(item);
+                entry.put(subkeys[i], list);
             } else {
                 LOG.log(Level.FINE, "Duplicate registration attempt for {0}: {1} Listener: {2}",
                         new Object[]{key,subkeys,item});
             }
         }
+        registry.put(key, entry);
     }
 
     /**
@@ -1055,23 +1252,27 @@ class Registry<T> {
      * @param subkeys array of subkeys.  If null, unregister under primary
      * key only.
      */
-    void unregister(T item, String key, String[] subkeys) {
+    synchronized void unregister(T item, String key, String[] subkeys) {
         Map<String, List<T>> entry = registry.get(key);
         if (entry == null) {
             return;
         }
 
         if (subkeys != null && subkeys.length > 0) {
+            entry = new HashMap<String, List<T>>(entry);
             for (int i = 0; i < subkeys.length; i++) {
                 lookupRemoveItem(entry, subkeys[i], item);
             }
         } else {
             if (item == null) {
                 registry.remove(key);
+                return;
             } else {
+                entry = new HashMap<String, List<T>>(entry);
                 lookupRemoveItem(entry, "", item);
             }
         }
+        registry.put(key, entry);
     }
 
     private void lookupRemoveItem(Map<String, List<T>> map, String key,
@@ -1091,11 +1292,14 @@ class Registry<T> {
                         new Object[]{key, item});
             }
         }
+        list = new ArrayList<T>(list);
         while (list.contains(item)) {
             list.remove(item);
         }
         if (list.isEmpty()) {
             map.remove(key);
+        } else {
+            map.put(key, list);
         }
     }
 
@@ -89,6 +89,11 @@ class ModelManagementHelperMDRImpl implements ModelManagementHelper {
      */
     private MDRModelImplementation modelImpl;
 
+    /**
+     * The elements contained in each model element by metatype.
+     */
+    private ContentsIndex contentsIndex;
+
     /**
      * Construct a ModelManagementHelper.  Not for use outside of the
      * Model subsystem implementation.
@@ -98,6 +103,9 @@ class ModelManagementHelperMDRImpl implements ModelManagementHelper {
      */
     ModelManagementHelperMDRImpl(MDRModelImplementation implementation) {
         modelImpl = implementation;
+        contentsIndex = new ContentsIndex(implementation);
+        implementation.getRepository().addListener(contentsIndex,
+                ContentsIndex.EVENT_MASK);
     }
 
 
@@ -108,20 +116,7 @@ class ModelManagementHelperMDRImpl implements ModelManagementHelper {
         if (!(ns instanceof Namespace)) {
             throw new IllegalArgumentException();
         }
-
-        Iterator it = ((Namespace) ns).getOwnedElement().iterator();
-        List list = new ArrayList();
-        while (it.hasNext()) {
-            Object o = it.next();
-            if (o instanceof Namespace) {
-                list.addAll(getAllSubSystems(o));
-            }
-            if (o instanceof Subsystem) {
-                list.add(o);
-            }
-
-        }
-        return list;
+        return getAllModelElementsOfKind(ns, Subsystem.class);
     }
 
     /*
@@ -133,36 +128,7 @@ class ModelManagementHelperMDRImpl implements ModelManagementHelper {
         if (ns == null || !(ns instanceof Namespace)) {
             return Collections.EMPTY_LIST;
         }
-
-        Collection namespaces = ((Namespace) ns).getOwnedElement();
-        // the list of namespaces to return
-        List list = Collections.EMPTY_LIST;
-
-        // if there are no owned elements then return empty list
-        if (namespaces == Collections.EMPTY_LIST || namespaces.size() == 0) {
-            return Collections.EMPTY_LIST;
-        }
-
-        for (Iterator it = namespaces.iterator(); it.hasNext();) {
-            Object o = it.next();
-            if (o instanceof Namespace) {
-
-                // only build a namepace if needed, with
-                if (list == Collections.EMPTY_LIST) {
-                    list = new ArrayList(namespaces.size());
-                }
-
-                list.add(o);
-
-                Collection namespaces1 = getAllNamespaces(o);
-                // only add all if there are some to add.
-                if (namespaces1 != Collections.EMPTY_LIST
-                        && namespaces1.size() > 0) {
-                    list.addAll(namespaces1);
-                }
-            }
-        }
-        return list;
+        return getAllModelElementsOfKind(ns, Namespace.class);
     }
 
 
@@ -185,7 +151,6 @@ class ModelManagementHelperMDRImpl implements ModelManagementHelper {
 
 
     public Collection getAllModelElementsOfKind(Object nsa, Object type) {
-        // TODO: Performance critical method
         long startTime = System.currentTimeMillis();
         if (nsa == null || type == null) {
             return Collections.EMPTY_LIST;
@@ -209,27 +174,18 @@ class ModelManagementHelperMDRImpl implements ModelManagementHelper {
             name = name.substring(3);
         }
 
-        Collection allOfType = Collections.emptySet();
+        // TODO: Perhaps use a HashSet or other collection with faster lookup
+        // performance in case our callers are doing naive .contains() lookups
+        Collection returnElements;
         try {
             RefPackage extent = ((RefObject) nsa).refOutermostPackage();
             RefClass classProxy = ((FacadeMDRImpl) modelImpl.getFacade())
                     .getProxy(name, extent);
-            allOfType = classProxy.refAllOfType();
+            returnElements =
+                contentsIndex.getContents((RefObject) nsa, classProxy);
         } catch (InvalidObjectException e) {
             throw new InvalidElementException(e);
         }
-
-        // Remove any elements not in requested namespace
-        Collection returnElements = new ArrayList();
-        // TODO: Perhaps use a HashSet or other collection with faster lookup
-        // performance in case our callers are doing naive .contains() lookups
-        for (Iterator i = allOfType.iterator(); i.hasNext();) {
-            Object me = i.next();
-            // TODO: Optimize for root model case? - tfm
-            if (contained(nsa, me)) {
-                returnElements.add(me);
-            }
-        }
         if ( LOG.isLoggable( Level.FINE ) ) {
             long duration = System.currentTimeMillis() - startTime;
             LOG.log(Level.FINE, "Get allOfKind took {0} msec.", duration);
@@ -237,20 +193,6 @@ class ModelManagementHelperMDRImpl implements ModelManagementHelper {
         return returnElements;
     }
 
-    /*
-     * Check whether model element is contained in given namespace/container.
-     */
-    private boolean contained(Object container, Object candidate) {
-        Object current = ((RefObject) candidate).refImmediateComposite();
-        while (current != null) {
-            if (container.equals(current)) {
-                return true;
-            }
-            current = ((RefObject) current).refImmediateComposite();
-        }
-        return false;
-    }
-
 
     public Collection getAllModelElementsOfKind(Object nsa, String kind) {
 
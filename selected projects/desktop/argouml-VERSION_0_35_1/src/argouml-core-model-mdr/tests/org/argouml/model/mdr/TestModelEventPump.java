@@ -39,6 +39,8 @@
 package org.argouml.model.mdr;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
 import junit.framework.TestCase;
 
@@ -152,6 +154,22 @@ public class TestModelEventPump extends TestCase {
 
     }
     
+    /**
+     * Test that registrations don't change the entries which are
+     * being looked up, so that dispatching needs no lock.
+     */
+    public void testRegistryCopyOnWrite() {
+        registry.register("value1", "key1", new String[] {"subkey1"});
+        Map<String, List<String>> entry = registry.registry.get("key1");
+
+        registry.register("value2", "key1", new String[] {"subkey1"});
+        registry.unregister("value1", "key1", new String[] {"subkey1"});
+
+        assertEquals(1, entry.get("subkey1").size());
+        assertEquals("value1", entry.get("subkey1").get(0));
+        checkSingle("value2", registry.getMatches("key1", "subkey1"));
+    }
+
     private void checkSingle(String value, Collection<String> matches) {
         assertEquals(1, matches.size());
         assertEquals(value, matches.iterator().next()); 
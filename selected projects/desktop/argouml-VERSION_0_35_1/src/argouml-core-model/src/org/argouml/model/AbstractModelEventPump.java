@@ -179,4 +179,18 @@ public abstract class AbstractModelEventPump implements ModelEventPump {
 
     }
 
+    /*
+     * @see org.argouml.model.ModelEventPump#startCoalescing()
+     */
+    public void startCoalescing() {
+        // Events are delivered as usual by default
+    }
+
+    /*
+     * @see org.argouml.model.ModelEventPump#stopCoalescing()
+     */
+    public void stopCoalescing() {
+        // Events are delivered as usual by default
+    }
+
 }
@@ -303,6 +303,31 @@ public interface ModelEventPump {
      * method which has been invoked by the ModelEventPump.
      */
     void flushModelEvents();
+
+    /**
+     * Start holding back events for a bulk operation, such as pasting or
+     * moving many elements. When {@link #stopCoalescing()} is called, the
+     * held events are delivered grouped by element. Repeated changes of the
+     * same property of an element are merged into a single event and the
+     * elements which have been deleted in the meantime only get their
+     * delete event.<p>
+     *
+     * Calls may be nested, events are delivered when the outermost
+     * operation stops coalescing. Implementations which don't coalesce
+     * deliver events as usual.
+     */
+    void startCoalescing();
+
+    /**
+     * Stop holding back events and deliver the ones held since the
+     * matching call of {@link #startCoalescing()}.
+     * <p>
+     * <em>NOTE: </em> Like {@link #flushModelEvents()}, this may not be
+     * called from a
+     * {@link PropertyChangeListener#propertyChange(java.beans.PropertyChangeEvent)}
+     * method which has been invoked by the ModelEventPump.
+     */
+    void stopCoalescing();
     
     /**
      * Get debug info for the event pump. Information returned is implementation
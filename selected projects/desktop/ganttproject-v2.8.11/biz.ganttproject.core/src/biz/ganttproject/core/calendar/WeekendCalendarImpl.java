@@ -31,9 +31,11 @@ import java.util.Map;
 import biz.ganttproject.core.calendar.CalendarEvent.Type;
 import biz.ganttproject.core.calendar.walker.ForwardTimeWalker;
 import biz.ganttproject.core.time.CalendarFactory;
+import biz.ganttproject.core.time.DateFrameable;
 import biz.ganttproject.core.time.TimeDuration;
 import biz.ganttproject.core.time.TimeUnit;
 import biz.ganttproject.core.time.impl.FramerImpl;
+import biz.ganttproject.core.time.impl.GPTimeUnitStack;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -53,6 +55,10 @@ import com.google.common.collect.Sets;
  * -- there is one-off event at date D with type HOLIDAY
  * -- there is a recurring event at date D with type HOLIDAY and no one-off event at date D with type WORKING
  * 
+ * Day masks are compiled into {@link WorkingDayIndex} which covers a range of days around the dates
+ * being queried, and the index is used to answer day-granular queries. Index is dropped whenever
+ * calendar settings change and rebuilt lazily.
+ * 
  * @author dbarashev (Dmitry Barashev)
  */
 public class WeekendCalendarImpl extends GPCalendarBase implements GPCalendarCalc {
@@ -61,6 +67,12 @@ public class WeekendCalendarImpl extends GPCalendarBase implements GPCalendarCal
 
   private final FramerImpl myFramer = new FramerImpl(Calendar.DAY_OF_WEEK);
 
+  private static final int INDEX_YEARS_BEFORE = 5;
+
+  private static final int INDEX_YEARS_AFTER = 10;
+
+  private static final long MAX_INDEX_SPAN_MILLIS = 200L * 366 * 24 * 3600 * 1000;
+
   private final DayType[] myTypes = new DayType[7];
 
   private boolean myOnlyShowWeekends = false;
@@ -74,6 +86,8 @@ public class WeekendCalendarImpl extends GPCalendarBase implements GPCalendarCal
 
   private String myBaseCalendarID;
 
+  private WorkingDayIndex myIndex;
+
   public WeekendCalendarImpl() {
     this(null);
   }
@@ -260,6 +274,17 @@ public class WeekendCalendarImpl extends GPCalendarBase implements GPCalendarCal
   }
   @Override
   public int getDayMask(Date date) {
+    WorkingDayIndex index = getWorkingDayIndex(date);
+    if (index != null) {
+      int idx = index.indexOf(date);
+      if (idx >= 0) {
+        return index.getDayMask(idx);
+      }
+    }
+    return computeDayMask(date);
+  }
+
+  private int computeDayMask(Date date) {
     int result = 0;
     myCalendar.setTime(date);
     int dayOfWeek = myCalendar.get(Calendar.DAY_OF_WEEK);
@@ -282,6 +307,112 @@ public class WeekendCalendarImpl extends GPCalendarBase implements GPCalendarCal
     return result;
   }
 
+  /**
+   * @return index which covers the given date or null if the date is too far from the dates
+   * which are already indexed
+   */
+  private WorkingDayIndex getWorkingDayIndex(Date date) {
+    if (myIndex != null && myIndex.covers(date)) {
+      return myIndex;
+    }
+    Calendar c = CalendarFactory.newCalendar();
+    c.setTime(date);
+    c.add(Calendar.YEAR, -INDEX_YEARS_BEFORE);
+    Date firstDay = c.getTime();
+    c.setTime(date);
+    c.add(Calendar.YEAR, INDEX_YEARS_AFTER);
+    Date lastDay = c.getTime();
+    if (myIndex != null && myIndex.size() > 0) {
+      Date indexStart = myIndex.getDayStart(0);
+      Date indexEnd = myIndex.getDayStart(myIndex.size() - 1);
+      if (indexStart.before(firstDay)) {
+        firstDay = indexStart;
+      }
+      if (indexEnd.after(lastDay)) {
+        lastDay = indexEnd;
+      }
+    }
+    if (lastDay.getTime() - firstDay.getTime() > MAX_INDEX_SPAN_MILLIS) {
+      return null;
+    }
+    myIndex = new WorkingDayIndex(firstDay, lastDay, new WorkingDayIndex.DayMaskProvider() {
+      @Override
+      public int getDayMask(Date dayStart) {
+        return computeDayMask(dayStart);
+      }
+    });
+    return myIndex;
+  }
+
+  /**
+   * @return index which covers both dates or null
+   */
+  public WorkingDayIndex getWorkingDayIndex(Date start, Date end) {
+    WorkingDayIndex index = getWorkingDayIndex(start);
+    if (index != null && !index.covers(end)) {
+      index = getWorkingDayIndex(end);
+    }
+    return index != null && index.covers(start) && index.covers(end) ? index : null;
+  }
+
+  @Override
+  protected Date doFindClosest(Date time, DateFrameable framer, MoveDirection direction, DayType dayType, Date limit) {
+    if (framer != myFramer && framer != GPTimeUnitStack.DAY) {
+      return super.doFindClosest(time, framer, direction, dayType, limit);
+    }
+    Date firstCandidate = direction == MoveDirection.FORWARD ? framer.adjustRight(time) : framer.jumpLeft(time);
+    WorkingDayIndex index = getWorkingDayIndex(firstCandidate);
+    int from = index == null ? -1 : index.indexOf(firstCandidate);
+    if (from < 0) {
+      return super.doFindClosest(time, framer, direction, dayType, limit);
+    }
+    int found = index.findClosest(from, dayType == DayType.WORKING, direction);
+    if (found < 0) {
+      return super.doFindClosest(time, framer, direction, dayType, limit);
+    }
+    if (limit != null && found != from) {
+      // The day before the found one is the last candidate which didn't match, and search stops
+      // as soon as such candidate crosses the limit
+      if (direction == MoveDirection.FORWARD && index.getDayStart(found - 1).compareTo(limit) >= 0
+          || direction == MoveDirection.BACKWARD && index.getDayStart(found + 1).compareTo(limit) <= 0) {
+        return null;
+      }
+    }
+    return index.getDayStart(found);
+  }
+
+  @Override
+  public Date shiftDate(Date input, TimeDuration shift) {
+    if (shift.getLength() == 0 || shift.getTimeUnit() != GPTimeUnitStack.DAY) {
+      return super.shiftDate(input, shift);
+    }
+    Date unitStart = GPTimeUnitStack.DAY.adjustLeft(input);
+    WorkingDayIndex index = getWorkingDayIndex(unitStart);
+    int from = index == null ? -1 : index.indexOf(unitStart);
+    if (from >= 0) {
+      if (shift.getLength() > 0) {
+        // End of the n-th working day starting from the input day
+        int last = index.findNthWorkingDayForward(from, shift.getLength());
+        if (last >= 0 && last + 1 < index.size()) {
+          return index.getDayStart(last + 1);
+        }
+      } else {
+        // Start of the n-th working day before the input day
+        int first = index.findNthWorkingDayBackward(from, -shift.getLength());
+        if (first >= 0) {
+          return index.getDayStart(first);
+        }
+      }
+    }
+    return super.shiftDate(input, shift);
+  }
+
+  @Override
+  protected void fireCalendarChanged() {
+    myIndex = null;
+    super.fireCalendarChanged();
+  }
+
 //  @Override
 //  public boolean isNonWorkingDay(Date curDayStart) {
 //    return isWeekend(curDayStart) || isPublicHoliDay(curDayStart);
@@ -0,0 +1,230 @@
+/*
+This file is part of GanttProject, an opensource project management tool.
+
+GanttProject is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+GanttProject is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with GanttProject.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package biz.ganttproject.core.calendar;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+
+import biz.ganttproject.core.calendar.GPCalendar.DayMask;
+import biz.ganttproject.core.time.CalendarFactory;
+import biz.ganttproject.core.time.impl.FramerImpl;
+
+/**
+ * Compiled form of a calendar over a contiguous range of days. For every day in the range
+ * it keeps the day start, the day mask and a prefix sum of working days, so that day mask lookup,
+ * searching for the closest working or non-working day, adding N working days and counting
+ * working days between two dates are answered with a binary search instead of walking
+ * through the calendar day by day.
+ *
+ * Days are addressed by their index in the range. Only dates which are exactly day starts
+ * have an index, any other date should be processed by the calendar itself.
+ *
+ * Index is immutable and should be rebuilt whenever calendar settings change.
+ */
+public class WorkingDayIndex {
+  static interface DayMaskProvider {
+    int getDayMask(Date dayStart);
+  }
+
+  private static final FramerImpl ourDayFramer = new FramerImpl(Calendar.DATE);
+
+  private final long[] myDayStarts;
+  private final int[] myDayMasks;
+  /** myWorkingDays[i] is the number of working days in [0, i) */
+  private final int[] myWorkingDays;
+  /** myNonWorkingIntervals[i] is the number of non-working intervals which start in [0, i) */
+  private final int[] myNonWorkingIntervals;
+
+  /**
+   * Builds an index over [firstDay, lastDay] range of days.
+   */
+  WorkingDayIndex(Date firstDay, Date lastDay, DayMaskProvider maskProvider) {
+    Calendar c = CalendarFactory.newCalendar();
+    c.setTime(ourDayFramer.adjustLeft(firstDay));
+    // Walk at noon, so that DST switches don't move us to a wrong day
+    c.set(Calendar.HOUR_OF_DAY, 12);
+    long lastDayStart = ourDayFramer.adjustLeft(lastDay).getTime();
+    int size = 0;
+    long[] dayStarts = new long[512];
+    while (true) {
+      Date dayStart = ourDayFramer.adjustLeft(c.getTime());
+      if (dayStart.getTime() > lastDayStart) {
+        break;
+      }
+      if (size == dayStarts.length) {
+        dayStarts = Arrays.copyOf(dayStarts, size * 2);
+      }
+      dayStarts[size++] = dayStart.getTime();
+      c.add(Calendar.DATE, 1);
+    }
+    myDayStarts = Arrays.copyOf(dayStarts, size);
+    myDayMasks = new int[size];
+    myWorkingDays = new int[size + 1];
+    myNonWorkingIntervals = new int[size + 1];
+    for (int i = 0; i < size; i++) {
+      myDayMasks[i] = maskProvider.getDayMask(new Date(myDayStarts[i]));
+      boolean working = isWorking(i);
+      myWorkingDays[i + 1] = myWorkingDays[i] + (working ? 1 : 0);
+      boolean intervalStart = !working && (i == 0 || isWorking(i - 1));
+      myNonWorkingIntervals[i + 1] = myNonWorkingIntervals[i] + (intervalStart ? 1 : 0);
+    }
+  }
+
+  public int size() {
+    return myDayStarts.length;
+  }
+
+  public boolean covers(Date date) {
+    return myDayStarts.length > 0 && date.getTime() >= myDayStarts[0]
+        && date.getTime() <= myDayStarts[myDayStarts.length - 1];
+  }
+
+  /**
+   * @return index of the day which starts exactly at the given date or -1 if the date is not a day start
+   * within the indexed range
+   */
+  public int indexOf(Date dayStart) {
+    int idx = Arrays.binarySearch(myDayStarts, dayStart.getTime());
+    return idx >= 0 ? idx : -1;
+  }
+
+  /**
+   * @return index of the first day which starts at or after the given date. May be equal
+   * to {@link #size()} if the date is after the last day start
+   */
+  public int indexAtOrAfter(Date date) {
+    int idx = Arrays.binarySearch(myDayStarts, date.getTime());
+    return idx >= 0 ? idx : -idx - 1;
+  }
+
+  public Date getDayStart(int idx) {
+    return new Date(myDayStarts[idx]);
+  }
+
+  public int getDayMask(int idx) {
+    return myDayMasks[idx];
+  }
+
+  public boolean isWorking(int idx) {
+    return (myDayMasks[idx] & DayMask.WORKING) == DayMask.WORKING;
+  }
+
+  /**
+   * @return the number of working days in [from, to) range of indexes
+   */
+  public int getWorkingDayCount(int from, int to) {
+    return myWorkingDays[to] - myWorkingDays[from];
+  }
+
+  /**
+   * @return the number of non-working intervals which intersect [from, to) range of indexes
+   */
+  public int getNonWorkingIntervalCount(int from, int to) {
+    if (from >= to) {
+      return 0;
+    }
+    return myNonWorkingIntervals[to] - myNonWorkingIntervals[from + 1] + (isWorking(from) ? 0 : 1);
+  }
+
+  /**
+   * Searches for the closest day with the given working state, starting from the given index inclusive.
+   *
+   * @return index of the found day or -1 if there is no such day in the indexed range
+   */
+  public int findClosest(int from, boolean working, GPCalendarCalc.MoveDirection direction) {
+    if (direction == GPCalendarCalc.MoveDirection.FORWARD) {
+      // smallest j >= from such that [from, j] contains a day with the requested state
+      int lo = from;
+      int hi = size() - 1;
+      if (hi < lo || countState(from, hi + 1, working) == 0) {
+        return -1;
+      }
+      while (lo < hi) {
+        int mid = (lo + hi) >>> 1;
+        if (countState(from, mid + 1, working) > 0) {
+          hi = mid;
+        } else {
+          lo = mid + 1;
+        }
+      }
+      return lo;
+    }
+    // largest j <= from such that [j, from] contains a day with the requested state
+    int lo = 0;
+    int hi = from;
+    if (hi < lo || countState(0, from + 1, working) == 0) {
+      return -1;
+    }
+    while (lo < hi) {
+      int mid = (lo + hi + 1) >>> 1;
+      if (countState(mid, from + 1, working) > 0) {
+        lo = mid;
+      } else {
+        hi = mid - 1;
+      }
+    }
+    return lo;
+  }
+
+  /**
+   * @return index of the day which is the n-th working day in [from, ...) range, or -1 if
+   * the range doesn't have enough working days
+   */
+  public int findNthWorkingDayForward(int from, long n) {
+    if (getWorkingDayCount(from, size()) < n) {
+      return -1;
+    }
+    int lo = from;
+    int hi = size() - 1;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (getWorkingDayCount(from, mid + 1) >= n) {
+        hi = mid;
+      } else {
+        lo = mid + 1;
+      }
+    }
+    return lo;
+  }
+
+  /**
+   * @return index of the day which is the n-th working day in [..., to) range counting backwards
+   * from to, or -1 if the range doesn't have enough working days
+   */
+  public int findNthWorkingDayBackward(int to, long n) {
+    if (getWorkingDayCount(0, to) < n) {
+      return -1;
+    }
+    int lo = 0;
+    int hi = to - 1;
+    while (lo < hi) {
+      int mid = (lo + hi + 1) >>> 1;
+      if (getWorkingDayCount(mid, to) >= n) {
+        lo = mid;
+      } else {
+        hi = mid - 1;
+      }
+    }
+    return lo;
+  }
+
+  private int countState(int from, int to, boolean working) {
+    int workingDays = getWorkingDayCount(from, to);
+    return working ? workingDays : (to - from) - workingDays;
+  }
+}
@@ -45,6 +45,10 @@ public abstract class ForwardTimeWalker {
     return myTimeUnit;
   }
 
+  protected GPCalendarCalc getCalendar() {
+    return myCalendar;
+  }
+
   abstract protected boolean isMoving();
 
   public void walk(Date startDate) {
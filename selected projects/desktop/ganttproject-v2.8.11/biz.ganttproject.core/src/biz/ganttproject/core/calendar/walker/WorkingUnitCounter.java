@@ -21,9 +21,12 @@ package biz.ganttproject.core.calendar.walker;
 import java.util.Date;
 
 import biz.ganttproject.core.calendar.GPCalendarCalc;
+import biz.ganttproject.core.calendar.WeekendCalendarImpl;
+import biz.ganttproject.core.calendar.WorkingDayIndex;
 import biz.ganttproject.core.time.TimeDuration;
 import biz.ganttproject.core.time.TimeDurationImpl;
 import biz.ganttproject.core.time.TimeUnit;
+import biz.ganttproject.core.time.impl.GPTimeUnitStack;
 
 
 /**
@@ -73,7 +76,38 @@ public class WorkingUnitCounter extends ForwardTimeWalker {
     myNonWorkingUnitCounter = 0;
     myWorkingUnitCounter = 0;
     myEndDate = endDate;
-    walk(startDate);
+    if (!countWithIndex(startDate, endDate)) {
+      walk(startDate);
+    }
     return new TimeDurationImpl(getTimeUnit(), myWorkingUnitCounter);
   }
+
+  /**
+   * Counts the same units as {@link #walk(Date)} would, using the calendar working day index
+   * when it is available.
+   *
+   * @return false if index can't be used
+   */
+  private boolean countWithIndex(Date startDate, Date endDate) {
+    if (getTimeUnit() != GPTimeUnitStack.DAY || getCalendar() instanceof WeekendCalendarImpl == false) {
+      return false;
+    }
+    Date unitStart = getTimeUnit().adjustLeft(startDate);
+    WorkingDayIndex index = ((WeekendCalendarImpl) getCalendar()).getWorkingDayIndex(unitStart, endDate);
+    if (index == null) {
+      return false;
+    }
+    int from = index.indexOf(unitStart);
+    if (from < 0) {
+      return false;
+    }
+    // Walker always processes the first unit, and then continues while next unit starts before the end date
+    int to = Math.max(from + 1, index.indexAtOrAfter(endDate));
+    if (to >= index.size()) {
+      return false;
+    }
+    myWorkingUnitCounter = index.getWorkingDayCount(from, to);
+    myNonWorkingUnitCounter = index.getNonWorkingIntervalCount(from, to);
+    return true;
+  }
 }
@@ -54,9 +54,11 @@ public class Canvas {
 
   private List<TextGroup> myTextGroups = new ArrayList<TextGroup>();
 
-  private final DummySpatialIndex<Text> myTextIndex = new DummySpatialIndex<Text>();
+  private final RowSpatialIndex<Text> myTextIndex = new RowSpatialIndex<Text>();
 
-  private final DummySpatialIndex<Polygon> myPolygonIndex = new DummySpatialIndex<Canvas.Polygon>();
+  private final RowSpatialIndex<Polygon> myPolygonIndex = new RowSpatialIndex<Canvas.Polygon>();
+
+  private final RowSpatialIndex<Rectangle> myRectangleIndex = new RowSpatialIndex<Rectangle>();
 
   /** Horizontal alignments for texts */
   public enum HAlignment {
@@ -553,6 +555,7 @@ public class Canvas {
   public Rectangle createRectangle(int leftx, int topy, int width, int height) {
     Rectangle result = createDetachedRectangle(leftx, topy, width, height);
     myRectangles.add(result);
+    myRectangleIndex.put(result, result.getLeftX(), result.getBottomY(), result.getWidth(), result.getHeight());
     return result;
   }
 
@@ -622,6 +625,7 @@ public class Canvas {
   public void clear() {
     myTextIndex.clear();
     myPolygonIndex.clear();
+    myRectangleIndex.clear();
     myRectangles.clear();
     myLines.clear();
     myTexts.clear();
@@ -646,16 +650,7 @@ public class Canvas {
   }
 
   public Shape getPrimitive(int x, int xThreshold, int y, int yThreshold) {
-    Shape result = null;
-    for (int i = 0; i < myRectangles.size(); i++) {
-      Rectangle next = myRectangles.get(i);
-      // System.err.println(" next rectangle="+next);
-      if (next.getLeftX() <= x + xThreshold && next.getRightX() >= x - xThreshold
-          && next.getTopY() <= y + yThreshold && next.getBottomY() >= y - yThreshold) {
-        result = next;
-        break;
-      }
-    }
+    Shape result = myRectangleIndex.get(x, xThreshold, y, yThreshold);
     if (result != null) {
       return result;
     }
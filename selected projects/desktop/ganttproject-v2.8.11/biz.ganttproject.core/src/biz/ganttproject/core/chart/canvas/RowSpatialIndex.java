@@ -0,0 +1,218 @@
+/*
+GanttProject is an opensource project management tool. License: GPL3
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 3
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+package biz.ganttproject.core.chart.canvas;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Implements an index optimized for the row-oriented layout of charts, where most rectangles
+ * are bars which fit into a row and span a limited range of dates.
+ *
+ * Space is cut into a grid of cells {@link #CELL_WIDTH} pixels wide and {@link #CELL_HEIGHT} pixels
+ * high, and each rectangle is registered in all cells which it intersects, so that search by point
+ * looks only into the cells around that point. Rectangles which intersect too many cells,
+ * like background areas, are kept in a separate list which is searched linearly.
+ *
+ * Index is built lazily on the first search after insertions, because charts insert
+ * all shapes on every repaint and search only on mouse events. Like {@link DummySpatialIndex},
+ * get() returns the earliest inserted rectangle containing the point.
+ */
+public class RowSpatialIndex<T> implements SpatialIndex<T> {
+  private static final int CELL_WIDTH_SHIFT = 8;
+
+  private static final int CELL_HEIGHT_SHIFT = 4;
+
+  static final int CELL_WIDTH = 1 << CELL_WIDTH_SHIFT;
+
+  static final int CELL_HEIGHT = 1 << CELL_HEIGHT_SHIFT;
+
+  /** Rectangles intersecting more cells than this are searched linearly */
+  private static final int MAX_CELLS = 256;
+
+  private static class Cell {
+    /** Rectangle numbers in the insertion order */
+    int[] myRects = new int[4];
+    int mySize;
+
+    void add(int rect) {
+      if (mySize == myRects.length) {
+        myRects = Arrays.copyOf(myRects, mySize * 2);
+      }
+      myRects[mySize++] = rect;
+    }
+  }
+
+  /** Cells of one row, indexed by column number minus the first column */
+  private static class Row {
+    int myFirstColumn;
+    Cell[] myCells = new Cell[0];
+
+    Cell get(int column) {
+      int idx = column - myFirstColumn;
+      return idx >= 0 && idx < myCells.length ? myCells[idx] : null;
+    }
+
+    Cell getOrCreate(int column) {
+      if (myCells.length == 0) {
+        myFirstColumn = column;
+      }
+      if (column < myFirstColumn) {
+        Cell[] cells = new Cell[myCells.length + Math.max(myFirstColumn - column, myCells.length)];
+        System.arraycopy(myCells, 0, cells, cells.length - myCells.length, myCells.length);
+        myFirstColumn -= cells.length - myCells.length;
+        myCells = cells;
+      } else if (column - myFirstColumn >= myCells.length) {
+        myCells = Arrays.copyOf(myCells, Math.max(column - myFirstColumn + 1, myCells.length * 2));
+      }
+      int idx = column - myFirstColumn;
+      if (myCells[idx] == null) {
+        myCells[idx] = new Cell();
+      }
+      return myCells[idx];
+    }
+  }
+
+  private final List<T> myValues = Lists.newArrayList();
+  private int[] myLeftX = new int[16];
+  private int[] myBottomY = new int[16];
+  private int[] myWidth = new int[16];
+  private int[] myHeight = new int[16];
+
+  private final Map<Integer, Row> myRows = Maps.newHashMap();
+  private int[] myOversized = new int[0];
+  private boolean isBuilt;
+
+  @Override
+  public void put(T value, int leftX, int bottomY, int width, int height) {
+    int rect = myValues.size();
+    if (rect == myLeftX.length) {
+      myLeftX = Arrays.copyOf(myLeftX, rect * 2);
+      myBottomY = Arrays.copyOf(myBottomY, rect * 2);
+      myWidth = Arrays.copyOf(myWidth, rect * 2);
+      myHeight = Arrays.copyOf(myHeight, rect * 2);
+    }
+    myValues.add(value);
+    myLeftX[rect] = leftX;
+    myBottomY[rect] = bottomY;
+    myWidth[rect] = width;
+    myHeight[rect] = height;
+    isBuilt = false;
+  }
+
+  @Override
+  public T get(int x, int y) {
+    return get(x, 0, y, 0);
+  }
+
+  @Override
+  public T get(int x, int xpadding, int y, int ypadding) {
+    if (myValues.isEmpty()) {
+      return null;
+    }
+    if (!isBuilt) {
+      build();
+    }
+    int found = Integer.MAX_VALUE;
+    for (int rect : myOversized) {
+      if (rect >= found) {
+        break;
+      }
+      if (contains(rect, x, xpadding, y, ypadding)) {
+        found = rect;
+      }
+    }
+    for (int row = (y - ypadding) >> CELL_HEIGHT_SHIFT; row <= (y + ypadding) >> CELL_HEIGHT_SHIFT; row++) {
+      Row cells = myRows.get(row);
+      if (cells == null) {
+        continue;
+      }
+      for (int column = (x - xpadding) >> CELL_WIDTH_SHIFT; column <= (x + xpadding) >> CELL_WIDTH_SHIFT; column++) {
+        Cell cell = cells.get(column);
+        if (cell == null) {
+          continue;
+        }
+        for (int i = 0; i < cell.mySize; i++) {
+          int rect = cell.myRects[i];
+          if (rect >= found) {
+            break;
+          }
+          if (contains(rect, x, xpadding, y, ypadding)) {
+            found = rect;
+            break;
+          }
+        }
+      }
+    }
+    return found == Integer.MAX_VALUE ? null : myValues.get(found);
+  }
+
+  private boolean contains(int rect, int x, int xpadding, int y, int ypadding) {
+    return myLeftX[rect] <= x + xpadding && myLeftX[rect] + myWidth[rect] >= x - xpadding
+        && myBottomY[rect] >= y - ypadding && myBottomY[rect] - myHeight[rect] <= y + ypadding;
+  }
+
+  private void build() {
+    myRows.clear();
+    int[] oversized = new int[16];
+    int oversizedCount = 0;
+    for (int rect = 0; rect < myValues.size(); rect++) {
+      int topRow = (myBottomY[rect] - myHeight[rect]) >> CELL_HEIGHT_SHIFT;
+      int bottomRow = myBottomY[rect] >> CELL_HEIGHT_SHIFT;
+      int leftColumn = myLeftX[rect] >> CELL_WIDTH_SHIFT;
+      int rightColumn = (myLeftX[rect] + myWidth[rect]) >> CELL_WIDTH_SHIFT;
+      long cellCount = (long) (bottomRow - topRow + 1) * (rightColumn - leftColumn + 1);
+      if (topRow > bottomRow || leftColumn > rightColumn || cellCount > MAX_CELLS) {
+        if (oversizedCount == oversized.length) {
+          oversized = Arrays.copyOf(oversized, oversizedCount * 2);
+        }
+        oversized[oversizedCount++] = rect;
+        continue;
+      }
+      for (int row = topRow; row <= bottomRow; row++) {
+        Row cells = myRows.get(row);
+        if (cells == null) {
+          cells = new Row();
+          myRows.put(row, cells);
+        }
+        for (int column = leftColumn; column <= rightColumn; column++) {
+          cells.getOrCreate(column).add(rect);
+        }
+      }
+    }
+    myOversized = Arrays.copyOf(oversized, oversizedCount);
+    isBuilt = true;
+  }
+
+  public void clear() {
+    myValues.clear();
+    myRows.clear();
+    myOversized = new int[0];
+    isBuilt = false;
+  }
+
+  public Collection<T> values() {
+    return Collections.unmodifiableList(myValues);
+  }
+}
@@ -0,0 +1,115 @@
+/*
+GanttProject is an opensource project management tool. License: GPL3
+Copyright (C) 2026 GanttProject Team
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 3
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+package biz.ganttproject.core.chart.canvas;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks {@link RowSpatialIndex} against {@link DummySpatialIndex} on a large chart-like layout
+ * and prints how long both take.
+ */
+public class RowSpatialIndexTest extends TestCase {
+  private static final int ROW_COUNT = 10000;
+  private static final int RECTS_PER_ROW = 5;
+  private static final int ROW_HEIGHT = 24;
+  private static final int CHART_WIDTH = 20000;
+  private static final int BACKGROUND_COUNT = 10;
+  private static final int QUERY_COUNT = 20000;
+
+  public void testSmallIndex() {
+    RowSpatialIndex<String> index = new RowSpatialIndex<String>();
+    assertNull(index.get(10, 10));
+    index.put("bar", 100, 40, 50, 20);
+    index.put("background", -10, 1000, 5000, 2000);
+    assertEquals("bar", index.get(120, 30));
+    assertEquals("bar", index.get(150, 20));
+    assertEquals("background", index.get(151, 30));
+    assertEquals("bar", index.get(155, 5, 30, 0));
+    assertNull(index.get(-20, 0));
+    index.clear();
+    assertNull(index.get(120, 30));
+    assertTrue(index.values().isEmpty());
+  }
+
+  public void testLargeChartMatchesLinearSearch() {
+    Random random = new Random(31);
+    RowSpatialIndex<Integer> index = new RowSpatialIndex<Integer>();
+    DummySpatialIndex<Integer> dummy = new DummySpatialIndex<Integer>();
+    int count = 0;
+    for (int row = 0; row < ROW_COUNT; row++) {
+      int bottomY = (row + 1) * ROW_HEIGHT - 4;
+      for (int i = 0; i < RECTS_PER_ROW; i++) {
+        boolean isWide = random.nextInt(20) == 0;
+        int width = isWide ? 2000 + random.nextInt(10000) : 5 + random.nextInt(300);
+        int leftX = random.nextInt(CHART_WIDTH - width);
+        int height = 8 + random.nextInt(8);
+        index.put(count, leftX, bottomY, width, height);
+        dummy.put(count, leftX, bottomY, width, height);
+        count++;
+      }
+    }
+    for (int i = 0; i < BACKGROUND_COUNT; i++) {
+      int top = random.nextInt(ROW_COUNT * ROW_HEIGHT);
+      index.put(count, 0, top + 4 * ROW_HEIGHT, CHART_WIDTH, 4 * ROW_HEIGHT);
+      dummy.put(count, 0, top + 4 * ROW_HEIGHT, CHART_WIDTH, 4 * ROW_HEIGHT);
+      count++;
+    }
+    assertEquals(count, index.values().size());
+
+    int[] xs = new int[QUERY_COUNT];
+    int[] ys = new int[QUERY_COUNT];
+    int[] paddings = new int[QUERY_COUNT];
+    for (int i = 0; i < QUERY_COUNT; i++) {
+      xs[i] = random.nextInt(CHART_WIDTH + 200) - 100;
+      ys[i] = random.nextInt(ROW_COUNT * ROW_HEIGHT + 200) - 100;
+      paddings[i] = random.nextInt(4);
+    }
+
+    long buildStart = System.nanoTime();
+    index.get(0, 0);
+    long buildNanos = System.nanoTime() - buildStart;
+
+    Integer[] expected = new Integer[QUERY_COUNT];
+    long dummyStart = System.nanoTime();
+    for (int i = 0; i < QUERY_COUNT; i++) {
+      expected[i] = dummy.get(xs[i], paddings[i], ys[i], paddings[i]);
+    }
+    long dummyNanos = System.nanoTime() - dummyStart;
+
+    int found = 0;
+    long indexStart = System.nanoTime();
+    for (int i = 0; i < QUERY_COUNT; i++) {
+      Integer actual = index.get(xs[i], paddings[i], ys[i], paddings[i]);
+      assertEquals("x=" + xs[i] + " y=" + ys[i] + " padding=" + paddings[i], expected[i], actual);
+      if (actual != null) {
+        found++;
+      }
+    }
+    long indexNanos = System.nanoTime() - indexStart;
+    assertTrue("too few hits to be meaningful: " + found, found > QUERY_COUNT / 20);
+
+    System.out.println(String.format(
+        "%d rectangles, %d queries: build %d ms, lookup %.2f us with RowSpatialIndex, %.2f us with DummySpatialIndex",
+        count, QUERY_COUNT, buildNanos / 1000000,
+        indexNanos / 1000.0 / QUERY_COUNT, dummyNanos / 1000.0 / QUERY_COUNT));
+    assertTrue(indexNanos < dummyNanos);
+  }
+}
@@ -79,12 +79,10 @@ public class ResourceTreeTableModel extends DefaultTreeTableModel {
         subtree.add(e.getTask());
         for (Task t : subtree) {
           for (ResourceAssignment ra : t.getAssignments()) {
+            ra.getResource().updateLoads(t);
             affected.add(ra.getResource());
           }
         }
-        for (HumanResource resource : affected) {
-          resource.resetLoads();
-        }
         resourceAssignmentsChanged(affected);
       }
     });
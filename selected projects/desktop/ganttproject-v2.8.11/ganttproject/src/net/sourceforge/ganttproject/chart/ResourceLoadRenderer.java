@@ -71,9 +71,11 @@ class ResourceLoadRenderer extends ChartRendererBase {
     getPrimitiveContainer().setOffset(0, getConfig().getHeaderHeight() - myModel.getVerticalOffset());
     beforeProcessingTimeFrames();
     int ypos = 0;
+    Date chartStart = getChartStartDate();
+    Date chartEnd = getChartEndDate();
     for (LoadDistribution distribution : myDistributions) {
-      List<Load> loads = distribution.getLoads();
-      renderLoads(distribution.getDaysOff(), ypos);
+      List<Load> loads = distribution.getLoads(chartStart, chartEnd);
+      renderLoads(distribution.getDaysOff(chartStart, chartEnd), ypos);
       renderLoads(loads, ypos);
       if (myResourcechart.isExpanded(distribution.getResource())) {
         renderLoadDetails(distribution, ypos);
@@ -32,6 +32,7 @@ import net.sourceforge.ganttproject.parser.ParsingListener;
 import net.sourceforge.ganttproject.parser.TagHandler;
 import net.sourceforge.ganttproject.task.Task;
 import net.sourceforge.ganttproject.task.TaskManager;
+import net.sourceforge.ganttproject.task.algorithm.DependencyGraph;
 import org.xml.sax.Attributes;
 
 import java.io.BufferedInputStream;
@@ -96,7 +97,7 @@ public class GanttXMLOpen implements GPParser {
   public boolean doLoad(InputStream inStream) throws IOException {
     // Use an instance of ourselves as the SAX event handler
     XmlParser parser = new XmlParser(myTagHandlers, myListeners);
-    parser.parse(inStream);
+    parse(parser, inStream);
     myUIFacade.setViewIndex(viewIndex);
     myUIFacade.setGanttDividerLocation(ganttDividerLocation);
     if (resourceDividerLocation != 0) {
@@ -109,7 +110,7 @@ public class GanttXMLOpen implements GPParser {
   public boolean load(File file) {
     XmlParser parser = new XmlParser(myTagHandlers, myListeners);
     try {
-      parser.parse(new BufferedInputStream(new FileInputStream(file)));
+      parse(parser, new BufferedInputStream(new FileInputStream(file)));
     } catch (Exception e) {
       myUIFacade.showErrorDialog(e);
       return false;
@@ -117,6 +118,26 @@ public class GanttXMLOpen implements GPParser {
     return true;
   }
 
+  /**
+   * Parses the stream with the dependency graph in the bulk load mode, so that tasks, hierarchy
+   * and dependencies which are created while parsing don't trigger graph layering
+   * and scheduler runs one by one. Graph is laid out and scheduler runs once when the whole document
+   * is parsed and parsing listeners have committed their buffered data.
+   */
+  private void parse(XmlParser parser, InputStream inStream) throws IOException {
+    if (myTaskManager == null) {
+      parser.parse(inStream);
+      return;
+    }
+    DependencyGraph graph = myTaskManager.getDependencyGraph();
+    graph.startBulkLoad();
+    try {
+      parser.parse(inStream);
+    } finally {
+      graph.finishBulkLoad();
+    }
+  }
+
   @Override
   public void addTagHandler(TagHandler handler) {
     myTagHandlers.add(handler);
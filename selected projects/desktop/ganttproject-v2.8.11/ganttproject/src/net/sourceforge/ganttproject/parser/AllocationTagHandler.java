@@ -20,9 +20,13 @@ package net.sourceforge.ganttproject.parser;
 
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
 import net.sourceforge.ganttproject.GPLogger;
 import net.sourceforge.ganttproject.resource.HumanResource;
 import net.sourceforge.ganttproject.resource.HumanResourceManager;
@@ -37,6 +41,10 @@ import net.sourceforge.ganttproject.task.TaskManager;
 import org.xml.sax.Attributes;
 
 /**
+ * Loads resource assignments. Assignments are buffered while parsing and are added to tasks
+ * and resources when parsing finishes, resource by resource, so that resource views are notified
+ * once per resource rather than once per assignment.
+ *
  * @author bard
  */
 public class AllocationTagHandler extends AbstractTagHandler implements  ParsingListener {
@@ -48,6 +56,22 @@ public class AllocationTagHandler extends AbstractTagHandler implements  Parsing
 
   private final HashMap<ResourceAssignment, String> myLateAssigmnent2roleBinding = new HashMap<ResourceAssignment, String>();
 
+  private final Map<HumanResource, List<PendingAllocation>> myPendingAllocations = Maps.newLinkedHashMap();
+
+  private static class PendingAllocation {
+    private final Task myTask;
+    private final float myLoad;
+    private final boolean isCoordinator;
+    private final String myRolePersistentID;
+
+    PendingAllocation(Task task, float load, boolean coordinator, String rolePersistentID) {
+      myTask = task;
+      myLoad = load;
+      isCoordinator = coordinator;
+      myRolePersistentID = rolePersistentID;
+    }
+  }
+
   public AllocationTagHandler(HumanResourceManager resourceMgr, TaskManager taskMgr, RoleManager roleMgr) {
     super("allocation");
     myResourceManager = resourceMgr;
@@ -107,22 +131,33 @@ public class AllocationTagHandler extends AbstractTagHandler implements  Parsing
     if (task == null) {
       throw new FileFormatException("Task with id=" + taskId + " not found");
     }
-    // TaskMutator mutator = task.createMutator();
-    // ResourceAssignment assignment = mutator.addResource(human);
-    // assignment.setLoad(load);
-    // mutator.commit();
-
-    ResourceAssignment assignment = task.getAssignmentCollection().addAssignment(human);
-
-    try {
-      if (rolePersistendIDString != null)
-        myLateAssigmnent2roleBinding.put(assignment, rolePersistendIDString);
-    } catch (NumberFormatException e) {
-      System.out.println("ERROR in parsing XML File function id is not numeric: " + e.toString());
+    List<PendingAllocation> allocations = myPendingAllocations.get(human);
+    if (allocations == null) {
+      allocations = Lists.newArrayList();
+      myPendingAllocations.put(human, allocations);
     }
+    allocations.add(new PendingAllocation(task, load, coordinator, rolePersistendIDString));
+  }
 
-    assignment.setLoad(load);
-    assignment.setCoordinator(coordinator);
+  private void commitAllocations() {
+    for (Entry<HumanResource, List<PendingAllocation>> entry : myPendingAllocations.entrySet()) {
+      HumanResource human = entry.getKey();
+      human.setEventsEnabled(false);
+      try {
+        for (PendingAllocation allocation : entry.getValue()) {
+          ResourceAssignment assignment = allocation.myTask.getAssignmentCollection().addAssignment(human);
+          if (allocation.myRolePersistentID != null) {
+            myLateAssigmnent2roleBinding.put(assignment, allocation.myRolePersistentID);
+          }
+          assignment.setLoad(allocation.myLoad);
+          assignment.setCoordinator(allocation.isCoordinator);
+        }
+      } finally {
+        human.setEventsEnabled(true);
+      }
+      getResourceManager().fireAssignmentsChanged(human);
+    }
+    myPendingAllocations.clear();
   }
 
   private HumanResourceManager getResourceManager() {
@@ -161,6 +196,7 @@ public class AllocationTagHandler extends AbstractTagHandler implements  Parsing
 
   @Override
   public void parsingFinished() {
+    commitAllocations();
     for (Iterator<Entry<ResourceAssignment, String>> lateBindingEntries = myLateAssigmnent2roleBinding.entrySet().iterator(); lateBindingEntries.hasNext();) {
       Map.Entry<ResourceAssignment, String> nextEntry = lateBindingEntries.next();
       String persistentID = nextEntry.getValue();
@@ -211,7 +211,7 @@ public class HumanResource implements CustomPropertyHolder {
   public ResourceAssignment createAssignment(ResourceAssignment assignmentToTask) {
     ResourceAssignment result = new ResourceAssignmentImpl(assignmentToTask);
     myAssignments.add(result);
-    resetLoads();
+    updateLoads(result.getTask());
     fireAssignmentsChanged();
     return result;
   }
@@ -224,6 +224,14 @@ public class HumanResource implements CustomPropertyHolder {
     return new HumanResource(this);
   }
 
+  /**
+   * Enables or disables notifying resource views about changes of this resource, e.g. while
+   * a batch of assignments is being added. Caller is responsible for firing a single event afterwards.
+   */
+  public void setEventsEnabled(boolean enabled) {
+    areEventsEnabled = enabled;
+  }
+
   private void fireResourceChanged() {
     if (areEventsEnabled) {
       myManager.fireResourceChanged(this);
@@ -278,6 +286,16 @@ public class HumanResource implements CustomPropertyHolder {
     myLoadDistribution = null;
   }
 
+  /**
+   * Updates the load distribution, if it has been built, after the dates of the given task
+   * or assignment of this resource to that task have changed
+   */
+  public void updateLoads(Task task) {
+    if (myLoadDistribution != null) {
+      myLoadDistribution.updateTask(task);
+    }
+  }
+
   public LoadDistribution getLoadDistribution() {
     if (myLoadDistribution == null) {
       myLoadDistribution = new LoadDistribution(this);
@@ -285,8 +303,8 @@ public class HumanResource implements CustomPropertyHolder {
     return myLoadDistribution;
   }
 
-  private void fireAssignmentChanged() {
-    resetLoads();
+  private void fireAssignmentChanged(Task task) {
+    updateLoads(task);
     fireAssignmentsChanged();
   }
 
@@ -351,14 +369,14 @@ public class HumanResource implements CustomPropertyHolder {
     @Override
     public void setLoad(float load) {
       myLoad = load;
-      HumanResource.this.fireAssignmentChanged();
+      HumanResource.this.fireAssignmentChanged(getTask());
     }
 
     /** Removes all related assignments */
     @Override
     public void delete() {
       HumanResource.this.myAssignments.remove(this);
-      HumanResource.this.fireAssignmentChanged();
+      HumanResource.this.fireAssignmentChanged(getTask());
     }
 
     @Override
@@ -6,22 +6,30 @@
 package net.sourceforge.ganttproject.resource;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 
 import javax.swing.DefaultListModel;
 
 import biz.ganttproject.core.calendar.GanttDaysOff;
-
 import net.sourceforge.ganttproject.task.ResourceAssignment;
 import net.sourceforge.ganttproject.task.Task;
 import net.sourceforge.ganttproject.task.TaskActivity;
 
 /**
  * Represents load of of one particular resource in the given time range
+ *
+ * Load is a step function built with a sweep line: every task activity and day off
+ * contributes a start and an end event, events are kept in a date-ordered map, and the list
+ * of loads is the running sum of events in date order. Loads of each task are kept separately,
+ * so that when a single task or assignment changes, only its events are replaced.
  */
 public class LoadDistribution {
   public static class Load {
@@ -49,17 +57,103 @@ public class LoadDistribution {
     public final Date endDate;
   }
 
-  private final List<Load> myDaysOff = new LinkedList<Load>();
+  /**
+   * Load intervals which start and end at some date
+   */
+  private static class Events {
+    final List<Load> starts = new ArrayList<Load>(2);
+    final List<Load> ends = new ArrayList<Load>(2);
+
+    boolean isEmpty() {
+      return starts.isEmpty() && ends.isEmpty();
+    }
+  }
+
+  /**
+   * Date-ordered load events of a single row of the chart
+   */
+  private static class Sweep {
+    private final TreeMap<Date, Events> myEvents = new TreeMap<Date, Events>();
+    private List<Load> myLoads;
+
+    void add(Load load) {
+      getEvents(load.startDate).starts.add(load);
+      getEvents(load.endDate).ends.add(load);
+      myLoads = null;
+    }
+
+    void remove(Load load) {
+      removeEvent(load.startDate, load, true);
+      removeEvent(load.endDate, load, false);
+      myLoads = null;
+    }
+
+    private Events getEvents(Date date) {
+      Events result = myEvents.get(date);
+      if (result == null) {
+        result = new Events();
+        myEvents.put(date, result);
+      }
+      return result;
+    }
+
+    private void removeEvent(Date date, Load load, boolean isStart) {
+      Events events = myEvents.get(date);
+      if (events == null) {
+        return;
+      }
+      (isStart ? events.starts : events.ends).remove(load);
+      if (events.isEmpty()) {
+        myEvents.remove(date);
+      }
+    }
+
+    /**
+     * @return list of loads where the first element is a zero load with no start date and
+     * each other element is the load from its start date up to the start date of the next one
+     */
+    List<Load> getLoads() {
+      if (myLoads == null) {
+        List<Load> loads = new ArrayList<Load>(myEvents.size() + 1);
+        loads.add(new Load(null, null, 0, null));
+        float currentLoad = 0;
+        int activeCount = 0;
+        for (Map.Entry<Date, Events> entry : myEvents.entrySet()) {
+          Events events = entry.getValue();
+          for (Load start : events.starts) {
+            currentLoad += start.load;
+          }
+          for (Load end : events.ends) {
+            currentLoad -= end.load;
+          }
+          activeCount += events.starts.size() - events.ends.size();
+          if (activeCount == 0) {
+            // Don't let rounding errors leave a non-zero load where nothing happens
+            currentLoad = 0;
+          }
+          loads.add(new Load(entry.getKey(), null, currentLoad, null));
+        }
+        myLoads = Collections.unmodifiableList(loads);
+      }
+      return myLoads;
+    }
+  }
+
+  private final Sweep myDaysOff = new Sweep();
+
+  private final Sweep myLoads = new Sweep();
+
+  private final List<Load> myDaysOffLoads = new ArrayList<Load>();
 
-  private final List<Load> myLoads = new ArrayList<Load>();
+  private final Map<Task, List<Load>> myTaskLoads = new LinkedHashMap<Task, List<Load>>();
 
-  private final List<Load> myTasksLoads = new ArrayList<Load>();
+  private final Set<Task> myChangedTasks = new LinkedHashSet<Task>();
+
+  private List<Load> myTasksLoads;
 
   private final HumanResource myResource;
 
   public LoadDistribution(HumanResource resource) {
-    myLoads.add(new Load(null, null, 0, null));
-    myDaysOff.add(new Load(null, null, 0, null));
     myResource = resource;
     ResourceAssignment[] assignments = myResource.getAssignments();
     for (int j = 0; j < assignments.length; j++) {
@@ -80,74 +174,68 @@ public class LoadDistribution {
 
   private void processDayOff(GanttDaysOff dayOff) {
     Date dayOffEnd = dayOff.getFinish().getTime();
-    addLoad(dayOff.getStart().getTime(), dayOffEnd, -1, myDaysOff, null);
+    Load load = new Load(dayOff.getStart().getTime(), dayOffEnd, -1, null);
+    myDaysOffLoads.add(load);
+    myDaysOff.add(load);
   }
 
   private void processAssignment(ResourceAssignment assignment) {
     Task task = assignment.getTask();
+    List<Load> taskLoads = myTaskLoads.get(task);
+    if (taskLoads == null) {
+      taskLoads = new ArrayList<Load>();
+      myTaskLoads.put(task, taskLoads);
+    }
     for (TaskActivity ta : task.getActivities()) {
-      processActivity(ta, assignment.getLoad());
+      processActivity(ta, assignment.getLoad(), taskLoads);
     }
   }
 
-  private void processActivity(TaskActivity activity, float load) {
+  private void processActivity(TaskActivity activity, float load, List<Load> taskLoads) {
     if (activity.getIntensity() == 0) {
       return;
     }
-    addLoad(activity.getStart(), activity.getEnd(), load, myLoads, activity.getOwner());
+    Load taskLoad = new Load(activity.getStart(), activity.getEnd(), load, activity.getOwner());
+    taskLoads.add(taskLoad);
+    myLoads.add(taskLoad);
+    myTasksLoads = null;
   }
 
-  private void addLoad(Date startDate, Date endDate, float load, List<Load> loads, Task t) {
-    Load taskLoad = new Load(startDate, endDate, load, t);
-
-    myTasksLoads.add(taskLoad);
+  /**
+   * Marks loads of the given task as outdated, e.g. because task dates have changed or
+   * assignment of this resource to the task has been added, removed or modified.
+   * Loads of the task are recalculated when the distribution is queried next time.
+   */
+  public void updateTask(Task task) {
+    myChangedTasks.add(task);
+  }
 
-    int idxStart = -1;
-    float currentLoad = 0;
-    if (startDate == null) {
-      idxStart = 0;
-    } else {
-      for (int i = 1; i < loads.size(); i++) {
-        Load nextLoad = loads.get(i);
-        if (startDate.compareTo(nextLoad.startDate) >= 0) {
-          currentLoad = loads.get(i).load;
-        }
-        if (startDate.compareTo(nextLoad.startDate) > 0) {
-          continue;
-        }
-        idxStart = i;
-        if (startDate.compareTo(nextLoad.startDate) < 0) {
-          loads.add(i, new Load(startDate, null, currentLoad, null));
-        }
-        break;
-      }
+  private void processChangedTasks() {
+    if (myChangedTasks.isEmpty()) {
+      return;
     }
-    if (idxStart == -1) {
-      idxStart = loads.size();
-      loads.add(new Load(startDate, null, 0, t));
-    }
-    int idxEnd = -1;
-    if (endDate == null) {
-      idxEnd = loads.size() - 1;
-    } else {
-      for (int i = idxStart; i < loads.size(); i++) {
-        Load nextLoad = loads.get(i);
-        if (endDate.compareTo(nextLoad.startDate) > 0) {
-          nextLoad.load += load;
-          continue;
+    List<Task> changedTasks = new ArrayList<Task>(myChangedTasks);
+    myChangedTasks.clear();
+    for (Task task : changedTasks) {
+      List<Load> oldLoads = myTaskLoads.get(task);
+      if (oldLoads != null) {
+        for (Load load : oldLoads) {
+          myLoads.remove(load);
         }
-        idxEnd = i;
-        if (endDate.compareTo(nextLoad.startDate) < 0) {
-          Load prevLoad = loads.get(i - 1);
-          loads.add(i, new Load(endDate, null, prevLoad.load - load, null));
+        oldLoads.clear();
+      }
+      boolean isAssigned = false;
+      for (ResourceAssignment assignment : myResource.getAssignments()) {
+        if (assignment.getTask() == task) {
+          processAssignment(assignment);
+          isAssigned = true;
         }
-        break;
+      }
+      if (!isAssigned) {
+        myTaskLoads.remove(task);
       }
     }
-    if (idxEnd == -1) {
-      idxEnd = loads.size();
-      loads.add(new Load(endDate, null, 0, t));
-    }
+    myTasksLoads = null;
   }
 
   public HumanResource getResource() {
@@ -155,11 +243,46 @@ public class LoadDistribution {
   }
 
   public List<Load> getLoads() {
-    return myLoads;
+    processChangedTasks();
+    return myLoads.getLoads();
+  }
+
+  /**
+   * @return the part of {@link #getLoads()} which is needed to render the given date range: from
+   *         the load preceding the one which is in effect at the range start and up to the load
+   *         which starts at or after the range end
+   */
+  public List<Load> getLoads(Date startDate, Date endDate) {
+    return subList(getLoads(), startDate, endDate);
   }
 
   public List<Load> getDaysOff() {
-    return myDaysOff;
+    return myDaysOff.getLoads();
+  }
+
+  public List<Load> getDaysOff(Date startDate, Date endDate) {
+    return subList(getDaysOff(), startDate, endDate);
+  }
+
+  private static List<Load> subList(List<Load> loads, Date startDate, Date endDate) {
+    // The first load has no start date and is never searched for
+    int from = lastStartingAtOrBefore(loads, startDate);
+    int to = lastStartingAtOrBefore(loads, endDate);
+    return loads.subList(Math.max(0, from - 1), Math.min(loads.size(), to + 2));
+  }
+
+  private static int lastStartingAtOrBefore(List<Load> loads, Date date) {
+    int lo = 0;
+    int hi = loads.size() - 1;
+    while (lo < hi) {
+      int mid = (lo + hi + 1) >>> 1;
+      if (loads.get(mid).startDate.compareTo(date) <= 0) {
+        lo = mid;
+      } else {
+        hi = mid - 1;
+      }
+    }
+    return lo;
   }
 
   /**
@@ -167,6 +290,15 @@ public class LoadDistribution {
    *         a set of <code>Load</code>
    */
   public List<Load> getTasksLoads() {
+    processChangedTasks();
+    if (myTasksLoads == null) {
+      List<Load> tasksLoads = new ArrayList<Load>();
+      for (List<Load> taskLoads : myTaskLoads.values()) {
+        tasksLoads.addAll(taskLoads);
+      }
+      tasksLoads.addAll(myDaysOffLoads);
+      myTasksLoads = tasksLoads;
+    }
     return myTasksLoads;
   }
 
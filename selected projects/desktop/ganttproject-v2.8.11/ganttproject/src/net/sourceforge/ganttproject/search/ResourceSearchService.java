@@ -19,13 +19,25 @@ along with GanttProject.  If not, see <http://www.gnu.org/licenses/>.
 package net.sourceforge.ganttproject.search;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
+import com.google.common.collect.Lists;
+
 import net.sourceforge.ganttproject.IGanttProject;
+import net.sourceforge.ganttproject.ProjectEventListener;
 import net.sourceforge.ganttproject.gui.UIFacade;
 import net.sourceforge.ganttproject.resource.HumanResource;
+import net.sourceforge.ganttproject.resource.HumanResourceManager;
+import net.sourceforge.ganttproject.resource.ResourceEvent;
+import net.sourceforge.ganttproject.resource.ResourceView;
 
-/** Search service for resources */
+/**
+ * Search service for resources. Searches in resource names
+ * using {@link SearchIndex} which is kept up to date by resource events.
+ */
 public class ResourceSearchService extends SearchServiceBase<ResourceSearchService.MySearchResult, HumanResource> {
   static class MySearchResult extends SearchResult<HumanResource> {
     public MySearchResult(HumanResource hr, ResourceSearchService searchService) {
@@ -33,18 +45,24 @@ public class ResourceSearchService extends SearchServiceBase<ResourceSearchServi
     }
   }
 
+  private SearchIndex<HumanResource> myIndex;
+
   public ResourceSearchService() {
     super(UIFacade.RESOURCES_INDEX);
   }
 
   @Override
   public List<MySearchResult> search(String query) {
-    query = query.toLowerCase();
-    List<MySearchResult> results = new ArrayList<MySearchResult>();
-    for (HumanResource hr : getProject().getHumanResourceManager().getResources()) {
-      if (isNotEmptyAndContains(hr.getName(), query)) {
-        results.add(new MySearchResult(hr, this));
+    List<HumanResource> resources = myIndex.search(query);
+    Collections.sort(resources, new Comparator<HumanResource>() {
+      @Override
+      public int compare(HumanResource hr1, HumanResource hr2) {
+        return hr1.getId() - hr2.getId();
       }
+    });
+    List<MySearchResult> results = new ArrayList<MySearchResult>();
+    for (HumanResource hr : resources) {
+      results.add(new MySearchResult(hr, this));
     }
     return results;
   }
@@ -52,5 +70,62 @@ public class ResourceSearchService extends SearchServiceBase<ResourceSearchServi
   @Override
   public void init(IGanttProject project, UIFacade uiFacade) {
     super.init(project, uiFacade.getResourceTree(), uiFacade);
+    if (myIndex == null) {
+      myIndex = createIndex(project);
+    }
+  }
+
+  private static SearchIndex<HumanResource> createIndex(IGanttProject project) {
+    final HumanResourceManager resourceManager = project.getHumanResourceManager();
+    final SearchIndex<HumanResource> index = new SearchIndex<HumanResource>() {
+      @Override
+      protected Collection<HumanResource> getAllObjects() {
+        return Lists.newArrayList(resourceManager.getResources());
+      }
+
+      @Override
+      protected boolean exists(HumanResource hr) {
+        return resourceManager.getResources().contains(hr);
+      }
+
+      @Override
+      protected List<String> getTexts(HumanResource hr) {
+        return Collections.singletonList(hr.getName());
+      }
+    };
+    resourceManager.addView(new ResourceView() {
+      @Override
+      public void resourceAdded(ResourceEvent event) {
+        index.invalidate(event.getResource());
+      }
+
+      @Override
+      public void resourcesRemoved(ResourceEvent event) {
+        for (HumanResource hr : event.getResources()) {
+          index.invalidate(hr);
+        }
+      }
+
+      @Override
+      public void resourceChanged(ResourceEvent e) {
+        index.invalidate(e.getResource());
+      }
+
+      @Override
+      public void resourceAssignmentsChanged(ResourceEvent e) {
+      }
+    });
+    project.addProjectEventListener(new ProjectEventListener.Stub() {
+      @Override
+      public void projectOpened() {
+        index.invalidateAll();
+      }
+
+      @Override
+      public void projectClosed() {
+        index.invalidateAll();
+      }
+    });
+    return index;
   }
 }
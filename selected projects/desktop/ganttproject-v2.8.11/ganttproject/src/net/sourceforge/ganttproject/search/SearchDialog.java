@@ -62,6 +62,7 @@ public class SearchDialog {
   private JList myResultView;
   private UIFacade.Dialog myDialog;
   private SearchCallback mySearchCallback;
+  private List<SearchService> mySearchServices;
 
   public SearchDialog(IGanttProject project, UIFacade uiFacade) {
     myProject = project;
@@ -148,9 +149,17 @@ public class SearchDialog {
     return myResultViewDataModel;
   }
 
+  // Services are created once, so that they can keep their search indexes between searches
+  private List<SearchService> getSearchServices() {
+    if (mySearchServices == null) {
+      mySearchServices = PluginManager.getExtensions(SearchService.EXTENSION_POINT_ID, SearchService.class);
+    }
+    return mySearchServices;
+  }
+
   void runSearch(final String text, final SearchCallback callback) {
     myResultViewDataModel.clear();
-    List<SearchService> services = PluginManager.getExtensions(SearchService.EXTENSION_POINT_ID, SearchService.class);
+    List<SearchService> services = getSearchServices();
     final List<Future<List<SearchResult<?>>>> tasks = new ArrayList<Future<List<SearchResult<?>>>>();
     ExecutorService executor = Executors.newFixedThreadPool(services.size());
     for (final SearchService<SearchResult<?>, ?> service : services) {
@@ -163,6 +172,7 @@ public class SearchDialog {
         }
       }));
     }
+    executor.shutdown();
     SwingWorker<List<SearchResult<?>>, Object> worker = new SwingWorker<List<SearchResult<?>>, Object>() {
       @Override
       protected List<SearchResult<?>> doInBackground() throws Exception {
@@ -0,0 +1,202 @@
+/*
+This file is part of GanttProject, an opensource project management tool.
+
+GanttProject is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+GanttProject is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with GanttProject.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.ganttproject.search;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * In-memory inverted index for case-insensitive substring search over texts of some objects,
+ * e.g. task names and notes.
+ *
+ * Texts are split into words, that is, runs of letters and digits, and every substring of length
+ * 1..{@link #GRAM_LENGTH} of every word is mapped to the objects which have it. Grams are collected
+ * per object, so a word repeated across long notes costs a single entry. A query is split into words
+ * the same way. Query which is a single word not longer than {@link #GRAM_LENGTH} is answered with
+ * a single lookup. Otherwise the index is looked up with the grams of query words, the objects from
+ * the smallest set are taken and checked whether their texts really contain the query.
+ *
+ * Index is updated lazily. Subclasses are expected to call {@link #invalidate(Object)} when
+ * object texts change or object is added or removed, and {@link #invalidateAll()} when the whole
+ * model changes. Invalidated objects are re-indexed on the next search. Index is thread-safe:
+ * it is invalidated from the event dispatch thread and searched from background threads.
+ * Objects are compared by identity.
+ *
+ * @param <T> indexed object type
+ */
+abstract class SearchIndex<T> {
+  static final int GRAM_LENGTH = 3;
+
+  private final Map<String, Set<T>> myGrams = Maps.newHashMap();
+  private final Map<T, List<String>> myTexts = Maps.newIdentityHashMap();
+  private final Set<T> myInvalidObjects = Sets.newIdentityHashSet();
+  private boolean isRebuildRequired = true;
+
+  /** @return all objects which are subject to search */
+  protected abstract Collection<T> getAllObjects();
+
+  /** @return true if the object is still subject to search, that is, it has not been removed */
+  protected abstract boolean exists(T object);
+
+  /** @return texts of the given object. Null values are allowed and ignored */
+  protected abstract List<String> getTexts(T object);
+
+  synchronized void invalidate(T object) {
+    if (!isRebuildRequired) {
+      myInvalidObjects.add(object);
+    }
+  }
+
+  synchronized void invalidateAll() {
+    isRebuildRequired = true;
+    myInvalidObjects.clear();
+  }
+
+  /**
+   * @return objects which have at least one text containing the query, ignoring case, in no particular order
+   */
+  synchronized List<T> search(String query) {
+    refresh();
+    query = query.toLowerCase();
+    List<String> words = getWords(query);
+    if (words.isEmpty()) {
+      // Nothing to look up, e.g. query is empty or consists of punctuation only
+      return scan(myTexts.keySet(), query);
+    }
+    if (words.size() == 1 && words.get(0).length() == query.length() && query.length() <= GRAM_LENGTH) {
+      Set<T> objects = myGrams.get(query);
+      return objects == null ? Lists.<T>newArrayList() : Lists.newArrayList(objects);
+    }
+    Set<T> candidates = null;
+    for (String word : words) {
+      for (int i = 0; i + Math.min(GRAM_LENGTH, word.length()) <= word.length(); i++) {
+        Set<T> objects = myGrams.get(word.substring(i, Math.min(i + GRAM_LENGTH, word.length())));
+        if (objects == null) {
+          return Lists.newArrayList();
+        }
+        if (candidates == null || objects.size() < candidates.size()) {
+          candidates = objects;
+        }
+      }
+    }
+    return scan(candidates, query);
+  }
+
+  private List<T> scan(Collection<T> objects, String query) {
+    List<T> result = Lists.newArrayList();
+    for (T object : objects) {
+      for (String text : myTexts.get(object)) {
+        if (text.contains(query)) {
+          result.add(object);
+          break;
+        }
+      }
+    }
+    return result;
+  }
+
+  private void refresh() {
+    if (isRebuildRequired) {
+      myGrams.clear();
+      myTexts.clear();
+      myInvalidObjects.clear();
+      for (T object : getAllObjects()) {
+        add(object);
+      }
+      isRebuildRequired = false;
+      return;
+    }
+    for (T object : myInvalidObjects) {
+      remove(object);
+      if (exists(object)) {
+        add(object);
+      }
+    }
+    myInvalidObjects.clear();
+  }
+
+  private void add(T object) {
+    List<String> texts = Lists.newArrayList();
+    for (String text : getTexts(object)) {
+      if (text != null && !text.isEmpty()) {
+        texts.add(text.toLowerCase());
+      }
+    }
+    myTexts.put(object, texts);
+    for (String gram : getGrams(texts)) {
+      Set<T> objects = myGrams.get(gram);
+      if (objects == null) {
+        objects = Sets.newIdentityHashSet();
+        myGrams.put(gram, objects);
+      }
+      objects.add(object);
+    }
+  }
+
+  private void remove(T object) {
+    List<String> texts = myTexts.remove(object);
+    if (texts == null) {
+      return;
+    }
+    for (String gram : getGrams(texts)) {
+      Set<T> objects = myGrams.get(gram);
+      if (objects != null) {
+        objects.remove(object);
+        if (objects.isEmpty()) {
+          myGrams.remove(gram);
+        }
+      }
+    }
+  }
+
+  private static Set<String> getGrams(List<String> texts) {
+    Set<String> words = Sets.newHashSet();
+    for (String text : texts) {
+      words.addAll(getWords(text));
+    }
+    Set<String> result = Sets.newHashSet();
+    for (String word : words) {
+      for (int start = 0; start < word.length(); start++) {
+        for (int end = start + 1; end <= Math.min(start + GRAM_LENGTH, word.length()); end++) {
+          result.add(word.substring(start, end));
+        }
+      }
+    }
+    return result;
+  }
+
+  private static List<String> getWords(String text) {
+    List<String> result = Lists.newArrayList();
+    int start = -1;
+    for (int i = 0; i <= text.length(); i++) {
+      boolean isWordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+      if (isWordChar && start == -1) {
+        start = i;
+      } else if (!isWordChar && start != -1) {
+        result.add(text.substring(start, i));
+        start = -1;
+      }
+    }
+    return result;
+  }
+}
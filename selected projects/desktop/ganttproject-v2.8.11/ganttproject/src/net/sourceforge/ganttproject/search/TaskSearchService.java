@@ -19,13 +19,29 @@ along with GanttProject.  If not, see <http://www.gnu.org/licenses/>.
 package net.sourceforge.ganttproject.search;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
+import com.google.common.collect.Lists;
+
+import net.sourceforge.ganttproject.CustomProperty;
+import net.sourceforge.ganttproject.CustomPropertyListener;
 import net.sourceforge.ganttproject.IGanttProject;
+import net.sourceforge.ganttproject.ProjectEventListener;
 import net.sourceforge.ganttproject.gui.UIFacade;
+import net.sourceforge.ganttproject.task.CustomPropertyEvent;
 import net.sourceforge.ganttproject.task.Task;
+import net.sourceforge.ganttproject.task.TaskManager;
+import net.sourceforge.ganttproject.task.event.TaskListenerAdapter;
+import net.sourceforge.ganttproject.task.event.TaskPropertyEvent;
 
-/** Search service for tasks */
+/**
+ * Search service for tasks. Searches in task names, notes, identifiers and custom column values
+ * using {@link SearchIndex} which is kept up to date by task model events.
+ */
 public class TaskSearchService extends SearchServiceBase<TaskSearchService.MySearchResult, Task> {
   static class MySearchResult extends SearchResult<Task> {
     public MySearchResult(Task t, TaskSearchService searchService) {
@@ -33,19 +49,24 @@ public class TaskSearchService extends SearchServiceBase<TaskSearchService.MySea
     }
   }
 
+  private SearchIndex<Task> myIndex;
+
   public TaskSearchService() {
     super(UIFacade.GANTT_INDEX);
   }
 
   @Override
   public List<MySearchResult> search(String query) {
-    query = query.toLowerCase();
-    List<MySearchResult> results = new ArrayList<MySearchResult>();
-    for (Task t : getProject().getTaskManager().getTasks()) {
-      if (isNotEmptyAndContains(t.getName(), query) || isNotEmptyAndContains(t.getNotes(), query)
-          || isNotEmptyAndContains(String.valueOf(t.getTaskID()), query)) {
-        results.add(new MySearchResult(t, this));
+    List<Task> tasks = myIndex.search(query);
+    Collections.sort(tasks, new Comparator<Task>() {
+      @Override
+      public int compare(Task t1, Task t2) {
+        return t1.getTaskID() - t2.getTaskID();
       }
+    });
+    List<MySearchResult> results = new ArrayList<MySearchResult>();
+    for (Task t : tasks) {
+      results.add(new MySearchResult(t, this));
     }
     return results;
   }
@@ -53,6 +74,61 @@ public class TaskSearchService extends SearchServiceBase<TaskSearchService.MySea
   @Override
   public void init(IGanttProject project, UIFacade uiFacade) {
     super.init(project, uiFacade.getTaskTree(), uiFacade);
+    if (myIndex == null) {
+      myIndex = createIndex(project);
+    }
   }
 
+  private static SearchIndex<Task> createIndex(final IGanttProject project) {
+    final TaskManager taskManager = project.getTaskManager();
+    final SearchIndex<Task> index = new SearchIndex<Task>() {
+      @Override
+      protected Collection<Task> getAllObjects() {
+        return Arrays.asList(taskManager.getTasks());
+      }
+
+      @Override
+      protected boolean exists(Task t) {
+        return taskManager.getTask(t.getTaskID()) == t;
+      }
+
+      @Override
+      protected List<String> getTexts(Task t) {
+        List<String> result = Lists.newArrayList(t.getName(), t.getNotes(), String.valueOf(t.getTaskID()));
+        for (CustomProperty property : t.getCustomValues().getCustomProperties()) {
+          result.add(property.getValueAsString());
+        }
+        return result;
+      }
+    };
+    taskManager.addTaskListener(new TaskListenerAdapter() {
+      @Override
+      public void taskTextChanged(TaskPropertyEvent e) {
+        index.invalidate(e.getTask());
+      }
+
+      @Override
+      public void taskModelReset() {
+        index.invalidateAll();
+      }
+    });
+    project.getTaskCustomColumnManager().addListener(new CustomPropertyListener() {
+      @Override
+      public void customPropertyChange(CustomPropertyEvent event) {
+        index.invalidateAll();
+      }
+    });
+    project.addProjectEventListener(new ProjectEventListener.Stub() {
+      @Override
+      public void projectOpened() {
+        index.invalidateAll();
+      }
+
+      @Override
+      public void projectClosed() {
+        index.invalidateAll();
+      }
+    });
+    return index;
+  }
 }
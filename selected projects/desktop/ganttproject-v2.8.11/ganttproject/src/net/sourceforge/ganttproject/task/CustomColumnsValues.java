@@ -44,6 +44,7 @@ public class CustomColumnsValues implements CustomPropertyHolder, Cloneable {
    */
   private final Map<String, Object> mapCustomColumnValue = new HashMap<String, Object>();
   private final CustomPropertyManager myManager;
+  private Runnable myChangeListener;
 
   /**
    * Creates an instance of CustomColumnsValues.
@@ -52,9 +53,17 @@ public class CustomColumnsValues implements CustomPropertyHolder, Cloneable {
     myManager = customPropertyManager;
   }
 
+  /**
+   * Sets a listener which runs after any value is set. Clones don't inherit it.
+   */
+  public void setChangeListener(Runnable listener) {
+    myChangeListener = listener;
+  }
+
   public void setValue(CustomPropertyDefinition def, Object value) throws CustomColumnsException {
     if (value == null) {
       mapCustomColumnValue.remove(def.getID());
+      fireValueChanged();
       return;
     }
     Class<?> c1 = def.getType();
@@ -64,6 +73,13 @@ public class CustomColumnsValues implements CustomPropertyHolder, Cloneable {
           + ". value class=" + c2 + ", column class=" + c1);
     }
     mapCustomColumnValue.put(def.getID(), value);
+    fireValueChanged();
+  }
+
+  private void fireValueChanged() {
+    if (myChangeListener != null) {
+      myChangeListener.run();
+    }
   }
 
   public Object getValue(CustomPropertyDefinition def) {
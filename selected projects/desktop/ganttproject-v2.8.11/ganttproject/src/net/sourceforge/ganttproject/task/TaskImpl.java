@@ -29,6 +29,7 @@ import biz.ganttproject.core.time.GanttCalendar;
 import biz.ganttproject.core.time.TimeDuration;
 import biz.ganttproject.core.time.TimeDurationImpl;
 import biz.ganttproject.core.time.impl.GPTimeUnitStack;
+import com.google.common.base.Objects;
 import com.google.common.collect.ImmutableList;
 import net.sourceforge.ganttproject.GPLogger;
 import net.sourceforge.ganttproject.chart.MilestoneTaskFakeActivity;
@@ -132,6 +133,13 @@ public class TaskImpl implements Task {
 
   private boolean isUnplugged = false;
 
+  private final Runnable myCustomValuesListener = new Runnable() {
+    @Override
+    public void run() {
+      fireTextChanged();
+    }
+  };
+
   public final static int NONE = 0;
 
   public final static int EARLIESTBEGIN = 1;
@@ -155,6 +163,7 @@ public class TaskImpl implements Task {
     myColor = null;
 
     customValues = new CustomColumnsValues(myManager.getCustomPropertyManager());
+    customValues.setChangeListener(myCustomValuesListener);
   }
 
   protected TaskImpl(TaskManagerImpl manager, TaskImpl copy, boolean isUnplugged) {
@@ -192,6 +201,7 @@ public class TaskImpl implements Task {
     myDependencySliceAsDependee = new TaskDependencySliceAsDependee(this, myManager.getDependencyCollection());
 
     customValues = (CustomColumnsValues) copy.getCustomValues().clone();
+    customValues.setChangeListener(myCustomValuesListener);
 
     recalculateActivities();
   }
@@ -940,7 +950,11 @@ public class TaskImpl implements Task {
 
   @Override
   public void setName(String name) {
+    String oldName = myName;
     myName = (name == null ? null : name.trim());
+    if (!Objects.equal(oldName, myName)) {
+      fireTextChanged();
+    }
   }
 
   @Override
@@ -1135,7 +1149,22 @@ public class TaskImpl implements Task {
 
   @Override
   public void setNotes(String notes) {
+    String oldNotes = myNotes;
     myNotes = notes;
+    if (!Objects.equal(oldNotes, myNotes)) {
+      fireTextChanged();
+    }
+  }
+
+  /**
+   * Name, notes and custom values may be changed directly rather than through a mutator, e.g. from
+   * the task tree, and caches of task texts such as search index need to know about such changes.
+   * Unplugged clones and tasks which are being built are not registered, so nobody is notified.
+   */
+  private void fireTextChanged() {
+    if (!isUnplugged && myManager.isRegistered(this)) {
+      myManager.fireTaskTextChanged(this);
+    }
   }
 
   @Override
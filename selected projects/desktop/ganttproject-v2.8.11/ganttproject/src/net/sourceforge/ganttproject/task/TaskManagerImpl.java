@@ -44,7 +44,6 @@ import net.sourceforge.ganttproject.resource.HumanResource;
 import net.sourceforge.ganttproject.resource.HumanResourceManager;
 import net.sourceforge.ganttproject.task.algorithm.AdjustTaskBoundsAlgorithm;
 import net.sourceforge.ganttproject.task.algorithm.AlgorithmCollection;
-import net.sourceforge.ganttproject.task.algorithm.CriticalPathAlgorithm;
 import net.sourceforge.ganttproject.task.algorithm.CriticalPathAlgorithmImpl;
 import net.sourceforge.ganttproject.task.algorithm.DependencyGraph;
 import net.sourceforge.ganttproject.task.algorithm.FindPossibleDependeesAlgorithm;
@@ -137,6 +136,8 @@ public class TaskManagerImpl implements TaskManager {
 
   private final SchedulerImpl myScheduler = new SchedulerImpl(myDependencyGraph, myHierarchySupplier);
 
+  private final CriticalPathAlgorithmImpl myCriticalPathAlgorithm;
+
   private boolean areEventsEnabled = true;
 
   private static class TaskMap {
@@ -268,9 +269,10 @@ public class TaskManagerImpl implements TaskManager {
       }
     };
     ChartBoundsAlgorithm alg5 = new ChartBoundsAlgorithm();
-    CriticalPathAlgorithm alg6 = new CriticalPathAlgorithmImpl(this, getCalendar());
-    myAlgorithmCollection = new AlgorithmCollection(this, alg1, alg2, alg3, alg4, alg5, alg6, myScheduler);
+    myCriticalPathAlgorithm = new CriticalPathAlgorithmImpl(this, myDependencyGraph, getCalendar());
+    myAlgorithmCollection = new AlgorithmCollection(this, alg1, alg2, alg3, alg4, alg5, myCriticalPathAlgorithm, myScheduler);
     addTaskListener(myScheduler.getTaskModelListener());
+    addTaskListener(myCriticalPathAlgorithm.getTaskModelListener());
   }
 
   private CustomPropertyListener getCustomPropertyListener() {
@@ -322,10 +324,12 @@ public class TaskManagerImpl implements TaskManager {
     Task[] nestedTasks = getTaskHierarchy().getDeepNestedTasks(tasktoRemove);
     for (Task t : nestedTasks) {
       t.delete();
+      fireTaskTextChanged(t);
     }
     Task container = getTaskHierarchy().getContainer(tasktoRemove);
     myTaskMap.removeTask(tasktoRemove);
     tasktoRemove.delete();
+    fireTaskTextChanged(tasktoRemove);
     fireTaskRemoved(container, tasktoRemove);
   }
 
@@ -434,6 +438,7 @@ public class TaskManagerImpl implements TaskManager {
     myTaskMap.addTask(task);
     myMaxID.set(Math.max(taskID + 1, myMaxID.get()));
     myDependencyGraph.addTask(task);
+    fireTaskTextChanged(task);
   }
 
   boolean isRegistered(TaskImpl task) {
@@ -698,6 +703,7 @@ public class TaskManagerImpl implements TaskManager {
         for (Task t : getTasks()) {
           t.setEnd(null);
         }
+        myCriticalPathAlgorithm.invalidateAll();
         myScheduler.run();
       }
     };
@@ -713,7 +719,8 @@ public class TaskManagerImpl implements TaskManager {
   }
 
   void fireTaskScheduleChanged(Task changedTask, GanttCalendar oldStartDate, GanttCalendar oldFinishDate) {
-    myScheduler.run();
+    myScheduler.run(changedTask);
+    myCriticalPathAlgorithm.invalidate(changedTask);
     if (areEventsEnabled) {
       TaskScheduleEvent e = new TaskScheduleEvent(changedTask, oldStartDate, oldFinishDate, changedTask.getStart(),
           changedTask.getEnd());
@@ -783,6 +790,14 @@ public class TaskManagerImpl implements TaskManager {
     }
   }
 
+  void fireTaskTextChanged(Task task) {
+    TaskPropertyEvent e = new TaskPropertyEvent(task);
+    for (int i = 0; i < myListeners.size(); i++) {
+      TaskListener next = myListeners.get(i);
+      next.taskTextChanged(e);
+    }
+  }
+
   private void fireTaskModelReset() {
     if (areEventsEnabled) {
       for (int i = 0; i < myListeners.size(); i++) {
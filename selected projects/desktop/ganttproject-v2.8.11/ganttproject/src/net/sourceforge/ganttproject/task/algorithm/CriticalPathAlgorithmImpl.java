@@ -19,217 +19,257 @@ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
 package net.sourceforge.ganttproject.task.algorithm;
 
 import biz.ganttproject.core.calendar.GPCalendarCalc;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import net.sourceforge.ganttproject.GPLogger;
 import net.sourceforge.ganttproject.task.Task;
+import net.sourceforge.ganttproject.task.TaskContainmentHierarchyFacade;
 import net.sourceforge.ganttproject.task.TaskManager;
+import net.sourceforge.ganttproject.task.algorithm.DependencyGraph.Node;
 import net.sourceforge.ganttproject.task.dependency.TaskDependency;
 import net.sourceforge.ganttproject.task.dependency.TaskDependencyConstraint.Collision;
+import net.sourceforge.ganttproject.task.event.TaskDependencyEvent;
+import net.sourceforge.ganttproject.task.event.TaskListener;
+import net.sourceforge.ganttproject.task.event.TaskListenerAdapter;
 
-import java.util.*;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
 import java.util.logging.Logger;
 
+/**
+ * Calculates latest start and finish dates of tasks walking backwards from the project end,
+ * and marks as critical the tasks which can't start later than they do.
+ *
+ * Tasks are visited in the descending order of their dependency graph levels, so that every
+ * task is visited after its dependants and its supertask. Calculated dates are kept between
+ * the calls as primitive timestamps, and when only a few tasks change their dates or durations,
+ * e.g. when the scheduler moves them, the next call recalculates only these tasks and those upstream
+ * which change their latest dates as a result. The full pass is used when the graph structure,
+ * dependency properties, the calendar or the project end change.
+ */
 public class CriticalPathAlgorithmImpl implements CriticalPathAlgorithm {
   private static final Logger ourLogger = GPLogger.getLogger(CriticalPathAlgorithm.class);
 
+  private static final Comparator<Slot> BACKWARD_ORDER = new Comparator<Slot>() {
+    @Override
+    public int compare(Slot o1, Slot o2) {
+      int result = o2.getLevel() - o1.getLevel();
+      return result == 0 ? o1.task.getTaskID() - o2.task.getTaskID() : result;
+    }
+  };
+
   private final TaskManager myTaskManager;
+  private final DependencyGraph myGraph;
   private final GPCalendarCalc myCalendar;
+  private final TaskListener myTaskListener;
+
+  private final Map<Task, Slot> mySlots = Maps.newHashMap();
+  private final Set<Task> myChangedTasks = Sets.newLinkedHashSet();
+  private long myProjectEnd;
+  private boolean isFullRunRequired = true;
 
-  public CriticalPathAlgorithmImpl(TaskManager taskManager, GPCalendarCalc calendar) {
+  public CriticalPathAlgorithmImpl(TaskManager taskManager, DependencyGraph graph, GPCalendarCalc calendar) {
     myTaskManager = taskManager;
+    myGraph = graph;
     myCalendar = calendar;
-  }
-
-  static class Node {
-    private final Task task;
-    private final List<Task> dependees = new ArrayList<Task>();
-    private int numDependants;
-    private final Date est;
-    private final Date eft;
-    private Date lst;
-    private Date lft;
-    private boolean lftFromSupertask = false;
-
-    public Node(Task t, Set<Task> taskScope) {
-      assert t != null;
-      task = t;
-      est = t.getStart().getTime();
-      eft = t.getEnd().getTime();
-      lst = null;
-      lft = null;
-      numDependants = 0;
-      TaskDependency[] deps = t.getDependenciesAsDependee().toArray();
-      for (int i = 0; i < deps.length; i++) {
-        if (taskScope.contains(deps[i].getDependant())) {
-          numDependants++;
-        }
+    myGraph.addListener(new DependencyGraph.Listener() {
+      @Override
+      public void onChange() {
+        invalidateAll();
       }
-      collectDependees(t, taskScope);
-    }
-
-    public Node(Task t, Date est, Date eft, Date lst, Date lft, int numDependants, Set<Task> taskScope) {
-      task = t;
-      this.est = est;
-      this.eft = eft;
-      this.lst = lst;
-      this.lft = lft;
-      this.numDependants = numDependants;
-      if (task != null) {
-        collectDependees(task, taskScope);
+    });
+    myTaskListener = new TaskListenerAdapter() {
+      @Override
+      public void dependencyChanged(TaskDependencyEvent e) {
+        invalidateAll();
       }
-    }
 
-    void collectDependees(Task task, Set<Task> taskScope) {
-      TaskDependency[] deps = task.getDependenciesAsDependant().toArray();
-      for (TaskDependency dep : deps) {
-        if (taskScope.contains(dep.getDependee())) {
-          dependees.add(dep.getDependee());
-        }
+      @Override
+      public void taskModelReset() {
+        invalidateAll();
       }
+    };
+  }
+
+  /** Latest dates of a task calculated in the last pass */
+  private static class Slot {
+    private final Task task;
+    private final Node node;
+    private long lst;
+    private long lft;
+    private boolean isCritical;
+
+    Slot(Task task, Node node) {
+      this.task = task;
+      this.node = node;
     }
 
-    boolean isCritical() {
-      return est.equals(lst);
+    int getLevel() {
+      return node == null ? 0 : node.getLevel();
     }
 
     @Override
     public String toString() {
-      return task == null ? "[Deadline node " + eft + "]" : task.toString();
+      return task.toString();
+    }
+  }
+
+  public TaskListener getTaskModelListener() {
+    return myTaskListener;
+  }
+
+  /**
+   * Notifies this algorithm that start, end or duration of the given task has changed.
+   */
+  public void invalidate(Task changedTask) {
+    if (!isFullRunRequired) {
+      myChangedTasks.add(changedTask);
     }
   }
 
+  /**
+   * Notifies this algorithm that the previously calculated dates can't be reused.
+   */
+  public void invalidateAll() {
+    isFullRunRequired = true;
+    myChangedTasks.clear();
+  }
+
   @Override
   public Task[] getCriticalTasks() {
-    Date projectEnd = myTaskManager.getProjectEnd();
-    Node fakeFinalNode = new Node(null, projectEnd, projectEnd, projectEnd, projectEnd, 0, null);
     Task[] tasks = myTaskManager.getTasks();
     if (tasks.length == 0) {
+      mySlots.clear();
+      invalidateAll();
       return tasks;
     }
-    Map<Task, Node> task_node = createTaskNodeMap(tasks, fakeFinalNode);
-    for (Node curNode : task_node.values()) {
-      curNode.numDependants += myTaskManager.getTaskHierarchy().getDepth(curNode.task) - 1;
+    long projectEnd = myTaskManager.getProjectEnd().getTime();
+    myGraph.checkLayerValidity();
+    // Tasks may be added or removed with events disabled, and when many tasks have changed
+    // visiting them one by one doesn't pay off
+    if (isFullRunRequired || projectEnd != myProjectEnd || !hasSlots(tasks)
+        || myChangedTasks.size() > tasks.length / 4) {
+      myProjectEnd = projectEnd;
+      runFull(tasks);
+    } else {
+      runIncremental();
     }
-    assert fakeFinalNode.dependees.size() > 0;
+    myChangedTasks.clear();
+    isFullRunRequired = false;
 
-    LinkedHashSet<Task> result = new LinkedHashSet<Task>();
-    Processor p = new Processor(task_node, fakeFinalNode);
-    result.addAll(p.run());
+    List<Task> result = Lists.newArrayList();
+    for (Task t : tasks) {
+      if (mySlots.get(t).isCritical) {
+        result.add(t);
+      }
+    }
     return result.toArray(new Task[result.size()]);
   }
 
-  private Map<Task, Node> createTaskNodeMap(Task[] tasks, Node deadlineNode) {
-    Set<Task> taskScope = new HashSet<Task>(Arrays.asList(tasks));
-    Map<Task, Node> task_node = new HashMap<Task, Node>();
-    for (Task task : tasks) {
-      Node newNode = new Node(task, taskScope);
-      deadlineNode.dependees.add(task);
-      newNode.numDependants++;
-      task_node.put(task, newNode);
+  /**
+   * @return true if the last pass has calculated the dates of exactly the given tasks
+   */
+  private boolean hasSlots(Task[] tasks) {
+    if (mySlots.size() != tasks.length) {
+      return false;
     }
-    return task_node;
+    for (Task t : tasks) {
+      if (!mySlots.containsKey(t)) {
+        return false;
+      }
+    }
+    return true;
   }
 
-  class Processor {
-    private final Map<Task, Node> myTask_Node;
-    private LinkedList<Node> myQueue = new LinkedList<Node>();
-    private final ArrayList<Task> myResult = new ArrayList<Task>();
-    private final Node myDeadlineNode;
-
-    Processor(Map<Task, Node> task_node, Node deadlineNode) {
-      myDeadlineNode = deadlineNode;
-      myTask_Node = task_node;
-      myQueue.add(myDeadlineNode);
+  private void runFull(Task[] tasks) {
+    mySlots.clear();
+    List<Slot> slots = Lists.newArrayListWithExpectedSize(tasks.length);
+    for (Task t : tasks) {
+      Slot slot = new Slot(t, myGraph.getNode(t));
+      mySlots.put(t, slot);
+      slots.add(slot);
     }
-
-    boolean hasMoreInput() {
-      return !myQueue.isEmpty();
+    Collections.sort(slots, BACKWARD_ORDER);
+    TaskContainmentHierarchyFacade hierarchy = myTaskManager.getTaskHierarchy();
+    for (Slot slot : slots) {
+      calculateLatestDates(slot, hierarchy);
     }
+  }
 
-    List<Task> run() {
-      while (hasMoreInput()) {
-        myQueue = processQueue();
+  private void runIncremental() {
+    TaskContainmentHierarchyFacade hierarchy = myTaskManager.getTaskHierarchy();
+    PriorityQueue<Slot> queue = new PriorityQueue<Slot>(11, BACKWARD_ORDER);
+    Set<Slot> queued = Sets.newHashSet();
+    for (Task t : myChangedTasks) {
+      Slot slot = mySlots.get(t);
+      if (slot != null && queued.add(slot)) {
+        queue.add(slot);
+      }
+    }
+    while (!queue.isEmpty()) {
+      Slot slot = queue.poll();
+      long oldLst = slot.lst;
+      long oldLft = slot.lft;
+      boolean wasCritical = slot.isCritical;
+      calculateLatestDates(slot, hierarchy);
+      // Duration of a changed task participates in the latest dates of its dependees even if
+      // its own latest start stays the same
+      boolean isChanged = myChangedTasks.contains(slot.task);
+      if (isChanged || slot.lst != oldLst) {
+        for (TaskDependency dep : slot.task.getDependenciesAsDependant().toArray()) {
+          enqueue(mySlots.get(dep.getDependee()), queue, queued);
+        }
       }
-      return myResult;
-    }
-
-    private LinkedList<Node> processQueue() {
-      LinkedList<Node> newQueue = new LinkedList<Node>();
-      for (Iterator<Node> nodes = myQueue.iterator(); nodes.hasNext();) {
-        Node curNode = nodes.next();
-        if (curNode.lft == null || curNode.lftFromSupertask) {
-          calculateLatestDates(curNode);
-          Task[] nestedTasks = myTaskManager.getTaskHierarchy().getNestedTasks(curNode.task);
-          for (Task nestedTask : nestedTasks) {
-            Node nested = myTask_Node.get(nestedTask);
-            nested.numDependants -= (myTaskManager.getTaskHierarchy().getDepth(nested.task) - 1);
-            assert nested.numDependants >= 0;
-            if (nested.numDependants == 0) {
-              newQueue.add(nested);
-            }
-            if (curNode.isCritical()) {
-              nested.lft = curNode.lft;
-              nested.lftFromSupertask = true;
-            }
-          }
-
-          if (curNode.isCritical()) {
-            ourLogger.fine("\n\nNode=" + curNode + " is critical\n\n");
-            myResult.add(curNode.task);
-          }
-        } else {
-          assert curNode.task == null || curNode.lftFromSupertask;
+      if (isChanged || slot.lft != oldLft || slot.isCritical != wasCritical) {
+        for (Task nested : hierarchy.getNestedTasks(slot.task)) {
+          enqueue(mySlots.get(nested), queue, queued);
         }
-        enqueueDependees(newQueue, curNode);
       }
-      return newQueue;
     }
+  }
 
-    private void calculateLatestDates(Node curNode) {
-      ourLogger.fine("Calculating latest dates for:" + curNode);
-      curNode.lft = findLatestFinishTime(myTask_Node, curNode);
-      curNode.lst = myCalendar.shiftDate(curNode.lft,
-          myTaskManager.createLength(-curNode.task.getDuration().getLength()));
-      ourLogger.fine("latest start date=" + curNode.lst);
+  private static void enqueue(Slot slot, PriorityQueue<Slot> queue, Set<Slot> queued) {
+    if (slot != null && queued.add(slot)) {
+      queue.add(slot);
     }
+  }
 
-    private void enqueueDependees(LinkedList<Node> newQueue, Node curNode) {
-      for (int i = 0; i < curNode.dependees.size(); i++) {
-        Task dependeeTask = curNode.dependees.get(i);
-        Node dependeeNode = myTask_Node.get(dependeeTask);
-        assert dependeeNode.numDependants > 0;
-        if (--dependeeNode.numDependants == 0) {
-          newQueue.add(dependeeNode);
-        }
-      }
+  /**
+   * Latest finish is the earliest of the project end, the latest finish of the supertask if it is critical,
+   * and the dates which are acceptable for the dependants. All of them are expected to be calculated already.
+   */
+  private void calculateLatestDates(Slot slot, TaskContainmentHierarchyFacade hierarchy) {
+    long lft = myProjectEnd;
+    Slot supertask = mySlots.get(hierarchy.getContainer(slot.task));
+    if (supertask != null && supertask.isCritical) {
+      lft = Math.min(lft, supertask.lft);
     }
-
-    private Date findLatestFinishTime(Map<Task, Node> task_node, Node curNode) {
-      Date result = curNode.lft;
-      Node resultNode = null;
-      TaskDependency[] deps = curNode.task.getDependenciesAsDependee().toArray();
-      for (TaskDependency dep : deps) {
-        Node depNode = task_node.get(dep.getDependant());
-        if (depNode != null) {
-          Date lft = findLatestFinishTime(curNode, depNode, dep);
-          if (result == null || result.after(lft)) {
-            result = lft;
-            resultNode = depNode;
-          }
-        }
-      }
-      if (result == null || result.after(myDeadlineNode.lft)) {
-        result = myDeadlineNode.lft;
+    for (TaskDependency dep : slot.task.getDependenciesAsDependee().toArray()) {
+      Slot dependant = mySlots.get(dep.getDependant());
+      if (dependant != null) {
+        lft = Math.min(lft, findLatestFinishTime(dependant, dep));
       }
-      ourLogger.fine("latest finish time=" + result + " (defined by:" + resultNode + ")");
-      return result;
     }
+    slot.lft = lft;
+    slot.lst = myCalendar.shiftDate(new Date(lft),
+        myTaskManager.createLength(-slot.task.getDuration().getLength())).getTime();
+    slot.isCritical = slot.task.getStart().getTime().getTime() == slot.lst;
+    if (slot.isCritical) {
+      ourLogger.fine("Task=" + slot + " is critical");
+    }
+  }
 
-    Date findLatestFinishTime(Node curNode, Node depNode, TaskDependency dep) {
-      Collision backwardCollision = dep.getConstraint().getBackwardCollision(depNode.lst);
-      if (backwardCollision == null) {
-        return depNode.lst;
-      }
-      return backwardCollision.getAcceptableStart().getTime();
+  private static long findLatestFinishTime(Slot dependant, TaskDependency dep) {
+    Collision backwardCollision = dep.getConstraint().getBackwardCollision(new Date(dependant.lst));
+    if (backwardCollision == null) {
+      return dependant.lst;
     }
+    return backwardCollision.getAcceptableStart().getTime().getTime();
   }
 }
@@ -58,6 +58,10 @@ import java.util.Set;
  * Graph is topologically ordered, and each node knows its level. Adding or removing dependencies or moving tasks
  * in the task hierarchy may change node levels.
  *
+ * When many tasks and dependencies are added at once, e.g. when project file is being loaded, graph
+ * can be switched to the bulk load mode. In this mode edges are only recorded, and node levels are calculated
+ * in a single topological sort pass when bulk load finishes, rather than being propagated after every edge.
+ *
  * @author dbarashev
  */
 public class DependencyGraph {
@@ -485,6 +489,15 @@ public class DependencyGraph {
       return true;
     }
 
+    void setLayer(GraphData data, int level) {
+      if (level == myData.getLevel()) {
+        return;
+      }
+      data.removeFromLevel(myData.getLevel(), this);
+      myData = myData.setLevel(level);
+      data.addToLevel(level, this);
+    }
+
     public int getLevel() {
       return myData.getLevel();
     }
@@ -634,6 +647,8 @@ public class DependencyGraph {
 
   private GraphData myData = new GraphData(myTxn);
 
+  private boolean isBulkLoading;
+
   public DependencyGraph(Supplier<TaskContainmentHierarchyFacade> taskHierarchy) {
     this(taskHierarchy, new Logger() {
       @Override
@@ -728,6 +743,13 @@ public class DependencyGraph {
   private void addEdge(DependencyEdge edge) {
     edge.getSrc().addOutgoing(edge);
     edge.getDst().addIncoming(edge);
+    if (isBulkLoading) {
+      return;
+    }
+    promoteLayers(edge);
+  }
+
+  private void promoteLayers(DependencyEdge edge) {
     PriorityQueue<Node> queue = new PriorityQueue<DependencyGraph.Node>(11, new Comparator<Node>() {
       @Override
       public int compare(Node o1, Node o2) {
@@ -817,6 +839,9 @@ public class DependencyGraph {
   private void removeEdge(DependencyEdge edge) {
     edge.getSrc().removeOutgoing(edge);
     edge.getDst().removeIncoming(edge);
+    if (isBulkLoading) {
+      return;
+    }
 
     Deque<DependencyEdge> queue = new LinkedList<DependencyEdge>();
     queue.add(edge);
@@ -904,7 +929,7 @@ public class DependencyGraph {
   }
 
   private void fireGraphChanged() {
-    if (myTxn.isRunning()) {
+    if (myTxn.isRunning() || isBulkLoading) {
       return;
     }
     for (Listener l : myListeners) {
@@ -933,6 +958,85 @@ public class DependencyGraph {
     myTxn.rollback();
   }
 
+  /**
+   * Switches graph to the bulk load mode. Until {@link #finishBulkLoad()} is called, node levels
+   * are not updated and listeners are not notified about changes.
+   */
+  public void startBulkLoad() {
+    isBulkLoading = true;
+  }
+
+  /**
+   * Calculates levels of all nodes and notifies listeners, if graph was in the bulk load mode.
+   */
+  public void finishBulkLoad() {
+    if (!isBulkLoading) {
+      return;
+    }
+    isBulkLoading = false;
+    calculateLayers();
+    fireGraphChanged();
+  }
+
+  public boolean isBulkLoading() {
+    return isBulkLoading;
+  }
+
+  /**
+   * Assigns levels to all nodes in one pass of Kahn's topological sort, with the level of each node
+   * being the length of the longest path from a source node. Nodes which are left unsorted
+   * are on dependency loops or downstream of them. Such nodes are processed edge by edge, the same way
+   * as in the regular mode, so that loops are reported and ignored.
+   */
+  private void calculateLayers() {
+    Map<Node, Integer> inDegrees = Maps.newHashMapWithExpectedSize(myNodeMap.size());
+    Map<Node, Integer> levels = Maps.newHashMapWithExpectedSize(myNodeMap.size());
+    Deque<Node> queue = Lists.newLinkedList();
+    for (Node node : myNodeMap.values()) {
+      int inDegree = node.getIncoming().size();
+      inDegrees.put(node, inDegree);
+      if (inDegree == 0) {
+        queue.add(node);
+        levels.put(node, 0);
+      }
+    }
+    myData = myData.withTransaction();
+    while (!queue.isEmpty()) {
+      Node node = queue.pollFirst();
+      int level = levels.get(node);
+      node.setLayer(myData, level);
+      inDegrees.remove(node);
+      for (DependencyEdge edge : node.getOutgoing()) {
+        Node dst = edge.getDst();
+        Integer dstLevel = levels.get(dst);
+        levels.put(dst, dstLevel == null ? level + 1 : Math.max(dstLevel, level + 1));
+        int inDegree = inDegrees.get(dst) - 1;
+        inDegrees.put(dst, inDegree);
+        if (inDegree == 0) {
+          queue.add(dst);
+        }
+      }
+    }
+    if (inDegrees.isEmpty()) {
+      return;
+    }
+    List<Node> unsorted = Lists.newArrayList(inDegrees.keySet());
+    Collections.sort(unsorted, new Comparator<Node>() {
+      @Override
+      public int compare(Node o1, Node o2) {
+        return o1.getTask().getTaskID() - o2.getTask().getTaskID();
+      }
+    });
+    for (Node node : unsorted) {
+      node.setLayer(myData, 0);
+    }
+    for (Node node : unsorted) {
+      for (DependencyEdge edge : Lists.newArrayList(node.getIncoming())) {
+        promoteLayers(edge);
+      }
+    }
+  }
+
   public void setLogger(Logger logger) {
     myLogger = logger;
   }
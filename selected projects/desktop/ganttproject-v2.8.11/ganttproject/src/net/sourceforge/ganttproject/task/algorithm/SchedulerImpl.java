@@ -29,6 +29,7 @@ import com.google.common.base.Supplier;
 import com.google.common.collect.BoundType;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Range;
+import com.google.common.collect.Sets;
 import net.sourceforge.ganttproject.GPLogger;
 import net.sourceforge.ganttproject.task.Task;
 import net.sourceforge.ganttproject.task.TaskContainmentHierarchyFacade;
@@ -42,19 +43,46 @@ import net.sourceforge.ganttproject.task.event.TaskListener;
 import net.sourceforge.ganttproject.task.event.TaskListenerAdapter;
 
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
 import java.util.logging.Logger;
 
 /**
  * This class walk the dependency graph and updates start and end dates of tasks
  * according to information returned by dependency edges.
  *
+ * Besides the full run which visits every node, scheduler can run incrementally
+ * when a few tasks change their dates. Incremental run visits nodes in the same order
+ * as the full run (by layer and then by task ID) but only those which are downstream
+ * of the changed tasks, and stops propagating at nodes which keep their dates. Other nodes
+ * are not visited because they would not change anyway, provided that the graph was
+ * consistently scheduled before the change. Whenever that can't be guaranteed
+ * (graph structure has changed, scheduler was disabled, calendar has changed) the full run is used.
+ *
+ * Scheduler doesn't run while the graph is in the bulk load mode, because node levels are not valid
+ * until bulk load finishes. Finishing bulk load notifies graph listeners, and that triggers the full run.
+ *
  * @author dbarashev
  */
 public class SchedulerImpl extends AlgorithmBase {
+  private static final Comparator<Node> SCHEDULING_ORDER = new Comparator<Node>() {
+    @Override
+    public int compare(Node o1, Node o2) {
+      int result = o1.getLevel() - o2.getLevel();
+      return result == 0 ? o1.getTask().getTaskID() - o2.getTask().getTaskID() : result;
+    }
+  };
+
   private final DependencyGraph myGraph;
   private boolean isRunning;
+  private boolean isFullRunRequired = true;
+  private final Set<Task> myChangedTasks = Sets.newLinkedHashSet();
+  private PriorityQueue<Node> myQueue;
+  private Set<Node> myQueuedNodes;
+  private Node myCurrentNode;
   private final Supplier<TaskContainmentHierarchyFacade> myTaskHierarchy;
   private final TaskListener myTaskListener;
 
@@ -63,6 +91,7 @@ public class SchedulerImpl extends AlgorithmBase {
     myGraph.addListener(new DependencyGraph.Listener() {
       @Override
       public void onChange() {
+        isFullRunRequired = true;
         run();
       }
     });
@@ -70,6 +99,7 @@ public class SchedulerImpl extends AlgorithmBase {
     myTaskListener = new TaskListenerAdapter() {
       @Override
       public void dependencyChanged(TaskDependencyEvent e) {
+        isFullRunRequired = true;
         run();
       }
     };
@@ -89,17 +119,57 @@ public class SchedulerImpl extends AlgorithmBase {
 
   @Override
   public void run() {
-    if (!isEnabled() || isRunning) {
+    if (!isEnabled() || isRunning || myGraph.isBulkLoading()) {
+      isFullRunRequired = true;
       return;
     }
     isRunning = true;
     try {
       doRun();
+      isFullRunRequired = false;
+      myChangedTasks.clear();
     } finally {
       isRunning = false;
     }
   }
 
+  /**
+   * Reschedules the part of the graph which is affected by the change of the given task dates.
+   * Falls back to the full run if incremental run is not possible. If called while
+   * scheduler is running, e.g. when scheduler itself modifies a task, adds the nodes
+   * which depend on the changed task to the current run.
+   *
+   * @param changedTask task which start or end date has changed
+   */
+  public void run(Task changedTask) {
+    if (isRunning) {
+      if (myQueue != null) {
+        enqueueAffected(changedTask);
+      } else {
+        myChangedTasks.add(changedTask);
+      }
+      return;
+    }
+    if (!isEnabled() || myGraph.isBulkLoading()) {
+      isFullRunRequired = true;
+      return;
+    }
+    if (isFullRunRequired) {
+      run();
+      return;
+    }
+    myChangedTasks.add(changedTask);
+    isRunning = true;
+    try {
+      doRunIncremental();
+    } finally {
+      myQueue = null;
+      myQueuedNodes = null;
+      myCurrentNode = null;
+      isRunning = false;
+    }
+  }
+
   private void doRun() {
     int layers = myGraph.checkLayerValidity();
     for (int i = 0; i < layers; i++) {
@@ -114,6 +184,56 @@ public class SchedulerImpl extends AlgorithmBase {
     }
   }
 
+  private void doRunIncremental() {
+    myQueue = new PriorityQueue<Node>(11, SCHEDULING_ORDER);
+    myQueuedNodes = Sets.newHashSet();
+    while (!myChangedTasks.isEmpty()) {
+      List<Task> changedTasks = Lists.newArrayList(myChangedTasks);
+      myChangedTasks.clear();
+      for (Task t : changedTasks) {
+        Node node = myGraph.getNode(t);
+        if (node != null) {
+          enqueue(node);
+        }
+        enqueueAffected(t);
+      }
+    }
+    while (!myQueue.isEmpty()) {
+      myCurrentNode = myQueue.poll();
+      myQueuedNodes.remove(myCurrentNode);
+      try {
+        schedule(myCurrentNode);
+      } catch (IllegalArgumentException e) {
+        GPLogger.log(e);
+      }
+    }
+  }
+
+  /**
+   * Adds the dependants of the changed task to the queue. The changed task itself
+   * is added if it is yet to be visited in the full run order.
+   */
+  private void enqueueAffected(Task changedTask) {
+    Node node = myGraph.getNode(changedTask);
+    if (node == null) {
+      return;
+    }
+    enqueue(node);
+    for (DependencyEdge edge : node.getOutgoing()) {
+      enqueue(edge.getDst());
+    }
+  }
+
+  private void enqueue(Node node) {
+    // The full run never returns to nodes which it has already visited, and neither do we
+    if (myCurrentNode != null && SCHEDULING_ORDER.compare(node, myCurrentNode) <= 0) {
+      return;
+    }
+    if (myQueuedNodes.add(node)) {
+      myQueue.add(node);
+    }
+  }
+
   private void schedule(Node node) {
     Logger logger = GPLogger.getLogger(this);
     GPLogger.debug(logger, "Scheduling node %s", node);
@@ -43,6 +43,14 @@ public interface TaskListener extends EventListener {
 
   void taskProgressChanged(TaskPropertyEvent e);
 
+  /**
+   * Called when task name, notes or custom values have been set, whether through a mutator or directly,
+   * and when task is registered in or deleted from the task manager. It is meant for caches of task texts,
+   * like search index, and is fired even when events are disabled.
+   * Listeners which show these texts should rely on {@link #taskPropertiesChanged(TaskPropertyEvent)}.
+   */
+  void taskTextChanged(TaskPropertyEvent e);
+
   void taskModelReset();
 
 }
@@ -58,6 +58,10 @@ public abstract class TaskListenerAdapter implements TaskListener {
   public void taskProgressChanged(TaskPropertyEvent e) {
   }
 
+  @Override
+  public void taskTextChanged(TaskPropertyEvent e) {
+  }
+
   @Override
   public void taskModelReset() {
   }
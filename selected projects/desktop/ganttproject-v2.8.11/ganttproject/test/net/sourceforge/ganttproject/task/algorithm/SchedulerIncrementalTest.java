@@ -0,0 +1,177 @@
+/*
+Copyright 2026 GanttProject Team
+
+This file is part of GanttProject, an opensource project management tool.
+
+GanttProject is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+GanttProject is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with GanttProject.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package net.sourceforge.ganttproject.task.algorithm;
+
+import biz.ganttproject.core.calendar.AlwaysWorkingTimeCalendarImpl;
+import biz.ganttproject.core.calendar.GPCalendarCalc;
+import biz.ganttproject.core.option.ColorOption;
+import biz.ganttproject.core.time.TimeUnitStack;
+import biz.ganttproject.core.time.impl.GPTimeUnitStack;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import junit.framework.TestCase;
+import net.sourceforge.ganttproject.gui.NotificationManager;
+import net.sourceforge.ganttproject.resource.HumanResourceManager;
+import net.sourceforge.ganttproject.task.CustomColumnsManager;
+import net.sourceforge.ganttproject.task.Task;
+import net.sourceforge.ganttproject.task.TaskManager;
+import net.sourceforge.ganttproject.task.TaskManagerConfig;
+import net.sourceforge.ganttproject.task.TaskMutator;
+import net.sourceforge.ganttproject.task.dependency.TaskDependency;
+import net.sourceforge.ganttproject.task.dependency.TaskDependencyConstraint;
+import net.sourceforge.ganttproject.task.dependency.TaskDependencyException;
+import net.sourceforge.ganttproject.task.dependency.constraint.FinishFinishConstraintImpl;
+import net.sourceforge.ganttproject.task.dependency.constraint.FinishStartConstraintImpl;
+import net.sourceforge.ganttproject.task.dependency.constraint.StartFinishConstraintImpl;
+import net.sourceforge.ganttproject.task.dependency.constraint.StartStartConstraintImpl;
+
+import java.awt.Color;
+import java.net.URL;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Makes random edits of task dates in random projects and checks that incremental
+ * scheduling which follows every edit gives the same dates as the full run.
+ */
+public class SchedulerIncrementalTest extends TestCase {
+  private static final int PROJECT_COUNT = 20;
+  private static final int TASK_COUNT = 60;
+  private static final int EDIT_COUNT = 100;
+
+  public void testRandomEditsMatchFullRun() throws Exception {
+    for (int seed = 0; seed < PROJECT_COUNT; seed++) {
+      Random random = new Random(seed);
+      TaskManager taskManager = newTaskManager();
+      List<Task> leaves = createProject(taskManager, random);
+      for (int edit = 0; edit < EDIT_COUNT; edit++) {
+        Task task = leaves.get(random.nextInt(leaves.size()));
+        TaskMutator mutator = task.createMutator();
+        if (random.nextBoolean()) {
+          mutator.shift(taskManager.createLength(random.nextInt(11) - 5));
+        } else {
+          mutator.setDuration(taskManager.createLength(1 + random.nextInt(10)));
+        }
+        mutator.commit();
+
+        Map<Task, List<Date>> incremental = getDates(taskManager);
+        taskManager.getAlgorithmCollection().getScheduler().run();
+        Map<Task, List<Date>> full = getDates(taskManager);
+        for (Task t : taskManager.getTasks()) {
+          assertEquals(String.format("seed=%d edit=%d changed task=%s, dates of task=%s", seed, edit, task, t),
+              full.get(t), incremental.get(t));
+        }
+      }
+    }
+  }
+
+  /**
+   * Creates tasks with random dates, some of them nested into summary tasks,
+   * and random acyclic dependencies of all kinds between the leaf tasks.
+   *
+   * @return leaf tasks
+   */
+  private static List<Task> createProject(TaskManager taskManager, Random random) throws TaskDependencyException {
+    Date projectStart = new GregorianCalendar(2026, 0, 5).getTime();
+    List<Task> summaries = Lists.newArrayList();
+    for (int i = 0; i < TASK_COUNT / 10; i++) {
+      summaries.add(taskManager.newTaskBuilder().withName("summary" + i).withStartDate(projectStart).build());
+    }
+    List<Task> leaves = Lists.newArrayList();
+    for (int i = 0; i < TASK_COUNT; i++) {
+      TaskManager.TaskBuilder builder = taskManager.newTaskBuilder()
+          .withName("task" + i)
+          .withStartDate(taskManager.shift(projectStart, taskManager.createLength(random.nextInt(30))))
+          .withDuration(taskManager.createLength(1 + random.nextInt(10)));
+      if (random.nextInt(3) == 0) {
+        builder = builder.withParent(summaries.get(random.nextInt(summaries.size())));
+      }
+      leaves.add(builder.build());
+    }
+    TaskDependencyConstraint[] constraints = new TaskDependencyConstraint[] {
+        new FinishStartConstraintImpl(), new StartStartConstraintImpl(),
+        new FinishFinishConstraintImpl(), new StartFinishConstraintImpl()
+    };
+    for (int i = 0; i < TASK_COUNT * 3 / 2; i++) {
+      int dependee = random.nextInt(TASK_COUNT - 1);
+      int dependant = dependee + 1 + random.nextInt(TASK_COUNT - dependee - 1);
+      if (taskManager.getDependencyCollection().canCreateDependency(leaves.get(dependant), leaves.get(dependee))) {
+        TaskDependency dependency = taskManager.getDependencyCollection().createDependency(
+            leaves.get(dependant), leaves.get(dependee),
+            constraints[random.nextInt(constraints.length)],
+            random.nextInt(4) == 0 ? TaskDependency.Hardness.RUBBER : TaskDependency.Hardness.STRONG);
+        dependency.setDifference(random.nextInt(3));
+      }
+    }
+    return leaves;
+  }
+
+  private static Map<Task, List<Date>> getDates(TaskManager taskManager) {
+    Map<Task, List<Date>> result = Maps.newHashMap();
+    for (Task t : taskManager.getTasks()) {
+      result.put(t, Lists.newArrayList(t.getStart().getTime(), t.getEnd().getTime()));
+    }
+    return result;
+  }
+
+  private static TaskManager newTaskManager() {
+    final GPCalendarCalc calendar = new AlwaysWorkingTimeCalendarImpl();
+    final TimeUnitStack timeUnitStack = new GPTimeUnitStack();
+    final HumanResourceManager resourceManager = new HumanResourceManager(null, new CustomColumnsManager());
+    return TaskManager.Access.newInstance(null, new TaskManagerConfig() {
+      @Override
+      public Color getDefaultColor() {
+        return Color.BLUE;
+      }
+
+      @Override
+      public ColorOption getDefaultColorOption() {
+        return null;
+      }
+
+      @Override
+      public GPCalendarCalc getCalendar() {
+        return calendar;
+      }
+
+      @Override
+      public TimeUnitStack getTimeUnitStack() {
+        return timeUnitStack;
+      }
+
+      @Override
+      public HumanResourceManager getResourceManager() {
+        return resourceManager;
+      }
+
+      @Override
+      public URL getProjectDocumentURL() {
+        return null;
+      }
+
+      @Override
+      public NotificationManager getNotificationManager() {
+        return null;
+      }
+    });
+  }
+}
@@ -106,6 +106,7 @@ import org.mars_sim.msp.core.time.MasterClock;
 import org.mars_sim.msp.core.time.SystemDateTime;
 import org.mars_sim.msp.core.time.UpTimer;
 import org.mars_sim.msp.core.tool.CheckSerializedSize;
+import org.mars_sim.msp.core.tool.SimulationProfiler;
 import org.mars_sim.msp.core.vehicle.Vehicle;
 import org.tukaani.xz.FilterOptions;
 import org.tukaani.xz.LZMA2Options;
@@ -608,7 +609,7 @@ public class Simulation implements ClockListener, Serializable {
 //		logger.config("Simulation's startClock() is on " + Thread.currentThread().getName());
 		// SwingUtilities.invokeLater(() -> testConsole());
 		
-		masterClock.addClockListener(this);
+		masterClock.addSimulationListener(this);
 		masterClock.startClockListenerExecutor();
 
 		restartClockExecutor();
@@ -1711,7 +1712,7 @@ public class Simulation implements ClockListener, Serializable {
 	 */
 	public void proceed(boolean isPause) {
 		if (masterClock != null) {
-			masterClock.addClockListener(this);
+			masterClock.addSimulationListener(this);
 			if (!isPause) masterClock.setPaused(false, false);
 			masterClock.restart();
 		}
@@ -1927,38 +1928,62 @@ public class Simulation implements ClockListener, Serializable {
 //				logger.fine(Msg.getString("Simulation.log.clockPulseMars", //$NON-NLS-1$
 //						ut.getUptime(), mars.toString()));
 //			}
+			long t = SimulationProfiler.start();
 			mars.timePassing(time);
+			SimulationProfiler.stop(SimulationProfiler.Phase.MARS, t);
 			ut.updateTime();
 
 //			if (debug) {
 //				logger.fine(Msg.getString("Simulation.log.clockPulseMissionManager", //$NON-NLS-1$
 //						masterClock.getUpTimer().getUptime(), missionManager.toString()));
 //			}
+			t = SimulationProfiler.start();
 			missionManager.timePassing(time);
+			SimulationProfiler.stop(SimulationProfiler.Phase.MISSION_MANAGER, t);
 			ut.updateTime();
 
 //			if (debug) {
 //				logger.fine(Msg.getString("Simulation.log.clockPulseUnitManager", //$NON-NLS-1$
 //						masterClock.getUpTimer().getUptime(), unitManager.toString()));
 //			}
+			t = SimulationProfiler.start();
 			unitManager.timePassing(time);
+			SimulationProfiler.stop(SimulationProfiler.Phase.UNIT_MANAGER, t);
 			ut.updateTime();
 
 //			if (debug) {
 //				logger.fine(Msg.getString("Simulation.log.clockPulseScientificStudyManager", //$NON-NLS-1$
 //						masterClock.getUpTimer().getUptime(), scientificStudyManager.toString()));
 //			}
+			t = SimulationProfiler.start();
 			scientificStudyManager.updateStudies();
+			SimulationProfiler.stop(SimulationProfiler.Phase.SCIENTIFIC_STUDY_MANAGER, t);
 			ut.updateTime();
 
 //			if (debug) {
 //				logger.fine(Msg.getString("Simulation.log.clockPulseTransportManager", //$NON-NLS-1$
 //						masterClock.getUpTimer().getUptime(), transportManager.toString()));
 //			}
+			t = SimulationProfiler.start();
 			transportManager.timePassing(time);
+			SimulationProfiler.stop(SimulationProfiler.Phase.TRANSPORT_MANAGER, t);
 		}
 	}
 
+	/**
+	 * Advances the simulation by a time pulse on the calling thread, without the
+	 * real-time pacing of the master clock and without notifying the other clock
+	 * listeners. Used by batch runs.
+	 * 
+	 * @param time amount of time passing (in millisols)
+	 */
+	public void advanceHeadless(double time) {
+		if (ut == null)
+			ut = masterClock.getUpTimer();
+		masterClock.advanceTime(time);
+		clockPulse(time);
+	}
+
 	public boolean getAutosaveDefault() {
 		return autosaveDefault;
 	}
@@ -55,6 +55,7 @@ import org.mars_sim.msp.core.structure.building.Building;
 import org.mars_sim.msp.core.structure.construction.ConstructionSite;
 import org.mars_sim.msp.core.time.MarsClock;
 import org.mars_sim.msp.core.tool.RandomUtil;
+import org.mars_sim.msp.core.tool.SimulationProfiler;
 import org.mars_sim.msp.core.vehicle.LightUtilityVehicle;
 import org.mars_sim.msp.core.vehicle.Rover;
 import org.mars_sim.msp.core.vehicle.Vehicle;
@@ -1535,7 +1536,7 @@ public class UnitManager implements Serializable {
 			List<RoleType> roleList = RoleType.getSpecialistRoles();
 			// Randomly reorient the order of roleList so that the 
 			// roles to go in different order each time 
-			Collections.shuffle(roleList);
+			RandomUtil.shuffle(roleList);
 			
 			for (RoleType r : roleList) {
 				Person p = RoleUtil.findBestFit(r, personList1);
@@ -2172,7 +2173,9 @@ public class UnitManager implements Serializable {
 		}
 		
 		if (time > 0) {
+			long t = SimulationProfiler.start();
 			marsSurface.timePassing(time);
+			SimulationProfiler.stop(SimulationProfiler.Phase.MARS_SURFACE, t);
 	
 //			lookupSite.values().stream().forEach(x -> x.timePassing(time));
 //			lookupSettlement.values().stream().forEach(x -> x.timePassing(time));
@@ -2182,35 +2185,49 @@ public class UnitManager implements Serializable {
 //			lookupVehicle.values().stream().forEach(x -> x.timePassing(time));
 //			lookupUnit.values().stream().forEach(x -> x.timePassing(time));
 			
+			t = SimulationProfiler.start();
 			for (Settlement s : lookupSettlement.values()) {
 				s.timePassing(time);
 			}
+			SimulationProfiler.stop(SimulationProfiler.Phase.SETTLEMENTS, t);
 			
+			t = SimulationProfiler.start();
 			for (ConstructionSite s : lookupSite.values()) {
 				s.timePassing(time);
 			}
+			SimulationProfiler.stop(SimulationProfiler.Phase.CONSTRUCTION_SITES, t);
 			
 //			logger.info("time: " + Math.round(time*1000.0)/1000.0);
 			
+			t = SimulationProfiler.start();
 			for (Person p : lookupPerson.values()) {
 				p.timePassing(time);
 			}
+			SimulationProfiler.stop(SimulationProfiler.Phase.PERSONS, t);
 			
+			t = SimulationProfiler.start();
 			for (Robot r : lookupRobot.values()) {
 				r.timePassing(time);
 			}
+			SimulationProfiler.stop(SimulationProfiler.Phase.ROBOTS, t);
 			
+			t = SimulationProfiler.start();
 			for (Equipment e : lookupEquipment.values()) {
 				e.timePassing(time);
 			}
+			SimulationProfiler.stop(SimulationProfiler.Phase.EQUIPMENT, t);
 			
+			t = SimulationProfiler.start();
 			for (Vehicle v : lookupVehicle.values()) {
 				v.timePassing(time);
 			}
+			SimulationProfiler.stop(SimulationProfiler.Phase.VEHICLES, t);
 			
+			t = SimulationProfiler.start();
 			for (Unit u : lookupUnit.values()) {
 				u.timePassing(time);
 			}
+			SimulationProfiler.stop(SimulationProfiler.Phase.OTHER_UNITS, t);
 		}
 	}
 
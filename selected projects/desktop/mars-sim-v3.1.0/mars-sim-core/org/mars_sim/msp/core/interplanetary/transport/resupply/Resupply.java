@@ -11,7 +11,6 @@ import java.awt.geom.Point2D;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
@@ -433,7 +432,7 @@ public class Resupply implements Serializable, Transportable {
 		}
 
 		List<Building> list = mgr.getBuildings(FunctionType.LIFE_SUPPORT);
-		Collections.shuffle(list);
+		RandomUtil.shuffle(list);
 
 		Iterator<Building> i = list.iterator();
 		while (i.hasNext()) {
@@ -695,7 +694,7 @@ public class Resupply implements Serializable, Transportable {
 				// greenhouse, lander hab, research hab...)
 				List<Building> inhabitableBuildings = buildingManager
 						.getBuildings(FunctionType.LIFE_SUPPORT);
-				Collections.shuffle(inhabitableBuildings);
+				RandomUtil.shuffle(inhabitableBuildings);
 				Iterator<Building> i = inhabitableBuildings.iterator();
 				while (i.hasNext()) {
 					Building building = i.next();
@@ -740,7 +739,7 @@ public class Resupply implements Serializable, Transportable {
 					List<Building> allBuildings = buildingManager.getACopyOfBuildings();
 					// System.out.println("allBuildings.size() is "+ allBuildings.size());
 					// System.out.println("Building type is "+ buildingType);
-					Collections.shuffle(allBuildings);
+					RandomUtil.shuffle(allBuildings);
 					Iterator<Building> i = allBuildings.iterator();
 					while (i.hasNext()) {
 						Building building = i.next();
@@ -792,7 +791,7 @@ public class Resupply implements Serializable, Transportable {
 		List<Building> sameTypeBuildings = unitManager.getSettlementByID(settlementID).getBuildingManager()
 				.getBuildingsOfSameType(buildingType);
 
-		Collections.shuffle(sameTypeBuildings);
+		RandomUtil.shuffle(sameTypeBuildings);
 		Iterator<Building> j = sameTypeBuildings.iterator();
 		while (j.hasNext()) {
 			Building building = j.next();
@@ -834,7 +833,7 @@ public class Resupply implements Serializable, Transportable {
 		BuildingTemplate newTemplate = null;
 		int baseLevel = buildingConfig.getBaseLevel(newBuildingType);
 		List<Building> inhabitableBuildings = buildingManager.getBuildings(FunctionType.LIFE_SUPPORT);
-		Collections.shuffle(inhabitableBuildings);
+		RandomUtil.shuffle(inhabitableBuildings);
 
 		// Case 1
 		// Try to find a connection between an inhabitable building without access to
@@ -1044,7 +1043,7 @@ public class Resupply implements Serializable, Transportable {
 		directions.add(back);
 		directions.add(right);
 		directions.add(left);
-		Collections.shuffle(directions);
+		RandomUtil.shuffle(directions);
 
 		double direction = 0D;
 		double structureDistance = 0D;
@@ -48,6 +48,11 @@ public class RandomMineralMap implements Serializable, MineralMap {
 	private static final int W = 300;
 	private static final int H = 150;
 	
+	/** The number of concentration grid cells along theta, about 5.2 km per cell at the equator. */
+	private static final int GRID_COLUMNS = 4096;
+	/** The number of concentration grid cells along phi. */
+	private static final int GRID_ROWS = 2048;
+	
 	// Topographical Region Strings
 	
 	private static final String CRATER_IMG = Msg.getString("RandomMineralMap.image.crater"); //$NON-NLS-1$
@@ -67,6 +72,13 @@ public class RandomMineralMap implements Serializable, MineralMap {
 	// List of all mineral concentrations.
 	private List<MineralConcentration> mineralConcentrations;
 
+	/** The precomputed concentration grid with one layer per mineral type. */
+	private transient SurfaceGridStore concentrationGrid;
+	/** The mineral type names in grid layer order. */
+	private transient String[] layerNames;
+	/** The grid layer of each lower case mineral type name. */
+	private transient Map<String, Integer> layerIndex;
+
 	private static MineralMapConfig mineralMapConfig = SimulationConfig.instance().getMineralMapConfiguration();
 	
 	/**
@@ -202,7 +214,8 @@ public class RandomMineralMap implements Serializable, MineralMap {
 	}
 
 	/**
-	 * Gets all of the mineral concentrations at a given location.
+	 * Gets all of the mineral concentrations at a given location, interpolated
+	 * from the precomputed grid (see {@link #getMineralConcentration(String, Coordinates)}).
 	 * 
 	 * @param location the coordinate location.
 	 * @return map of mineral types and percentage concentration (0 to 100.0)
@@ -211,48 +224,82 @@ public class RandomMineralMap implements Serializable, MineralMap {
 		Map<String, Double> result = Collections.emptyMap();
 		boolean emptyMap = true;
 
-		Iterator<MineralConcentration> i = mineralConcentrations.iterator();
-		while (i.hasNext()) {
-			MineralConcentration mineralConcentration = i.next();
-			double effect = getMineralConcentrationEffect(mineralConcentration, location);
-			if (effect > 0D) {
+		SurfaceGridStore grid = getConcentrationGrid();
+		float[] values = new float[grid.getLayers()];
+		grid.getValues(location, values);
+		for (int x = 0; x < values.length; x++) {
+			if (values[x] > 0F) {
 				if (emptyMap) {
 					result = new HashMap<String, Double>();
 					emptyMap = false;
 				}
-				double totalConcentration = 0D;
-				if (result.containsKey(mineralConcentration.getMineralType()))
-					totalConcentration = result.get(mineralConcentration.getMineralType());
-				totalConcentration += effect;
-				if (totalConcentration > 100D)
-					totalConcentration = 100D;
-				result.put(mineralConcentration.getMineralType(), totalConcentration);
+				result.put(layerNames[x], (double) values[x]);
 			}
 		}
 		return result;
 	}
 
 	/**
-	 * Gets the mineral concentration at a given location.
+	 * Gets the mineral concentration at a given location. The concentration is
+	 * interpolated from the precomputed grid, whose cells are about 5 km wide at
+	 * the equator, so it may differ slightly from the exact value, mostly at the
+	 * edges of a concentration.
 	 * 
 	 * @param mineralType the mineral type (see MineralMap.java)
 	 * @param location    the coordinate location.
 	 * @return percentage concentration (0 to 100.0)
 	 */
 	public double getMineralConcentration(String mineralType, Coordinates location) {
-		double result = 0D;
+		SurfaceGridStore grid = getConcentrationGrid();
+		Integer layer = layerIndex.get(mineralType.toLowerCase());
+		if (layer == null)
+			return 0D;
+		return grid.getValue(layer, location);
+	}
 
-		Iterator<MineralConcentration> i = mineralConcentrations.iterator();
-		while (i.hasNext()) {
-			MineralConcentration mineralConcentration = i.next();
-			if (mineralConcentration.getMineralType().equalsIgnoreCase(mineralType)) {
-				result += getMineralConcentrationEffect(mineralConcentration, location);
-				if (result > 100D)
-					result = 100D;
+	/**
+	 * Gets the precomputed concentration grid, creating it if needed. Each cell
+	 * holds the total concentration of every mineral type at the cell center.
+	 * 
+	 * @return the grid
+	 */
+	private synchronized SurfaceGridStore getConcentrationGrid() {
+		if (concentrationGrid == null) {
+			Map<String, Integer> index = new HashMap<String, Integer>();
+			List<String> names = new ArrayList<String>();
+			for (MineralConcentration mineralConcentration : mineralConcentrations) {
+				String key = mineralConcentration.getMineralType().toLowerCase();
+				if (!index.containsKey(key)) {
+					index.put(key, names.size());
+					names.add(mineralConcentration.getMineralType());
+				}
 			}
+			layerIndex = index;
+			layerNames = names.toArray(new String[names.size()]);
+			// Snapshot the concentrations so that cells can be filled without locking the list.
+			final MineralConcentration[] concentrations = mineralConcentrations
+					.toArray(new MineralConcentration[mineralConcentrations.size()]);
+			final int[] layers = new int[concentrations.length];
+			for (int x = 0; x < concentrations.length; x++)
+				layers[x] = index.get(concentrations[x].getMineralType().toLowerCase());
+
+			concentrationGrid = new SurfaceGridStore("mars-sim-minerals", GRID_COLUMNS, GRID_ROWS,
+					Math.max(1, layerNames.length), new SurfaceGridStore.CellFiller() {
+						@Override
+						public void fill(double phi, double theta, float[] values) {
+							Coordinates location = new Coordinates(phi, theta);
+							double[] totals = new double[values.length];
+							for (int x = 0; x < concentrations.length; x++) {
+								double effect = getMineralConcentrationEffect(concentrations[x], location);
+								if (effect > 0D)
+									totals[layers[x]] = Math.min(100D, totals[layers[x]] + effect);
+							}
+							for (int x = 0; x < values.length; x++)
+								values[x] = (float) totals[x];
+						}
+					});
 		}
-
-		return result;
+		return concentrationGrid;
 	}
 
 	/**
@@ -344,6 +391,9 @@ public class RandomMineralMap implements Serializable, MineralMap {
 
 	@Override
 	public void destroy() {
+		if (concentrationGrid != null)
+			concentrationGrid.destroy();
+		concentrationGrid = null;
 		mineralConcentrations.clear();
 		mineralConcentrations = null;
 	}
@@ -0,0 +1,445 @@
+/**
+ * Mars Simulation Project
+ * SurfaceGridStore.java
+ */
+
+package org.mars_sim.msp.core.mars;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.mars_sim.msp.core.Coordinates;
+
+/**
+ * A tiled, memory-mapped lat/lon grid of precomputed surface values. The grid
+ * covers phi [0, PI] by theta [0, 2 PI) and holds one float per layer per cell.
+ * Each cell is computed on first access by a {@link CellFiller} and written into
+ * a backing file that is read through memory-mapped tiles, so the values stay
+ * off the heap and nothing is decoded up front. Tiles are appended to the
+ * backing file in the order they are first used, so the file only grows by the
+ * tiles that have been touched.
+ * <p>
+ * Only the most recently used tile mappings are kept in an LRU cache. An evicted
+ * mapping is unmapped right away where the JVM allows it, otherwise when it is
+ * garbage collected, and the tile is mapped again from its place in the backing
+ * file when it is needed. Tiles are only used under the lock of the grid, so an
+ * evicted tile is never in use. If the backing file can't be used, tiles are
+ * kept on the heap and the cells of an evicted tile are computed again.
+ * <p>
+ * Values are bilinearly interpolated between the four nearest cell centers, so
+ * they follow the filled values smoothly instead of stepping from cell to cell.
+ * Their accuracy is therefore bound by the cell size of the grid.
+ */
+public class SurfaceGridStore {
+
+	private static Logger logger = Logger.getLogger(SurfaceGridStore.class.getName());
+
+	/** The number of cells along each side of a tile. */
+	public static final int TILE_SIZE = 64;
+	/** The default number of tile mappings kept in the LRU cache. */
+	public static final int DEFAULT_CACHE_SIZE = 64;
+
+	/** The number of locks that cells are filled under. */
+	private static final int FILL_LOCKS = 64;
+	/** An interpolation reads up to 4 tiles, which must all stay cached. */
+	private static final int MIN_CACHE_SIZE = 4;
+
+	private static final int CELLS_PER_TILE = TILE_SIZE * TILE_SIZE;
+	private static final double TWO_PI = Math.PI * 2D;
+
+	/** The unsafe instance and its invokeCleaner method, if the JVM has them. */
+	private static final Object UNSAFE;
+	private static final Method INVOKE_CLEANER;
+
+	static {
+		Object unsafe = null;
+		Method invokeCleaner = null;
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			Field field = unsafeClass.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			unsafe = field.get(null);
+		} catch (Exception e) {
+			// Before Java 9 mappings are only released by the garbage collector
+			invokeCleaner = null;
+		}
+		UNSAFE = unsafe;
+		INVOKE_CLEANER = invokeCleaner;
+	}
+
+	/**
+	 * Computes the values of one cell.
+	 */
+	public interface CellFiller {
+
+		/**
+		 * Fills in the values of every layer at the given cell center. May be
+		 * called from several threads at once for different cells.
+		 *
+		 * @param phi    the phi of the cell center.
+		 * @param theta  the theta of the cell center.
+		 * @param values the array to receive one value per layer.
+		 */
+		public void fill(double phi, double theta, float[] values);
+	}
+
+	private final int columns;
+	private final int rows;
+	private final int layers;
+	private final int tileColumns;
+	private final long tileBytes;
+
+	private final CellFiller filler;
+
+	private final File file;
+	private RandomAccessFile raf;
+	private FileChannel channel;
+	/** The number of tiles placed in the backing file so far. */
+	private int placedTiles;
+	/** The place of each tile in the backing file, or -1 if it has none yet. */
+	private final int[] tilePlaces;
+
+	/** The LRU cache of tiles, by tile id. */
+	private final Map<Integer, Tile> tileCache;
+	/** The cells that have been computed and written to their tile. */
+	private final BitSet filledCells;
+	/**
+	 * The locks that cells are filled under, so that a cell is only computed once
+	 * while other cells are computed at the same time.
+	 */
+	private final Object[] fillLocks;
+
+	/**
+	 * Constructor
+	 *
+	 * @param name    the prefix of the backing file name.
+	 * @param columns the number of cells along theta.
+	 * @param rows    the number of cells along phi.
+	 * @param layers  the number of values per cell.
+	 * @param filler  the cell filler.
+	 */
+	public SurfaceGridStore(String name, int columns, int rows, int layers, CellFiller filler) {
+		this(name, columns, rows, layers, DEFAULT_CACHE_SIZE, filler);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param name      the prefix of the backing file name.
+	 * @param columns   the number of cells along theta.
+	 * @param rows      the number of cells along phi.
+	 * @param layers    the number of values per cell.
+	 * @param cacheSize the number of tile mappings to keep, at least 4.
+	 * @param filler    the cell filler.
+	 */
+	public SurfaceGridStore(String name, int columns, int rows, int layers, int cacheSize, CellFiller filler) {
+		this.columns = columns;
+		this.rows = rows;
+		this.layers = layers;
+		this.filler = filler;
+
+		tileColumns = (columns + TILE_SIZE - 1) / TILE_SIZE;
+		int tileRows = (rows + TILE_SIZE - 1) / TILE_SIZE;
+		tileBytes = (long) CELLS_PER_TILE * layers * 4L;
+
+		tilePlaces = new int[tileColumns * tileRows];
+		Arrays.fill(tilePlaces, -1);
+		final int maxTiles = Math.max(MIN_CACHE_SIZE, cacheSize);
+		tileCache = new LinkedHashMap<Integer, Tile>(maxTiles * 2, .75F, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, Tile> eldest) {
+				if (size() <= maxTiles)
+					return false;
+				Tile tile = eldest.getValue();
+				if (tile.mapping == null)
+					clearFilledCells(eldest.getKey());
+				else
+					unmap(tile.mapping);
+				return true;
+			}
+		};
+		filledCells = new BitSet(columns * rows);
+		fillLocks = new Object[FILL_LOCKS];
+		for (int x = 0; x < FILL_LOCKS; x++)
+			fillLocks[x] = new Object();
+
+		File f = null;
+		try {
+			f = File.createTempFile(name, ".grid");
+			f.deleteOnExit();
+			raf = new RandomAccessFile(f, "rw");
+			channel = raf.getChannel();
+		} catch (IOException e) {
+			logger.log(Level.SEVERE, "Cannot create the surface grid file for " + name
+					+ ". Tiles will be kept on the heap.", e);
+			closeChannel();
+		}
+		file = f;
+	}
+
+	/**
+	 * Gets the number of layers.
+	 *
+	 * @return number of layers
+	 */
+	public int getLayers() {
+		return layers;
+	}
+
+	/**
+	 * Gets the value of a layer at a location.
+	 *
+	 * @param layer    the layer.
+	 * @param location the location.
+	 * @return the value
+	 */
+	public float getValue(int layer, Coordinates location) {
+		return interpolate(location.getPhi(), location.getTheta(), layer, layer + 1, null);
+	}
+
+	/**
+	 * Gets the values of all layers at a location.
+	 *
+	 * @param location the location.
+	 * @param values   the array to receive one value per layer.
+	 */
+	public void getValues(Coordinates location, float[] values) {
+		interpolate(location.getPhi(), location.getTheta(), 0, layers, values);
+	}
+
+	/**
+	 * Interpolates layers between the four cell centers around a location. The
+	 * four cells are read under a single lock once they have all been filled.
+	 *
+	 * @param phi       the phi of the location.
+	 * @param theta     the theta of the location.
+	 * @param fromLayer the first layer.
+	 * @param toLayer   the layer after the last one.
+	 * @param values    the array to receive one value per layer, or null.
+	 * @return the value of the first layer
+	 */
+	private float interpolate(double phi, double theta, int fromLayer, int toLayer, float[] values) {
+		double y = phi / Math.PI * rows - .5D;
+		double x = theta / TWO_PI * columns - .5D;
+		int row = (int) Math.floor(y);
+		int column = (int) Math.floor(x);
+		float v = (float) Math.max(0D, Math.min(1D, y - row));
+		float u = (float) (x - column);
+
+		int row0 = clampRow(row);
+		int row1 = clampRow(row + 1);
+		int column0 = wrapColumn(column);
+		int column1 = wrapColumn(column + 1);
+
+		while (true) {
+			synchronized (this) {
+				// Getting the tiles first, a failing mapping may clear filled cells
+				FloatBuffer tile00 = getTile(row0, column0);
+				FloatBuffer tile01 = getTile(row0, column1);
+				FloatBuffer tile10 = getTile(row1, column0);
+				FloatBuffer tile11 = getTile(row1, column1);
+				if (isFilled(row0, column0) && isFilled(row0, column1)
+						&& isFilled(row1, column0) && isFilled(row1, column1)) {
+					float first = 0F;
+					for (int layer = fromLayer; layer < toLayer; layer++) {
+						float top = tile00.get(getIndex(layer, row0, column0)) * (1F - u)
+								+ tile01.get(getIndex(layer, row0, column1)) * u;
+						float bottom = tile10.get(getIndex(layer, row1, column0)) * (1F - u)
+								+ tile11.get(getIndex(layer, row1, column1)) * u;
+						float value = top * (1F - v) + bottom * v;
+						if (values != null)
+							values[layer] = value;
+						if (layer == fromLayer)
+							first = value;
+					}
+					return first;
+				}
+			}
+
+			fillCell(row0, column0);
+			fillCell(row0, column1);
+			fillCell(row1, column0);
+			fillCell(row1, column1);
+		}
+	}
+
+	private int clampRow(int row) {
+		if (row < 0)
+			return 0;
+		if (row >= rows)
+			return rows - 1;
+		return row;
+	}
+
+	private int wrapColumn(int column) {
+		column %= columns;
+		if (column < 0)
+			column += columns;
+		return column;
+	}
+
+	private boolean isFilled(int row, int column) {
+		return filledCells.get(row * columns + column);
+	}
+
+	private int getIndex(int layer, int row, int column) {
+		return layer * CELLS_PER_TILE + (row % TILE_SIZE) * TILE_SIZE + column % TILE_SIZE;
+	}
+
+	/**
+	 * Computes a cell if needed. The cell is computed without holding the lock of
+	 * the grid, so that other threads can read and compute other cells in the
+	 * meantime.
+	 *
+	 * @param row    the cell row.
+	 * @param column the cell column.
+	 */
+	private void fillCell(int row, int column) {
+		int cell = row * columns + column;
+		synchronized (fillLocks[cell % FILL_LOCKS]) {
+			synchronized (this) {
+				// Another thread may have filled the cell in the meantime
+				if (filledCells.get(cell))
+					return;
+			}
+
+			float[] cellValues = new float[layers];
+			double phi = (row + .5D) * Math.PI / rows;
+			double theta = (column + .5D) * TWO_PI / columns;
+			filler.fill(phi, theta, cellValues);
+
+			synchronized (this) {
+				FloatBuffer tile = getTile(row, column);
+				for (int layer = 0; layer < layers; layer++)
+					tile.put(getIndex(layer, row, column), cellValues[layer]);
+				filledCells.set(cell);
+			}
+		}
+	}
+
+	/**
+	 * Gets the tile of a cell, mapping it if it isn't cached.
+	 *
+	 * @param row    the cell row.
+	 * @param column the cell column.
+	 * @return the tile values
+	 */
+	private FloatBuffer getTile(int row, int column) {
+		Integer tileId = Integer.valueOf((row / TILE_SIZE) * tileColumns + column / TILE_SIZE);
+		Tile tile = tileCache.get(tileId);
+		if (tile == null) {
+			tile = createTile(tileId.intValue());
+			tileCache.put(tileId, tile);
+		}
+		return tile.values;
+	}
+
+	private Tile createTile(int tileId) {
+		if (channel != null) {
+			try {
+				if (tilePlaces[tileId] < 0)
+					tilePlaces[tileId] = placedTiles++;
+				// Mapping past the end grows the file by one tile.
+				MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_WRITE,
+						tilePlaces[tileId] * tileBytes, tileBytes);
+				return new Tile(mapping, mapping.order(ByteOrder.nativeOrder()).asFloatBuffer());
+			} catch (IOException e) {
+				logger.log(Level.SEVERE, "Cannot map surface grid tile " + tileId
+						+ ". Tiles will be kept on the heap.", e);
+				closeChannel();
+				// The cells of the tiles which aren't cached can't be read any more.
+				// The cached mappings may still be in use by the caller, so they
+				// are left to the garbage collector.
+				filledCells.clear();
+				tileCache.clear();
+			}
+		}
+		return new Tile(null, FloatBuffer.allocate(CELLS_PER_TILE * layers));
+	}
+
+	/**
+	 * Unmaps a tile mapping which is no longer used.
+	 *
+	 * @param mapping the mapping.
+	 */
+	private static void unmap(MappedByteBuffer mapping) {
+		if (INVOKE_CLEANER == null)
+			return;
+		try {
+			INVOKE_CLEANER.invoke(UNSAFE, mapping);
+		} catch (Exception e) {
+			logger.log(Level.FINE, "Cannot unmap a surface grid tile.", e);
+		}
+	}
+
+	/**
+	 * Marks the cells of a tile as not computed.
+	 *
+	 * @param tileId the tile id.
+	 */
+	private void clearFilledCells(int tileId) {
+		int firstRow = (tileId / tileColumns) * TILE_SIZE;
+		int firstColumn = (tileId % tileColumns) * TILE_SIZE;
+		int lastColumn = Math.min(firstColumn + TILE_SIZE, columns);
+		for (int row = firstRow; row < Math.min(firstRow + TILE_SIZE, rows); row++)
+			filledCells.clear(row * columns + firstColumn, row * columns + lastColumn);
+	}
+
+	private void closeChannel() {
+		try {
+			if (raf != null)
+				raf.close();
+		} catch (IOException e) {
+			logger.log(Level.WARNING, "Cannot close the surface grid file.", e);
+		}
+		raf = null;
+		channel = null;
+	}
+
+	/**
+	 * A tile of the grid.
+	 */
+	private static class Tile {
+		/** The mapping of the tile, or null if it is kept on the heap. */
+		private final MappedByteBuffer mapping;
+		/** The values of the tile. */
+		private final FloatBuffer values;
+
+		private Tile(MappedByteBuffer mapping, FloatBuffer values) {
+			this.mapping = mapping;
+			this.values = values;
+		}
+	}
+
+	/**
+	 * Prepare object for garbage collection.
+	 */
+	public synchronized void destroy() {
+		for (Tile tile : tileCache.values()) {
+			if (tile.mapping != null)
+				unmap(tile.mapping);
+		}
+		tileCache.clear();
+		filledCells.clear();
+		closeChannel();
+		if (file != null)
+			file.delete();
+	}
+}
@@ -29,6 +29,15 @@ public class TerrainElevation implements Serializable {
 	private static Logger logger = Logger.getLogger(TerrainElevation.class.getName());
 
 	private static final double DEG_TO_RAD = Math.PI/180;
+
+	/** The grid layer holding the MOLA elevation (km). */
+	private static final int ELEVATION_LAYER = 0;
+	/** The grid layer holding the terrain steepness. */
+	private static final int STEEPNESS_LAYER = 1;
+	/** The number of grid cells along theta, about 10.4 km per cell at the equator. */
+	private static final int GRID_COLUMNS = 2048;
+	/** The number of grid cells along phi. */
+	private static final int GRID_ROWS = 1024;
 	
 	private static final double OLYMPUS_MONS_CALDERA_PHI = 1.267990;
 	private static final double OLYMPUS_MONS_CALDERA_THETA = 3.949854;
@@ -60,6 +69,9 @@ public class TerrainElevation implements Serializable {
 	private static MapData mapdata;
 	
 	private static MapDataUtil mapDataUtil = MapDataUtil.instance();
+
+	/** The precomputed elevation and steepness grid. */
+	private transient SurfaceGridStore profileGrid;
 	
 //	private static SurfaceFeatures surfaceFeatures;
 	
@@ -122,6 +134,14 @@ public class TerrainElevation implements Serializable {
 		return Math.atan(elevationChange / 11.1D);
 	}
 	
+	/**
+	 * Computes the elevation and the terrain steepness of a location by sampling
+	 * all directions around it
+	 * 
+	 * @param site
+	 * @param currentLocation
+	 * @return an array of elevation and steepness
+	 */
 	public double[] computeTerrainProfile(CollectionSite site, Coordinates currentLocation) {
 		double steepness = 0;
 		double elevation = getMOLAElevation(currentLocation);
@@ -140,7 +160,47 @@ public class TerrainElevation implements Serializable {
 	}
 	
 	/**
-	 * Gets the terrain profile of a location
+	 * Gets the terrain profiles of many locations at once from the precomputed
+	 * grid (see {@link #getTerrainProfile(Coordinates)})
+	 * 
+	 * @param locations
+	 * @return an array of elevation and steepness for each location
+	 */
+	public double[][] computeTerrainProfile(Coordinates[] locations) {
+		SurfaceGridStore grid = getProfileGrid();
+		float[] values = new float[2];
+		double[][] result = new double[locations.length][];
+		for (int i = 0; i < locations.length; i++) {
+			grid.getValues(locations[i], values);
+			result[i] = new double[] {values[ELEVATION_LAYER], values[STEEPNESS_LAYER]};
+		}
+		return result;
+	}
+	
+	/**
+	 * Gets the precomputed elevation and steepness grid, creating it if needed
+	 * 
+	 * @return the grid
+	 */
+	private synchronized SurfaceGridStore getProfileGrid() {
+		if (profileGrid == null) {
+			profileGrid = new SurfaceGridStore("mars-sim-terrain", GRID_COLUMNS, GRID_ROWS, 2,
+					new SurfaceGridStore.CellFiller() {
+						@Override
+						public void fill(double phi, double theta, float[] values) {
+							double[] profile = computeTerrainProfile(null, new Coordinates(phi, theta));
+							values[ELEVATION_LAYER] = (float) profile[0];
+							values[STEEPNESS_LAYER] = (float) profile[1];
+						}
+					});
+		}
+		return profileGrid;
+	}
+	
+	/**
+	 * Gets the terrain profile of a location. The profile is interpolated from
+	 * the precomputed grid, whose cells are about 10 km wide at the equator, so
+	 * it smooths out terrain features smaller than that
 	 * 
 	 * @param currentLocation
 	 * @return
@@ -165,7 +225,9 @@ public class TerrainElevation implements Serializable {
 //			// Create a new site
 //			CollectionSite site = new CollectionSite(currentLocation);
 			
-			return computeTerrainProfile(null, currentLocation);
+			float[] values = new float[2];
+			getProfileGrid().getValues(currentLocation, values);
+			return new double[] {values[ELEVATION_LAYER], values[STEEPNESS_LAYER]};
 //		}
 	}
 	
@@ -180,10 +242,7 @@ public class TerrainElevation implements Serializable {
 //		site.setElevation(elevation);
 //		site.setSteepness(steepness);
 		
-		double iceCollectionRate = (- 0.639 * elevation + 14.2492) / 20D  + steepness / 10D;
-				
-		if (iceCollectionRate < 0)
-			iceCollectionRate = 0;	
+		double iceCollectionRate = computeIceCollectionRate(elevation, steepness);
 		
 //		site.setIceCollectionRate(iceCollectionRate);
 //		
@@ -232,6 +291,37 @@ public class TerrainElevation implements Serializable {
 //		}
 	}
 	
+	/**
+	 * Obtains the ice collection rates of many locations at once
+	 * 
+	 * @param locations
+	 * @return the ice collection rate of each location
+	 */
+	public double[] getIceCollectionRates(Coordinates[] locations) {
+		double[][] profiles = computeTerrainProfile(locations);
+		double[] result = new double[locations.length];
+		for (int i = 0; i < locations.length; i++) {
+			result[i] = computeIceCollectionRate(profiles[i][0], profiles[i][1]);
+		}
+		return result;
+	}
+	
+	/**
+	 * Computes the ice collection rate from a terrain profile
+	 * 
+	 * @param elevation
+	 * @param steepness
+	 * @return the ice collection rate
+	 */
+	private static double computeIceCollectionRate(double elevation, double steepness) {
+		double iceCollectionRate = (- 0.639 * elevation + 14.2492) / 20D  + steepness / 10D;
+		
+		if (iceCollectionRate < 0)
+			iceCollectionRate = 0;
+		
+		return iceCollectionRate;
+	}
+	
 	public int[] getRGB(Coordinates location) {
 		// Find hue and saturation color components at location.
 		if (mapdata == null)
@@ -494,5 +584,8 @@ public class TerrainElevation implements Serializable {
 	 */
 	public void destroy() {
 		mapdata = null;
+		if (profileGrid != null)
+			profileGrid.destroy();
+		profileGrid = null;
 	}
 }
\ No newline at end of file
@@ -66,6 +66,7 @@ import org.mars_sim.msp.core.structure.building.function.cooking.Cooking;
 import org.mars_sim.msp.core.structure.building.function.cooking.PreparingDessert;
 import org.mars_sim.msp.core.time.EarthClock;
 import org.mars_sim.msp.core.tool.RandomUtil;
+import org.mars_sim.msp.core.tool.SimulationProfiler;
 import org.mars_sim.msp.core.vehicle.Crewable;
 import org.mars_sim.msp.core.vehicle.Medical;
 import org.mars_sim.msp.core.vehicle.Vehicle;
@@ -1004,7 +1005,9 @@ public class Person extends Unit implements VehicleOperator, MissionMember, Seri
 
 			try {
 				// Mental changes with time passing.
+				long t = SimulationProfiler.start();
 				mind.timePassing(time);
+				SimulationProfiler.stop(SimulationProfiler.Phase.MIND, t);
 			} catch (Exception ex) {
 				ex.printStackTrace();
 				LogConsolidated.log(Level.SEVERE, 20_000, sourceName, "[" + getLocationTag().getLocale() + "] "
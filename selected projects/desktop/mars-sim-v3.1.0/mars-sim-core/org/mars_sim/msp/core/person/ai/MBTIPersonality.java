@@ -10,7 +10,6 @@ package org.mars_sim.msp.core.person.ai;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -126,7 +125,7 @@ public class MBTIPersonality implements Serializable {
 		double randValue = RandomUtil.getRandomDouble(100D);
 		
 		List<String> distribution = new ArrayList<>(personalityDistribution.keySet());
-		Collections.shuffle(distribution);
+		RandomUtil.shuffle(distribution);
 		
 		Iterator<String> i = distribution.iterator();
 		String selected = "";
@@ -32,6 +32,7 @@ import org.mars_sim.msp.core.person.ai.task.utils.TaskSchedule;
 import org.mars_sim.msp.core.time.MarsClock;
 import org.mars_sim.msp.core.tool.MathUtils;
 import org.mars_sim.msp.core.tool.RandomUtil;
+import org.mars_sim.msp.core.tool.SimulationProfiler;
 
 /**
  * The Mind class represents a person's mind. It keeps track of missions and
@@ -237,7 +238,9 @@ public class Mind implements Serializable {
 		if (time > SMALL_AMOUNT_OF_TIME) {
 			// Perform a task if the person has one, or determine a new task/mission.
 			if (taskManager.hasActiveTask()) {
+				long t = SimulationProfiler.start();
 				double remainingTime = taskManager.executeTask(time, person.getPerformanceRating());
+				SimulationProfiler.stop(SimulationProfiler.Phase.TASK_MANAGER, t);
 				if (counts < MAX_COUNTS) {				
 					if (remainingTime > SMALL_AMOUNT_OF_TIME) {
 						// Allow calling takeAction recursively until 'counts' exceed the limit
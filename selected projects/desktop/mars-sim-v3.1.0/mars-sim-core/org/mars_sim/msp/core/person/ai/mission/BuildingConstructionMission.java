@@ -11,7 +11,6 @@ import java.awt.geom.Point2D;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -1109,7 +1108,7 @@ public class BuildingConstructionMission extends Mission implements Serializable
 		boolean goodPosition = false;
 		// Try to put building next to the same building type.
 		List<Building> sameBuildings = site.getSettlement().getBuildingManager().getBuildingsOfSameType(buildingType);
-		Collections.shuffle(sameBuildings);
+		RandomUtil.shuffle(sameBuildings);
 		for (Building b : sameBuildings) {
 			logger.fine("Positioning next to " + b.getNickName());
 			goodPosition = positionNextToBuilding(site, b, dist, false);
@@ -1162,7 +1161,7 @@ public class BuildingConstructionMission extends Mission implements Serializable
 					// Try to put building next to another inhabitable building.
 					List<Building> inhabitableBuildings = settlement.getBuildingManager()
 							.getBuildings(FunctionType.LIFE_SUPPORT);
-					Collections.shuffle(inhabitableBuildings);
+					RandomUtil.shuffle(inhabitableBuildings);
 					for (Building b : inhabitableBuildings) {
 						// Match the floor area (e.g look more organize to put all 7m x 9m next to one
 						// another)
@@ -1189,7 +1188,7 @@ public class BuildingConstructionMission extends Mission implements Serializable
 			logger.fine("buildingType : " + buildingType);
 			// Try to put building next to another inhabitable building.
 			List<Building> inhabitableBuildings = s.getBuildingManager().getBuildings();// FunctionType.LIFE_SUPPORT);
-			Collections.shuffle(inhabitableBuildings);
+			RandomUtil.shuffle(inhabitableBuildings);
 			for (Building b : inhabitableBuildings) {
 				// Match the floor area (e.g look more organize to put all 7m x 9m next to one
 				// another)
@@ -1211,7 +1210,7 @@ public class BuildingConstructionMission extends Mission implements Serializable
 			if (buildingManager.getNumBuildings() > 0) {
 				for (int x = 10; !goodPosition; x += 10) {
 					List<Building> allBuildings = buildingManager.getACopyOfBuildings();
-					Collections.shuffle(allBuildings);
+					RandomUtil.shuffle(allBuildings);
 					for (Building b : allBuildings) {
 						goodPosition = positionNextToBuilding(site, b, (double) x, false);
 						if (goodPosition) {
@@ -1244,7 +1243,7 @@ public class BuildingConstructionMission extends Mission implements Serializable
 
 		BuildingManager manager = settlement.getBuildingManager();
 		List<Building> inhabitableBuildings = manager.getBuildings(FunctionType.LIFE_SUPPORT);
-		Collections.shuffle(inhabitableBuildings);
+		RandomUtil.shuffle(inhabitableBuildings);
 
 		BuildingConfig buildingConfig = SimulationConfig.instance().getBuildingConfiguration();
 		int baseLevel = buildingConfig.getBaseLevel(buildingType);
@@ -1596,7 +1595,7 @@ public class BuildingConstructionMission extends Mission implements Serializable
 		directions.add(back);
 		directions.add(right);
 		directions.add(left);
-		Collections.shuffle(directions);
+		RandomUtil.shuffle(directions);
 
 		double direction = 0D;
 		double structureDistance = 0D;
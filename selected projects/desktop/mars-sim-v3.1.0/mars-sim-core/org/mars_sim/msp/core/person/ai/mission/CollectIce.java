@@ -94,8 +94,9 @@ public class CollectIce extends CollectResourcesMission {
 		if (terrainElevation == null)
 			terrainElevation = surfaceFeatures.getTerrainElevation();
 
-		for (Coordinates location : locations) {
-			totalRate += terrainElevation.getIceCollectionRate(location);
+		double[] rates = terrainElevation.getIceCollectionRates(locations.toArray(new Coordinates[size]));
+		for (double rate : rates) {
+			totalRate += rate;
 		}
 	
 		return totalRate / size;
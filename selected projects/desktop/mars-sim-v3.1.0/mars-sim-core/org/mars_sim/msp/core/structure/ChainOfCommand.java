@@ -11,7 +11,6 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -28,6 +27,7 @@ import org.mars_sim.msp.core.person.ai.SkillType;
 import org.mars_sim.msp.core.person.ai.role.RoleType;
 import org.mars_sim.msp.core.person.ai.role.RoleUtil;
 import org.mars_sim.msp.core.time.MarsClock;
+import org.mars_sim.msp.core.tool.RandomUtil;
 
 /**
  * The ChainOfCommand class creates and assigns a person a role type based on
@@ -101,7 +101,7 @@ public class ChainOfCommand implements Serializable {
 		RoleType[] types = RoleUtil.specialistRoles;
 		
 		// Shuffle the role types randomize
-		Collections.shuffle(Arrays.asList(types));	
+		RandomUtil.shuffle(Arrays.asList(types));	
 		
 		for (RoleType t : types) {
 			if (!roleAvailability.containsKey(t)) {
@@ -110,6 +110,7 @@ import org.mars_sim.msp.core.structure.goods.GoodsManager;
 import org.mars_sim.msp.core.structure.goods.GoodsUtil;
 import org.mars_sim.msp.core.time.MarsClock;
 import org.mars_sim.msp.core.tool.RandomUtil;
+import org.mars_sim.msp.core.tool.SimulationProfiler;
 import org.mars_sim.msp.core.vehicle.LightUtilityVehicle;
 import org.mars_sim.msp.core.vehicle.Rover;
 import org.mars_sim.msp.core.vehicle.Vehicle;
@@ -2001,7 +2002,9 @@ public class Settlement extends Structure implements Serializable, LifeSupportIn
 
 		if (justLoaded) {
 			justLoaded = false;
+			long t = SimulationProfiler.start();
 			goodsManager.timePassing(time);
+			SimulationProfiler.stop(SimulationProfiler.Phase.GOODS_MANAGER, t);
 		}
 
 		goodsManagerUpdateTime += time;
@@ -2009,7 +2012,9 @@ public class Settlement extends Structure implements Serializable, LifeSupportIn
 		// Randomly update goods manager twice per Sol.
 		double timeThreshold = 250D + RandomUtil.getRandomDouble(250D);
 		if (!goodsManager.isInitialized() || (goodsManagerUpdateTime > timeThreshold)) {
+			long t = SimulationProfiler.start();
 			goodsManager.timePassing(time);
+			SimulationProfiler.stop(SimulationProfiler.Phase.GOODS_MANAGER, t);
 			goodsManagerUpdateTime = 0D;
 		}
 	}
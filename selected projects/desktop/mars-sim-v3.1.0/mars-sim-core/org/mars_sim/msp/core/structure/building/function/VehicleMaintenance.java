@@ -10,7 +10,6 @@ import java.awt.geom.Point2D;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.ConcurrentLinkedQueue;
@@ -19,6 +18,7 @@ import java.util.logging.Logger;
 import org.mars_sim.msp.core.LocalAreaUtil;
 import org.mars_sim.msp.core.structure.building.Building;
 import org.mars_sim.msp.core.structure.building.BuildingException;
+import org.mars_sim.msp.core.tool.RandomUtil;
 import org.mars_sim.msp.core.vehicle.Crewable;
 import org.mars_sim.msp.core.vehicle.StatusType;
 import org.mars_sim.msp.core.vehicle.Vehicle;
@@ -258,7 +258,7 @@ public abstract class VehicleMaintenance extends Function implements Serializabl
 
 		// Randomize empty parking locations and select one.
 		if (emptyLocations.size() > 0) {
-			Collections.shuffle(emptyLocations);
+			RandomUtil.shuffle(emptyLocations);
 			result = emptyLocations.get(0);
 		}
 
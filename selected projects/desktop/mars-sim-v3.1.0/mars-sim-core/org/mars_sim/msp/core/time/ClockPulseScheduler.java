@@ -0,0 +1,579 @@
+/**
+ * Mars Simulation Project
+ * ClockPulseScheduler.java
+ */
+
+package org.mars_sim.msp.core.time;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The ClockPulseScheduler delivers the clock pulses of the {@link MasterClock}
+ * to its listeners. Simulation listeners run in registration order on their own
+ * thread. UI listeners run on a separate thread at a capped frame rate, so a
+ * slow panel can never hold back the simulation and vice versa.
+ * <p>
+ * Pulses arriving while a group is still busy with the previous one are
+ * coalesced : their time is added up and delivered once the group catches up.
+ * The simulation listeners get the coalesced time in steps no larger than the
+ * largest of the coalesced pulses, so no unit update gets a bigger time step
+ * than the clock itself would have fired. The UI listeners get the time of at
+ * most one second of pulses per frame, the rest of the time is dropped. For
+ * the simulation group, the share of coalesced pulses together with the pulse
+ * latency histogram tells whether a given time ratio is sustainable on the
+ * machine.
+ */
+public class ClockPulseScheduler {
+
+	/** Initialized logger. */
+	private static Logger logger = Logger.getLogger(ClockPulseScheduler.class.getName());
+
+	/** The default number of UI frames per second. */
+	public static final int DEFAULT_UI_FRAME_RATE = 10;
+	/** The number of milliseconds between two ui pulses. */
+	private static final long UI_PULSE_PERIOD_MS = 1000;
+	/**
+	 * The number of latency histogram buckets. Bucket i counts the pulses with a
+	 * latency under 2^i milliseconds, the last bucket counts all the slower ones.
+	 */
+	public static final int HISTOGRAM_BUCKETS = 16;
+
+	/**
+	 * The kinds of listeners.
+	 */
+	public enum ListenerGroup {
+		SIMULATION, UI
+	}
+
+	/**
+	 * The pulse statistics of one listener group.
+	 */
+	public static class PulseStatistics {
+
+		private final AtomicLong pulses = new AtomicLong();
+		private final AtomicLong deliveredPulses = new AtomicLong();
+		private final AtomicLong coalescedPulses = new AtomicLong();
+		private final AtomicLong droppedPulses = new AtomicLong();
+		private final AtomicLong totalLatency = new AtomicLong();
+		private final AtomicLong maxLatency = new AtomicLong();
+		private final AtomicLongArray latencyHistogram = new AtomicLongArray(HISTOGRAM_BUCKETS);
+
+		private void recordLatency(long latencyNanos) {
+			deliveredPulses.incrementAndGet();
+			totalLatency.addAndGet(latencyNanos);
+			long max = maxLatency.get();
+			while (latencyNanos > max && !maxLatency.compareAndSet(max, latencyNanos))
+				max = maxLatency.get();
+
+			long ms = latencyNanos / 1_000_000L;
+			int bucket = 0;
+			while (bucket < HISTOGRAM_BUCKETS - 1 && ms >= (1L << bucket))
+				bucket++;
+			latencyHistogram.incrementAndGet(bucket);
+		}
+
+		/**
+		 * Gets the number of pulses fired to this group.
+		 *
+		 * @return number of pulses
+		 */
+		public long getPulses() {
+			return pulses.get();
+		}
+
+		/**
+		 * Gets the number of pulses that were coalesced with an earlier pulse
+		 * because the listeners had not picked it up yet. For the UI group, this is
+		 * the normal case at high time ratios.
+		 *
+		 * @return number of coalesced pulses
+		 */
+		public long getCoalescedPulses() {
+			return coalescedPulses.get();
+		}
+
+		/**
+		 * Gets the fraction of pulses that were coalesced.
+		 *
+		 * @return the coalesced ratio between 0 and 1
+		 */
+		public double getCoalescedRatio() {
+			long p = pulses.get();
+			return p == 0 ? 0 : (double) coalescedPulses.get() / p;
+		}
+
+		/**
+		 * Gets the number of pulses whose time was never delivered to the
+		 * listeners. Only UI frames drop time, when the UI thread falls more than
+		 * a second behind.
+		 *
+		 * @return number of dropped pulses
+		 */
+		public long getDroppedPulses() {
+			return droppedPulses.get();
+		}
+
+		/**
+		 * Gets the fraction of pulses that were dropped.
+		 *
+		 * @return the dropped ratio between 0 and 1
+		 */
+		public double getDroppedRatio() {
+			long p = pulses.get();
+			return p == 0 ? 0 : (double) droppedPulses.get() / p;
+		}
+
+		/**
+		 * Gets the average latency between a pulse being fired and its delivery
+		 * being completed.
+		 *
+		 * @return the average latency in milliseconds
+		 */
+		public double getAverageLatency() {
+			long d = deliveredPulses.get();
+			return d == 0 ? 0 : totalLatency.get() / 1_000_000.0 / d;
+		}
+
+		/**
+		 * Gets the maximum pulse latency.
+		 *
+		 * @return the maximum latency in milliseconds
+		 */
+		public double getMaxLatency() {
+			return maxLatency.get() / 1_000_000.0;
+		}
+
+		/**
+		 * Gets a copy of the latency histogram. Bucket i counts the pulses with a
+		 * latency under 2^i milliseconds.
+		 *
+		 * @return the histogram
+		 */
+		public long[] getLatencyHistogram() {
+			long[] result = new long[HISTOGRAM_BUCKETS];
+			for (int i = 0; i < HISTOGRAM_BUCKETS; i++)
+				result[i] = latencyHistogram.get(i);
+			return result;
+		}
+
+		/**
+		 * Resets all the counters.
+		 */
+		public void reset() {
+			pulses.set(0);
+			deliveredPulses.set(0);
+			coalescedPulses.set(0);
+			droppedPulses.set(0);
+			totalLatency.set(0);
+			maxLatency.set(0);
+			for (int i = 0; i < HISTOGRAM_BUCKETS; i++)
+				latencyHistogram.set(i, 0);
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder();
+			sb.append("pulses : ").append(getPulses())
+				.append("  coalesced : ").append(getCoalescedPulses())
+				.append("  dropped : ").append(getDroppedPulses())
+				.append("  avg latency : ").append(Math.round(getAverageLatency() * 100.0) / 100.0).append(" ms")
+				.append("  max latency : ").append(Math.round(getMaxLatency() * 100.0) / 100.0).append(" ms")
+				.append("  histogram (<2^i ms) : [");
+			long[] h = getLatencyHistogram();
+			for (int i = 0; i < h.length; i++) {
+				if (i > 0)
+					sb.append(", ");
+				sb.append(h[i]);
+			}
+			return sb.append("]").toString();
+		}
+	}
+
+	/**
+	 * Holds the pending time of a listener group.
+	 */
+	private static class PendingTime {
+		/** The time accumulated since the last delivery (millisols). */
+		private double time;
+		/** The largest pulse accumulated since the last delivery (millisols). */
+		private double maxPulse;
+		/** The number of pulses accumulated since the last delivery. */
+		private long pulses;
+		/** The nano time of the oldest pulse that has not been delivered. */
+		private long firstPulseNanos;
+		/** True if a delivery has been submitted and not finished. */
+		private boolean inFlight;
+	}
+
+	private final List<ClockListener> simListeners = new CopyOnWriteArrayList<ClockListener>();
+	private final List<ClockListener> uiListeners = new CopyOnWriteArrayList<ClockListener>();
+
+	private final PulseStatistics simStatistics = new PulseStatistics();
+	private final PulseStatistics uiStatistics = new PulseStatistics();
+
+	private final PendingTime simPending = new PendingTime();
+	private final PendingTime uiPending = new PendingTime();
+
+	/** The time accumulated since the last ui pulse (millisols). */
+	private double uiPulseTime;
+	/** The nano time of the last ui pulse. */
+	private long lastUiPulseNanos;
+	/** The measured UI frames per second. */
+	private volatile double uiRefreshRate;
+	/** The nano time of the last UI frame. */
+	private long lastUiFrameNanos;
+
+	private volatile int uiFrameRate = DEFAULT_UI_FRAME_RATE;
+
+	private ExecutorService simExecutor;
+	private ScheduledExecutorService uiExecutor;
+
+	/**
+	 * Constructor
+	 */
+	public ClockPulseScheduler() {
+	}
+
+	/**
+	 * Creates a thread factory for daemon threads with the given name prefix.
+	 *
+	 * @param name
+	 * @return the thread factory
+	 */
+	private static ThreadFactory createThreadFactory(final String name) {
+		final AtomicInteger count = new AtomicInteger();
+		return new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, name + "-" + count.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		};
+	}
+
+	/**
+	 * Starts the executors if they are not running
+	 */
+	public synchronized void start() {
+		if (simExecutor == null || simExecutor.isShutdown())
+			simExecutor = Executors.newSingleThreadExecutor(createThreadFactory("clock-sim"));
+		if (uiExecutor == null || uiExecutor.isShutdown())
+			startUiExecutor();
+		synchronized (simPending) {
+			simPending.inFlight = false;
+		}
+	}
+
+	private void startUiExecutor() {
+		uiExecutor = Executors.newSingleThreadScheduledExecutor(createThreadFactory("clock-ui"));
+		long period = 1_000_000_000L / uiFrameRate;
+		uiExecutor.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				deliverUiFrame();
+			}
+		}, period, period, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Shuts down the executors
+	 */
+	public synchronized void stop() {
+		if (simExecutor != null)
+			simExecutor.shutdownNow();
+		if (uiExecutor != null)
+			uiExecutor.shutdownNow();
+	}
+
+	/**
+	 * Checks if the executors are running
+	 *
+	 * @return true if running
+	 */
+	public synchronized boolean isRunning() {
+		return simExecutor != null && !simExecutor.isShutdown()
+				&& uiExecutor != null && !uiExecutor.isShutdown();
+	}
+
+	/**
+	 * Gets the executor of the simulation listeners
+	 *
+	 * @return the executor
+	 */
+	public synchronized ExecutorService getSimExecutor() {
+		return simExecutor;
+	}
+
+	/**
+	 * Sets the maximum number of UI frames per second.
+	 *
+	 * @param frameRate
+	 */
+	public synchronized void setUIFrameRate(int frameRate) {
+		if (frameRate < 1)
+			throw new IllegalArgumentException("UI frame rate must be positive.");
+		uiFrameRate = frameRate;
+		if (uiExecutor != null && !uiExecutor.isShutdown()) {
+			uiExecutor.shutdownNow();
+			startUiExecutor();
+		}
+	}
+
+	/**
+	 * Gets the maximum number of UI frames per second.
+	 *
+	 * @return the frame rate
+	 */
+	public int getUIFrameRate() {
+		return uiFrameRate;
+	}
+
+	/**
+	 * Gets the measured number of UI frames per second.
+	 *
+	 * @return the refresh rate
+	 */
+	public double getUIRefreshRate() {
+		return uiRefreshRate;
+	}
+
+	/**
+	 * Adds a listener to a group. Does nothing if the listener is already in the
+	 * group.
+	 *
+	 * @param listener
+	 * @param group
+	 */
+	public void addListener(ClockListener listener, ListenerGroup group) {
+		List<ClockListener> list = (group == ListenerGroup.SIMULATION) ? simListeners : uiListeners;
+		synchronized (list) {
+			if (!list.contains(listener))
+				list.add(listener);
+		}
+	}
+
+	/**
+	 * Removes a listener from whichever group it belongs to.
+	 *
+	 * @param listener
+	 */
+	public void removeListener(ClockListener listener) {
+		simListeners.remove(listener);
+		uiListeners.remove(listener);
+	}
+
+	/**
+	 * Removes all listeners.
+	 */
+	public void clearListeners() {
+		simListeners.clear();
+		uiListeners.clear();
+	}
+
+	/**
+	 * Gets all the listeners, simulation listeners first.
+	 *
+	 * @return list of listeners
+	 */
+	public List<ClockListener> getListeners() {
+		List<ClockListener> result = new CopyOnWriteArrayList<ClockListener>(simListeners);
+		result.addAll(uiListeners);
+		return result;
+	}
+
+	/**
+	 * Gets the pulse statistics of a group.
+	 *
+	 * @param group
+	 * @return the statistics
+	 */
+	public PulseStatistics getStatistics(ListenerGroup group) {
+		return (group == ListenerGroup.SIMULATION) ? simStatistics : uiStatistics;
+	}
+
+	/**
+	 * Fires a clock pulse. Returns immediately, the pulse is delivered on the
+	 * group threads.
+	 *
+	 * @param time the amount of time passing (millisols)
+	 */
+	public void firePulse(double time) {
+		long now = System.nanoTime();
+
+		simStatistics.pulses.incrementAndGet();
+		boolean submit = false;
+		synchronized (simPending) {
+			if (simPending.pulses == 0)
+				simPending.firstPulseNanos = now;
+			else
+				// Merged into a pulse that is still waiting for the listeners.
+				simStatistics.coalescedPulses.incrementAndGet();
+			accumulate(simPending, time);
+			if (!simPending.inFlight) {
+				simPending.inFlight = true;
+				submit = true;
+			}
+		}
+		if (submit)
+			submitSimDelivery();
+
+		uiStatistics.pulses.incrementAndGet();
+		synchronized (uiPending) {
+			if (uiPending.pulses == 0)
+				uiPending.firstPulseNanos = now;
+			else
+				// The UI only picks up the accumulated time at each frame.
+				uiStatistics.coalescedPulses.incrementAndGet();
+			accumulate(uiPending, time);
+		}
+	}
+
+	private static void accumulate(PendingTime pending, double time) {
+		pending.time += time;
+		pending.pulses++;
+		if (time > pending.maxPulse)
+			pending.maxPulse = time;
+	}
+
+	private void submitSimDelivery() {
+		ExecutorService executor = getSimExecutor();
+		if (executor == null || executor.isShutdown()) {
+			synchronized (simPending) {
+				simPending.inFlight = false;
+			}
+			return;
+		}
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				deliverSimPulse();
+			}
+		});
+	}
+
+	/**
+	 * Delivers the pending time to the simulation listeners, then resubmits
+	 * itself if more time came in meanwhile.
+	 */
+	private void deliverSimPulse() {
+		double time;
+		double maxPulse;
+		long first;
+		synchronized (simPending) {
+			time = simPending.time;
+			maxPulse = simPending.maxPulse;
+			first = simPending.firstPulseNanos;
+			simPending.time = 0;
+			simPending.maxPulse = 0;
+			simPending.pulses = 0;
+		}
+
+		if (time > 0) {
+			// Split the coalesced time into steps no larger than one of its pulses
+			int steps = (int) Math.ceil(time / maxPulse);
+			double step = time / steps;
+			for (int i = 0; i < steps; i++) {
+				for (ClockListener listener : simListeners) {
+					try {
+						listener.clockPulse(step);
+					} catch (RuntimeException e) {
+						// Never let a listener take the clock thread down with it.
+						logger.log(Level.SEVERE, "Error in clock pulse of " + listener.getClass().getSimpleName(), e);
+					}
+				}
+			}
+			simStatistics.recordLatency(System.nanoTime() - first);
+		}
+
+		boolean again;
+		synchronized (simPending) {
+			again = simPending.pulses > 0;
+			simPending.inFlight = again;
+		}
+		if (again && !Thread.currentThread().isInterrupted())
+			submitSimDelivery();
+	}
+
+	/**
+	 * Delivers the time accumulated since the last frame to the UI listeners.
+	 */
+	private void deliverUiFrame() {
+		double time;
+		long pulses;
+		long first;
+		synchronized (uiPending) {
+			time = uiPending.time;
+			pulses = uiPending.pulses;
+			first = uiPending.firstPulseNanos;
+			uiPending.time = 0;
+			uiPending.maxPulse = 0;
+			uiPending.pulses = 0;
+		}
+		if (time <= 0)
+			return;
+
+		long now = System.nanoTime();
+		long span = now - first;
+		long maxSpan = UI_PULSE_PERIOD_MS * 1_000_000L;
+		if (span > maxSpan) {
+			// The UI fell behind, only hand over the time of the last second of pulses.
+			double kept = (double) maxSpan / span;
+			time *= kept;
+			uiStatistics.droppedPulses.addAndGet(Math.round(pulses * (1 - kept)));
+		}
+		if (lastUiFrameNanos != 0)
+			uiRefreshRate = 1_000_000_000.0 / (now - lastUiFrameNanos);
+		lastUiFrameNanos = now;
+
+		uiPulseTime += time;
+		boolean sendUiPulse = (now - lastUiPulseNanos) >= UI_PULSE_PERIOD_MS * 1_000_000L;
+
+		for (ClockListener listener : uiListeners) {
+			try {
+				listener.clockPulse(time);
+				if (sendUiPulse)
+					listener.uiPulse(uiPulseTime);
+			} catch (RuntimeException e) {
+				logger.log(Level.SEVERE, "Error in ui pulse of " + listener.getClass().getSimpleName(), e);
+			}
+		}
+
+		if (sendUiPulse) {
+			uiPulseTime = 0;
+			lastUiPulseNanos = now;
+		}
+		uiStatistics.recordLatency(System.nanoTime() - first);
+	}
+
+	/**
+	 * Checks if the simulation listeners keep up with the pulses, i.e. if at most
+	 * the given fraction of pulses arrived while the listeners were still busy
+	 * and had to be coalesced.
+	 *
+	 * @param maxCoalescedRatio the acceptable fraction of coalesced pulses
+	 * @return true if sustainable
+	 */
+	public boolean isSustainable(double maxCoalescedRatio) {
+		return simStatistics.getCoalescedRatio() <= maxCoalescedRatio;
+	}
+
+	/**
+	 * Resets the statistics of both groups.
+	 */
+	public void resetStatistics() {
+		simStatistics.reset();
+		uiStatistics.reset();
+	}
+}
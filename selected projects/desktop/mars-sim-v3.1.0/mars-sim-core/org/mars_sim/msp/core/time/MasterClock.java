@@ -10,14 +10,7 @@ package org.mars_sim.msp.core.time;
 import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.ConcurrentModificationException;
-import java.util.Iterator;
-import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -41,8 +34,6 @@ public class MasterClock implements Serializable {
 	private static String loggerName = logger.getName();
 	private static String sourceName = loggerName.substring(loggerName.lastIndexOf(".") + 1, loggerName.length());
 	
-	private static final int FACTOR = 4;
-	
 //	private static final double SMALL_NUMBER = 0.0028;
 	
 	/** The number of milliseconds for each millisols.  */	
@@ -92,17 +83,10 @@ public class MasterClock implements Serializable {
 	private long residualTime;
 	/** The last uptime in terms of number of pulses. */
 	private transient long tLast;
-	/** The cache for accumulating millisols up to a limit before sending out a clock pulse. */
-	private transient double timeCache;
-
 	private static boolean justReloaded = false;
 	
 //	/** The time between two ui pulses. */	
 //	private float pulseTime = .5F;
-	/** The counts for ui pulses. */	
-	private transient int count;
-	/** The total number of counts between two ui pulses. */
-	private transient int totalCount = 40;
 	/** The average of the last working millis and the current one. */
 //	private long millisCache;
 	
@@ -118,8 +102,8 @@ public class MasterClock implements Serializable {
 	
 	/** The total number of pulses cumulated. */
 	private long totalPulses = 1;
-	/** The cache for the last nano time of an ui pulse. */	
-	private long t01 = 0;
+	/** The length of the last time pulse (millisols). */
+	private volatile double lastPulseTime = 0;
 	
 	/** Mode for saving a simulation. */
 	private double tpfCache = 0;
@@ -130,15 +114,8 @@ public class MasterClock implements Serializable {
 
 	/** The file to save or load the simulation. */
 	private transient volatile File file;
-	/** The thread for running the clock listeners. */
-	private transient ExecutorService clockExecutor;
-	
-	/** A list of clock listeners. */
-	private transient List<ClockListener> clockListeners;
-	/** A list of clock listener tasks. */
-	private transient List<ClockListenerTask> clockListenerTasks;
-	/** A list of past UI refresh rate. */
-	private static List<Float> timeIntervals;
+	/** The scheduler delivering clock pulses to the simulation and UI listeners. */
+	private transient ClockPulseScheduler pulseScheduler;
 	
 	
 	/** The martian Clock. */
@@ -185,9 +162,8 @@ public class MasterClock implements Serializable {
 		// Create an Uptime Timer
 		uptimer = new UpTimer(this);
 
-		// Create listener list.
-		clockListeners = Collections.synchronizedList(new CopyOnWriteArrayList<ClockListener>());
-		timeIntervals = new CopyOnWriteArrayList<>();
+		// Create the pulse scheduler.
+		pulseScheduler = new ClockPulseScheduler();
 		
 		// Calculate elapsedLast
 		tLast = uptimer.getUptimeMillis();
@@ -379,20 +355,34 @@ public class MasterClock implements Serializable {
 	}
 
 	/**
-	 * Adds a clock listener
+	 * Gets the pulse scheduler, creating it after a reload if needed.
+	 * 
+	 * @return the pulse scheduler
+	 */
+	private synchronized ClockPulseScheduler getPulseScheduler() {
+		if (pulseScheduler == null)
+			pulseScheduler = new ClockPulseScheduler();
+		return pulseScheduler;
+	}
+
+	/**
+	 * Adds a clock listener. The listener is treated as a UI listener and gets
+	 * its pulses at the capped UI frame rate.
 	 * 
 	 * @param newListener the listener to add.
 	 */
 	public final void addClockListener(ClockListener newListener) {
-		// if listeners list does not exist, create one
-		if (clockListeners == null)
-			clockListeners = Collections.synchronizedList(new CopyOnWriteArrayList<ClockListener>());
-		// if the listeners list does not contain newListener, add it to the list
-		if (!clockListeners.contains(newListener))
-			clockListeners.add(newListener);
-		// will check if clockListenerTaskList already contain the newListener's task,
-		// if it doesn't, create one
-		addClockListenerTask(newListener);
+		getPulseScheduler().addListener(newListener, ClockPulseScheduler.ListenerGroup.UI);
+	}
+
+	/**
+	 * Adds a simulation clock listener. Simulation listeners get every pulse,
+	 * in the order they were added, on the simulation thread.
+	 * 
+	 * @param newListener the listener to add.
+	 */
+	public final void addSimulationListener(ClockListener newListener) {
+		getPulseScheduler().addListener(newListener, ClockPulseScheduler.ListenerGroup.SIMULATION);
 	}
 
 	/**
@@ -401,56 +391,37 @@ public class MasterClock implements Serializable {
 	 * @param oldListener the listener to remove.
 	 */
 	public final void removeClockListener(ClockListener oldListener) {
-//		if (clockListeners == null)
-//			clockListeners = Collections.synchronizedList(new CopyOnWriteArrayList<ClockListener>());
-		if (clockListeners != null && clockListeners.contains(oldListener))
-			clockListeners.remove(oldListener);
-//		 logger.config("just called clockListeners.remove(oldListener)");
-		// Check if clockListenerTaskList contain the newListener's task, if it does,
-		// delete it
-		ClockListenerTask task = retrieveClockListenerTask(oldListener);
-//		 logger.config("just get task");
-		if (task != null)
-			clockListenerTasks.remove(task);
+		getPulseScheduler().removeListener(oldListener);
 	}
 
 	/**
-	 * Adds a clock listener task
-	 *
-	 * @param newListener the clock listener task to add.
+	 * Gets the pulse statistics of a group of listeners
+	 * 
+	 * @param group the listener group
+	 * @return the pulse statistics
 	 */
-	public void addClockListenerTask(ClockListener listener) {
-		boolean hasIt = false;
-		if (clockListenerTasks == null)
-			clockListenerTasks = new CopyOnWriteArrayList<ClockListenerTask>();
-		Iterator<ClockListenerTask> i = clockListenerTasks.iterator();
-		while (i.hasNext()) {
-			ClockListenerTask c = i.next();
-			if (c.getClockListener().equals(listener))
-				hasIt = true;
-		}
-		if (!hasIt) {
-			ClockListenerTask clt = new ClockListenerTask(listener);
-			clockListenerTasks.add(clt);
-//			logger.config(clt.getClockListener().getClass().getSimpleName() + "'s clock listener added.");
-		}
+	public ClockPulseScheduler.PulseStatistics getPulseStatistics(ClockPulseScheduler.ListenerGroup group) {
+		return getPulseScheduler().getStatistics(group);
 	}
 
 	/**
-	 * Retrieve the clock listener task instance, given its clock listener
+	 * Checks if the simulation keeps up with the current time ratio, i.e. if at
+	 * most the given fraction of pulses had to be coalesced.
 	 * 
-	 * @param listener the clock listener
+	 * @param maxCoalescedRatio the acceptable fraction of coalesced pulses
+	 * @return true if the time ratio is sustainable
 	 */
-	public ClockListenerTask retrieveClockListenerTask(ClockListener listener) {	
-		if (clockListenerTasks != null) {
-			Iterator<ClockListenerTask> i = clockListenerTasks.iterator();
-			while (i.hasNext()) {
-				ClockListenerTask c = i.next();
-				if (c.getClockListener().equals(listener))
-					return c;
-			}
-		}
-		return null;
+	public boolean isTimeRatioSustainable(double maxCoalescedRatio) {
+		return getPulseScheduler().isSustainable(maxCoalescedRatio);
+	}
+
+	/**
+	 * Sets the maximum number of UI frames per second
+	 * 
+	 * @param frameRate
+	 */
+	public void setUIFrameRate(int frameRate) {
+		getPulseScheduler().setUIFrameRate(frameRate);
 	}
 
 	/**
@@ -560,22 +531,13 @@ public class MasterClock implements Serializable {
 	}
 
 	/**
-	 * Resets the clock listener thread
+	 * Restarts the clock listener threads, keeping the registered listeners
 	 */
 	public void resetClockListeners() {
-		// If the clockListenerExecutor is not working, need to restart it
-//		LogConsolidated.log(Level.CONFIG, 0, sourceName, "The Clock Thread has died. Restarting...");
+		getPulseScheduler().start();
 		
-		// Re-instantiate clockListenerExecutor
-		clockExecutor = Executors.newSingleThreadExecutor();
-		// Re-instantiate clockListeners
-		clockListeners = Collections.synchronizedList(new CopyOnWriteArrayList<ClockListener>());
-
-		setupClockListenerTask();
-			
-		addClockListenerTask(sim);
-
-//		sim.restartClockExecutor();
+		if (sim != null)
+			addSimulationListener(sim);
 	}
 	
 //	public long getDefaultTotalPulses() {
@@ -896,9 +858,7 @@ public class MasterClock implements Serializable {
 			// timePulse = 0.0 or 0.002883686808002465
 			 
 			if (timePulse > 0 && keepRunning) {
-				if (clockExecutor != null
-					&& !clockExecutor.isTerminated()
-					&& !clockExecutor.isShutdown()) {	
+				if (getPulseScheduler().isRunning()) {	
 					
 					// Add time to the Earth clock.
 					earthClock.addTime(earthMillis);
@@ -919,7 +879,7 @@ public class MasterClock implements Serializable {
 				}
 				else {
 					// NOTE: when resuming from power saving, timePulse becomes zero
-					LogConsolidated.log(Level.CONFIG, 0, sourceName, "The clockListenerExecutor has died. Restarting...");
+					LogConsolidated.log(Level.CONFIG, 0, sourceName, "The clock listener threads are not running. Restarting...");
 					resetClockListeners();
 				}
 			}
@@ -985,32 +945,13 @@ public class MasterClock implements Serializable {
 			return false;
 	}
 
-	/**
-	 * Looks at the clock listener list and checks if each listener has already had
-	 * a corresponding task in the clock listener task list.
-	 */
-	public void setupClockListenerTask() {
-		clockListeners.forEach(t -> {
-			// Check if it has a corresponding task or not, 
-			// if it doesn't, create a task for t
-			addClockListenerTask(t);
-		});
-	}
-
 	/**
 	 * Returns the refresh rate
 	 * 
 	 * @return the refresh rate
 	 */
 	public float getRefresh() {
-//		return 1/(DoubleStream.of(refreshRates).average().orElse(0d));
-		float sum = 0;
-		int size = timeIntervals.size();
-		for (float r : timeIntervals) {
-			sum += r;
-		}	
-		// Note: average refresh rate = 1/timeInterval
-		return size/sum;
+		return (float) getPulseScheduler().getUIRefreshRate();
 	}
 
 //	/** 
@@ -1022,127 +963,6 @@ public class MasterClock implements Serializable {
 //		return pulseTime;
 //	}
 	
-	/**
-	 * Prepares clock listener tasks for setting up threads.
-	 */
-	public class ClockListenerTask implements Runnable {
-
-		private double time;
-		private ClockListener listener;
-
-		public ClockListener getClockListener() {
-			return listener;
-		}
-
-		private ClockListenerTask(ClockListener listener) {
-			this.listener = listener;
-		}
-
-		public void insertTime(double time) {
-			this.time = time;
-		}
-
-		public double getTime() {
-			return time;
-		}
-		
-		@Override
-		public void run() {
-			if (sim.isDoneInitializing()) {
-				try {
-					// The most important job for CLockListener is to send a clock pulse to
-					// 1. Simulation
-	
-					// so that 
-					// 1. UpTimer,
-					// 2. Mars, 
-					// 3. MissionManager,
-					// 4. UnitManager, 
-					// 5. ScientificStudyManager, 
-					// 6. TransportManager,
-				
-					// gets updated.
-					listener.clockPulse(time);
-					timeCache += time;
-					count++;
-	//				long t02 = System.currentTimeMillis();//.nanoTime();
-	//				// Discard the very first pulseTime since it's not invalid
-	//				// at the start of the sim
-	//				if (t01 != 0) {
-	//					timeIntervals.add((t02-t01)/1_000F);
-	//				}
-	//				t01 = t02;
-	//				if (timeIntervals.size() > 15)
-	//					timeIntervals.remove(0);
-					
-					// period is in seconds
-	//				double period = timeCache / currentTR * MarsClock.SECONDS_PER_MILLISOL;
-	
-					if (count > FACTOR) {
-	//					int speed = getCurrentSpeed();
-	//					if (speed == 0)
-	//						speed = 1;
-	//					totalCount = speed * speed / FACTOR ;
-	//					System.out.println(totalCount);
-	//					if (totalCount < 4)
-	//						totalCount = 4;
-	//					totalCount = (int) (3D/computePulsesPerSecond());
-						count = 0;
-						
-	//					long t02 = System.nanoTime();
-						long t02 = System.currentTimeMillis();//.nanoTime();
-						// Discard the very first pulseTime since it's not invalid
-						// at the start of the sim
-						if (t01 != 0) {
-							timeIntervals.add((t02-t01)/1_000F);
-						}
-						t01 = t02;
-	
-						if (timeIntervals.size() > 30)
-							timeIntervals.remove(0);
-	
-	//					System.out.println(
-	//							"time : " + Math.round(time*100.0)/100.0 
-	//							+ "   timeCache : " + Math.round(timeCache*100.0)/100.0 
-	//							  "   r : " + Math.round(r*100.0)/100.0 
-	//							+ "   refresh : " + Math.round(getRefresh()*100.0)/100.0 
-	//							"   time between pulses : " + pulseTime
-	//							+ "   currentTR : " + currentTR
-	//							+ "   Period : " + Math.round(period*1000.0)/1000.0
-	//							);
-	
-						// The secondary job of CLockListener is to send uiPulse() out to
-						// 0. MainDesktopPane,
-						// which in terms sends a clock pulse out to update all unit windows and tool
-						// windows
-						//
-						// It also sends an ui pulse out to the following class and map related panels:
-	
-						// 1. MarsTerminal
-						// 2. AudioPlayer
-						// 3. MainDesktopPane
-						// 4. GlobeDisplay
-						// 5. MapPanel (2x)
-						// 6. TimeWindow
-						// 7. SettlementMapPanel
-						// 8. NotificationWindow
-						// 9. ResupplyDetailPanel
-						//10. ArrivingSettlementDetailPanel
-						
-						
-						// Note: on a typical PC, approximately one ui pulse is sent out each second
-						listener.uiPulse(timeCache);
-						timeCache = 0;
-	
-					}
-	
-				} catch (ConcurrentModificationException e) {
-					e.printStackTrace();
-				}
-			}
-		}
-	}
-
 	   /**
      * Gets the simulation speed
      * 
@@ -1161,21 +981,29 @@ public class MasterClock implements Serializable {
     	return -speed;
     }
     
+	/**
+	 * Advances the Earth and Mars clocks by a time pulse without any real-time
+	 * pacing and without firing the clock listeners. Used by batch runs that
+	 * drive the simulation directly.
+	 * 
+	 * @param timePulse the time pulse (millisols)
+	 */
+	public void advanceTime(double timePulse) {
+		earthClock.addTime((long) (timePulse * MILLISECONDS_PER_MILLISOL));
+		marsClock.addTime(timePulse);
+		lastPulseTime = timePulse;
+		totalPulses++;
+	}
+
 	/**
 	 * Fires the clock pulse to each clock listener
 	 * 
 	 * @param time
 	 */
 	public void fireClockPulse(double time) {
-		for (ClockListenerTask task : clockListenerTasks) {
-			if (task != null) {
-				task.insertTime(time);
-				clockExecutor.execute(task);
-			}
-
-			else
-				return;
-		}
+		lastPulseTime = time;
+		if (sim != null && sim.isDoneInitializing())
+			getPulseScheduler().firePulse(time);
 	}
 
 	/**
@@ -1244,7 +1072,7 @@ public class MasterClock implements Serializable {
 	 */
 	public void firePauseChange(boolean isPaused, boolean showPane) {
 
-		clockListeners.forEach(cl -> cl.pauseChange(isPaused, showPane));
+		getPulseScheduler().getListeners().forEach(cl -> cl.pauseChange(isPaused, showPane));
 		
 //		 synchronized (listeners) { 
 //			 Iterator<ClockListener> i = listeners.iterator();
@@ -1287,19 +1115,17 @@ public class MasterClock implements Serializable {
 	}
 
 	/**
-	 * Starts clock listener thread pool executor
+	 * Starts the clock listener threads
 	 */
 	public void startClockListenerExecutor() {
-		if (clockExecutor == null)
-			clockExecutor = Executors.newSingleThreadExecutor(); //(ThreadPoolExecutor) Executors.newFixedThreadPool(1);
+		getPulseScheduler().start();
 	}
 
 	/**
-	 * Shuts down clock listener thread pool executor
+	 * Shuts down the clock listener threads
 	 */
 	public void endClockListenerExecutor() {
-		if (clockExecutor != null)
-			clockExecutor.shutdownNow();
+		getPulseScheduler().stop();
 	}
 
 
@@ -1309,7 +1135,7 @@ public class MasterClock implements Serializable {
 	 * @return
 	 */
 	public ExecutorService getClockListenerExecutor() {
-		return clockExecutor;
+		return getPulseScheduler().getSimExecutor();
 	}
 
 
@@ -1346,10 +1172,7 @@ public class MasterClock implements Serializable {
 				// timePulse : 0.168
 
 				if (timePulse > 0 && keepRunning && !isPaused
-						&& clockExecutor != null 
-						&& !clockExecutor.isTerminated()
-//						&& !clockExecutor.isTerminating()
-						&& !clockExecutor.isShutdown()) {
+						&& getPulseScheduler().isRunning()) {
 					// Add time pulse length to Earth and Mars clocks.
 					earthClock.addTime((int)(1000 * t));
 					marsClock.addTime(timePulse);
@@ -1382,8 +1205,13 @@ public class MasterClock implements Serializable {
 		}
 	}
 
+	/**
+	 * Gets the length of the last time pulse
+	 * 
+	 * @return the time pulse (millisols)
+	 */
 	public double getTime() {
-		return clockListenerTasks.get(0).getTime();
+		return lastPulseTime;
 	}
 	
 	/**
@@ -1447,7 +1275,6 @@ public class MasterClock implements Serializable {
 	 */
 	public static void initializeInstances(Simulation s) {
 		sim = s;//Simulation.instance();
-		timeIntervals = new ArrayList<>();
 		justReloaded = true;
 	}
 	
@@ -1464,10 +1291,12 @@ public class MasterClock implements Serializable {
 		earthClock = null;
 		uptimer = null;
 		clockThreadTask = null;
-		clockExecutor = null;
 		file = null;
 
-		clockListeners = null;
-		clockExecutor = null;
+		if (pulseScheduler != null) {
+			pulseScheduler.stop();
+			pulseScheduler.clearListeners();
+		}
+		pulseScheduler = null;
 	}
 }
\ No newline at end of file
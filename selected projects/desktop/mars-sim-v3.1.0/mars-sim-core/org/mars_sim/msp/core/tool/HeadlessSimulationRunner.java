@@ -0,0 +1,340 @@
+/**
+ * Mars Simulation Project
+ * HeadlessSimulationRunner.java
+ */
+package org.mars_sim.msp.core.tool;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.mars_sim.msp.core.Simulation;
+import org.mars_sim.msp.core.SimulationConfig;
+import org.mars_sim.msp.core.time.MarsClock;
+
+/**
+ * The HeadlessSimulationRunner advances a simulation for a number of sols as
+ * fast as possible on the calling thread, with no UI and no real-time pacing,
+ * and reports how fast it went. It is laid out like a JMH run : a number of
+ * warmup iterations whose results are discarded, then measured iterations,
+ * each starting from a fresh simulation with the same random seed.
+ * <p>
+ * Usage :
+ * <pre>
+ * java -cp mars-sim-core.jar org.mars_sim.msp.core.tool.HeadlessSimulationRunner
+ *      [-sols 3] [-seed 42] [-pulse 1.0] [-warmup 1] [-iterations 3]
+ *      [-load path/to/saved.sim] [-csv results.csv]
+ * </pre>
+ * For each measured iteration it reports the simulated time per wall time,
+ * the time spent in each {@link SimulationProfiler.Phase} and the allocation
+ * rate of the JVM.
+ * <p>
+ * Runs are only as reproducible as the simulation allows. All the random
+ * numbers come from {@link RandomUtil}, which is reseeded before each
+ * iteration, but units are still kept in hash based collections whose
+ * iteration order may differ between two runs, so two runs with the same seed
+ * can take different turns. The allocation is summed over the threads that
+ * are alive at the start and at the end of an iteration; threads that start
+ * and end within an iteration are not counted.
+ */
+public class HeadlessSimulationRunner {
+
+	private static final String NEW_SCENARIO = "new";
+
+	/** The number of sols to run per iteration. */
+	private double sols = 3;
+	/** The seed of the random generator. */
+	private long seed = 42L;
+	/** The length of each time pulse (millisols). */
+	private double pulse = 1D;
+	/** The number of warmup iterations. */
+	private int warmupIterations = 1;
+	/** The number of measured iterations. */
+	private int iterations = 3;
+	/** The saved simulation to load, or null for a new simulation from the xml configuration. */
+	private File scenario;
+	/** The csv file to append the results to, or null. */
+	private File csvFile;
+
+	/**
+	 * The results of one iteration.
+	 */
+	public static class IterationResult {
+		private long wallNanos;
+		private double simMillisols;
+		private long allocatedBytes = -1;
+		private long gcCount;
+		private long gcMillis;
+		private long[] phaseNanos = new long[SimulationProfiler.Phase.values().length];
+		private long[] phaseCalls = new long[SimulationProfiler.Phase.values().length];
+
+		/**
+		 * Gets the simulated time per wall time.
+		 *
+		 * @return the ratio of simulated seconds over wall seconds
+		 */
+		public double getTimeRatio() {
+			return simMillisols * MarsClock.SECONDS_PER_MILLISOL / (wallNanos / 1_000_000_000D);
+		}
+
+		/**
+		 * Gets the allocation rate of all the threads.
+		 *
+		 * @return the rate in MB per wall second, or -1 if not supported by the JVM
+		 */
+		public double getAllocationRate() {
+			if (allocatedBytes < 0)
+				return -1;
+			return allocatedBytes / 1024D / 1024D / (wallNanos / 1_000_000_000D);
+		}
+	}
+
+	/**
+	 * Parses the command line arguments.
+	 *
+	 * @param args
+	 */
+	public HeadlessSimulationRunner(String[] args) {
+		for (int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			if (i + 1 >= args.length)
+				throw new IllegalArgumentException("Missing value for " + arg);
+			String value = args[++i];
+			if ("-sols".equals(arg))
+				sols = Double.parseDouble(value);
+			else if ("-seed".equals(arg))
+				seed = Long.parseLong(value);
+			else if ("-pulse".equals(arg))
+				pulse = Double.parseDouble(value);
+			else if ("-warmup".equals(arg))
+				warmupIterations = Integer.parseInt(value);
+			else if ("-iterations".equals(arg))
+				iterations = Integer.parseInt(value);
+			else if ("-load".equals(arg))
+				scenario = NEW_SCENARIO.equals(value) ? null : new File(value);
+			else if ("-csv".equals(arg))
+				csvFile = new File(value);
+			else
+				throw new IllegalArgumentException("Unknown option " + arg);
+		}
+		if (sols <= 0 || pulse <= 0 || iterations < 1 || warmupIterations < 0)
+			throw new IllegalArgumentException("sols and pulse must be positive, iterations at least 1.");
+	}
+
+	/**
+	 * Runs the warmup and the measured iterations.
+	 *
+	 * @return the results of the measured iterations
+	 */
+	public List<IterationResult> run() {
+		SimulationConfig.instance().loadConfig();
+
+		System.out.println(String.format(Locale.US,
+				"# Scenario: %s, %.1f sols per iteration, pulse %.3f millisols, seed %d",
+				scenario == null ? NEW_SCENARIO : scenario.getPath(), sols, pulse, seed));
+
+		for (int i = 1; i <= warmupIterations; i++) {
+			IterationResult r = runIteration();
+			System.out.println(String.format(Locale.US, "# Warmup Iteration %3d: %10.1f sim-sec/wall-sec", i,
+					r.getTimeRatio()));
+		}
+
+		List<IterationResult> results = new ArrayList<>();
+		for (int i = 1; i <= iterations; i++) {
+			IterationResult r = runIteration();
+			results.add(r);
+			System.out.println(String.format(Locale.US, "Iteration %3d: %10.1f sim-sec/wall-sec  %8.1f MB/s allocated",
+					i, r.getTimeRatio(), r.getAllocationRate()));
+		}
+
+		printSummary(results);
+		if (csvFile != null)
+			writeCsv(results);
+		return results;
+	}
+
+	/**
+	 * Creates a fresh simulation and runs it for the configured number of sols.
+	 *
+	 * @return the result
+	 */
+	private IterationResult runIteration() {
+		RandomUtil.setSeed(seed);
+
+		Simulation sim = Simulation.instance();
+		if (scenario == null)
+			sim.createNewSimulation(-1, false);
+		else
+			sim.loadSimulation(scenario);
+
+		// Let the first pulse do its one-off initialization outside of the measurement.
+		sim.advanceHeadless(pulse);
+
+		IterationResult result = new IterationResult();
+		long steps = Math.round(sols * 1000D / pulse);
+
+		ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		Map<Long, Long> allocatedBefore = getAllocatedBytes(threadBean);
+		long gcCountBefore = getGcCount();
+		long gcMillisBefore = getGcMillis();
+
+		SimulationProfiler.reset();
+		SimulationProfiler.setEnabled(true);
+
+		long start = System.nanoTime();
+		for (long i = 0; i < steps; i++) {
+			sim.advanceHeadless(pulse);
+		}
+		result.wallNanos = System.nanoTime() - start;
+
+		SimulationProfiler.setEnabled(false);
+
+		result.simMillisols = steps * pulse;
+		Map<Long, Long> allocatedAfter = getAllocatedBytes(threadBean);
+		if (allocatedBefore != null && allocatedAfter != null) {
+			long allocated = 0;
+			for (Map.Entry<Long, Long> entry : allocatedAfter.entrySet()) {
+				// Threads started during the iteration allocated everything in it.
+				Long before = allocatedBefore.get(entry.getKey());
+				allocated += entry.getValue() - (before == null ? 0 : before);
+			}
+			result.allocatedBytes = allocated;
+		}
+		result.gcCount = getGcCount() - gcCountBefore;
+		result.gcMillis = getGcMillis() - gcMillisBefore;
+		for (SimulationProfiler.Phase phase : SimulationProfiler.Phase.values()) {
+			result.phaseNanos[phase.ordinal()] = SimulationProfiler.getNanos(phase);
+			result.phaseCalls[phase.ordinal()] = SimulationProfiler.getCalls(phase);
+		}
+		return result;
+	}
+
+	/**
+	 * Gets the number of bytes allocated by each live thread so far.
+	 *
+	 * @param threadBean
+	 * @return the bytes by thread id, or null if not supported by the JVM
+	 */
+	private static Map<Long, Long> getAllocatedBytes(ThreadMXBean threadBean) {
+		if (threadBean instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threadBean;
+			if (bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()) {
+				long[] ids = bean.getAllThreadIds();
+				long[] bytes = bean.getThreadAllocatedBytes(ids);
+				Map<Long, Long> result = new HashMap<>();
+				for (int i = 0; i < ids.length; i++) {
+					// -1 for threads that died in the meantime
+					if (bytes[i] >= 0)
+						result.put(ids[i], bytes[i]);
+				}
+				return result;
+			}
+		}
+		return null;
+	}
+
+	private static long getGcCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+			count += Math.max(0, gc.getCollectionCount());
+		return count;
+	}
+
+	private static long getGcMillis() {
+		long millis = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+			millis += Math.max(0, gc.getCollectionTime());
+		return millis;
+	}
+
+	/**
+	 * Prints the mean and the standard deviation of the measured iterations, and
+	 * the average time breakdown per phase.
+	 *
+	 * @param results
+	 */
+	private void printSummary(List<IterationResult> results) {
+		int n = results.size();
+		double mean = 0;
+		for (IterationResult r : results)
+			mean += r.getTimeRatio() / n;
+		double variance = 0;
+		for (IterationResult r : results)
+			variance += Math.pow(r.getTimeRatio() - mean, 2) / Math.max(1, n - 1);
+
+		long totalWall = 0;
+		long totalAllocated = 0;
+		long totalGcCount = 0;
+		long totalGcMillis = 0;
+		long[] phaseNanos = new long[SimulationProfiler.Phase.values().length];
+		long[] phaseCalls = new long[phaseNanos.length];
+		for (IterationResult r : results) {
+			totalWall += r.wallNanos;
+			totalAllocated += Math.max(0, r.allocatedBytes);
+			totalGcCount += r.gcCount;
+			totalGcMillis += r.gcMillis;
+			for (int i = 0; i < phaseNanos.length; i++) {
+				phaseNanos[i] += r.phaseNanos[i];
+				phaseCalls[i] += r.phaseCalls[i];
+			}
+		}
+
+		System.out.println();
+		System.out.println(String.format(Locale.US, "Result: %.1f ± %.1f sim-sec/wall-sec (%.2f sols per wall minute)",
+				mean, Math.sqrt(variance), mean * 60D / (1000D * MarsClock.SECONDS_PER_MILLISOL)));
+		System.out.println(String.format(Locale.US, "Allocation: %.1f MB/s, GC: %d collections, %d ms",
+				totalAllocated / 1024D / 1024D / (totalWall / 1_000_000_000D), totalGcCount, totalGcMillis));
+		System.out.println();
+		System.out.println(String.format(Locale.US, "%-28s %12s %8s %14s", "Phase", "ms", "%", "us/call"));
+		for (SimulationProfiler.Phase phase : SimulationProfiler.Phase.values()) {
+			int i = phase.ordinal();
+			System.out.println(String.format(Locale.US, "%-28s %12.1f %7.1f%% %14.2f", phase.getLabel(),
+					phaseNanos[i] / 1_000_000D, 100D * phaseNanos[i] / totalWall,
+					phaseCalls[i] == 0 ? 0 : phaseNanos[i] / 1_000D / phaseCalls[i]));
+		}
+	}
+
+	/**
+	 * Appends one line per measured iteration to the csv file.
+	 *
+	 * @param results
+	 */
+	private void writeCsv(List<IterationResult> results) {
+		boolean header = !csvFile.exists();
+		try (PrintWriter out = new PrintWriter(new FileWriter(csvFile, true))) {
+			if (header) {
+				StringBuilder sb = new StringBuilder("seed,sols,pulse,wall_ms,sim_sec_per_wall_sec,alloc_mb_per_sec,gc_count,gc_ms");
+				for (SimulationProfiler.Phase phase : SimulationProfiler.Phase.values())
+					sb.append(',').append(phase.name().toLowerCase(Locale.US)).append("_ms");
+				out.println(sb);
+			}
+			for (IterationResult r : results) {
+				StringBuilder sb = new StringBuilder();
+				sb.append(seed).append(',').append(sols).append(',').append(pulse).append(',')
+					.append(r.wallNanos / 1_000_000L).append(',')
+					.append(String.format(Locale.US, "%.2f,%.2f", r.getTimeRatio(), r.getAllocationRate())).append(',')
+					.append(r.gcCount).append(',').append(r.gcMillis);
+				for (long nanos : r.phaseNanos)
+					sb.append(',').append(nanos / 1_000_000L);
+				out.println(sb);
+			}
+		} catch (IOException e) {
+			System.err.println("Cannot write " + csvFile + " : " + e.getMessage());
+		}
+	}
+
+	public static void main(String[] args) {
+		List<IterationResult> results = new HeadlessSimulationRunner(args).run();
+		// The simulation leaves non-daemon threads behind.
+		System.exit(results.isEmpty() ? 1 : 0);
+	}
+}
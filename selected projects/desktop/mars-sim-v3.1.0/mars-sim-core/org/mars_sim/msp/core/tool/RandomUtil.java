@@ -6,7 +6,9 @@
  */
 package org.mars_sim.msp.core.tool;
 
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 import org.mars_sim.msp.core.Msg;
@@ -43,6 +45,15 @@ public final class RandomUtil {
 	// private final static SFMT19937 random = new SFMT19937();
 	// private final static SFMT19937j random = new SFMT19937j();
 
+	/**
+	 * Reseeds the random generator so that a run can be reproduced.
+	 * 
+	 * @param seed the seed
+	 */
+	public static void setSeed(long seed) {
+		random.setSeed(seed);
+	}
+
 	/**
 	 * Returns true if given number is less than a random percentage.
 	 * 
@@ -246,4 +257,16 @@ public final class RandomUtil {
 
 		return result;
 	}
+
+	/**
+	 * Randomly permutes a list. Unlike {@link Collections#shuffle(List)}, this
+	 * uses the random generator of this class, so the order follows its seed.
+	 * 
+	 * @param list the list to shuffle
+	 */
+	public static void shuffle(List<?> list) {
+		for (int i = list.size() - 1; i > 0; i--) {
+			Collections.swap(list, i, random.nextInt(i + 1));
+		}
+	}
 }
\ No newline at end of file
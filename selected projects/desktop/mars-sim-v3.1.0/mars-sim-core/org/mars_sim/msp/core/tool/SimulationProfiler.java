@@ -0,0 +1,144 @@
+/**
+ * Mars Simulation Project
+ * SimulationProfiler.java
+ */
+package org.mars_sim.msp.core.tool;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The SimulationProfiler accumulates the wall time spent in the main phases of
+ * a clock pulse. It is off by default and costs a single volatile read per
+ * phase when off.
+ * <p>
+ * Usage :
+ * <pre>
+ * long t = SimulationProfiler.start();
+ * unitManager.timePassing(time);
+ * SimulationProfiler.stop(SimulationProfiler.Phase.UNIT_MANAGER, t);
+ * </pre>
+ * Phases may nest (e.g. MIND runs inside PERSONS), so the times of nested
+ * phases are included in the times of their parents.
+ */
+public final class SimulationProfiler {
+
+	/**
+	 * The profiled phases.
+	 */
+	public enum Phase {
+		// Simulation.clockPulse()
+		MARS("Mars"),
+		MISSION_MANAGER("MissionManager"),
+		UNIT_MANAGER("UnitManager"),
+		SCIENTIFIC_STUDY_MANAGER("ScientificStudyManager"),
+		TRANSPORT_MANAGER("TransportManager"),
+		// UnitManager.timePassing()
+		MARS_SURFACE("  MarsSurface"),
+		SETTLEMENTS("  Settlements"),
+		CONSTRUCTION_SITES("  ConstructionSites"),
+		PERSONS("  Persons"),
+		ROBOTS("  Robots"),
+		EQUIPMENT("  Equipment"),
+		VEHICLES("  Vehicles"),
+		OTHER_UNITS("  Other units"),
+		// Nested in the unit phases
+		GOODS_MANAGER("    GoodsManager"),
+		MIND("    Mind"),
+		TASK_MANAGER("      TaskManager");
+
+		private String label;
+
+		private Phase(String label) {
+			this.label = label;
+		}
+
+		public String getLabel() {
+			return label;
+		}
+	}
+
+	private static volatile boolean enabled = false;
+
+	private static final LongAdder[] nanos = new LongAdder[Phase.values().length];
+	private static final LongAdder[] calls = new LongAdder[Phase.values().length];
+
+	static {
+		for (int i = 0; i < nanos.length; i++) {
+			nanos[i] = new LongAdder();
+			calls[i] = new LongAdder();
+		}
+	}
+
+	private SimulationProfiler() {
+	}
+
+	/**
+	 * Turns the profiler on or off.
+	 *
+	 * @param value
+	 */
+	public static void setEnabled(boolean value) {
+		enabled = value;
+	}
+
+	/**
+	 * Checks if the profiler is on.
+	 *
+	 * @return true if on
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Marks the start of a phase.
+	 *
+	 * @return the start nano time, or 0 if the profiler is off
+	 */
+	public static long start() {
+		return enabled ? System.nanoTime() : 0L;
+	}
+
+	/**
+	 * Marks the end of a phase.
+	 *
+	 * @param phase the phase
+	 * @param start the value returned by {@link #start()}
+	 */
+	public static void stop(Phase phase, long start) {
+		if (start != 0L) {
+			nanos[phase.ordinal()].add(System.nanoTime() - start);
+			calls[phase.ordinal()].increment();
+		}
+	}
+
+	/**
+	 * Gets the total time spent in a phase.
+	 *
+	 * @param phase
+	 * @return the time in nanoseconds
+	 */
+	public static long getNanos(Phase phase) {
+		return nanos[phase.ordinal()].sum();
+	}
+
+	/**
+	 * Gets the number of times a phase ran.
+	 *
+	 * @param phase
+	 * @return the number of calls
+	 */
+	public static long getCalls(Phase phase) {
+		return calls[phase.ordinal()].sum();
+	}
+
+	/**
+	 * Resets all the counters.
+	 */
+	public static void reset() {
+		for (int i = 0; i < nanos.length; i++) {
+			nanos[i].reset();
+			calls[i].reset();
+		}
+	}
+}
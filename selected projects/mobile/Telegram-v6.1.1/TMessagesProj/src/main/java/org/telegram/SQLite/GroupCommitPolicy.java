@@ -0,0 +1,113 @@
+/*
+ * This is the source code of Telegram for Android v. 5.x.x.
+ * It is licensed under GNU GPL v. 2 or later.
+ * You should have received a copy of the license in this archive (see LICENSE).
+ *
+ * Copyright Nikolai Kudashov, 2013-2018.
+ */
+
+package org.telegram.SQLite;
+
+/**
+ * Decides when grouped transactions of {@link SQLiteDatabase} are committed and keeps
+ * statistics of group commits. Times are passed in by the caller, so this class has no
+ * Android dependencies and is tested on a desktop JVM.
+ */
+public class GroupCommitPolicy {
+
+    public static final int MAX_GROUPED_TRANSACTIONS = 100;
+    public static final long MAX_GROUP_DURATION = 100;
+
+    private final int maxTransactions;
+    private final long maxDuration;
+
+    private int groupedTransactions;
+    private long groupStartTime;
+
+    private volatile int groupCommitCount;
+    private volatile int groupedTransactionCount;
+    private volatile long groupCommitTime;
+    private volatile long maxGroupLatency;
+
+    public GroupCommitPolicy() {
+        this(MAX_GROUPED_TRANSACTIONS, MAX_GROUP_DURATION);
+    }
+
+    public GroupCommitPolicy(int maxTransactions, long maxDuration) {
+        this.maxTransactions = maxTransactions;
+        this.maxDuration = maxDuration;
+    }
+
+    /**
+     * Returns the time in ms after which a group must be committed even if no more
+     * transactions come.
+     */
+    public long getMaxDuration() {
+        return maxDuration;
+    }
+
+    public void onGroupStarted(long now) {
+        groupedTransactions = 0;
+        groupStartTime = now;
+    }
+
+    /**
+     * Returns true if the group must be committed after this transaction.
+     */
+    public boolean onTransactionCommitted(long now) {
+        groupedTransactions++;
+        return groupedTransactions >= maxTransactions || isExpired(now);
+    }
+
+    /**
+     * Returns true if the group is older than the max duration.
+     */
+    public boolean isExpired(long now) {
+        return now - groupStartTime >= maxDuration;
+    }
+
+    public int getGroupedTransactions() {
+        return groupedTransactions;
+    }
+
+    /**
+     * Returns the time in ms the first transaction of the group waited until it was written.
+     */
+    public long onGroupCommitted(long commitStartTime, long now) {
+        groupCommitCount++;
+        groupedTransactionCount += groupedTransactions;
+        groupCommitTime += now - commitStartTime;
+        long latency = now - groupStartTime;
+        maxGroupLatency = Math.max(maxGroupLatency, latency);
+        return latency;
+    }
+
+    /**
+     * Returns the number of grouped commits written to disk so far.
+     */
+    public int getGroupCommitCount() {
+        return groupCommitCount;
+    }
+
+    /**
+     * Returns the number of transactions written by grouped commits so far. Divided by
+     * {@link #getGroupCommitCount()} it gives the average group size.
+     */
+    public int getGroupedTransactionCount() {
+        return groupedTransactionCount;
+    }
+
+    /**
+     * Returns the total time in ms spent in grouped commits.
+     */
+    public long getGroupCommitTime() {
+        return groupCommitTime;
+    }
+
+    /**
+     * Returns the longest time in ms a transaction waited in a group until it was written.
+     */
+    public long getMaxGroupLatency() {
+        return maxGroupLatency;
+    }
+}
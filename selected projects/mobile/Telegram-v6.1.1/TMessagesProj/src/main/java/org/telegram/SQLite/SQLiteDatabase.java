@@ -8,6 +8,10 @@
 
 package org.telegram.SQLite;
 
+import android.os.SystemClock;
+
+import java.util.HashMap;
+
 import org.telegram.messenger.BuildVars;
 import org.telegram.messenger.FileLog;
 import org.telegram.messenger.ApplicationLoader;
@@ -19,6 +23,13 @@ public class SQLiteDatabase {
 	private boolean isOpen;
     private boolean inTransaction;
 
+    private boolean groupCommitEnabled;
+    private boolean inGroup;
+    private Runnable groupStartedCallback;
+    private final GroupCommitPolicy groupCommitPolicy = new GroupCommitPolicy();
+
+    private final HashMap<String, SQLitePreparedStatement> cachedStatements = new HashMap<>();
+
 	public long getSQLiteHandle() {
 		return sqliteHandle;
 	}
@@ -38,6 +49,27 @@ public class SQLiteDatabase {
         return new SQLitePreparedStatement(this, sql);
     }
 
+    /**
+     * Returns a statement which stays compiled between calls, for writes which run over and over,
+     * e.g. message inserts. Bindings survive between uses, so the caller must call requery() and
+     * bind every parameter before each step. dispose() resets the statement and returns it
+     * to the cache. If the cached statement is still in use, e.g. by an outer loop, a new one
+     * is prepared and finalized as usual. Cached statements are finalized on close.
+     */
+    public SQLitePreparedStatement executeCached(String sql) throws SQLiteException {
+        checkOpened();
+        SQLitePreparedStatement statement = cachedStatements.get(sql);
+        if (statement == null) {
+            statement = new SQLitePreparedStatement(this, sql);
+            statement.setCached(true);
+            cachedStatements.put(sql, statement);
+        } else if (statement.isInUse()) {
+            return new SQLitePreparedStatement(this, sql);
+        }
+        statement.setInUse(true);
+        return statement;
+    }
+
 	public Integer executeInt(String sql, Object... args) throws SQLiteException {
 		checkOpened();
 		SQLiteCursor cursor = queryFinalized(sql, args);
@@ -74,6 +106,11 @@ public class SQLiteDatabase {
 		if (isOpen) {
 			try {
                 commitTransaction();
+                commitGroup();
+                for (SQLitePreparedStatement statement : cachedStatements.values()) {
+                    statement.finalizeQuery();
+                }
+                cachedStatements.clear();
 				closedb(sqliteHandle);
 			} catch (SQLiteException e) {
 				if (BuildVars.LOGS_ENABLED) {
@@ -95,12 +132,49 @@ public class SQLiteDatabase {
 		close();
 	}
 
+    /**
+     * When enabled, transactions which follow each other share a single SQLite transaction,
+     * so that a burst of small writes goes to disk at once. The group is committed by
+     * {@link #commitGroup()}, or when it gets larger than {@link GroupCommitPolicy#MAX_GROUPED_TRANSACTIONS}
+     * or older than {@link GroupCommitPolicy#MAX_GROUP_DURATION} ms.
+     *
+     * A transaction committed in a group is not durable until the group is written. The callback
+     * is run when a group starts and must arrange a {@link #commitGroup()} call after
+     * {@link #getMaxGroupDuration()} ms, so that the delay is bounded even when no more
+     * transactions come and the database thread stays busy. If a transaction is open at that
+     * moment, the group is committed when it ends.
+     */
+    public void setGroupCommitEnabled(boolean value, Runnable onGroupStarted) {
+        groupCommitEnabled = value;
+        groupStartedCallback = onGroupStarted;
+        if (!value) {
+            commitGroup();
+        }
+    }
+
+    public long getMaxGroupDuration() {
+        return groupCommitPolicy.getMaxDuration();
+    }
+
+    public GroupCommitPolicy getGroupCommitPolicy() {
+        return groupCommitPolicy;
+    }
+
     public void beginTransaction() throws SQLiteException {
         if (inTransaction) {
             throw new SQLiteException("database already in transaction");
         }
         inTransaction = true;
-        beginTransaction(sqliteHandle);
+        if (!inGroup) {
+            if (groupCommitEnabled) {
+                inGroup = true;
+                groupCommitPolicy.onGroupStarted(SystemClock.elapsedRealtime());
+                if (groupStartedCallback != null) {
+                    groupStartedCallback.run();
+                }
+            }
+            beginTransaction(sqliteHandle);
+        }
     }
 
     public void commitTransaction() {
@@ -108,7 +182,31 @@ public class SQLiteDatabase {
             return;
         }
         inTransaction = false;
+        if (inGroup) {
+            if (groupCommitPolicy.onTransactionCommitted(SystemClock.elapsedRealtime())) {
+                commitGroup();
+            }
+        } else {
+            commitTransaction(sqliteHandle);
+        }
+    }
+
+    /**
+     * Commits the transactions grouped so far. Statements which can't run in a transaction,
+     * e.g. VACUUM, must be preceded by this call.
+     */
+    public void commitGroup() {
+        if (!inGroup || inTransaction) {
+            return;
+        }
+        inGroup = false;
+        long commitTime = SystemClock.elapsedRealtime();
         commitTransaction(sqliteHandle);
+        long now = SystemClock.elapsedRealtime();
+        long latency = groupCommitPolicy.onGroupCommitted(commitTime, now);
+        if (BuildVars.DEBUG_VERSION && groupCommitPolicy.getGroupedTransactions() > 1) {
+            FileLog.d("sqlite group commit of " + groupCommitPolicy.getGroupedTransactions() + " transactions took " + (now - commitTime) + "ms, first one waited " + latency + "ms");
+        }
     }
 
 	native long opendb(String fileName, String tempDir) throws SQLiteException;
@@ -20,6 +20,8 @@ public class SQLitePreparedStatement {
 
     private boolean isFinalized = false;
     private long sqliteStatementHandle;
+    private boolean isCached;
+    private boolean isInUse;
 
     private long startTime;
     private String query;
@@ -88,9 +90,32 @@ public class SQLitePreparedStatement {
     }
 
     public void dispose() {
+        if (isCached && !isFinalized) {
+            isInUse = false;
+            try {
+                reset(sqliteStatementHandle);
+            } catch (SQLiteException e) {
+                if (BuildVars.LOGS_ENABLED) {
+                    FileLog.e(e.getMessage(), e);
+                }
+            }
+            return;
+        }
         finalizeQuery();
     }
 
+    void setCached(boolean value) {
+        isCached = value;
+    }
+
+    boolean isInUse() {
+        return isInUse;
+    }
+
+    void setInUse(boolean value) {
+        isInUse = value;
+    }
+
     void checkFinalized() throws SQLiteException {
         if (isFinalized) {
             throw new SQLiteException("Prepared query finalized");
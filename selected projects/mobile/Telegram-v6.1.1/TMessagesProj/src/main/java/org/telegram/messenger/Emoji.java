@@ -11,6 +11,7 @@ package org.telegram.messenger;
 import java.io.File;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Locale;
@@ -36,6 +37,7 @@ import android.widget.TextView;
 public class Emoji {
 
     private static HashMap<CharSequence, DrawableInfo> rects = new HashMap<>();
+    private static EmojiTrie emojiTrie = new EmojiTrie();
     private static int drawImgSize;
     private static int bigImgSize;
     private static boolean inited = false;
@@ -63,7 +65,15 @@ public class Emoji {
         for (int j = 0; j < EmojiData.data.length; j++) {
             int position;
             for (int i = 0; i < EmojiData.data[j].length; i++) {
-                rects.put(EmojiData.data[j][i], new DrawableInfo((byte) j, (short) i, i));
+                DrawableInfo info = new DrawableInfo((byte) j, (short) i, i);
+                rects.put(EmojiData.data[j][i], info);
+                emojiTrie.add(EmojiData.data[j][i], info);
+            }
+        }
+        for (int a = 0; a < EmojiData.aliasOld.length; a++) {
+            DrawableInfo info = rects.get(EmojiData.aliasNew[a]);
+            if (info != null && !rects.containsKey(EmojiData.aliasOld[a])) {
+                emojiTrie.add(EmojiData.aliasOld[a], info);
             }
         }
         placeholderPaint = new Paint();
@@ -178,6 +188,10 @@ public class Emoji {
             }
             return null;
         }
+        return createDrawable(info);
+    }
+
+    private static EmojiDrawable createDrawable(DrawableInfo info) {
         EmojiDrawable ed = new EmojiDrawable(info);
         ed.setBounds(0, 0, drawImgSize, drawImgSize);
         return ed;
@@ -294,6 +308,52 @@ public class Emoji {
         }
     }
 
+    /**
+     * Trie of the emoji sequences which have a drawable. Children are kept sorted by char,
+     * so that replaceEmoji finds the longest sequence at every position of the text with
+     * a few binary searches and no allocations. Variation selectors are not part of the
+     * sequences, they are skipped while matching.
+     */
+    private static class EmojiTrie {
+        private char[] chars = new char[0];
+        private EmojiTrie[] children = new EmojiTrie[0];
+        private DrawableInfo info;
+
+        public EmojiTrie get(char c) {
+            int index = Arrays.binarySearch(chars, c);
+            return index >= 0 ? children[index] : null;
+        }
+
+        public void add(CharSequence code, DrawableInfo drawableInfo) {
+            EmojiTrie node = this;
+            for (int a = 0; a < code.length(); a++) {
+                char c = code.charAt(a);
+                if (c >= 0xFE00 && c <= 0xFE0F) {
+                    continue;
+                }
+                EmojiTrie child = node.get(c);
+                if (child == null) {
+                    int index = -Arrays.binarySearch(node.chars, c) - 1;
+                    child = new EmojiTrie();
+                    char[] newChars = new char[node.chars.length + 1];
+                    EmojiTrie[] newChildren = new EmojiTrie[newChars.length];
+                    System.arraycopy(node.chars, 0, newChars, 0, index);
+                    System.arraycopy(node.children, 0, newChildren, 0, index);
+                    System.arraycopy(node.chars, index, newChars, index + 1, node.chars.length - index);
+                    System.arraycopy(node.children, index, newChildren, index + 1, node.chars.length - index);
+                    newChars[index] = c;
+                    newChildren[index] = child;
+                    node.chars = newChars;
+                    node.children = newChildren;
+                }
+                node = child;
+            }
+            if (node.info == null) {
+                node.info = drawableInfo;
+            }
+        }
+    }
+
     private static boolean inArray(char c, char[] a) {
         for (char cc : a) {
             if (cc == c) {
@@ -317,140 +377,45 @@ public class Emoji {
         } else {
             s = Spannable.Factory.getInstance().newSpannable(cs.toString());
         }
-        long buf = 0;
         int emojiCount = 0;
-        char c;
-        int startIndex = -1;
-        int startLength = 0;
-        int previousGoodIndex = 0;
-        StringBuilder emojiCode = new StringBuilder(16);
-        StringBuilder addionalCode = new StringBuilder(2);
-        boolean nextIsSkinTone;
-        EmojiDrawable drawable;
-        EmojiSpan span;
         int length = cs.length();
-        boolean doneEmoji = false;
-        int nextValidLength;
-        boolean nextValid;
-        //s.setSpansCount(emojiCount);
 
         try {
             for (int i = 0; i < length; i++) {
-                c = cs.charAt(i);
-                if (c >= 0xD83C && c <= 0xD83E || (buf != 0 && (buf & 0xFFFFFFFF00000000L) == 0 && (buf & 0xFFFF) == 0xD83C && (c >= 0xDDE6 && c <= 0xDDFF))) {
-                    if (startIndex == -1) {
-                        startIndex = i;
-                    }
-                    emojiCode.append(c);
-                    startLength++;
-                    buf <<= 16;
-                    buf |= c;
-                } else if (emojiCode.length() > 0 && (c == 0x2640 || c == 0x2642 || c == 0x2695)) {
-                    emojiCode.append(c);
-                    startLength++;
-                    buf = 0;
-                    doneEmoji = true;
-                } else if (buf > 0 && (c & 0xF000) == 0xD000) {
-                    emojiCode.append(c);
-                    startLength++;
-                    buf = 0;
-                    doneEmoji = true;
-                } else if (c == 0x20E3) {
-                    if (i > 0) {
-                        char c2 = cs.charAt(previousGoodIndex);
-                        if ((c2 >= '0' && c2 <= '9') || c2 == '#' || c2 == '*') {
-                            startIndex = previousGoodIndex;
-                            startLength = i - previousGoodIndex + 1;
-                            emojiCode.append(c2);
-                            emojiCode.append(c);
-                            doneEmoji = true;
+                DrawableInfo info = null;
+                int end = i;
+                EmojiTrie node = emojiTrie;
+                for (int j = i; j < length; j++) {
+                    char c = cs.charAt(j);
+                    if (j > i && c >= 0xFE00 && c <= 0xFE0F) {
+                        if (end == j && info != null) {
+                            end++;
                         }
+                        continue;
                     }
-                } else if ((c == 0x00A9 || c == 0x00AE || c >= 0x203C && c <= 0x3299) && EmojiData.dataCharsMap.containsKey(c)) {
-                    if (startIndex == -1) {
-                        startIndex = i;
-                    }
-                    startLength++;
-                    emojiCode.append(c);
-                    doneEmoji = true;
-                } else if (startIndex != -1) {
-                    emojiCode.setLength(0);
-                    startIndex = -1;
-                    startLength = 0;
-                    doneEmoji = false;
-                } else if (c != 0xfe0f) {
-                    if (emojiOnly != null) {
-                        emojiOnly[0] = 0;
-                        emojiOnly = null;
+                    node = node.get(c);
+                    if (node == null) {
+                        break;
                     }
-                }
-                if (doneEmoji && i + 2 < length) {
-                    char next = cs.charAt(i + 1);
-                    if (next == 0xD83C) {
-                        next = cs.charAt(i + 2);
-                        if (next >= 0xDFFB && next <= 0xDFFF) {
-                            emojiCode.append(cs.subSequence(i + 1, i + 3));
-                            startLength += 2;
-                            i += 2;
-                        }
-                    } else if (emojiCode.length() >= 2 && emojiCode.charAt(0) == 0xD83C && emojiCode.charAt(1) == 0xDFF4 && next == 0xDB40) {
-                        i++;
-                        while (true) {
-                            emojiCode.append(cs.subSequence(i, i + 2));
-                            startLength += 2;
-                            i += 2;
-                            if (i >= cs.length() || cs.charAt(i) != 0xDB40) {
-                                i--;
-                                break;
-                            }
-                        }
-
+                    if (node.info != null) {
+                        info = node.info;
+                        end = j + 1;
                     }
                 }
-                previousGoodIndex = i;
-                char prevCh = c;
-                for (int a = 0; a < 3; a++) {
-                    if (i + 1 < length) {
-                        c = cs.charAt(i + 1);
-                        if (a == 1) {
-                            if (c == 0x200D && emojiCode.length() > 0) {
-                                emojiCode.append(c);
-                                i++;
-                                startLength++;
-                                doneEmoji = false;
-                            }
-                        } else if (startIndex != -1 || prevCh == '*' || prevCh >= '1' && prevCh <= '9') {
-                            if (c >= 0xFE00 && c <= 0xFE0F) {
-                                i++;
-                                startLength++;
-                            }
-                        }
-                    }
-                }
-                if (doneEmoji && i + 2 < length && cs.charAt(i + 1) == 0xD83C) {
-                    char next = cs.charAt(i + 2);
-                    if (next >= 0xDFFB && next <= 0xDFFF) {
-                        emojiCode.append(cs.subSequence(i + 1, i + 3));
-                        startLength += 2;
-                        i += 2;
+                if (info == null) {
+                    if (emojiOnly != null && cs.charAt(i) != 0xFE0F) {
+                        emojiOnly[0] = 0;
+                        emojiOnly = null;
                     }
+                    continue;
                 }
-                if (doneEmoji) {
-                    if (emojiOnly != null) {
-                        emojiOnly[0]++;
-                    }
-                    CharSequence code = emojiCode.subSequence(0, emojiCode.length());
-                    drawable = Emoji.getEmojiDrawable(code);
-                    if (drawable != null) {
-                        span = new EmojiSpan(drawable, DynamicDrawableSpan.ALIGN_BOTTOM, size, fontMetrics);
-                        s.setSpan(span, startIndex, startIndex + startLength, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
-                        emojiCount++;
-                    }
-                    startLength = 0;
-                    startIndex = -1;
-                    emojiCode.setLength(0);
-                    doneEmoji = false;
+                if (emojiOnly != null) {
+                    emojiOnly[0]++;
                 }
+                EmojiSpan span = new EmojiSpan(createDrawable(info), DynamicDrawableSpan.ALIGN_BOTTOM, size, fontMetrics);
+                s.setSpan(span, i, end, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+                emojiCount++;
+                i = end - 1;
                 if ((Build.VERSION.SDK_INT < 23 || Build.VERSION.SDK_INT >= 29) && emojiCount >= 50) {
                     break;
                 }
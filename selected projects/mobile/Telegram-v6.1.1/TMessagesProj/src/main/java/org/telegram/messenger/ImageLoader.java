@@ -2462,9 +2462,6 @@ public class ImageLoader {
                 drawable = lottieMemCache.get(mediaKey);
             } else {
                 drawable = memCache.get(mediaKey);
-                if (drawable != null) {
-                    memCache.moveToFront(mediaKey);
-                }
             }
             if (drawable != null) {
                 cancelLoadingForImageReceiver(imageReceiver, true);
@@ -2483,9 +2480,6 @@ public class ImageLoader {
                 drawable = lottieMemCache.get(imageKey);
             } else {
                 drawable = memCache.get(imageKey);
-                if (drawable != null) {
-                    memCache.moveToFront(imageKey);
-                }
             }
             if (drawable != null) {
                 cancelLoadingForImageReceiver(imageReceiver, true);
@@ -2505,9 +2499,6 @@ public class ImageLoader {
                 drawable = lottieMemCache.get(thumbKey);
             } else {
                 drawable = memCache.get(thumbKey);
-                if (drawable != null) {
-                    memCache.moveToFront(thumbKey);
-                }
             }
             if (drawable != null) {
                 imageReceiver.setImageBitmapByKey(drawable, thumbKey, ImageReceiver.TYPE_THUMB, true, guid);
@@ -8,10 +8,13 @@
 
 package org.telegram.messenger;
 
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
 
 /**
  * Static library version of {@link android.util.LruCache}. Used to write apps
@@ -19,15 +22,28 @@ import java.util.LinkedHashMap;
  * this implementation is still used; it does not try to switch to the
  * framework's implementation. See the framework SDK documentation for a class
  * overview.
+ *
+ * <p>Keys of the form {@code "base@filter"} are also indexed by their base, see
+ * {@link #getFilterKeys}. The index is guarded by the same lock as the entries,
+ * and is looked up by the base part of a key without copying it out of the key.
+ * {@link #entryRemoved} is called after the lock is released, so recycling
+ * evicted values doesn't block other threads.
  */
 public class LruCache<T> {
     private final LinkedHashMap<String, T> map;
-    private final LinkedHashMap<String, ArrayList<String>> mapFilters;
+    private final HashMap<FilterBase, ArrayList<String>> mapFilters;
+    /** Reused to look up the filter index, only under the lock. */
+    private final FilterBase filterBaseProbe = new FilterBase();
 
     /** Size of this cache in units. Not necessarily the number of elements. */
     private int size;
     private int maxSize;
 
+    private int putCount;
+    private int evictionCount;
+    private int hitCount;
+    private int missCount;
+
     /**
      * @param maxSize for caches that do not override {@link #sizeOf}, this is
      *     the maximum number of entries in the cache. For all other caches,
@@ -39,7 +55,7 @@ public class LruCache<T> {
         }
         this.maxSize = maxSize;
         this.map = new LinkedHashMap<>(0, 0.75f, true);
-        this.mapFilters = new LinkedHashMap<>();
+        this.mapFilters = new HashMap<>();
     }
 
     /**
@@ -53,29 +69,28 @@ public class LruCache<T> {
             throw new NullPointerException("key == null");
         }
 
-        T mapValue;
         synchronized (this) {
-            mapValue = map.get(key);
+            T mapValue = map.get(key);
             if (mapValue != null) {
-                return mapValue;
+                hitCount++;
+            } else {
+                missCount++;
             }
+            return mapValue;
         }
-        return null;
     }
 
-    public ArrayList<String> getFilterKeys(String key) {
-        ArrayList<String> arr = mapFilters.get(key);
+    public synchronized ArrayList<String> getFilterKeys(String key) {
+        ArrayList<String> arr = mapFilters.get(filterBaseProbe.set(key, key.length()));
         if (arr != null) {
             return new ArrayList<>(arr);
         }
         return null;
     }
 
-    public void moveToFront(String key) {
-        T value = map.remove(key);
-        if (value != null) {
-            map.put(key, value);
-        }
+    public synchronized void moveToFront(String key) {
+        // the map is in access order, so looking the entry up moves it to the front
+        map.get(key);
     }
 
     /**
@@ -90,71 +105,150 @@ public class LruCache<T> {
         }
 
         T previous;
+        ArrayList<Map.Entry<String, T>> evicted;
         synchronized (this) {
+            putCount++;
             size += safeSizeOf(key, value);
             previous = map.put(key, value);
             if (previous != null) {
                 size -= safeSizeOf(key, previous);
+            } else {
+                addFilter(key);
             }
-        }
-
-        String[] args = key.split("@");
-        if (args.length > 1) {
-            ArrayList<String> arr = mapFilters.get(args[0]);
-            if (arr == null) {
-                arr = new ArrayList<>();
-                mapFilters.put(args[0], arr);
-            }
-            if (!arr.contains(args[1])) {
-                arr.add(args[1]);
-            }
+            evicted = trimToSizeLocked(maxSize, key);
         }
 
         if (previous != null) {
             entryRemoved(false, key, previous, value);
         }
-
-        trimToSize(maxSize, key);
+        notifyEvicted(evicted);
         return previous;
     }
 
     /**
      * @param maxSize the maximum size of the cache before returning. May be -1
      *     to evict even 0-sized elements.
+     * @return evicted entries, or null if there are none
      */
-    private void trimToSize(int maxSize, String justAdded) {
-        synchronized (this) {
-            Iterator<HashMap.Entry<String, T>> iterator = map.entrySet().iterator();
-            while (iterator.hasNext()) {
-                if (size <= maxSize || map.isEmpty()) {
-                    break;
-                }
-                HashMap.Entry<String, T> entry = iterator.next();
-
-                String key = entry.getKey();
-                if (justAdded != null && justAdded.equals(key)) {
-                    continue;
-                }
-                T value = entry.getValue();
-                size -= safeSizeOf(key, value);
-                iterator.remove();
-
-                String[] args = key.split("@");
-                if (args.length > 1) {
-                    ArrayList<String> arr = mapFilters.get(args[0]);
-                    if (arr != null) {
-                        arr.remove(args[1]);
-                        if (arr.isEmpty()) {
-                            mapFilters.remove(args[0]);
-                        }
-                    }
-                }
-
-                entryRemoved(true, key, value, null);
+    private ArrayList<Map.Entry<String, T>> trimToSizeLocked(int maxSize, String justAdded) {
+        ArrayList<Map.Entry<String, T>> evicted = null;
+        Iterator<Map.Entry<String, T>> iterator = map.entrySet().iterator();
+        while (iterator.hasNext()) {
+            if (size <= maxSize || map.isEmpty()) {
+                break;
+            }
+            Map.Entry<String, T> entry = iterator.next();
+
+            String key = entry.getKey();
+            if (justAdded != null && justAdded.equals(key)) {
+                continue;
+            }
+            T value = entry.getValue();
+            size -= safeSizeOf(key, value);
+            iterator.remove();
+            removeFilter(key);
+            evictionCount++;
+
+            if (evicted == null) {
+                evicted = new ArrayList<>();
+            }
+            evicted.add(new AbstractMap.SimpleImmutableEntry<>(key, value));
+        }
+        return evicted;
+    }
+
+    private void notifyEvicted(ArrayList<Map.Entry<String, T>> evicted) {
+        if (evicted != null) {
+            for (int a = 0, N = evicted.size(); a < N; a++) {
+                Map.Entry<String, T> entry = evicted.get(a);
+                entryRemoved(true, entry.getKey(), entry.getValue(), null);
             }
         }
     }
 
+    private void addFilter(String key) {
+        int index = key.indexOf('@');
+        if (index < 0 || index == key.length() - 1) {
+            return;
+        }
+        ArrayList<String> arr = mapFilters.get(filterBaseProbe.set(key, index));
+        if (arr == null) {
+            arr = new ArrayList<>(1);
+            mapFilters.put(new FilterBase().set(key.substring(0, index), index), arr);
+        }
+        if (indexOfFilter(arr, key, index) < 0) {
+            arr.add(key.substring(index + 1));
+        }
+    }
+
+    private void removeFilter(String key) {
+        int index = key.indexOf('@');
+        if (index < 0 || index == key.length() - 1) {
+            return;
+        }
+        FilterBase base = filterBaseProbe.set(key, index);
+        ArrayList<String> arr = mapFilters.get(base);
+        if (arr != null) {
+            int filterIndex = indexOfFilter(arr, key, index);
+            if (filterIndex >= 0) {
+                arr.remove(filterIndex);
+            }
+            if (arr.isEmpty()) {
+                mapFilters.remove(base);
+            }
+        }
+    }
+
+    private static int indexOfFilter(ArrayList<String> filters, String key, int index) {
+        int length = key.length() - index - 1;
+        for (int a = 0, N = filters.size(); a < N; a++) {
+            String filter = filters.get(a);
+            if (filter.length() == length && key.regionMatches(index + 1, filter, 0, length)) {
+                return a;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The first {@code length} chars of a string. Hashes and compares like the
+     * substring would, so a key can be looked up in the filter index without
+     * allocating its base.
+     */
+    private static final class FilterBase {
+        private String string;
+        private int length;
+        private int hash;
+
+        FilterBase set(String string, int length) {
+            this.string = string;
+            this.length = length;
+            int h = 0;
+            for (int a = 0; a < length; a++) {
+                h = 31 * h + string.charAt(a);
+            }
+            hash = h;
+            return this;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof FilterBase)) {
+                return false;
+            }
+            FilterBase other = (FilterBase) o;
+            return length == other.length && hash == other.hash && string.regionMatches(0, other.string, 0, length);
+        }
+    }
+
     /**
      * Removes the entry for {@code key} if it exists.
      *
@@ -170,28 +264,18 @@ public class LruCache<T> {
             previous = map.remove(key);
             if (previous != null) {
                 size -= safeSizeOf(key, previous);
+                removeFilter(key);
             }
         }
 
         if (previous != null) {
-            String[] args = key.split("@");
-            if (args.length > 1) {
-                ArrayList<String> arr = mapFilters.get(args[0]);
-                if (arr != null) {
-                    arr.remove(args[1]);
-                    if (arr.isEmpty()) {
-                        mapFilters.remove(args[0]);
-                    }
-                }
-            }
-
             entryRemoved(false, key, previous, null);
         }
 
         return previous;
     }
     
-    public boolean contains(String key){
+    public synchronized boolean contains(String key){
     	return map.containsKey(key);
     }
 
@@ -235,7 +319,11 @@ public class LruCache<T> {
      * Clear the cache, calling {@link #entryRemoved} on each removed entry.
      */
     public final void evictAll() {
-        trimToSize(-1, null); // -1 will evict 0-sized elements
+        ArrayList<Map.Entry<String, T>> evicted;
+        synchronized (this) {
+            evicted = trimToSizeLocked(-1, null); // -1 will evict 0-sized elements
+        }
+        notifyEvicted(evicted);
     }
 
     /**
@@ -255,4 +343,40 @@ public class LruCache<T> {
     public synchronized final int maxSize() {
         return maxSize;
     }
+
+    /**
+     * Returns the number of times {@link #get} returned a value that was
+     * already present in the cache.
+     */
+    public synchronized final int hitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Returns the number of times {@link #get} returned null.
+     */
+    public synchronized final int missCount() {
+        return missCount;
+    }
+
+    /**
+     * Returns the number of times {@link #put} was called.
+     */
+    public synchronized final int putCount() {
+        return putCount;
+    }
+
+    /**
+     * Returns the number of values that have been evicted.
+     */
+    public synchronized final int evictionCount() {
+        return evictionCount;
+    }
+
+    @Override
+    public synchronized final String toString() {
+        int accesses = hitCount + missCount;
+        int hitPercent = accesses != 0 ? (100 * hitCount / accesses) : 0;
+        return String.format(Locale.US, "LruCache[maxSize=%d,hits=%d,misses=%d,evictions=%d,hitRate=%d%%]", maxSize, hitCount, missCount, evictionCount, hitPercent);
+    }
 }
@@ -9,6 +9,7 @@
 package org.telegram.messenger;
 
 import android.content.SharedPreferences;
+import android.os.Looper;
 import android.text.TextUtils;
 import android.util.LongSparseArray;
 import android.util.SparseArray;
@@ -50,6 +51,14 @@ public class MessagesStorage extends BaseController {
     }
 
     private DispatchQueue storageQueue = new DispatchQueue("storageQueue");
+    private static final int MAX_PENDING_WRITES = 200;
+    private static final long MAX_WRITE_WAIT = 500;
+    private final PendingWriteLimiter pendingWrites = new PendingWriteLimiter(MAX_PENDING_WRITES, MAX_WRITE_WAIT);
+    private final Runnable commitGroupRunnable = () -> {
+        if (database != null) {
+            database.commitGroup();
+        }
+    };
     private SQLiteDatabase database;
     private File cacheFile;
     private File walCacheFile;
@@ -184,6 +193,13 @@ public class MessagesStorage extends BaseController {
     public MessagesStorage(int instance) {
         super(instance);
         //storageQueue.setPriority(Thread.MAX_PRIORITY);
+        storageQueue.postRunnable(() -> Looper.myQueue().addIdleHandler(() -> {
+            // the queue has run out of work, write the grouped transactions
+            if (database != null) {
+                database.commitGroup();
+            }
+            return true;
+        }));
         storageQueue.postRunnable(() -> openDatabase(1));
     }
 
@@ -191,6 +207,26 @@ public class MessagesStorage extends BaseController {
         return database;
     }
 
+    public PendingWriteLimiter getPendingWrites() {
+        return pendingWrites;
+    }
+
+    /**
+     * Posts a bulk write to storageQueue. When too many of them are pending, a background producer
+     * waits for up to MAX_WRITE_WAIT ms, so that a burst of updates doesn't pile up in memory.
+     * The UI thread and storageQueue itself never wait.
+     */
+    private void postWrite(Runnable write) {
+        pendingWrites.acquire(Thread.currentThread() != storageQueue && Looper.myLooper() != Looper.getMainLooper());
+        storageQueue.postRunnable(() -> {
+            try {
+                write.run();
+            } finally {
+                pendingWrites.release();
+            }
+        });
+    }
+
     public DispatchQueue getStorageQueue() {
         return storageQueue;
     }
@@ -422,6 +458,10 @@ public class MessagesStorage extends BaseController {
                     updateDbToLastVersion(version);
                 }
             }
+            // a grouped transaction reaches disk at most MAX_GROUP_DURATION ms after the group starts,
+            // plus the time of the storage queue task which runs at that moment. Until then it is lost
+            // on process death, like the writes which still wait in storageQueue
+            database.setGroupCommitEnabled(true, () -> storageQueue.postRunnable(commitGroupRunnable, database.getMaxGroupDuration()));
         } catch (Exception e) {
             FileLog.e(e);
 
@@ -942,6 +982,7 @@ public class MessagesStorage extends BaseController {
     public void cleanup(final boolean isLogin) {
         if (!isLogin) {
             storageQueue.cleanupQueue();
+            pendingWrites.reset();
         }
         storageQueue.postRunnable(() -> {
             cleanupInternal(true);
@@ -7366,11 +7407,11 @@ public class MessagesStorage extends BaseController {
                 LongSparseArray<Long> messagesIdsMap = new LongSparseArray<>();
                 LongSparseArray<Long> mentionsIdsMap = new LongSparseArray<>();
 
-                SQLitePreparedStatement state_messages = database.executeFast("REPLACE INTO messages VALUES(?, ?, ?, ?, ?, ?, ?, ?, ?, NULL, ?, ?)");
+                SQLitePreparedStatement state_messages = database.executeCached("REPLACE INTO messages VALUES(?, ?, ?, ?, ?, ?, ?, ?, ?, NULL, ?, ?)");
                 SQLitePreparedStatement state_media = null;
-                SQLitePreparedStatement state_randoms = database.executeFast("REPLACE INTO randoms VALUES(?, ?)");
-                SQLitePreparedStatement state_download = database.executeFast("REPLACE INTO download_queue VALUES(?, ?, ?, ?, ?)");
-                SQLitePreparedStatement state_webpage = database.executeFast("REPLACE INTO webpage_pending VALUES(?, ?)");
+                SQLitePreparedStatement state_randoms = database.executeCached("REPLACE INTO randoms VALUES(?, ?)");
+                SQLitePreparedStatement state_download = database.executeCached("REPLACE INTO download_queue VALUES(?, ?, ?, ?, ?)");
+                SQLitePreparedStatement state_webpage = database.executeCached("REPLACE INTO webpage_pending VALUES(?, ?)");
                 SQLitePreparedStatement state_polls = null;
 
                 for (int a = 0; a < messages.size(); a++) {
@@ -7576,7 +7617,7 @@ public class MessagesStorage extends BaseController {
 
                     if (MediaDataController.canAddMessageToMedia(message)) {
                         if (state_media == null) {
-                            state_media = database.executeFast("REPLACE INTO media_v2 VALUES(?, ?, ?, ?, ?)");
+                            state_media = database.executeCached("REPLACE INTO media_v2 VALUES(?, ?, ?, ?, ?)");
                         }
                         state_media.requery();
                         state_media.bindLong(1, messageId);
@@ -7589,7 +7630,7 @@ public class MessagesStorage extends BaseController {
 
                     if (message.media instanceof TLRPC.TL_messageMediaPoll) {
                         if (state_polls == null) {
-                            state_polls = database.executeFast("REPLACE INTO polls VALUES(?, ?)");
+                            state_polls = database.executeCached("REPLACE INTO polls VALUES(?, ?)");
                         }
                         TLRPC.TL_messageMediaPoll mediaPoll = (TLRPC.TL_messageMediaPoll) message.media;
                         state_polls.requery();
@@ -7680,8 +7721,8 @@ public class MessagesStorage extends BaseController {
                 state_download.dispose();
                 state_webpage.dispose();
 
-                SQLitePreparedStatement state_dialogs_replace = database.executeFast("REPLACE INTO dialogs VALUES(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
-                SQLitePreparedStatement state_dialogs_update = database.executeFast("UPDATE dialogs SET date = ?, unread_count = ?, last_mid = ?, unread_count_i = ? WHERE did = ?");
+                SQLitePreparedStatement state_dialogs_replace = database.executeCached("REPLACE INTO dialogs VALUES(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+                SQLitePreparedStatement state_dialogs_update = database.executeCached("UPDATE dialogs SET date = ?, unread_count = ?, last_mid = ?, unread_count_i = ? WHERE did = ?");
 
                 for (int a = 0; a < messagesMap.size(); a++) {
                     long key = messagesMap.keyAt(a);
@@ -7771,7 +7812,7 @@ public class MessagesStorage extends BaseController {
                 state_dialogs_replace.dispose();
 
                 if (mediaCounts != null) {
-                    state_randoms = database.executeFast("REPLACE INTO media_counts_v2 VALUES(?, ?, ?, ?)");
+                    state_randoms = database.executeCached("REPLACE INTO media_counts_v2 VALUES(?, ?, ?, ?)");
                     for (int a = 0; a < mediaCounts.size(); a++) {
                         int type = mediaCounts.keyAt(a);
                         LongSparseArray<Integer> value = mediaCounts.valueAt(a);
@@ -7824,7 +7865,7 @@ public class MessagesStorage extends BaseController {
             return;
         }
         if (useQueue) {
-            storageQueue.postRunnable(() -> putMessagesInternal(messages, withTransaction, doNotUpdateDialogDate, downloadMask, ifNoLastMessage, scheduled));
+            postWrite(() -> putMessagesInternal(messages, withTransaction, doNotUpdateDialogDate, downloadMask, ifNoLastMessage, scheduled));
         } else {
             putMessagesInternal(messages, withTransaction, doNotUpdateDialogDate, downloadMask, ifNoLastMessage, scheduled);
         }
@@ -9006,7 +9047,7 @@ public class MessagesStorage extends BaseController {
     }
 
     public void putMessages(final TLRPC.messages_Messages messages, final long dialog_id, final int load_type, final int max_id, final boolean createDialog, final boolean scheduled) {
-        storageQueue.postRunnable(() -> {
+        postWrite(() -> {
             try {
                 if (scheduled) {
                     database.executeFast(String.format(Locale.US, "DELETE FROM scheduled_messages WHERE uid = %d AND mid > 0", dialog_id)).stepThis().dispose();
@@ -10010,7 +10051,7 @@ public class MessagesStorage extends BaseController {
         if (dialogs.dialogs.isEmpty()) {
             return;
         }
-        storageQueue.postRunnable(() -> {
+        postWrite(() -> {
             putDialogsInternal(dialogs, check);
             try {
                 loadUnreadMessages();
@@ -12,6 +12,7 @@ import androidx.annotation.UiThread;
 import android.util.SparseArray;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 public class NotificationCenter {
 
@@ -186,16 +187,23 @@ public class NotificationCenter {
     public static final int messagePlayingSpeedChanged = totalEvents++;
     public static final int screenStateChanged = totalEvents++;
 
-    private SparseArray<ArrayList<NotificationCenterDelegate>> observers = new SparseArray<>();
-    private SparseArray<ArrayList<NotificationCenterDelegate>> removeAfterBroadcast = new SparseArray<>();
-    private SparseArray<ArrayList<NotificationCenterDelegate>> addAfterBroadcast = new SparseArray<>();
+    private static final long SLOW_OBSERVER_NANOS = 16000000;
+
+    /**
+     * Observers of every id. The arrays are never modified, adding or removing an observer
+     * replaces the array, so a broadcast iterates the observers which were registered when
+     * it started without copying them.
+     */
+    private SparseArray<NotificationCenterDelegate[]> observers = new SparseArray<>();
     private ArrayList<DelayedPost> delayedPosts = new ArrayList<>(10);
 
-    private int broadcasting = 0;
     private boolean animationInProgress;
 
     private int[] allowedNotifications;
 
+    private int[] dispatchCounts;
+    private long[] dispatchTimes;
+
     public interface NotificationCenterDelegate {
         void didReceivedNotification(int id, int account, Object... args);
     }
@@ -209,6 +217,22 @@ public class NotificationCenter {
 
         private int id;
         private Object[] args;
+
+        private boolean isSameAs(int id, Object[] args) {
+            if (this.id != id || this.args.length != args.length) {
+                return false;
+            }
+            for (int a = 0; a < args.length; a++) {
+                Object arg = this.args[a];
+                if (arg == args[a]) {
+                    continue;
+                }
+                if (!(arg instanceof Number || arg instanceof Boolean || arg instanceof String) || !arg.equals(args[a])) {
+                    return false;
+                }
+            }
+            return true;
+        }
     }
 
     private int currentAccount;
@@ -246,6 +270,10 @@ public class NotificationCenter {
 
     public NotificationCenter(int account) {
         currentAccount = account;
+        if (BuildVars.DEBUG_VERSION) {
+            dispatchCounts = new int[totalEvents];
+            dispatchTimes = new long[totalEvents];
+        }
     }
 
     public void setAllowedNotificationsDutingAnimation(int[] notifications) {
@@ -304,69 +332,83 @@ public class NotificationCenter {
             }
         }
         if (!allowDuringAnimation && animationInProgress) {
+            // an identical post which is still waiting is superseded by this one, in its place,
+            // so that the order relative to the other waiting posts is kept
             DelayedPost delayedPost = new DelayedPost(id, args);
-            delayedPosts.add(delayedPost);
+            boolean replaced = false;
+            for (int a = 0; a < delayedPosts.size(); a++) {
+                if (delayedPosts.get(a).isSameAs(id, args)) {
+                    delayedPosts.set(a, delayedPost);
+                    replaced = true;
+                    break;
+                }
+            }
+            if (!replaced) {
+                delayedPosts.add(delayedPost);
+            }
             if (BuildVars.LOGS_ENABLED) {
                 FileLog.e("delay post notification " + id + " with args count = " + args.length);
             }
             return;
         }
-        broadcasting++;
-        ArrayList<NotificationCenterDelegate> objects = observers.get(id);
-        if (objects != null && !objects.isEmpty()) {
-            for (int a = 0; a < objects.size(); a++) {
-                NotificationCenterDelegate obj = objects.get(a);
-                obj.didReceivedNotification(id, currentAccount, args);
-            }
+        NotificationCenterDelegate[] objects = observers.get(id);
+        if (objects == null) {
+            return;
         }
-        broadcasting--;
-        if (broadcasting == 0) {
-            if (removeAfterBroadcast.size() != 0) {
-                for (int a = 0; a < removeAfterBroadcast.size(); a++) {
-                    int key = removeAfterBroadcast.keyAt(a);
-                    ArrayList<NotificationCenterDelegate> arrayList = removeAfterBroadcast.get(key);
-                    for (int b = 0; b < arrayList.size(); b++) {
-                        removeObserver(arrayList.get(b), key);
-                    }
-                }
-                removeAfterBroadcast.clear();
+        if (dispatchCounts == null) {
+            for (int a = 0; a < objects.length; a++) {
+                objects[a].didReceivedNotification(id, currentAccount, args);
             }
-            if (addAfterBroadcast.size() != 0) {
-                for (int a = 0; a < addAfterBroadcast.size(); a++) {
-                    int key = addAfterBroadcast.keyAt(a);
-                    ArrayList<NotificationCenterDelegate> arrayList = addAfterBroadcast.get(key);
-                    for (int b = 0; b < arrayList.size(); b++) {
-                        addObserver(arrayList.get(b), key);
-                    }
+        } else {
+            long dispatchStart = System.nanoTime();
+            for (int a = 0; a < objects.length; a++) {
+                long start = System.nanoTime();
+                objects[a].didReceivedNotification(id, currentAccount, args);
+                long time = System.nanoTime() - start;
+                if (time > SLOW_OBSERVER_NANOS) {
+                    FileLog.d("notification " + id + " took " + time / 1000000 + "ms in " + objects[a].getClass().getName());
                 }
-                addAfterBroadcast.clear();
             }
+            dispatchCounts[id]++;
+            dispatchTimes[id] += System.nanoTime() - dispatchStart;
         }
     }
 
+    /**
+     * Counts and total dispatch time of every notification id posted so far, only collected in debug builds.
+     */
+    public String getDispatchStats() {
+        if (dispatchCounts == null) {
+            return "";
+        }
+        StringBuilder builder = new StringBuilder();
+        for (int a = 0; a < dispatchCounts.length; a++) {
+            if (dispatchCounts[a] != 0) {
+                builder.append(a).append(": ").append(dispatchCounts[a]).append(" posts, ").append(dispatchTimes[a] / 1000000).append("ms\n");
+            }
+        }
+        return builder.toString();
+    }
+
     public void addObserver(NotificationCenterDelegate observer, int id) {
         if (BuildVars.DEBUG_VERSION) {
             if (Thread.currentThread() != ApplicationLoader.applicationHandler.getLooper().getThread()) {
                 throw new RuntimeException("addObserver allowed only from MAIN thread");
             }
         }
-        if (broadcasting != 0) {
-            ArrayList<NotificationCenterDelegate> arrayList = addAfterBroadcast.get(id);
-            if (arrayList == null) {
-                arrayList = new ArrayList<>();
-                addAfterBroadcast.put(id, arrayList);
-            }
-            arrayList.add(observer);
-            return;
-        }
-        ArrayList<NotificationCenterDelegate> objects = observers.get(id);
+        NotificationCenterDelegate[] objects = observers.get(id);
         if (objects == null) {
-            observers.put(id, (objects = new ArrayList<>()));
-        }
-        if (objects.contains(observer)) {
+            observers.put(id, new NotificationCenterDelegate[]{observer});
             return;
         }
-        objects.add(observer);
+        for (int a = 0; a < objects.length; a++) {
+            if (objects[a] == observer) {
+                return;
+            }
+        }
+        NotificationCenterDelegate[] newObjects = Arrays.copyOf(objects, objects.length + 1);
+        newObjects[objects.length] = observer;
+        observers.put(id, newObjects);
     }
 
     public void removeObserver(NotificationCenterDelegate observer, int id) {
@@ -375,18 +417,22 @@ public class NotificationCenter {
                 throw new RuntimeException("removeObserver allowed only from MAIN thread");
             }
         }
-        if (broadcasting != 0) {
-            ArrayList<NotificationCenterDelegate> arrayList = removeAfterBroadcast.get(id);
-            if (arrayList == null) {
-                arrayList = new ArrayList<>();
-                removeAfterBroadcast.put(id, arrayList);
-            }
-            arrayList.add(observer);
+        NotificationCenterDelegate[] objects = observers.get(id);
+        if (objects == null) {
             return;
         }
-        ArrayList<NotificationCenterDelegate> objects = observers.get(id);
-        if (objects != null) {
-            objects.remove(observer);
+        for (int a = 0; a < objects.length; a++) {
+            if (objects[a] == observer) {
+                if (objects.length == 1) {
+                    observers.remove(id);
+                } else {
+                    NotificationCenterDelegate[] newObjects = new NotificationCenterDelegate[objects.length - 1];
+                    System.arraycopy(objects, 0, newObjects, 0, a);
+                    System.arraycopy(objects, a + 1, newObjects, a, objects.length - a - 1);
+                    observers.put(id, newObjects);
+                }
+                return;
+            }
         }
     }
 
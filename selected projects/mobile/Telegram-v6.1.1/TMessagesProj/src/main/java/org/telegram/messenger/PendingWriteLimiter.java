@@ -0,0 +1,97 @@
+/*
+ * This is the source code of Telegram for Android v. 5.x.x.
+ * It is licensed under GNU GPL v. 2 or later.
+ * You should have received a copy of the license in this archive (see LICENSE).
+ *
+ * Copyright Nikolai Kudashov, 2013-2018.
+ */
+
+package org.telegram.messenger;
+
+/**
+ * Backpressure for a queue of writes. A producer calls {@link #acquire(boolean)} before posting
+ * a write and the queue calls {@link #release()} when the write is done. While too many writes
+ * are pending, producers which may wait are slowed down for at most the given time, so that a
+ * stuck queue never blocks them forever. Producers which must not wait, like the UI thread or
+ * the queue itself, are only counted. Has no Android dependencies and is tested on a desktop JVM.
+ */
+public class PendingWriteLimiter {
+
+    private final int maxPending;
+    private final long maxWait;
+
+    private int pending;
+    private volatile int waitCount;
+    private volatile long waitTime;
+    private volatile int maxPendingSeen;
+
+    public PendingWriteLimiter(int maxPending, long maxWait) {
+        this.maxPending = maxPending;
+        this.maxWait = maxWait;
+    }
+
+    public void acquire(boolean mayWait) {
+        synchronized (this) {
+            if (mayWait && pending >= maxPending) {
+                long start = System.currentTimeMillis();
+                long left = maxWait;
+                boolean interrupted = false;
+                while (pending >= maxPending && left > 0) {
+                    try {
+                        wait(left);
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                    left = maxWait - (System.currentTimeMillis() - start);
+                }
+                waitCount++;
+                waitTime += System.currentTimeMillis() - start;
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            pending++;
+            maxPendingSeen = Math.max(maxPendingSeen, pending);
+        }
+    }
+
+    public synchronized void release() {
+        if (pending > 0) {
+            pending--;
+        }
+        if (pending < maxPending) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Forgets pending writes, e.g. when the queue has dropped them. A write which is still
+     * running releases later, the count never goes below zero.
+     */
+    public synchronized void reset() {
+        pending = 0;
+        notifyAll();
+    }
+
+    public synchronized int getPending() {
+        return pending;
+    }
+
+    /**
+     * Returns how many times producers had to wait.
+     */
+    public int getWaitCount() {
+        return waitCount;
+    }
+
+    /**
+     * Returns the total time in ms producers waited.
+     */
+    public long getWaitTime() {
+        return waitTime;
+    }
+
+    public int getMaxPendingSeen() {
+        return maxPendingSeen;
+    }
+}
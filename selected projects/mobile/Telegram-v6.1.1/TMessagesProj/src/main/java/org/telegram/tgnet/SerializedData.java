@@ -11,133 +11,87 @@ package org.telegram.tgnet;
 import org.telegram.messenger.BuildVars;
 import org.telegram.messenger.FileLog;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.util.Arrays;
 
 public class SerializedData extends AbstractSerializedData {
     protected boolean isOut = true;
-    private ByteArrayOutputStream outbuf;
-    private DataOutputStream out;
-    private ByteArrayInputStream inbuf;
-    private DataInputStream in;
+    private byte[] buffer;
+    private int count;
+    private int position;
     private boolean justCalc = false;
     private int len;
 
     public SerializedData() {
-        outbuf = new ByteArrayOutputStream();
-        out = new DataOutputStream(outbuf);
+        buffer = new byte[32];
     }
 
     public SerializedData(boolean calculate) {
         if (!calculate) {
-            outbuf = new ByteArrayOutputStream();
-            out = new DataOutputStream(outbuf);
+            buffer = new byte[32];
         }
         justCalc = calculate;
         len = 0;
     }
 
     public SerializedData(int size) {
-        outbuf = new ByteArrayOutputStream(size);
-        out = new DataOutputStream(outbuf);
+        buffer = new byte[size];
     }
 
     public SerializedData(byte[] data) {
-        isOut = false;
-        inbuf = new ByteArrayInputStream(data);
-        in = new DataInputStream(inbuf);
-        len = 0;
+        set(data);
     }
 
     public void cleanup() {
-        try {
-            if (inbuf != null) {
-                inbuf.close();
-                inbuf = null;
-            }
-        } catch (Exception e) {
-            FileLog.e(e);
-        }
-        try {
-            if (in != null) {
-                in.close();
-                in = null;
-            }
-        } catch (Exception e) {
-            FileLog.e(e);
-        }
-        try {
-            if (outbuf != null) {
-                outbuf.close();
-                outbuf = null;
-            }
-        } catch (Exception e) {
-            FileLog.e(e);
-        }
-        try {
-            if (out != null) {
-                out.close();
-                out = null;
-            }
-        } catch (Exception e) {
-            FileLog.e(e);
-        }
+        buffer = null;
+        count = 0;
+        position = 0;
     }
 
     public SerializedData(File file) throws Exception {
-        FileInputStream is = new FileInputStream(file);
         byte[] data = new byte[(int) file.length()];
-        new DataInputStream(is).readFully(data);
-        is.close();
-
-        isOut = false;
-        inbuf = new ByteArrayInputStream(data);
-        in = new DataInputStream(inbuf);
+        FileInputStream is = new FileInputStream(file);
+        try {
+            new DataInputStream(is).readFully(data);
+        } finally {
+            is.close();
+        }
+        set(data);
     }
 
-    public void writeInt32(int x) {
-        if (!justCalc) {
-            writeInt32(x, out);
-        } else {
-            len += 4;
+    private void ensureCapacity(int size) {
+        if (count + size > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, count + size));
         }
     }
 
-    private void writeInt32(int x, DataOutputStream out) {
-        try {
-            for (int i = 0; i < 4; i++) {
-                out.write(x >> (i * 8));
-            }
-        } catch (Exception e) {
-            if (BuildVars.LOGS_ENABLED) {
-                FileLog.e("write int32 error");
-                FileLog.e(e);
-            }
+    private void checkAvailable(int size) {
+        if (size < 0 || position + size > count) {
+            throw new IndexOutOfBoundsException("can't read " + size + " bytes at " + position + " of " + count);
         }
     }
 
-    public void writeInt64(long i) {
+    public void writeInt32(int x) {
         if (!justCalc) {
-            writeInt64(i, out);
+            ensureCapacity(4);
+            for (int i = 0; i < 4; i++) {
+                buffer[count++] = (byte) (x >> (i * 8));
+            }
         } else {
-            len += 8;
+            len += 4;
         }
     }
 
-    private void writeInt64(long x, DataOutputStream out) {
-        try {
+    public void writeInt64(long x) {
+        if (!justCalc) {
+            ensureCapacity(8);
             for (int i = 0; i < 8; i++) {
-                out.write((int) (x >> (i * 8)));
-            }
-        } catch (Exception e) {
-            if (BuildVars.LOGS_ENABLED) {
-                FileLog.e("write int64 error");
-                FileLog.e(e);
+                buffer[count++] = (byte) (x >> (i * 8));
             }
+        } else {
+            len += 8;
         }
     }
 
@@ -156,7 +110,7 @@ public class SerializedData extends AbstractSerializedData {
     public void writeBytes(byte[] b) {
         try {
             if (!justCalc) {
-                out.write(b);
+                writeBytes(b, 0, b.length);
             } else {
                 len += b.length;
             }
@@ -171,7 +125,9 @@ public class SerializedData extends AbstractSerializedData {
     public void writeBytes(byte[] b, int offset, int count) {
         try {
             if (!justCalc) {
-                out.write(b, offset, count);
+                ensureCapacity(count);
+                System.arraycopy(b, offset, buffer, this.count, count);
+                this.count += count;
             } else {
                 len += count;
             }
@@ -184,24 +140,14 @@ public class SerializedData extends AbstractSerializedData {
     }
 
     public void writeByte(int i) {
-        try {
-            if (!justCalc) {
-                out.writeByte((byte) i);
-            } else {
-                len += 1;
-            }
-        } catch (Exception e) {
-            if (BuildVars.LOGS_ENABLED) {
-                FileLog.e("write byte error");
-                FileLog.e(e);
-            }
-        }
+        writeByte((byte) i);
     }
 
     public void writeByte(byte b) {
         try {
             if (!justCalc) {
-                out.writeByte(b);
+                ensureCapacity(1);
+                buffer[count++] = b;
             } else {
                 len += 1;
             }
@@ -215,36 +161,7 @@ public class SerializedData extends AbstractSerializedData {
 
     public void writeByteArray(byte[] b) {
         try {
-            if (b.length <= 253) {
-                if (!justCalc) {
-                    out.write(b.length);
-                } else {
-                    len += 1;
-                }
-            } else {
-                if (!justCalc) {
-                    out.write(254);
-                    out.write(b.length);
-                    out.write(b.length >> 8);
-                    out.write(b.length >> 16);
-                } else {
-                    len += 4;
-                }
-            }
-            if (!justCalc) {
-                out.write(b);
-            } else {
-                len += b.length;
-            }
-            int i = b.length <= 253 ? 1 : 4;
-            while ((b.length + i) % 4 != 0) {
-                if (!justCalc) {
-                    out.write(0);
-                } else {
-                    len += 1;
-                }
-                i++;
-            }
+            writeByteArray(b, 0, b.length);
         } catch (Exception e) {
             if (BuildVars.LOGS_ENABLED) {
                 FileLog.e("write byte array error");
@@ -266,36 +183,27 @@ public class SerializedData extends AbstractSerializedData {
 
     public void writeByteArray(byte[] b, int offset, int count) {
         try {
-            if (count <= 253) {
-                if (!justCalc) {
-                    out.write(count);
-                } else {
-                    len += 1;
-                }
+            int sl = count <= 253 ? 1 : 4;
+            int padding = 0;
+            while ((count + sl + padding) % 4 != 0) {
+                padding++;
+            }
+            if (justCalc) {
+                len += sl + count + padding;
+                return;
+            }
+            ensureCapacity(sl + count + padding);
+            if (sl == 1) {
+                buffer[this.count++] = (byte) count;
             } else {
-                if (!justCalc) {
-                    out.write(254);
-                    out.write(count);
-                    out.write(count >> 8);
-                    out.write(count >> 16);
-                } else {
-                    len += 4;
-                }
-            }
-            if (!justCalc) {
-                out.write(b, offset, count);
-            } else {
-                len += count;
-            }
-            int i = count <= 253 ? 1 : 4;
-            while ((count + i) % 4 != 0) {
-                if (!justCalc) {
-                    out.write(0);
-                } else {
-                    len += 1;
-                }
-                i++;
-            }
+                buffer[this.count++] = (byte) 254;
+                buffer[this.count++] = (byte) count;
+                buffer[this.count++] = (byte) (count >> 8);
+                buffer[this.count++] = (byte) (count >> 16);
+            }
+            System.arraycopy(b, offset, buffer, this.count, count);
+            // the buffer is zeroed past the written bytes, so padding is already there
+            this.count += count + padding;
         } catch (Exception e) {
             if (BuildVars.LOGS_ENABLED) {
                 FileLog.e("write byte array error");
@@ -317,19 +225,28 @@ public class SerializedData extends AbstractSerializedData {
 
     public int length() {
         if (!justCalc) {
-            return isOut ? outbuf.size() : inbuf.available();
+            return isOut ? count : count - position;
         }
         return len;
     }
 
     protected void set(byte[] newData) {
         isOut = false;
-        inbuf = new ByteArrayInputStream(newData);
-        in = new DataInputStream(inbuf);
+        buffer = newData;
+        count = newData.length;
+        position = 0;
+        len = 0;
     }
 
+    /**
+     * Returns the written bytes. When the buffer was created with the exact size of the data,
+     * e.g. from {@link TLObject#getObjectSize()}, it is returned as is without copying.
+     */
     public byte[] toByteArray() {
-        return outbuf.toByteArray();
+        if (count == buffer.length) {
+            return buffer;
+        }
+        return Arrays.copyOf(buffer, count);
     }
 
     public void skip(int count) {
@@ -337,12 +254,9 @@ public class SerializedData extends AbstractSerializedData {
             return;
         }
         if (!justCalc) {
-            if (in != null) {
-                try {
-                    in.skipBytes(count);
-                } catch (Exception e) {
-                    FileLog.e(e);
-                }
+            if (!isOut) {
+                int skipped = Math.max(0, Math.min(count, this.count - position));
+                position += skipped;
             }
         } else {
             len += count;
@@ -350,6 +264,9 @@ public class SerializedData extends AbstractSerializedData {
     }
 
     public int getPosition() {
+        if (!justCalc) {
+            return isOut ? count : position;
+        }
         return len;
     }
 
@@ -372,8 +289,9 @@ public class SerializedData extends AbstractSerializedData {
 
     public void readBytes(byte[] b, boolean exception) {
         try {
-            in.read(b);
-            len += b.length;
+            checkAvailable(b.length);
+            System.arraycopy(buffer, position, b, 0, b.length);
+            position += b.length;
         } catch (Exception e) {
             if (exception) {
                 throw new RuntimeException("read bytes error", e);
@@ -392,27 +310,41 @@ public class SerializedData extends AbstractSerializedData {
         return arr;
     }
 
+    /**
+     * Reads the length prefix of a byte array and returns its length, leaving the position at the first byte.
+     */
+    private int readArrayLength() {
+        checkAvailable(1);
+        int l = buffer[position++] & 0xff;
+        if (l >= 254) {
+            checkAvailable(3);
+            l = (buffer[position] & 0xff) | ((buffer[position + 1] & 0xff) << 8) | ((buffer[position + 2] & 0xff) << 16);
+            position += 3;
+        }
+        checkAvailable(l);
+        return l;
+    }
+
+    /**
+     * Moves the position past a byte array of the given length and its padding.
+     *
+     * @param start position of the length prefix of the array
+     */
+    private void skipArray(int start, int l) {
+        int sl = position - start;
+        position = Math.min(count, position + l + (4 - (l + sl) % 4) % 4);
+    }
+
     public String readString(boolean exception) {
+        int start = position;
         try {
-            int sl = 1;
-            int l = in.read();
-            len++;
-            if (l >= 254) {
-                l = in.read() | (in.read() << 8) | (in.read() << 16);
-                len += 3;
-                sl = 4;
-            }
-            byte[] b = new byte[l];
-            in.read(b);
-            len++;
-            int i = sl;
-            while ((l + i) % 4 != 0) {
-                in.read();
-                len++;
-                i++;
-            }
-            return new String(b, "UTF-8");
+            int l = readArrayLength();
+            // decode straight from the buffer instead of copying the bytes first
+            String result = new String(buffer, position, l, "UTF-8");
+            skipArray(start, l);
+            return result;
         } catch (Exception e) {
+            position = start;
             if (exception) {
                 throw new RuntimeException("read string error", e);
             } else {
@@ -426,26 +358,14 @@ public class SerializedData extends AbstractSerializedData {
     }
 
     public byte[] readByteArray(boolean exception) {
+        int start = position;
         try {
-            int sl = 1;
-            int l = in.read();
-            len++;
-            if (l >= 254) {
-                l = in.read() | (in.read() << 8) | (in.read() << 16);
-                len += 3;
-                sl = 4;
-            }
-            byte[] b = new byte[l];
-            in.read(b);
-            len++;
-            int i = sl;
-            while ((l + i) % 4 != 0) {
-                in.read();
-                len++;
-                i++;
-            }
+            int l = readArrayLength();
+            byte[] b = Arrays.copyOfRange(buffer, position, position + l);
+            skipArray(start, l);
             return b;
         } catch (Exception e) {
+            position = start;
             if (exception) {
                 throw new RuntimeException("read byte array error", e);
             } else {
@@ -476,10 +396,10 @@ public class SerializedData extends AbstractSerializedData {
 
     public int readInt32(boolean exception) {
         try {
+            checkAvailable(4);
             int i = 0;
             for (int j = 0; j < 4; j++) {
-                i |= (in.read() << (j * 8));
-                len++;
+                i |= (buffer[position++] & 0xff) << (j * 8);
             }
             return i;
         } catch (Exception e) {
@@ -497,10 +417,10 @@ public class SerializedData extends AbstractSerializedData {
 
     public long readInt64(boolean exception) {
         try {
+            checkAvailable(8);
             long i = 0;
             for (int j = 0; j < 8; j++) {
-                i |= ((long) in.read() << (j * 8));
-                len++;
+                i |= (long) (buffer[position++] & 0xff) << (j * 8);
             }
             return i;
         } catch (Exception e) {
@@ -528,10 +448,9 @@ public class SerializedData extends AbstractSerializedData {
 
     @Override
     public int remaining() {
-        try {
-            return in.available();
-        } catch (Exception e) {
+        if (isOut || buffer == null) {
             return Integer.MAX_VALUE;
         }
+        return count - position;
     }
 }
@@ -10,57 +10,51 @@ package org.telegram.tgnet;
 
 import android.util.SparseArray;
 
-import org.telegram.messenger.FileLog;
-
 public class TLClassStore {
-    private SparseArray<Class> classStore;
 
-    public TLClassStore() {
-        classStore = new SparseArray<>();
+    private interface Factory {
+        TLObject create();
+    }
 
-        classStore.put(TLRPC.TL_error.constructor, TLRPC.TL_error.class);
-        classStore.put(TLRPC.TL_decryptedMessageService.constructor, TLRPC.TL_decryptedMessageService.class);
-        classStore.put(TLRPC.TL_decryptedMessage.constructor, TLRPC.TL_decryptedMessage.class);
-        classStore.put(TLRPC.TL_config.constructor, TLRPC.TL_config.class);
-        classStore.put(TLRPC.TL_decryptedMessageLayer.constructor, TLRPC.TL_decryptedMessageLayer.class);
-        classStore.put(TLRPC.TL_decryptedMessage_layer17.constructor, TLRPC.TL_decryptedMessage.class);
-        classStore.put(TLRPC.TL_decryptedMessage_layer45.constructor, TLRPC.TL_decryptedMessage_layer45.class);
-        classStore.put(TLRPC.TL_decryptedMessageService_layer8.constructor, TLRPC.TL_decryptedMessageService_layer8.class);
-        classStore.put(TLRPC.TL_decryptedMessage_layer8.constructor, TLRPC.TL_decryptedMessage_layer8.class);
-        classStore.put(TLRPC.TL_message_secret.constructor, TLRPC.TL_message_secret.class);
-        classStore.put(TLRPC.TL_message_secret_layer72.constructor, TLRPC.TL_message_secret_layer72.class);
-        classStore.put(TLRPC.TL_message_secret_old.constructor, TLRPC.TL_message_secret_old.class);
-        classStore.put(TLRPC.TL_messageEncryptedAction.constructor, TLRPC.TL_messageEncryptedAction.class);
-        classStore.put(TLRPC.TL_null.constructor, TLRPC.TL_null.class);
+    private SparseArray<Factory> factories;
 
-        classStore.put(TLRPC.TL_updateShortChatMessage.constructor, TLRPC.TL_updateShortChatMessage.class);
-        classStore.put(TLRPC.TL_updates.constructor, TLRPC.TL_updates.class);
-        classStore.put(TLRPC.TL_updateShortMessage.constructor, TLRPC.TL_updateShortMessage.class);
-        classStore.put(TLRPC.TL_updateShort.constructor, TLRPC.TL_updateShort.class);
-        classStore.put(TLRPC.TL_updatesCombined.constructor, TLRPC.TL_updatesCombined.class);
-        classStore.put(TLRPC.TL_updateShortSentMessage.constructor, TLRPC.TL_updateShortSentMessage.class);
-        classStore.put(TLRPC.TL_updatesTooLong.constructor, TLRPC.TL_updatesTooLong.class);
+    public TLClassStore() {
+        factories = new SparseArray<>();
+
+        factories.put(TLRPC.TL_error.constructor, TLRPC.TL_error::new);
+        factories.put(TLRPC.TL_decryptedMessageService.constructor, TLRPC.TL_decryptedMessageService::new);
+        factories.put(TLRPC.TL_decryptedMessage.constructor, TLRPC.TL_decryptedMessage::new);
+        factories.put(TLRPC.TL_config.constructor, TLRPC.TL_config::new);
+        factories.put(TLRPC.TL_decryptedMessageLayer.constructor, TLRPC.TL_decryptedMessageLayer::new);
+        factories.put(TLRPC.TL_decryptedMessage_layer17.constructor, TLRPC.TL_decryptedMessage::new);
+        factories.put(TLRPC.TL_decryptedMessage_layer45.constructor, TLRPC.TL_decryptedMessage_layer45::new);
+        factories.put(TLRPC.TL_decryptedMessageService_layer8.constructor, TLRPC.TL_decryptedMessageService_layer8::new);
+        factories.put(TLRPC.TL_decryptedMessage_layer8.constructor, TLRPC.TL_decryptedMessage_layer8::new);
+        factories.put(TLRPC.TL_message_secret.constructor, TLRPC.TL_message_secret::new);
+        factories.put(TLRPC.TL_message_secret_layer72.constructor, TLRPC.TL_message_secret_layer72::new);
+        factories.put(TLRPC.TL_message_secret_old.constructor, TLRPC.TL_message_secret_old::new);
+        factories.put(TLRPC.TL_messageEncryptedAction.constructor, TLRPC.TL_messageEncryptedAction::new);
+        factories.put(TLRPC.TL_null.constructor, TLRPC.TL_null::new);
+
+        factories.put(TLRPC.TL_updateShortChatMessage.constructor, TLRPC.TL_updateShortChatMessage::new);
+        factories.put(TLRPC.TL_updates.constructor, TLRPC.TL_updates::new);
+        factories.put(TLRPC.TL_updateShortMessage.constructor, TLRPC.TL_updateShortMessage::new);
+        factories.put(TLRPC.TL_updateShort.constructor, TLRPC.TL_updateShort::new);
+        factories.put(TLRPC.TL_updatesCombined.constructor, TLRPC.TL_updatesCombined::new);
+        factories.put(TLRPC.TL_updateShortSentMessage.constructor, TLRPC.TL_updateShortSentMessage::new);
+        factories.put(TLRPC.TL_updatesTooLong.constructor, TLRPC.TL_updatesTooLong::new);
     }
 
-    static TLClassStore store = null;
+    private static final TLClassStore store = new TLClassStore();
 
     public static TLClassStore Instance() {
-        if (store == null) {
-            store = new TLClassStore();
-        }
         return store;
     }
 
     public TLObject TLdeserialize(NativeByteBuffer stream, int constructor, boolean exception) {
-        Class objClass = classStore.get(constructor);
-        if (objClass != null) {
-            TLObject response;
-            try {
-                response = (TLObject) objClass.newInstance();
-            } catch (Throwable e) {
-                FileLog.e(e);
-                return null;
-            }
+        Factory factory = factories.get(constructor);
+        if (factory != null) {
+            TLObject response = factory.create();
             response.readParams(stream, exception);
             return response;
         }
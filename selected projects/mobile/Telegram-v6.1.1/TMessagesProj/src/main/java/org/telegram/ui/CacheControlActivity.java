@@ -588,6 +588,7 @@ public class CacheControlActivity extends BaseFragment {
                     state5.dispose();
                     state6.dispose();
                     database.commitTransaction();
+                    database.commitGroup();
                     database.executeFast("PRAGMA journal_size_limit = 0").stepThis().dispose();
                     database.executeFast("VACUUM").stepThis().dispose();
                     database.executeFast("PRAGMA journal_size_limit = -1").stepThis().dispose();
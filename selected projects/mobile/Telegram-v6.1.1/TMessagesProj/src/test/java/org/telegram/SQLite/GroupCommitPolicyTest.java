@@ -0,0 +1,67 @@
+/*
+ * This is the source code of Telegram for Android v. 5.x.x.
+ * It is licensed under GNU GPL v. 2 or later.
+ * You should have received a copy of the license in this archive (see LICENSE).
+ *
+ * Copyright Nikolai Kudashov, 2013-2018.
+ */
+
+package org.telegram.SQLite;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GroupCommitPolicyTest {
+
+    @Test
+    public void commitsWhenGroupIsFull() {
+        GroupCommitPolicy policy = new GroupCommitPolicy(3, 100);
+        policy.onGroupStarted(0);
+        assertFalse(policy.onTransactionCommitted(1));
+        assertFalse(policy.onTransactionCommitted(2));
+        assertTrue(policy.onTransactionCommitted(3));
+    }
+
+    @Test
+    public void commitsWhenGroupIsTooOld() {
+        GroupCommitPolicy policy = new GroupCommitPolicy(100, 100);
+        policy.onGroupStarted(1000);
+        assertFalse(policy.onTransactionCommitted(1050));
+        assertFalse(policy.isExpired(1099));
+        assertTrue(policy.isExpired(1100));
+        assertTrue(policy.onTransactionCommitted(1100));
+    }
+
+    @Test
+    public void newGroupStartsAfresh() {
+        GroupCommitPolicy policy = new GroupCommitPolicy(2, 100);
+        policy.onGroupStarted(0);
+        policy.onTransactionCommitted(10);
+        policy.onGroupCommitted(10, 12);
+        policy.onGroupStarted(500);
+        assertEquals(0, policy.getGroupedTransactions());
+        assertFalse(policy.isExpired(550));
+        assertFalse(policy.onTransactionCommitted(550));
+    }
+
+    @Test
+    public void keepsStatistics() {
+        GroupCommitPolicy policy = new GroupCommitPolicy(100, 100);
+        policy.onGroupStarted(0);
+        for (int a = 0; a < 5; a++) {
+            policy.onTransactionCommitted(a);
+        }
+        assertEquals(30, policy.onGroupCommitted(20, 30));
+        policy.onGroupStarted(100);
+        policy.onTransactionCommitted(101);
+        assertEquals(10, policy.onGroupCommitted(105, 110));
+
+        assertEquals(2, policy.getGroupCommitCount());
+        assertEquals(6, policy.getGroupedTransactionCount());
+        assertEquals(15, policy.getGroupCommitTime());
+        assertEquals(30, policy.getMaxGroupLatency());
+    }
+}
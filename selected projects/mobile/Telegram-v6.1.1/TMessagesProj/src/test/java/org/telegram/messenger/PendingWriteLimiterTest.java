@@ -0,0 +1,103 @@
+/*
+ * This is the source code of Telegram for Android v. 5.x.x.
+ * It is licensed under GNU GPL v. 2 or later.
+ * You should have received a copy of the license in this archive (see LICENSE).
+ *
+ * Copyright Nikolai Kudashov, 2013-2018.
+ */
+
+package org.telegram.messenger;
+
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PendingWriteLimiterTest {
+
+    @Test
+    public void producerWaitsUntilWriteIsDone() throws Exception {
+        PendingWriteLimiter limiter = new PendingWriteLimiter(2, 10000);
+        limiter.acquire(true);
+        limiter.acquire(true);
+        Thread writer = new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException ignore) {
+
+            }
+            limiter.release();
+        });
+        writer.start();
+        long start = System.currentTimeMillis();
+        limiter.acquire(true);
+        long waited = System.currentTimeMillis() - start;
+        writer.join();
+        assertTrue(waited >= 50);
+        assertTrue(waited < 5000);
+        assertEquals(2, limiter.getPending());
+        assertEquals(1, limiter.getWaitCount());
+    }
+
+    @Test
+    public void waitIsBounded() {
+        PendingWriteLimiter limiter = new PendingWriteLimiter(1, 100);
+        limiter.acquire(true);
+        long start = System.currentTimeMillis();
+        limiter.acquire(true);
+        long waited = System.currentTimeMillis() - start;
+        assertTrue(waited >= 100);
+        assertEquals(2, limiter.getPending());
+    }
+
+    @Test
+    public void producerWhichMayNotWaitIsOnlyCounted() {
+        PendingWriteLimiter limiter = new PendingWriteLimiter(1, 10000);
+        for (int a = 0; a < 5; a++) {
+            limiter.acquire(false);
+        }
+        assertEquals(5, limiter.getPending());
+        assertEquals(5, limiter.getMaxPendingSeen());
+        assertEquals(0, limiter.getWaitCount());
+    }
+
+    @Test
+    public void resetWakesProducers() throws Exception {
+        PendingWriteLimiter limiter = new PendingWriteLimiter(1, 10000);
+        limiter.acquire(true);
+        Thread producer = new Thread(() -> limiter.acquire(true));
+        producer.start();
+        Thread.sleep(50);
+        limiter.reset();
+        producer.join(5000);
+        assertEquals(1, limiter.getPending());
+        limiter.release();
+        limiter.release();
+        assertEquals(0, limiter.getPending());
+    }
+
+    @Test
+    public void pendingWritesStayBounded() throws Exception {
+        final int maxPending = 8;
+        PendingWriteLimiter limiter = new PendingWriteLimiter(maxPending, 10000);
+        ExecutorService queue = Executors.newSingleThreadExecutor();
+        AtomicInteger done = new AtomicInteger();
+        for (int a = 0; a < 500; a++) {
+            limiter.acquire(true);
+            queue.execute(() -> {
+                done.incrementAndGet();
+                limiter.release();
+            });
+        }
+        queue.shutdown();
+        assertTrue(queue.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(500, done.get());
+        assertEquals(0, limiter.getPending());
+        assertTrue(limiter.getMaxPendingSeen() <= maxPending);
+    }
+}
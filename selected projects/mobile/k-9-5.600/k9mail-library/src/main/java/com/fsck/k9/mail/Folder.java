@@ -159,6 +159,28 @@ public abstract class Folder<T extends Message> {
         return true;
     }
 
+    /**
+     * @return the mod-sequence of the most recent change in the open folder, 0 if the server doesn't keep track of
+     *         changes
+     */
+    public long getHighestModSeq() {
+        return 0L;
+    }
+
+    /**
+     * Fetches the flags of those messages that changed after the given mod-sequence. Folders that don't keep track
+     * of changes fetch the flags of all messages.
+     *
+     * @return the messages whose flags were fetched
+     */
+    public List<T> fetchChangedFlags(List<T> messages, long changedSince) throws MessagingException {
+        FetchProfile fetchProfile = new FetchProfile();
+        fetchProfile.add(FetchProfile.Item.FLAGS);
+        fetch(messages, fetchProfile, null);
+
+        return messages;
+    }
+
     @Override
     public String toString() {
         return getName();
@@ -5,12 +5,14 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 
 import com.fsck.k9.mail.MessagingException;
 import com.fsck.k9.mail.filter.Base64OutputStream;
+import com.fsck.k9.mail.filter.CountingOutputStream;
 import org.apache.commons.io.IOUtils;
 import org.apache.james.mime4j.codec.QuotedPrintableOutputStream;
 import org.apache.james.mime4j.util.MimeUtil;
@@ -30,6 +32,8 @@ public class BinaryTempFileBody implements RawDataBody, SizeAware {
 
     String mEncoding = null;
 
+    private long mDecodedSize = -1L;
+
     public static void setTempDirectory(File tempDirectory) {
         mTempDirectory = tempDirectory;
     }
@@ -53,6 +57,9 @@ public class BinaryTempFileBody implements RawDataBody, SizeAware {
             throw new RuntimeException("Can't convert from encoding: " + mEncoding);
         }
 
+        // Only the representation changes, the decoded body stays the same
+        long decodedSize = getDecodedSize();
+
         try {
             File newFile = File.createTempFile("body", null, mTempDirectory);
             final OutputStream out = new FileOutputStream(newFile);
@@ -79,6 +86,7 @@ public class BinaryTempFileBody implements RawDataBody, SizeAware {
 
             mFile = newFile;
             mEncoding = encoding;
+            mDecodedSize = decodedSize;
         } catch (IOException e) {
             throw new MessagingException("Unable to convert body", e);
         }
@@ -95,7 +103,14 @@ public class BinaryTempFileBody implements RawDataBody, SizeAware {
     public OutputStream getOutputStream() throws IOException {
         mFile = File.createTempFile("body", null, mTempDirectory);
         mFile.deleteOnExit();
-        return new FileOutputStream(mFile);
+        mDecodedSize = -1L;
+
+        OutputStream outputStream = new FileOutputStream(mFile);
+        if (MimeUtil.ENC_BASE64.equalsIgnoreCase(mEncoding)) {
+            return new DecodedSizeCountingOutputStream(outputStream);
+        }
+
+        return outputStream;
     }
 
     public InputStream getInputStream() throws MessagingException {
@@ -124,6 +139,52 @@ public class BinaryTempFileBody implements RawDataBody, SizeAware {
         return mFile;
     }
 
+    /**
+     * Returns the size of the body after removing the content-transfer-encoding, so that callers don't have to read
+     * and decode the file to find it.
+     *
+     * @return the decoded size, or -1 if it wasn't counted while the body was written
+     */
+    public long getDecodedSize() {
+        if (mDecodedSize == -1L && !MimeUtil.ENC_BASE64.equalsIgnoreCase(mEncoding) &&
+                !MimeUtil.ENC_QUOTED_PRINTABLE.equalsIgnoreCase(mEncoding)) {
+            return mFile.length();
+        }
+
+        return mDecodedSize;
+    }
+
+    /**
+     * Writes base64 data to the file unchanged, while decoding it on the side to count the decoded bytes.
+     */
+    private class DecodedSizeCountingOutputStream extends FilterOutputStream {
+        private final CountingOutputStream decodedSizeCounter = new CountingOutputStream();
+        private final Base64OutputStream decoder = new Base64OutputStream(decodedSizeCounter, false);
+
+        DecodedSizeCountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int oneByte) throws IOException {
+            out.write(oneByte);
+            decoder.write(oneByte);
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int count) throws IOException {
+            out.write(buffer, offset, count);
+            decoder.write(buffer, offset, count);
+        }
+
+        @Override
+        public void close() throws IOException {
+            super.close();
+            decoder.close();
+            mDecodedSize = decodedSizeCounter.getCount();
+        }
+    }
+
     class BinaryTempFileBodyInputStream extends FilterInputStream {
         public BinaryTempFileBodyInputStream(InputStream in) {
             super(in);
@@ -0,0 +1,62 @@
+package com.fsck.k9.mail.store.imap;
+
+
+import java.util.EnumSet;
+import java.util.Set;
+
+import com.fsck.k9.mail.Flag;
+
+
+/**
+ * Keeps the items the parser reports for one FETCH response until the UID of the response is known. The instance
+ * is reused for all responses of a fetch.
+ */
+class FetchItemCollector implements FetchResponseListener {
+    private final Set<Flag> flags = EnumSet.noneOf(Flag.class);
+    private String internalDate;
+    private int size = -1;
+
+
+    @Override
+    public void fetchStarted() {
+        flags.clear();
+        internalDate = null;
+        size = -1;
+    }
+
+    @Override
+    public void foundFlag(String flag) {
+        Flag knownFlag = ImapUtility.getFlag(flag);
+        if (knownFlag != null) {
+            flags.add(knownFlag);
+        }
+    }
+
+    @Override
+    public void foundInternalDate(String internalDate) {
+        this.internalDate = internalDate;
+    }
+
+    @Override
+    public void foundSize(int size) {
+        this.size = size;
+    }
+
+    public Set<Flag> getFlags() {
+        return flags;
+    }
+
+    /**
+     * Returns the unparsed internal date, {@code null} if the response didn't contain one.
+     */
+    public String getInternalDate() {
+        return internalDate;
+    }
+
+    /**
+     * Returns the size, {@code -1} if the response didn't contain one.
+     */
+    public int getSize() {
+        return size;
+    }
+}
@@ -0,0 +1,33 @@
+package com.fsck.k9.mail.store.imap;
+
+/**
+ * Receives the items of untagged FETCH responses that {@link ImapResponseParser} hands over while reading, instead
+ * of adding them to the {@link ImapList} of the response.
+ *
+ * <p>
+ * The items are reported in the order the server sends them. The UID stays in the list of the response, so it may
+ * only be known after all items of a response have been reported.
+ * </p>
+ */
+interface FetchResponseListener {
+    /**
+     * Called when the parser starts reading the item list of a FETCH response.
+     */
+    void fetchStarted();
+
+    /**
+     * Called for every flag of a {@code FLAGS} item. System flags and {@code $Forwarded} are passed as shared
+     * instances, so they can be compared without allocating.
+     */
+    void foundFlag(String flag);
+
+    /**
+     * Called with the unparsed value of an {@code INTERNALDATE} item.
+     */
+    void foundInternalDate(String internalDate);
+
+    /**
+     * Called with the value of an {@code RFC822.SIZE} item.
+     */
+    void foundSize(int size);
+}
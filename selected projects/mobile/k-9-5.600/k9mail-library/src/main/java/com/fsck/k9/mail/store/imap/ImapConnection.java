@@ -699,7 +699,8 @@ class ImapConnection {
     }
 
     public boolean isCondstoreCapable()  {
-        return hasCapability(Capabilities.CONDSTORE);
+        // Servers supporting QRESYNC have to support CONDSTORE as well (RFC 7162)
+        return hasCapability(Capabilities.CONDSTORE) || hasCapability(Capabilities.QRESYNC);
     }
 
     protected boolean isIdleCapable() {
@@ -846,8 +847,13 @@ class ImapConnection {
     }
 
     public ImapResponse readResponse(ImapResponseCallback callback) throws IOException {
+        return readResponse(callback, null);
+    }
+
+    public ImapResponse readResponse(ImapResponseCallback callback, FetchResponseListener fetchListener)
+            throws IOException {
         try {
-            ImapResponse response = responseParser.readResponse(callback);
+            ImapResponse response = responseParser.readResponse(callback, fetchListener);
 
             if (K9MailLib.isDebug() && DEBUG_PROTOCOL_IMAP) {
                 Timber.v("%s<<<%s", getLogId(), response);
@@ -35,6 +35,7 @@ import com.fsck.k9.mail.internet.MimeHeader;
 import com.fsck.k9.mail.internet.MimeMessageHelper;
 import com.fsck.k9.mail.internet.MimeMultipart;
 import com.fsck.k9.mail.internet.MimeUtility;
+import com.fsck.k9.mail.store.imap.IdGrouper.GroupedIds;
 import timber.log.Timber;
 
 import static com.fsck.k9.mail.store.imap.ImapUtility.getLastResponse;
@@ -49,10 +50,13 @@ class ImapFolder extends Folder<ImapMessage> {
     };
     private static final int MORE_MESSAGES_WINDOW_SIZE = 500;
     private static final int FETCH_WINDOW_SIZE = 100;
+    private static final long FETCH_WINDOW_BYTES = 1024 * 1024;
+    private static final int FETCH_PIPELINE_DEPTH = 3;
 
 
     protected volatile int messageCount = -1;
     protected volatile long uidNext = -1L;
+    protected volatile long highestModSeq = 0L;
     protected volatile ImapConnection connection;
     protected ImapStore store = null;
     protected Map<Long, String> msgSeqUidMap = new ConcurrentHashMap<Long, String>();
@@ -138,11 +142,17 @@ class ImapFolder extends Folder<ImapMessage> {
 
         try {
             msgSeqUidMap.clear();
+            highestModSeq = 0L;
 
             String openCommand = mode == OPEN_MODE_RW ? "SELECT" : "EXAMINE";
             String encodedFolderName = folderNameCodec.encode(getPrefixedName());
             String escapedFolderName = ImapUtility.encodeString(encodedFolderName);
             String command = String.format("%s %s", openCommand, escapedFolderName);
+            connection.open();
+            if (connection.isCondstoreCapable()) {
+                // Servers only have to report HIGHESTMODSEQ once CONDSTORE was enabled
+                command += " (CONDSTORE)";
+            }
             List<ImapResponse> responses = executeSimpleCommand(command);
 
             /*
@@ -642,12 +652,9 @@ class ImapFolder extends Folder<ImapMessage> {
 
         checkOpen();
 
-        List<String> uids = new ArrayList<>(messages.size());
         HashMap<String, Message> messageMap = new HashMap<>();
         for (Message message : messages) {
-            String uid = message.getUid();
-            uids.add(uid);
-            messageMap.put(uid, message);
+            messageMap.put(message.getUid(), message);
         }
 
         Set<String> fetchFields = new LinkedHashSet<>();
@@ -668,99 +675,197 @@ class ImapFolder extends Folder<ImapMessage> {
             fetchFields.add("BODYSTRUCTURE");
         }
 
+        long bodySizeLimit = 0;
         if (fetchProfile.contains(FetchProfile.Item.BODY_SANE)) {
             int maximumAutoDownloadMessageSize = store.getStoreConfig().getMaximumAutoDownloadMessageSize();
             if (maximumAutoDownloadMessageSize > 0) {
                 fetchFields.add(String.format(Locale.US, "BODY.PEEK[]<0.%d>", maximumAutoDownloadMessageSize));
+                bodySizeLimit = maximumAutoDownloadMessageSize;
             } else {
                 fetchFields.add("BODY.PEEK[]");
+                bodySizeLimit = Long.MAX_VALUE;
             }
         }
 
         if (fetchProfile.contains(FetchProfile.Item.BODY)) {
             fetchFields.add("BODY.PEEK[]");
+            bodySizeLimit = Long.MAX_VALUE;
         }
 
         String spaceSeparatedFetchFields = ImapUtility.join(" ", fetchFields);
+        String commandSuffix = "(" + spaceSeparatedFetchFields + ")";
 
-        for (int windowStart = 0; windowStart < messages.size(); windowStart += (FETCH_WINDOW_SIZE)) {
-            int windowEnd = Math.min(windowStart + FETCH_WINDOW_SIZE, messages.size());
-            List<String> uidWindow = uids.subList(windowStart, windowEnd);
+        List<String> commands = new ArrayList<>();
+        for (List<ImapMessage> window : createFetchWindows(messages, bodySizeLimit)) {
+            Set<Long> uidWindow = new HashSet<>(window.size());
+            for (ImapMessage message : window) {
+                uidWindow.add(Long.parseLong(message.getUid()));
+            }
 
-            try {
-                String commaSeparatedUids = ImapUtility.join(",", uidWindow);
-                String command = String.format("UID FETCH %s (%s)", commaSeparatedUids, spaceSeparatedFetchFields);
-                connection.sendCommand(command, false);
+            GroupedIds groupedUids = IdGrouper.groupIds(uidWindow);
+            commands.addAll(ImapCommandSplitter.splitCommand(
+                    Commands.UID_FETCH, commandSuffix, groupedUids, connection.getLineLengthLimit()));
+        }
 
-                ImapResponse response;
-                int messageNumber = 0;
+        ImapResponseCallback callback = null;
+        if (bodySizeLimit != 0) {
+            callback = new FetchBodyCallback(messageMap);
+        }
+
+        // Flags, internal date and size are passed to the collector by the parser instead of being added to the
+        // response, so that fetching the flags of a large folder doesn't build a list for every message
+        FetchItemCollector fetchItems = new FetchItemCollector();
 
-                ImapResponseCallback callback = null;
-                if (fetchProfile.contains(FetchProfile.Item.BODY) ||
-                        fetchProfile.contains(FetchProfile.Item.BODY_SANE)) {
-                    callback = new FetchBodyCallback(messageMap);
+        try {
+            // Keep a few commands in flight, so that the server always has the next window to work on
+            // while we are reading the responses of the previous one
+            int nextCommand = 0;
+            int pendingCommands = 0;
+            int messageNumber = 0;
+            while (nextCommand < commands.size() || pendingCommands > 0) {
+                while (nextCommand < commands.size() && pendingCommands < FETCH_PIPELINE_DEPTH) {
+                    connection.sendCommand(commands.get(nextCommand++), false);
+                    pendingCommands++;
                 }
 
-                do {
-                    response = connection.readResponse(callback);
-
-                    if (response.getTag() == null && ImapResponseParser.equalsIgnoreCase(response.get(1), "FETCH")) {
-                        ImapList fetchList = (ImapList) response.getKeyedValue("FETCH");
-                        String uid = fetchList.getKeyedString("UID");
-                        long msgSeq = response.getLong(0);
-                        if (uid != null) {
-                            try {
-                                msgSeqUidMap.put(msgSeq, uid);
-                                if (K9MailLib.isDebug()) {
-                                    Timber.v("Stored uid '%s' for msgSeq %d into map", uid, msgSeq);
-                                }
-                            } catch (Exception e) {
-                                Timber.e("Unable to store uid '%s' for msgSeq %d", uid, msgSeq);
-                            }
-                        }
+                ImapResponse response = connection.readResponse(callback, fetchItems);
 
-                        Message message = messageMap.get(uid);
-                        if (message == null) {
+                if (response.getTag() != null) {
+                    pendingCommands--;
+                } else if (ImapResponseParser.equalsIgnoreCase(response.get(1), "FETCH")) {
+                    ImapList fetchList = (ImapList) response.getKeyedValue("FETCH");
+                    String uid = fetchList.getKeyedString("UID");
+                    long msgSeq = response.getLong(0);
+                    if (uid != null) {
+                        try {
+                            msgSeqUidMap.put(msgSeq, uid);
                             if (K9MailLib.isDebug()) {
-                                Timber.d("Do not have message in messageMap for UID %s for %s", uid, getLogId());
+                                Timber.v("Stored uid '%s' for msgSeq %d into map", uid, msgSeq);
                             }
-
-                            handleUntaggedResponse(response);
-                            continue;
+                        } catch (Exception e) {
+                            Timber.e("Unable to store uid '%s' for msgSeq %d", uid, msgSeq);
                         }
+                    }
 
-                        if (listener != null) {
-                            listener.messageStarted(uid, messageNumber++, messageMap.size());
+                    Message message = messageMap.get(uid);
+                    if (message == null) {
+                        if (K9MailLib.isDebug()) {
+                            Timber.d("Do not have message in messageMap for UID %s for %s", uid, getLogId());
                         }
 
-                        ImapMessage imapMessage = (ImapMessage) message;
-                        Object literal = handleFetchResponse(imapMessage, fetchList);
-
-                        if (literal != null) {
-                            if (literal instanceof String) {
-                                String bodyString = (String) literal;
-                                InputStream bodyStream = new ByteArrayInputStream(bodyString.getBytes());
-                                imapMessage.parse(bodyStream);
-                            } else if (literal instanceof Integer) {
-                                // All the work was done in FetchBodyCallback.foundLiteral()
-                            } else {
-                                // This shouldn't happen
-                                throw new MessagingException("Got FETCH response with bogus parameters");
-                            }
-                        }
+                        handleUntaggedResponse(response);
+                        continue;
+                    }
 
-                        if (listener != null) {
-                            listener.messageFinished(imapMessage, messageNumber, messageMap.size());
+                    if (listener != null) {
+                        listener.messageStarted(uid, messageNumber++, messageMap.size());
+                    }
+
+                    ImapMessage imapMessage = (ImapMessage) message;
+                    handleFetchedItems(imapMessage, fetchItems);
+                    Object literal = handleFetchResponse(imapMessage, fetchList);
+
+                    if (literal != null) {
+                        if (literal instanceof String) {
+                            String bodyString = (String) literal;
+                            InputStream bodyStream = new ByteArrayInputStream(bodyString.getBytes());
+                            imapMessage.parse(bodyStream);
+                        } else if (literal instanceof Integer) {
+                            // All the work was done in FetchBodyCallback.foundLiteral()
+                        } else {
+                            // This shouldn't happen
+                            throw new MessagingException("Got FETCH response with bogus parameters");
                         }
-                    } else {
-                        handleUntaggedResponse(response);
                     }
 
-                } while (response.getTag() == null);
-            } catch (IOException ioe) {
-                throw ioExceptionHandler(connection, ioe);
+                    if (listener != null) {
+                        listener.messageFinished(imapMessage, messageNumber, messageMap.size());
+                    }
+                } else {
+                    handleUntaggedResponse(response);
+                }
+            }
+        } catch (IOException ioe) {
+            throw ioExceptionHandler(connection, ioe);
+        }
+    }
+
+    /**
+     * Splits the messages into windows of at most {@link #FETCH_WINDOW_SIZE} messages. When bodies are fetched,
+     * a window is also closed once the known sizes of its messages add up to {@link #FETCH_WINDOW_BYTES}, so that
+     * large messages are fetched in smaller windows.
+     *
+     * @param bodySizeLimit
+     *         The number of bytes of every body that is fetched, {@code 0} if bodies aren't fetched.
+     */
+    static List<List<ImapMessage>> createFetchWindows(List<ImapMessage> messages, long bodySizeLimit) {
+        List<List<ImapMessage>> windows = new ArrayList<>();
+        int windowStart = 0;
+        long windowBytes = 0;
+        for (int i = 0; i < messages.size(); i++) {
+            windowBytes += Math.min(messages.get(i).getSize(), bodySizeLimit);
+
+            int windowEnd = i + 1;
+            if (windowEnd - windowStart == FETCH_WINDOW_SIZE || windowBytes >= FETCH_WINDOW_BYTES ||
+                    windowEnd == messages.size()) {
+                windows.add(messages.subList(windowStart, windowEnd));
+                windowStart = windowEnd;
+                windowBytes = 0;
             }
         }
+
+        return windows;
+    }
+
+    @Override
+    public long getHighestModSeq() {
+        return highestModSeq;
+    }
+
+    @Override
+    public List<ImapMessage> fetchChangedFlags(List<ImapMessage> messages, long changedSince)
+            throws MessagingException {
+        if (highestModSeq == 0L) {
+            return super.fetchChangedFlags(messages, changedSince);
+        }
+
+        checkOpen();
+
+        List<ImapMessage> changedMessages = new ArrayList<>();
+        if (messages.isEmpty()) {
+            return changedMessages;
+        }
+
+        Map<String, ImapMessage> messageMap = new HashMap<>();
+        Set<Long> uids = new HashSet<>(messages.size());
+        for (ImapMessage message : messages) {
+            messageMap.put(message.getUid(), message);
+            uids.add(Long.parseLong(message.getUid()));
+        }
+
+        String commandSuffix = String.format(Locale.US, "(UID FLAGS) (CHANGEDSINCE %d)", changedSince);
+        try {
+            List<ImapResponse> responses =
+                    connection.executeCommandWithIdSet(Commands.UID_FETCH, commandSuffix, uids);
+
+            for (ImapResponse response : responses) {
+                if (response.getTag() == null && ImapResponseParser.equalsIgnoreCase(response.get(1), "FETCH")) {
+                    ImapList fetchList = (ImapList) response.getKeyedValue("FETCH");
+                    ImapMessage message = messageMap.remove(fetchList.getKeyedString("UID"));
+                    if (message != null) {
+                        handleFetchResponse(message, fetchList);
+                        changedMessages.add(message);
+                        continue;
+                    }
+                }
+
+                handleUntaggedResponse(response);
+            }
+        } catch (IOException ioe) {
+            throw ioExceptionHandler(connection, ioe);
+        }
+
+        return changedMessages;
     }
 
     @Override
@@ -843,6 +948,31 @@ class ImapFolder extends Folder<ImapMessage> {
         }
     }
 
+    /**
+     * Applies the items that the parser passed to the {@link FetchItemCollector} for the current FETCH response.
+     */
+    private void handleFetchedItems(ImapMessage message, FetchItemCollector fetchItems) throws MessagingException {
+        for (Flag flag : fetchItems.getFlags()) {
+            setFetchedFlag(message, flag);
+        }
+
+        if (fetchItems.getInternalDate() != null) {
+            message.setInternalDate(ImapList.getDate(fetchItems.getInternalDate()));
+        }
+
+        if (fetchItems.getSize() != -1) {
+            message.setSize(fetchItems.getSize());
+        }
+    }
+
+    private void setFetchedFlag(ImapMessage message, Flag flag) throws MessagingException {
+        message.setFlagInternal(flag, true);
+        if (flag == Flag.FORWARDED) {
+            /* a message contains FORWARDED FLAG -> so we can also create them */
+            store.getPermanentFlagsIndex().add(Flag.FORWARDED);
+        }
+    }
+
     // Returns value of body field
     private Object handleFetchResponse(ImapMessage message, ImapList fetchList) throws MessagingException {
         Object result = null;
@@ -850,19 +980,9 @@ class ImapFolder extends Folder<ImapMessage> {
             ImapList flags = fetchList.getKeyedList("FLAGS");
             if (flags != null) {
                 for (int i = 0, count = flags.size(); i < count; i++) {
-                    String flag = flags.getString(i);
-                    if (flag.equalsIgnoreCase("\\Deleted")) {
-                        message.setFlagInternal(Flag.DELETED, true);
-                    } else if (flag.equalsIgnoreCase("\\Answered")) {
-                        message.setFlagInternal(Flag.ANSWERED, true);
-                    } else if (flag.equalsIgnoreCase("\\Seen")) {
-                        message.setFlagInternal(Flag.SEEN, true);
-                    } else if (flag.equalsIgnoreCase("\\Flagged")) {
-                        message.setFlagInternal(Flag.FLAGGED, true);
-                    } else if (flag.equalsIgnoreCase("$Forwarded")) {
-                        message.setFlagInternal(Flag.FORWARDED, true);
-                        /* a message contains FORWARDED FLAG -> so we can also create them */
-                        store.getPermanentFlagsIndex().add(Flag.FORWARDED);
+                    Flag flag = ImapUtility.getFlag(flags.getString(i));
+                    if (flag != null) {
+                        setFetchedFlag(message, flag);
                     }
                 }
             }
@@ -934,6 +1054,11 @@ class ImapFolder extends Folder<ImapMessage> {
                             if (K9MailLib.isDebug()) {
                                 Timber.d("Got UidNext = %s for %s", uidNext, getLogId());
                             }
+                        } else if ("HIGHESTMODSEQ".equalsIgnoreCase(key)) {
+                            highestModSeq = bracketed.getLong(1);
+                            if (K9MailLib.isDebug()) {
+                                Timber.d("Got HighestModSeq = %s for %s", highestModSeq, getLogId());
+                            }
                         }
                     }
                 }
@@ -2,6 +2,7 @@ package com.fsck.k9.mail.store.imap;
 
 
 import java.io.IOException;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -15,9 +16,26 @@ import static com.fsck.k9.mail.K9MailLib.DEBUG_PROTOCOL_IMAP;
 
 
 class ImapResponseParser {
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+    /**
+     * Tokens that show up in almost every response. These are returned as shared instances instead of allocating
+     * a new string for every occurrence.
+     */
+    private static final String[] COMMON_TOKENS = {
+            "OK", "NO", "BAD", "BYE", "NIL", "FETCH", "UID", "FLAGS", "EXISTS", "EXPUNGE", "RECENT", "MODSEQ",
+            "INTERNALDATE", "RFC822.SIZE", "BODY", "BODYSTRUCTURE", "HEADER.FIELDS", "\\Seen", "\\Answered",
+            "\\Flagged", "\\Deleted", "\\Draft", "\\Recent", "$Forwarded", "TEXT", "PLAIN", "HTML", "CHARSET",
+            "UTF-8", "US-ASCII", "7BIT", "8BIT", "QUOTED-PRINTABLE", "BASE64", "MIXED", "ALTERNATIVE", "RELATED"
+    };
+
+
     private PeekableInputStream inputStream;
     private ImapResponse response;
+    private FetchResponseListener fetchListener;
     private Exception exception;
+    private byte[] tokenBuffer = new byte[64];
+    private int tokenLength;
 
 
     public ImapResponseParser(PeekableInputStream in) {
@@ -32,7 +50,18 @@ class ImapResponseParser {
      * Reads the next response available on the stream and returns an {@code ImapResponse} object that represents it.
      */
     public ImapResponse readResponse(ImapResponseCallback callback) throws IOException {
+        return readResponse(callback, null);
+    }
+
+    /**
+     * Reads the next response like {@link #readResponse(ImapResponseCallback)}. If the response is an untagged FETCH
+     * response, its FLAGS, INTERNALDATE and RFC822.SIZE items are passed to {@code fetchListener} while reading and
+     * are not added to the item list of the response.
+     */
+    public ImapResponse readResponse(ImapResponseCallback callback, FetchResponseListener fetchListener)
+            throws IOException {
         try {
+            this.fetchListener = fetchListener;
             int peek = inputStream.peek();
             if (peek == '+') {
                 readContinuationRequest(callback);
@@ -49,6 +78,7 @@ class ImapResponseParser {
             return response;
         } finally {
             response = null;
+            fetchListener = null;
             exception = null;
         }
     }
@@ -140,11 +170,134 @@ class ImapResponseParser {
             while ((token = readToken(response)) != null) {
                 if (!(token instanceof ImapList)) {
                     response.add(token);
+
+                    if (isStreamedFetchResponse(response)) {
+                        skipIfSpace();
+                        if (inputStream.peek() == '(' && !parseFetchList(response)) {
+                            break;
+                        }
+                    }
                 }
             }
         }
     }
 
+    private boolean isStreamedFetchResponse(ImapResponse response) {
+        return fetchListener != null && response.getTag() == null && response.size() == 2 &&
+                equalsIgnoreCase(response.get(1), "FETCH");
+    }
+
+    /**
+     * Parses the item list of a FETCH response like {@link #parseList(ImapList, char, char)}, but passes FLAGS,
+     * INTERNALDATE and RFC822.SIZE to the {@link FetchResponseListener} instead of adding them to the list. All other
+     * items are added to the list, including the UID that the literal callbacks look up.
+     *
+     * <p>
+     * Only atoms are checked for these item names. Item values which aren't atoms, like a quoted "FLAGS" in a BODY
+     * item, are added to the list as they are.
+     * </p>
+     *
+     * @return {@code false} if the end of the line was reached before the end of the list.
+     */
+    private boolean parseFetchList(ImapResponse response) throws IOException {
+        expect('(');
+
+        ImapList fetchList = new ImapList();
+        response.add(fetchList);
+        fetchListener.fetchStarted();
+
+        while (true) {
+            int ch = inputStream.peek();
+            if (ch == ' ') {
+                expect(' ');
+            } else if (isAtomChar(ch)) {
+                String atom = parseBareString(true);
+                if (!parseStreamedFetchItem(atom)) {
+                    fetchList.add(atom);
+                }
+            } else {
+                Object token = parseToken(fetchList);
+                if (token == null) {
+                    return false;
+                } else if (token == ")") {
+                    return true;
+                } else if (!(token instanceof ImapList)) {
+                    fetchList.add(token);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the value of a FETCH item if it is passed to the {@link FetchResponseListener}. If the value doesn't have
+     * the expected form, nothing is read and the item is parsed as usual.
+     *
+     * @return {@code true} if the item has been passed to the listener.
+     */
+    private boolean parseStreamedFetchItem(String name) throws IOException {
+        if (name.equalsIgnoreCase("FLAGS")) {
+            skipIfSpace();
+            if (inputStream.peek() == '(') {
+                parseFlagList();
+                return true;
+            }
+        } else if (name.equalsIgnoreCase("INTERNALDATE")) {
+            skipIfSpace();
+            if (inputStream.peek() == '"') {
+                fetchListener.foundInternalDate(parseQuoted());
+                return true;
+            }
+        } else if (name.equalsIgnoreCase("RFC822.SIZE")) {
+            skipIfSpace();
+            if (isDigit(inputStream.peek())) {
+                fetchListener.foundSize(parseNumber());
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void parseFlagList() throws IOException {
+        expect('(');
+
+        while (true) {
+            int ch = inputStream.peek();
+            if (ch == ')') {
+                expect(')');
+                return;
+            } else if (ch == ' ') {
+                expect(' ');
+            } else if (isAtomChar(ch)) {
+                fetchListener.foundFlag(parseBareString(false));
+            } else {
+                throw new IOException(String.format("parseFlagList(): (%04x %c)", ch, ch));
+            }
+        }
+    }
+
+    private int parseNumber() throws IOException {
+        int value = 0;
+        while (isDigit(inputStream.peek())) {
+            int digit = inputStream.read() - '0';
+            if (value > (Integer.MAX_VALUE - digit) / 10) {
+                throw new IOException("parseNumber(): number too large");
+            }
+            value = value * 10 + digit;
+        }
+
+        return value;
+    }
+
+    private boolean isAtomChar(int ch) {
+        return ch > 0x1f && ch != 0x7f && ch != '(' && ch != ')' && ch != '[' && ch != ']' && ch != '{' &&
+                ch != ' ' && ch != '"';
+    }
+
+    private boolean isDigit(int ch) {
+        return ch >= '0' && ch <= '9';
+    }
+
     /**
      * Parse {@code resp-text} tokens
      * <p>
@@ -290,14 +443,14 @@ class ImapResponseParser {
         ImapList list = new ImapList();
         parent.add(list);
 
-        String endString = String.valueOf(end);
+        String endString = end == ')' ? ")" : "]";
 
         Object token;
         while (true) {
             token = parseToken(list);
             if (token == null) {
                 return null;
-            } else if (token.equals(endString)) {
+            } else if (token == endString) {
                 break;
             } else if (!(token instanceof ImapList)) {
                 list.add(token);
@@ -308,7 +461,7 @@ class ImapResponseParser {
     }
 
     private String parseBareString(boolean allowBrackets) throws IOException {
-        StringBuilder sb = new StringBuilder();
+        tokenLength = 0;
 
         int ch;
         while (true) {
@@ -321,13 +474,13 @@ class ImapResponseParser {
                     ch == '{' || ch == ' ' || ch == '"' ||
                     (ch >= 0x00 && ch <= 0x1f) || ch == 0x7f) {
 
-                if (sb.length() == 0) {
+                if (tokenLength == 0) {
                     throw new IOException(String.format("parseBareString(): (%04x %c)", ch, ch));
                 }
 
-                return sb.toString();
+                return getToken();
             } else {
-                sb.append((char) inputStream.read());
+                appendToToken(inputStream.read());
             }
         }
     }
@@ -396,7 +549,7 @@ class ImapResponseParser {
     private String parseQuoted() throws IOException {
         expect('"');
 
-        StringBuilder sb = new StringBuilder();
+        tokenLength = 0;
         int ch;
         boolean escape = false;
         while ((ch = inputStream.read()) != -1) {
@@ -404,9 +557,9 @@ class ImapResponseParser {
                 // Found the escape character
                 escape = true;
             } else if (!escape && ch == '"') {
-                return sb.toString();
+                return getToken();
             } else {
-                sb.append((char) ch);
+                appendToToken(ch);
                 escape = false;
             }
         }
@@ -430,19 +583,52 @@ class ImapResponseParser {
     }
 
     private String readStringUntil(char end) throws IOException {
-        StringBuilder sb = new StringBuilder();
+        tokenLength = 0;
 
         int ch;
         while ((ch = inputStream.read()) != -1) {
             if (ch == end) {
-                return sb.toString();
+                return getToken();
             } else {
-                sb.append((char) ch);
+                appendToToken(ch);
             }
         }
 
         throw new IOException("readStringUntil(): end of stream reached. " +
-                "Read: \"" + sb.toString() + "\" while waiting for " + formatChar(end));
+                "Read: \"" + getToken() + "\" while waiting for " + formatChar(end));
+    }
+
+    private void appendToToken(int ch) {
+        if (tokenLength == tokenBuffer.length) {
+            byte[] newBuffer = new byte[tokenBuffer.length * 2];
+            System.arraycopy(tokenBuffer, 0, newBuffer, 0, tokenLength);
+            tokenBuffer = newBuffer;
+        }
+
+        tokenBuffer[tokenLength++] = (byte) ch;
+    }
+
+    /**
+     * Returns the bytes collected by {@link #appendToToken(int)} as string, one char per byte.
+     */
+    private String getToken() {
+        for (String commonToken : COMMON_TOKENS) {
+            if (commonToken.length() == tokenLength && tokenEquals(commonToken)) {
+                return commonToken;
+            }
+        }
+
+        return new String(tokenBuffer, 0, tokenLength, ISO_8859_1);
+    }
+
+    private boolean tokenEquals(String value) {
+        for (int i = 0; i < tokenLength; i++) {
+            if (tokenBuffer[i] != value.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
     }
 
     private String formatChar(char value) {
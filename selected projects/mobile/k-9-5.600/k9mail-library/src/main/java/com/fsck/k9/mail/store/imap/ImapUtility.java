@@ -177,6 +177,25 @@ class ImapUtility {
         return ImapUtility.join(" ", flagNames);
     }
 
+    /**
+     * Returns the {@link Flag} for an IMAP flag or {@code null} if the flag isn't supported.
+     */
+    public static Flag getFlag(String flagName) {
+        if (flagName.equalsIgnoreCase("\\Deleted")) {
+            return Flag.DELETED;
+        } else if (flagName.equalsIgnoreCase("\\Answered")) {
+            return Flag.ANSWERED;
+        } else if (flagName.equalsIgnoreCase("\\Seen")) {
+            return Flag.SEEN;
+        } else if (flagName.equalsIgnoreCase("\\Flagged")) {
+            return Flag.FLAGGED;
+        } else if (flagName.equalsIgnoreCase("$Forwarded")) {
+            return Flag.FORWARDED;
+        }
+
+        return null;
+    }
+
     public static String join(String delimiter, Collection<? extends Object> tokens) {
         if (tokens == null) {
             return null;
@@ -0,0 +1,72 @@
+package com.fsck.k9.mail.internet;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.fsck.k9.mail.K9LibRobolectricTestRunner;
+import org.apache.james.mime4j.util.MimeUtil;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+
+
+@RunWith(K9LibRobolectricTestRunner.class)
+public class BinaryTempFileBodyTest {
+    @Before
+    public void setUp() {
+        BinaryTempFileBody.setTempDirectory(new File(System.getProperty("java.io.tmpdir")));
+    }
+
+    @Test
+    public void getDecodedSize_withBase64Body_shouldReturnSizeOfDecodedData() throws Exception {
+        BinaryTempFileBody body = createBody(MimeUtil.ENC_BASE64, "SGVsbG8g\r\nV29ybGQh\r\n");
+
+        assertEquals("Hello World!".length(), body.getDecodedSize());
+    }
+
+    @Test
+    public void getDecodedSize_withPaddedBase64Body_shouldReturnSizeOfDecodedData() throws Exception {
+        BinaryTempFileBody body = createBody("BASE64", "SGVsbG8=\r\n");
+
+        assertEquals("Hello".length(), body.getDecodedSize());
+    }
+
+    @Test
+    public void getDecodedSize_with8BitBody_shouldReturnFileSize() throws Exception {
+        BinaryTempFileBody body = createBody(MimeUtil.ENC_8BIT, "Hello World!\r\n");
+
+        assertEquals(14, body.getDecodedSize());
+    }
+
+    @Test
+    public void getDecodedSize_withQuotedPrintableBody_shouldReturnMinusOne() throws Exception {
+        BinaryTempFileBody body = createBody(MimeUtil.ENC_QUOTED_PRINTABLE, "a=3Db\r\n");
+
+        assertEquals(-1L, body.getDecodedSize());
+    }
+
+    @Test
+    public void getDecodedSize_afterConverting8BitBodyToBase64_shouldKeepDecodedSize() throws Exception {
+        BinaryTempFileBody body = createBody(MimeUtil.ENC_8BIT, "Hello World!");
+
+        body.setEncoding(MimeUtil.ENC_BASE64);
+
+        assertEquals("Hello World!".length(), body.getDecodedSize());
+    }
+
+    private BinaryTempFileBody createBody(String encoding, String data) throws IOException {
+        BinaryTempFileBody body = new BinaryTempFileBody(encoding);
+        OutputStream outputStream = body.getOutputStream();
+        try {
+            outputStream.write(data.getBytes("US-ASCII"));
+        } finally {
+            outputStream.close();
+        }
+
+        return body;
+    }
+}
@@ -0,0 +1,130 @@
+package com.fsck.k9.mail.store.imap;
+
+
+import java.io.ByteArrayInputStream;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+
+import com.fsck.k9.mail.Flag;
+import com.fsck.k9.mail.K9LibRobolectricTestRunner;
+import com.fsck.k9.mail.filter.PeekableInputStream;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+
+
+/**
+ * Reads the FETCH responses of a flag sync of a large folder once into {@link ImapList} trees, the way
+ * {@link ImapFolder} used to, and once through a {@link FetchItemCollector}, checks that both give the same flags and
+ * sizes, and prints how long both take.
+ */
+@RunWith(K9LibRobolectricTestRunner.class)
+public class FetchResponseBenchmarkTest {
+    private static final int MESSAGE_COUNT = 20000;
+    private static final int ROUNDS = 20;
+    private static final String[][] FLAG_SETS = {
+            {}, { "\\Seen" }, { "\\Seen" }, { "\\Seen" }, { "\\Seen", "\\Answered" }, { "\\Seen", "\\Flagged" },
+            { "\\Seen", "$Forwarded" }, { "\\Seen", "\\Answered", "$NotJunk" }, { "\\Deleted", "\\Seen" }
+    };
+
+
+    @Test
+    public void streamedFetchItems_shouldMatchListTree() throws Exception {
+        byte[] transcript = createTranscript(new Random(48));
+
+        long[] treeResult = null;
+        long[] streamedResult = null;
+        long treeNanos = Long.MAX_VALUE;
+        long streamedNanos = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            treeResult = readWithListTree(transcript);
+            treeNanos = Math.min(treeNanos, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            streamedResult = readWithCollector(transcript);
+            streamedNanos = Math.min(streamedNanos, System.nanoTime() - start);
+        }
+
+        for (int i = 0; i < MESSAGE_COUNT; i++) {
+            assertEquals("message " + i, treeResult[i], streamedResult[i]);
+        }
+
+        System.out.println(String.format(Locale.US,
+                "%d FETCH responses, %d bytes: %.1f ms with ImapList trees, %.1f ms with FetchItemCollector",
+                MESSAGE_COUNT, transcript.length, treeNanos / 1000000.0, streamedNanos / 1000000.0));
+    }
+
+    /**
+     * Creates the untagged responses of {@code UID FETCH 1:* (UID FLAGS RFC822.SIZE)} in the form Dovecot sends
+     * them, followed by the tagged response.
+     */
+    private byte[] createTranscript(Random random) {
+        StringBuilder transcript = new StringBuilder();
+        for (int i = 0; i < MESSAGE_COUNT; i++) {
+            String[] flags = FLAG_SETS[random.nextInt(FLAG_SETS.length)];
+            transcript.append("* ").append(i + 1).append(" FETCH (UID ").append(1000 + i * 3)
+                    .append(" RFC822.SIZE ").append(500 + random.nextInt(200000)).append(" FLAGS (");
+            for (int j = 0; j < flags.length; j++) {
+                transcript.append(j == 0 ? "" : " ").append(flags[j]);
+            }
+            transcript.append("))\r\n");
+        }
+        transcript.append("3 OK Fetch completed (0.012 + 0.000 + 0.011 secs).\r\n");
+
+        return transcript.toString().getBytes();
+    }
+
+    private long[] readWithListTree(byte[] transcript) throws Exception {
+        ImapResponseParser parser = createParser(transcript);
+        long[] result = new long[MESSAGE_COUNT];
+
+        ImapResponse response;
+        while ((response = parser.readResponse()).getTag() == null) {
+            ImapList fetchList = (ImapList) response.getKeyedValue("FETCH");
+            Set<Flag> flags = EnumSet.noneOf(Flag.class);
+            ImapList flagList = fetchList.getKeyedList("FLAGS");
+            for (int i = 0, count = flagList.size(); i < count; i++) {
+                Flag flag = ImapUtility.getFlag(flagList.getString(i));
+                if (flag != null) {
+                    flags.add(flag);
+                }
+            }
+            int size = fetchList.getKeyedNumber("RFC822.SIZE");
+            result[response.getNumber(0) - 1] = encode(fetchList.getKeyedString("UID"), flags, size);
+        }
+
+        return result;
+    }
+
+    private long[] readWithCollector(byte[] transcript) throws Exception {
+        ImapResponseParser parser = createParser(transcript);
+        FetchItemCollector fetchItems = new FetchItemCollector();
+        long[] result = new long[MESSAGE_COUNT];
+
+        ImapResponse response;
+        while ((response = parser.readResponse(null, fetchItems)).getTag() == null) {
+            ImapList fetchList = (ImapList) response.getKeyedValue("FETCH");
+            result[response.getNumber(0) - 1] =
+                    encode(fetchList.getKeyedString("UID"), fetchItems.getFlags(), fetchItems.getSize());
+        }
+
+        return result;
+    }
+
+    private long encode(String uid, Set<Flag> flags, int size) {
+        long value = Long.parseLong(uid) * 31 + size;
+        for (Flag flag : flags) {
+            value = value * 31 + flag.ordinal() + 1;
+        }
+
+        return value;
+    }
+
+    private ImapResponseParser createParser(byte[] transcript) {
+        return new ImapResponseParser(new PeekableInputStream(new ByteArrayInputStream(transcript)));
+    }
+}
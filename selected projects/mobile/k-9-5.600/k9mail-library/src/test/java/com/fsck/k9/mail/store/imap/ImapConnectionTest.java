@@ -881,6 +881,42 @@ public class ImapConnectionTest {
         server.shutdown();
     }
 
+    @Test
+    public void isCondstoreCapable_withoutCondstoreCapability() throws Exception {
+        MockImapServer server = new MockImapServer();
+        ImapConnection imapConnection = simpleOpen(server);
+
+        boolean result = imapConnection.isCondstoreCapable();
+
+        assertFalse(result);
+
+        server.shutdown();
+    }
+
+    @Test
+    public void isCondstoreCapable_withCondstoreCapability() throws Exception {
+        MockImapServer server = new MockImapServer();
+        ImapConnection imapConnection = simpleOpenWithCapabilities(server, "CONDSTORE");
+
+        boolean result = imapConnection.isCondstoreCapable();
+
+        assertTrue(result);
+
+        server.shutdown();
+    }
+
+    @Test
+    public void isCondstoreCapable_withQresyncCapability() throws Exception {
+        MockImapServer server = new MockImapServer();
+        ImapConnection imapConnection = simpleOpenWithCapabilities(server, "QRESYNC");
+
+        boolean result = imapConnection.isCondstoreCapable();
+
+        assertTrue(result);
+
+        server.shutdown();
+    }
+
     @Test
     public void sendContinuation() throws Exception {
         settings.setAuthType(AuthType.PLAIN);
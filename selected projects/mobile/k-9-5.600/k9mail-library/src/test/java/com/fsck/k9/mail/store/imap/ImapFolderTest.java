@@ -32,6 +32,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.robolectric.RuntimeEnvironment;
@@ -55,6 +56,7 @@ import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.startsWith;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -79,6 +81,7 @@ public class ImapFolderTest {
         when(imapStore.getStoreConfig()).thenReturn(storeConfig);
 
         imapConnection = mock(ImapConnection.class);
+        when(imapConnection.getLineLengthLimit()).thenReturn(980);
     }
 
     @Test
@@ -211,6 +214,26 @@ public class ImapFolderTest {
         }
     }
 
+    @Test
+    public void open_withCondstoreCapableServer_shouldEnableCondstoreAndReadHighestModSeq() throws Exception {
+        ImapFolder imapFolder = createFolder("Folder");
+        prepareImapFolderForOpenWithCondstore(715194045007L);
+
+        imapFolder.open(OPEN_MODE_RW);
+
+        assertEquals(715194045007L, imapFolder.getHighestModSeq());
+    }
+
+    @Test
+    public void open_withoutHighestModSeqResponse_shouldReturnZeroHighestModSeq() throws Exception {
+        ImapFolder imapFolder = createFolder("Folder");
+        prepareImapFolderForOpen(OPEN_MODE_RW);
+
+        imapFolder.open(OPEN_MODE_RW);
+
+        assertEquals(0L, imapFolder.getHighestModSeq());
+    }
+
     @Test
     public void close_shouldCloseImapFolder() throws Exception {
         ImapFolder imapFolder = createFolder("Folder");
@@ -795,7 +818,7 @@ public class ImapFolderTest {
         ImapFolder folder = createFolder("Folder");
         prepareImapFolderForOpen(OPEN_MODE_RO);
         folder.open(OPEN_MODE_RO);
-        when(imapConnection.readResponse(any(ImapResponseCallback.class))).thenReturn(createImapResponse("x OK"));
+        when(imapConnection.readResponse(any(ImapResponseCallback.class), any(FetchResponseListener.class))).thenReturn(createImapResponse("x OK"));
         List<ImapMessage> messages = createImapMessages("1");
         FetchProfile fetchProfile = createFetchProfile(Item.FLAGS);
 
@@ -809,7 +832,7 @@ public class ImapFolderTest {
         ImapFolder folder = createFolder("Folder");
         prepareImapFolderForOpen(OPEN_MODE_RO);
         folder.open(OPEN_MODE_RO);
-        when(imapConnection.readResponse(any(ImapResponseCallback.class))).thenReturn(createImapResponse("x OK"));
+        when(imapConnection.readResponse(any(ImapResponseCallback.class), any(FetchResponseListener.class))).thenReturn(createImapResponse("x OK"));
         List<ImapMessage> messages = createImapMessages("1");
         FetchProfile fetchProfile = createFetchProfile(Item.ENVELOPE);
 
@@ -825,7 +848,7 @@ public class ImapFolderTest {
         ImapFolder folder = createFolder("Folder");
         prepareImapFolderForOpen(OPEN_MODE_RO);
         folder.open(OPEN_MODE_RO);
-        when(imapConnection.readResponse(any(ImapResponseCallback.class))).thenReturn(createImapResponse("x OK"));
+        when(imapConnection.readResponse(any(ImapResponseCallback.class), any(FetchResponseListener.class))).thenReturn(createImapResponse("x OK"));
         List<ImapMessage> messages = createImapMessages("1");
         FetchProfile fetchProfile = createFetchProfile(Item.STRUCTURE);
 
@@ -840,7 +863,7 @@ public class ImapFolderTest {
         prepareImapFolderForOpen(OPEN_MODE_RO);
         folder.open(OPEN_MODE_RO);
         String bodyStructure = "(\"TEXT\" \"PLAIN\" (\"CHARSET\" \"US-ASCII\") NIL NIL \"7BIT\" 2279 48)";
-        when(imapConnection.readResponse(any(ImapResponseCallback.class)))
+        when(imapConnection.readResponse(any(ImapResponseCallback.class), any(FetchResponseListener.class)))
                 .thenReturn(createImapResponse("* 1 FETCH (BODYSTRUCTURE "+bodyStructure+" UID 1)"))
                 .thenReturn(createImapResponse("x OK"));
         List<ImapMessage> messages = createImapMessages("1");
@@ -856,7 +879,7 @@ public class ImapFolderTest {
         ImapFolder folder = createFolder("Folder");
         prepareImapFolderForOpen(OPEN_MODE_RO);
         folder.open(OPEN_MODE_RO);
-        when(imapConnection.readResponse(any(ImapResponseCallback.class))).thenReturn(createImapResponse("x OK"));
+        when(imapConnection.readResponse(any(ImapResponseCallback.class), any(FetchResponseListener.class))).thenReturn(createImapResponse("x OK"));
         List<ImapMessage> messages = createImapMessages("1");
         FetchProfile fetchProfile = createFetchProfile(Item.BODY_SANE);
         when(storeConfig.getMaximumAutoDownloadMessageSize()).thenReturn(4096);
@@ -871,7 +894,7 @@ public class ImapFolderTest {
         ImapFolder folder = createFolder("Folder");
         prepareImapFolderForOpen(OPEN_MODE_RO);
         folder.open(OPEN_MODE_RO);
-        when(imapConnection.readResponse(any(ImapResponseCallback.class))).thenReturn(createImapResponse("x OK"));
+        when(imapConnection.readResponse(any(ImapResponseCallback.class), any(FetchResponseListener.class))).thenReturn(createImapResponse("x OK"));
         List<ImapMessage> messages = createImapMessages("1");
         FetchProfile fetchProfile = createFetchProfile(Item.BODY_SANE);
         when(storeConfig.getMaximumAutoDownloadMessageSize()).thenReturn(0);
@@ -886,7 +909,7 @@ public class ImapFolderTest {
         ImapFolder folder = createFolder("Folder");
         prepareImapFolderForOpen(OPEN_MODE_RO);
         folder.open(OPEN_MODE_RO);
-        when(imapConnection.readResponse(any(ImapResponseCallback.class))).thenReturn(createImapResponse("x OK"));
+        when(imapConnection.readResponse(any(ImapResponseCallback.class), any(FetchResponseListener.class))).thenReturn(createImapResponse("x OK"));
         List<ImapMessage> messages = createImapMessages("1");
         FetchProfile fetchProfile = createFetchProfile(Item.BODY);
 
@@ -902,7 +925,7 @@ public class ImapFolderTest {
         folder.open(OPEN_MODE_RO);
         List<ImapMessage> messages = createImapMessages("1");
         FetchProfile fetchProfile = createFetchProfile(Item.FLAGS);
-        when(imapConnection.readResponse(any(ImapResponseCallback.class)))
+        when(imapConnection.readResponse(any(ImapResponseCallback.class), any(FetchResponseListener.class)))
                 .thenReturn(createImapResponse("* 1 FETCH (FLAGS (\\Seen) UID 1)"))
                 .thenReturn(createImapResponse("x OK"));
 
@@ -912,6 +935,171 @@ public class ImapFolderTest {
         verify(imapMessage).setFlagInternal(Flag.SEEN, true);
     }
 
+    @Test
+    public void fetch_withStreamedFetchItems_shouldSetFlagsAndSize() throws Exception {
+        ImapFolder folder = createFolder("Folder");
+        prepareImapFolderForOpen(OPEN_MODE_RO);
+        folder.open(OPEN_MODE_RO);
+        List<ImapMessage> messages = createImapMessages("1");
+        FetchProfile fetchProfile = createFetchProfile(Item.FLAGS);
+        Set<Flag> permanentFlags = new HashSet<>();
+        when(imapStore.getPermanentFlagsIndex()).thenReturn(permanentFlags);
+        when(imapConnection.readResponse(any(ImapResponseCallback.class), any(FetchResponseListener.class)))
+                .thenAnswer(new Answer<ImapResponse>() {
+                    @Override
+                    public ImapResponse answer(InvocationOnMock invocation) throws Throwable {
+                        FetchResponseListener fetchListener = (FetchResponseListener) invocation.getArguments()[1];
+                        fetchListener.fetchStarted();
+                        fetchListener.foundFlag("\\Seen");
+                        fetchListener.foundFlag("$Forwarded");
+                        fetchListener.foundSize(1234);
+                        return createImapResponse("* 1 FETCH (UID 1)");
+                    }
+                })
+                .thenReturn(createImapResponse("x OK"));
+
+        folder.fetch(messages, fetchProfile, null);
+
+        ImapMessage imapMessage = messages.get(0);
+        verify(imapMessage).setFlagInternal(Flag.SEEN, true);
+        verify(imapMessage).setFlagInternal(Flag.FORWARDED, true);
+        verify(imapMessage).setSize(1234);
+        assertTrue(permanentFlags.contains(Flag.FORWARDED));
+    }
+
+    @Test
+    public void fetch_withNonContiguousUids_shouldCompressUidRanges() throws Exception {
+        ImapFolder folder = createFolder("Folder");
+        prepareImapFolderForOpen(OPEN_MODE_RO);
+        folder.open(OPEN_MODE_RO);
+        when(imapConnection.readResponse(any(ImapResponseCallback.class), any(FetchResponseListener.class))).thenReturn(createImapResponse("x OK"));
+        List<ImapMessage> messages = createImapMessages("1", "2", "3", "5", "7", "8");
+        FetchProfile fetchProfile = createFetchProfile(Item.FLAGS);
+
+        folder.fetch(messages, fetchProfile, null);
+
+        verify(imapConnection).sendCommand("UID FETCH 5,1:3,7:8 (UID FLAGS)", false);
+    }
+
+    @Test
+    public void fetch_withMoreMessagesThanWindowSize_shouldSendCommandsBeforeReadingResponses() throws Exception {
+        ImapFolder folder = createFolder("Folder");
+        prepareImapFolderForOpen(OPEN_MODE_RO);
+        folder.open(OPEN_MODE_RO);
+        when(imapConnection.readResponse(any(ImapResponseCallback.class), any(FetchResponseListener.class))).thenReturn(createImapResponse("x OK"));
+        List<ImapMessage> messages = createImapMessagesInRange(1, 250);
+        FetchProfile fetchProfile = createFetchProfile(Item.FLAGS);
+
+        folder.fetch(messages, fetchProfile, null);
+
+        InOrder inOrder = inOrder(imapConnection);
+        inOrder.verify(imapConnection).sendCommand("UID FETCH 1:100 (UID FLAGS)", false);
+        inOrder.verify(imapConnection).sendCommand("UID FETCH 101:200 (UID FLAGS)", false);
+        inOrder.verify(imapConnection).sendCommand("UID FETCH 201:250 (UID FLAGS)", false);
+        inOrder.verify(imapConnection, times(3)).readResponse(any(ImapResponseCallback.class), any(FetchResponseListener.class));
+    }
+
+    @Test
+    public void fetch_withMoreWindowsThanPipelineDepth_shouldWaitForTaggedResponse() throws Exception {
+        ImapFolder folder = createFolder("Folder");
+        prepareImapFolderForOpen(OPEN_MODE_RO);
+        folder.open(OPEN_MODE_RO);
+        when(imapConnection.readResponse(any(ImapResponseCallback.class), any(FetchResponseListener.class)))
+                .thenReturn(createImapResponse("* 1 FETCH (FLAGS (\\Seen) UID 1)"))
+                .thenReturn(createImapResponse("x OK"));
+        List<ImapMessage> messages = createImapMessagesInRange(1, 400);
+        FetchProfile fetchProfile = createFetchProfile(Item.FLAGS);
+
+        folder.fetch(messages, fetchProfile, null);
+
+        InOrder inOrder = inOrder(imapConnection);
+        inOrder.verify(imapConnection, times(3)).sendCommand(startsWith("UID FETCH"), eq(false));
+        inOrder.verify(imapConnection, times(2)).readResponse(any(ImapResponseCallback.class), any(FetchResponseListener.class));
+        inOrder.verify(imapConnection).sendCommand("UID FETCH 301:400 (UID FLAGS)", false);
+        inOrder.verify(imapConnection, times(3)).readResponse(any(ImapResponseCallback.class), any(FetchResponseListener.class));
+    }
+
+    @Test
+    public void fetch_withLargeBodies_shouldUseSmallerWindows() throws Exception {
+        ImapFolder folder = createFolder("Folder");
+        prepareImapFolderForOpen(OPEN_MODE_RO);
+        folder.open(OPEN_MODE_RO);
+        when(imapConnection.readResponse(any(ImapResponseCallback.class), any(FetchResponseListener.class))).thenReturn(createImapResponse("x OK"));
+        List<ImapMessage> messages = createImapMessagesInRange(1, 5);
+        for (ImapMessage message : messages) {
+            when(message.getSize()).thenReturn(400L * 1024);
+        }
+        FetchProfile fetchProfile = createFetchProfile(Item.BODY);
+
+        folder.fetch(messages, fetchProfile, null);
+
+        verify(imapConnection).sendCommand("UID FETCH 1:3 (UID BODY.PEEK[])", false);
+        verify(imapConnection).sendCommand("UID FETCH 4:5 (UID BODY.PEEK[])", false);
+    }
+
+    @Test
+    public void fetch_withLargeMessagesAndFlagsFetchProfile_shouldUseFullWindows() throws Exception {
+        ImapFolder folder = createFolder("Folder");
+        prepareImapFolderForOpen(OPEN_MODE_RO);
+        folder.open(OPEN_MODE_RO);
+        when(imapConnection.readResponse(any(ImapResponseCallback.class), any(FetchResponseListener.class))).thenReturn(createImapResponse("x OK"));
+        List<ImapMessage> messages = createImapMessagesInRange(1, 5);
+        for (ImapMessage message : messages) {
+            when(message.getSize()).thenReturn(400L * 1024);
+        }
+        FetchProfile fetchProfile = createFetchProfile(Item.FLAGS);
+
+        folder.fetch(messages, fetchProfile, null);
+
+        verify(imapConnection).sendCommand("UID FETCH 1:5 (UID FLAGS)", false);
+    }
+
+    @Test
+    public void fetchChangedFlags_withHighestModSeq_shouldIssueUidFetchCommandWithChangedSinceModifier()
+            throws Exception {
+        ImapFolder folder = createFolder("Folder");
+        prepareImapFolderForOpenWithCondstore(200L);
+        folder.open(OPEN_MODE_RW);
+        List<ImapMessage> messages = createImapMessages("1", "2", "3");
+
+        folder.fetchChangedFlags(messages, 150L);
+
+        assertCommandWithIdsIssued("UID FETCH 1,2,3 (UID FLAGS) (CHANGEDSINCE 150)");
+    }
+
+    @Test
+    public void fetchChangedFlags_withHighestModSeq_shouldOnlyReturnChangedMessages() throws Exception {
+        ImapFolder folder = createFolder("Folder");
+        prepareImapFolderForOpenWithCondstore(200L);
+        folder.open(OPEN_MODE_RW);
+        List<ImapMessage> messages = createImapMessages("1", "2", "3");
+        List<ImapResponse> imapResponses = asList(
+                createImapResponse("* 2 FETCH (UID 2 FLAGS (\\Seen) MODSEQ (190))"),
+                createImapResponse("x OK Fetch completed.")
+        );
+        when(imapConnection.executeCommandWithIdSet(eq(Commands.UID_FETCH), anyString(), anySetOf(Long.class)))
+                .thenReturn(imapResponses);
+
+        List<ImapMessage> changedMessages = folder.fetchChangedFlags(messages, 150L);
+
+        assertEquals(singletonList(messages.get(1)), changedMessages);
+        verify(messages.get(1)).setFlagInternal(Flag.SEEN, true);
+    }
+
+    @Test
+    public void fetchChangedFlags_withoutHighestModSeq_shouldFetchFlagsOfAllMessages() throws Exception {
+        ImapFolder folder = createFolder("Folder");
+        prepareImapFolderForOpen(OPEN_MODE_RW);
+        folder.open(OPEN_MODE_RW);
+        when(imapConnection.readResponse(any(ImapResponseCallback.class), any(FetchResponseListener.class))).thenReturn(createImapResponse("x OK"));
+        List<ImapMessage> messages = createImapMessages("1", "2", "3");
+
+        List<ImapMessage> changedMessages = folder.fetchChangedFlags(messages, 150L);
+
+        assertEquals(messages, changedMessages);
+        verify(imapConnection).sendCommand("UID FETCH 1:3 (UID FLAGS)", false);
+    }
+
     @Test
     public void fetchPart_withTextSection_shouldIssueRespectiveCommand() throws Exception {
         ImapFolder folder = createFolder("Folder");
@@ -1206,6 +1394,16 @@ public class ImapFolderTest {
         return imapMessages;
     }
 
+    private List<ImapMessage> createImapMessagesInRange(int firstUid, int lastUid) {
+        List<ImapMessage> imapMessages = new ArrayList<>();
+
+        for (int uid = firstUid; uid <= lastUid; uid++) {
+            imapMessages.add(createImapMessage(Integer.toString(uid)));
+        }
+
+        return imapMessages;
+    }
+
     private Part createPart(String serverExtra) {
         Part part = mock(Part.class);
         when(part.getServerExtra()).thenReturn(serverExtra);
@@ -1247,6 +1445,21 @@ public class ImapFolderTest {
         }
     }
 
+    private void prepareImapFolderForOpenWithCondstore(long highestModSeq) throws MessagingException, IOException {
+        when(imapStore.getConnection()).thenReturn(imapConnection);
+        when(imapConnection.isCondstoreCapable()).thenReturn(true);
+        List<ImapResponse> imapResponses = asList(
+                createImapResponse("* FLAGS (\\Answered \\Flagged \\Deleted \\Seen \\Draft)"),
+                createImapResponse("* 23 EXISTS"),
+                createImapResponse("* OK [UIDVALIDITY 1125022061] UIDs valid"),
+                createImapResponse("* OK [UIDNEXT 57576] Predicted next UID"),
+                createImapResponse("* OK [HIGHESTMODSEQ " + highestModSeq + "] Highest"),
+                createImapResponse("2 OK [READ-WRITE] Select completed.")
+        );
+
+        when(imapConnection.executeSimpleCommand("SELECT \"Folder\" (CONDSTORE)")).thenReturn(imapResponses);
+    }
+
     private void assertCheckOpenErrorMessage(String folderName, MessagingException e) {
         assertEquals("Folder " + folderName + " is not open.", e.getMessage());
     }
@@ -13,6 +13,7 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
@@ -349,6 +350,31 @@ public class ImapResponseParserTest {
         assertEquals("qu\"oted", response.getString(0));
     }
 
+    @Test
+    public void readResponse_withQuotedClosingParenthesisInList_shouldNotEndList() throws Exception {
+        ImapResponseParser parser = createParser("* 1 FETCH (\")\" x)\r\n");
+
+        ImapResponse response = parser.readResponse();
+
+        assertEquals(3, response.size());
+        assertEquals(asList(")", "x"), response.getList(2));
+    }
+
+    @Test
+    public void readResponse_withAtomLongerThanTokenBuffer() throws Exception {
+        StringBuilder atom = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            atom.append((char) ('a' + i % 26));
+        }
+        ImapResponseParser parser = createParser("* " + atom + " \"" + atom + "\"\r\n");
+
+        ImapResponse response = parser.readResponse();
+
+        assertEquals(2, response.size());
+        assertEquals(atom.toString(), response.getString(0));
+        assertEquals(atom.toString(), response.getString(1));
+    }
+
     @Test(expected = IOException.class)
     public void testParseQuotedToEndOfStream() throws Exception {
         ImapResponseParser parser = createParser("* \"abc");
@@ -462,6 +488,95 @@ public class ImapResponseParserTest {
         assertEquals("\\Seen", response.getList(2).getList(10).getString(0));
     }
 
+    @Test
+    public void readResponse_withFetchListener_shouldPassFlagsDateAndSizeToListener() throws Exception {
+        ImapResponseParser parser = createParser("* 1 FETCH (" +
+                "UID 23 " +
+                "INTERNALDATE \"01-Jul-2015 12:34:56 +0200\" " +
+                "RFC822.SIZE 3456 " +
+                "BODY[HEADER.FIELDS (date subject from)] \"<headers>\" " +
+                "FLAGS (\\Seen $Forwarded \\Draft))\r\n");
+        TestFetchResponseListener fetchListener = new TestFetchResponseListener();
+
+        ImapResponse response = parser.readResponse(null, fetchListener);
+
+        assertEquals(asList("started", "date 01-Jul-2015 12:34:56 +0200", "size 3456",
+                "flag \\Seen", "flag $Forwarded", "flag \\Draft"), fetchListener.events);
+        assertEquals(3, response.size());
+        assertEquals("1", response.getString(0));
+        assertEquals("FETCH", response.getString(1));
+        ImapList fetchList = response.getList(2);
+        assertEquals(5, fetchList.size());
+        assertEquals("UID", fetchList.getString(0));
+        assertEquals("23", fetchList.getString(1));
+        assertEquals("BODY", fetchList.getString(2));
+        assertEquals("HEADER.FIELDS", fetchList.getList(3).getString(0));
+        assertEquals("<headers>", fetchList.getString(4));
+        assertAllInputConsumed();
+    }
+
+    @Test
+    public void readResponse_withFetchListenerAndLiteral_shouldKeepUidForCallback() throws Exception {
+        ImapResponseParser parser = createParser("* 1 FETCH (UID 23 FLAGS () BODY[] {3}\r\nabc RFC822.SIZE 3)\r\n");
+        TestFetchResponseListener fetchListener = new TestFetchResponseListener();
+        ImapResponseCallback callback = new ImapResponseCallback() {
+            @Override
+            public Object foundLiteral(ImapResponse response, FixedLengthInputStream literal) throws Exception {
+                literal.skipRemaining();
+                return response.getKeyedList("FETCH").getKeyedString("UID");
+            }
+        };
+
+        ImapResponse response = parser.readResponse(callback, fetchListener);
+
+        assertEquals(asList("started", "size 3"), fetchListener.events);
+        ImapList fetchList = response.getList(2);
+        assertEquals(asList("UID", "23", "BODY", new ImapList(), "23"), fetchList);
+        assertAllInputConsumed();
+    }
+
+    @Test
+    public void readResponse_withFetchListenerAndUnexpectedValues_shouldAddItemsToList() throws Exception {
+        ImapResponseParser parser = createParser("* 1 FETCH (FLAGS NIL INTERNALDATE NIL RFC822.SIZE NIL " +
+                "BODY[] \"FLAGS\")\r\n");
+        TestFetchResponseListener fetchListener = new TestFetchResponseListener();
+
+        ImapResponse response = parser.readResponse(null, fetchListener);
+
+        assertEquals(singletonList("started"), fetchListener.events);
+        ImapList fetchList = response.getList(2);
+        assertEquals(asList("FLAGS", "NIL", "INTERNALDATE", "NIL", "RFC822.SIZE", "NIL", "BODY", new ImapList(),
+                "FLAGS"), fetchList);
+    }
+
+    @Test
+    public void readResponse_withFetchListenerAndOtherResponses_shouldNotCallListener() throws Exception {
+        ImapResponseParser parser = createParser("* 3 EXISTS\r\n" +
+                "* OK [PERMANENTFLAGS (\\Seen)]\r\n" +
+                "1 OK FETCH completed\r\n");
+        TestFetchResponseListener fetchListener = new TestFetchResponseListener();
+
+        parser.readResponse(null, fetchListener);
+        ImapResponse okResponse = parser.readResponse(null, fetchListener);
+        parser.readResponse(null, fetchListener);
+
+        assertTrue(fetchListener.events.isEmpty());
+        assertEquals("\\Seen", okResponse.getList(1).getList(1).getString(0));
+        assertAllInputConsumed();
+    }
+
+    @Test
+    public void readResponse_withFetchListenerAndIncompleteList_shouldStopAtEndOfLine() throws Exception {
+        ImapResponseParser parser = createParser("* 1 FETCH (UID 23\r\n* 2 EXISTS\r\n");
+        TestFetchResponseListener fetchListener = new TestFetchResponseListener();
+
+        ImapResponse response = parser.readResponse(null, fetchListener);
+        ImapResponse nextResponse = parser.readResponse();
+
+        assertEquals(asList("UID", "23"), response.getList(2));
+        assertEquals("EXISTS", nextResponse.getString(1));
+    }
+
     @Test
     public void readStatusResponse_withNoResponse_shouldThrow() throws Exception {
         ImapResponseParser parser = createParser("1 NO\r\n");
@@ -497,6 +612,30 @@ public class ImapResponseParserTest {
     }
 
 
+    static class TestFetchResponseListener implements FetchResponseListener {
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void fetchStarted() {
+            events.add("started");
+        }
+
+        @Override
+        public void foundFlag(String flag) {
+            events.add("flag " + flag);
+        }
+
+        @Override
+        public void foundInternalDate(String internalDate) {
+            events.add("date " + internalDate);
+        }
+
+        @Override
+        public void foundSize(int size) {
+            events.add("size " + size);
+        }
+    }
+
     static class TestImapResponseCallback implements ImapResponseCallback {
         private final int readNumberOfBytes;
         private final Object returnValue;
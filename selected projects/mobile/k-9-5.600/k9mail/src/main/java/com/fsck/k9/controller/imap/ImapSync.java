@@ -750,18 +750,33 @@ class ImapSync {
         final String folder = remoteFolder.getName();
         Timber.d("SYNC: About to sync flags for %d remote messages for folder %s", syncFlagMessages.size(), folder);
 
-        FetchProfile fp = new FetchProfile();
-        fp.add(FetchProfile.Item.FLAGS);
-
         List<Message> undeletedMessages = new LinkedList<>();
+        List<Message> changedMessages = new ArrayList<>();
         for (Message message : syncFlagMessages) {
             if (!message.isSet(Flag.DELETED)) {
                 undeletedMessages.add(message);
+            } else {
+                changedMessages.add(message);
             }
         }
 
-        remoteFolder.fetch(undeletedMessages, fp, null);
-        for (Message remoteMessage : syncFlagMessages) {
+        long highestModSeq = remoteFolder.getHighestModSeq();
+        long lastHighestModSeq = localFolder.getHighestModSeq();
+        if (highestModSeq == 0 || lastHighestModSeq == 0 || lastHighestModSeq > highestModSeq) {
+            // The server doesn't keep track of changes, or we don't know which ones we've seen
+            FetchProfile fp = new FetchProfile();
+            fp.add(FetchProfile.Item.FLAGS);
+
+            remoteFolder.fetch(undeletedMessages, fp, null);
+            changedMessages.addAll(undeletedMessages);
+        } else if (lastHighestModSeq < highestModSeq) {
+            changedMessages.addAll(remoteFolder.fetchChangedFlags(undeletedMessages, lastHighestModSeq));
+        }
+
+        Timber.d("SYNC: Flags of %d messages changed since mod-sequence %d for folder %s",
+                changedMessages.size(), lastHighestModSeq, folder);
+
+        for (Message remoteMessage : changedMessages) {
             LocalMessage localMessage = localFolder.getMessage(remoteMessage.getUid());
             boolean messageChanged = syncFlags(localMessage, remoteMessage);
             if (messageChanged) {
@@ -787,6 +802,18 @@ class ImapSync {
                 l.synchronizeMailboxProgress(account, folder, progress.get(), todo);
             }
         }
+
+        int unchangedMessageCount = syncFlagMessages.size() - changedMessages.size();
+        if (unchangedMessageCount > 0) {
+            progress.addAndGet(unchangedMessageCount);
+            for (MessagingListener l : getListeners()) {
+                l.synchronizeMailboxProgress(account, folder, progress.get(), todo);
+            }
+        }
+
+        if (highestModSeq != lastHighestModSeq) {
+            localFolder.setHighestModSeq(highestModSeq);
+        }
     }
 
     private void downloadSaneBody(Account account, Folder remoteFolder, LocalFolder localFolder, Message message)
@@ -95,6 +95,9 @@ public class LocalFolder extends Folder<LocalMessage> {
     // know whether or not an unread message added to the local folder is actually "new" or not.
     private Integer lastUid = null;
     private MoreMessages moreMessages = MoreMessages.UNKNOWN;
+    // The mod-sequence of the remote folder up to which the flags of the local messages are known to be current,
+    // 0 if unknown.
+    private long highestModSeq = 0L;
 
 
     public LocalFolder(LocalStore localStore, String name) {
@@ -210,6 +213,7 @@ public class LocalFolder extends Folder<LocalMessage> {
         this.syncClass = Folder.FolderClass.valueOf((syncClass == null) ? noClass : syncClass);
         String moreMessagesValue = cursor.getString(LocalStore.MORE_MESSAGES_INDEX);
         moreMessages = MoreMessages.fromDatabaseName(moreMessagesValue);
+        highestModSeq = cursor.getLong(LocalStore.HIGHEST_MOD_SEQ_INDEX);
     }
 
     @Override
@@ -564,6 +568,16 @@ public class LocalFolder extends Folder<LocalMessage> {
         updateFolderColumn("more_messages", moreMessages.getDatabaseName());
     }
 
+    @Override
+    public long getHighestModSeq() {
+        return highestModSeq;
+    }
+
+    public void setHighestModSeq(long highestModSeq) throws MessagingException {
+        this.highestModSeq = highestModSeq;
+        updateFolderColumn("highest_mod_seq", highestModSeq);
+    }
+
     private String getPrefId(String name) {
         if (prefId == null) {
             prefId = getAccount().getUuid() + "." + name;
@@ -1547,7 +1561,7 @@ public class LocalFolder extends Folder<LocalMessage> {
 
             file = writeBodyToDiskIfNecessary(part);
 
-            long size = decodeAndCountBytes(file, encoding, fileSize);
+            long size = getDecodedBodySize(body, file, encoding, fileSize);
             cv.put("decoded_body_size", size);
         } else {
             dataLocation = DataLocation.IN_DATABASE;
@@ -1586,6 +1600,19 @@ public class LocalFolder extends Folder<LocalMessage> {
         return file;
     }
 
+    private long getDecodedBodySize(Body body, File file, String encoding, long fileSize) throws IOException {
+        if (body instanceof BinaryTempFileBody) {
+            // The size was counted while the body was downloaded, don't read the whole file again
+            BinaryTempFileBody tempFileBody = (BinaryTempFileBody) body;
+            long decodedSize = tempFileBody.getDecodedSize();
+            if (decodedSize != -1L && encoding.equalsIgnoreCase(tempFileBody.getEncoding())) {
+                return decodedSize;
+            }
+        }
+
+        return decodeAndCountBytes(file, encoding, fileSize);
+    }
+
     private long decodeAndCountBytes(byte[] bodyData, String encoding, long fallbackValue) {
         ByteArrayInputStream rawInputStream = new ByteArrayInputStream(bodyData);
         return decodeAndCountBytes(rawInputStream, encoding, fallbackValue);
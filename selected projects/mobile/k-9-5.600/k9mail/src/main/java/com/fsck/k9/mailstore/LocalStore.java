@@ -129,7 +129,8 @@ public class LocalStore extends Store {
 
     static final String GET_FOLDER_COLS =
         "folders.id, name, visible_limit, last_updated, status, push_state, last_pushed, " +
-        "integrate, top_group, poll_class, push_class, display_class, notify_class, more_messages";
+        "integrate, top_group, poll_class, push_class, display_class, notify_class, more_messages, " +
+        "highest_mod_seq";
 
     static final int FOLDER_ID_INDEX = 0;
     static final int FOLDER_NAME_INDEX = 1;
@@ -145,6 +146,7 @@ public class LocalStore extends Store {
     static final int FOLDER_DISPLAY_CLASS_INDEX = 11;
     static final int FOLDER_NOTIFY_CLASS_INDEX = 12;
     static final int MORE_MESSAGES_INDEX = 13;
+    static final int HIGHEST_MOD_SEQ_INDEX = 14;
 
     static final String[] UID_CHECK_PROJECTION = { "uid" };
 
@@ -177,7 +179,7 @@ public class LocalStore extends Store {
      */
     private static final int THREAD_FLAG_UPDATE_BATCH_SIZE = 500;
 
-    public static final int DB_VERSION = 61;
+    public static final int DB_VERSION = 62;
 
     private final Context context;
     private final ContentResolver contentResolver;
@@ -90,7 +90,8 @@ class StoreSchemaDefinition implements LockableDatabase.SchemaDefinition {
                 "push_class TEXT, " +
                 "display_class TEXT, " +
                 "notify_class TEXT default '"+ Folder.FolderClass.INHERITED.name() + "', " +
-                "more_messages TEXT default \"unknown\"" +
+                "more_messages TEXT default \"unknown\", " +
+                "highest_mod_seq INTEGER default 0" +
                 ")");
 
         db.execSQL("CREATE INDEX IF NOT EXISTS folder_name ON folders (name)");
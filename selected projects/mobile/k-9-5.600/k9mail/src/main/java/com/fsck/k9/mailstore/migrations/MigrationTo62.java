@@ -0,0 +1,11 @@
+package com.fsck.k9.mailstore.migrations;
+
+
+import android.database.sqlite.SQLiteDatabase;
+
+
+class MigrationTo62 {
+    public static void addHighestModSeqColumnToFoldersTable(SQLiteDatabase db) {
+        db.execSQL("ALTER TABLE folders ADD highest_mod_seq INTEGER default 0");
+    }
+}
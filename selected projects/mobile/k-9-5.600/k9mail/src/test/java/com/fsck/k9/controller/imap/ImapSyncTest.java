@@ -16,6 +16,7 @@ import com.fsck.k9.controller.MessagingController;
 import com.fsck.k9.controller.MessagingListener;
 import com.fsck.k9.controller.SimpleMessagingListener;
 import com.fsck.k9.mail.FetchProfile;
+import com.fsck.k9.mail.Flag;
 import com.fsck.k9.mail.Folder;
 import com.fsck.k9.mail.Message;
 import com.fsck.k9.mail.MessageRetrievalListener;
@@ -41,6 +42,8 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.atLeast;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.doAnswer;
@@ -296,6 +299,84 @@ public class ImapSyncTest {
         assertEquals(FetchProfile.Item.BODY_SANE, fetchProfileCaptor.getAllValues().get(3).get(0));
     }
 
+    @Test
+    public void sync_withoutStoredHighestModSeq_shouldFetchFlagsOfAllMessages() throws Exception {
+        messageCountInRemoteFolder(1);
+        Message remoteMessage = hasDownloadedLocalCopyOfRemoteMessage();
+        when(remoteFolder.getHighestModSeq()).thenReturn(100L);
+        when(localFolder.getHighestModSeq()).thenReturn(0L);
+
+        imapSync.sync(account, FOLDER_NAME, listener, remoteFolder);
+
+        verify(remoteFolder).fetch(eq(Collections.singletonList(remoteMessage)), fetchProfileCaptor.capture(),
+                any(MessageRetrievalListener.class));
+        assertEquals(1, fetchProfileCaptor.getValue().size());
+        assertTrue(fetchProfileCaptor.getValue().contains(FetchProfile.Item.FLAGS));
+        verify(remoteFolder, never()).fetchChangedFlags(any(List.class), anyLong());
+        verify(localFolder).setHighestModSeq(100L);
+    }
+
+    @Test
+    public void sync_withOlderStoredHighestModSeq_shouldOnlyFetchChangedFlags() throws Exception {
+        messageCountInRemoteFolder(1);
+        Message remoteMessage = hasDownloadedLocalCopyOfRemoteMessage();
+        when(remoteFolder.getHighestModSeq()).thenReturn(100L);
+        when(localFolder.getHighestModSeq()).thenReturn(90L);
+
+        imapSync.sync(account, FOLDER_NAME, listener, remoteFolder);
+
+        verify(remoteFolder).fetchChangedFlags(Collections.singletonList(remoteMessage), 90L);
+        verify(remoteFolder, never()).fetch(eq(Collections.singletonList(remoteMessage)), any(FetchProfile.class),
+                any(MessageRetrievalListener.class));
+        verify(localFolder).setHighestModSeq(100L);
+    }
+
+    @Test
+    public void sync_withChangedFlagsSinceStoredHighestModSeq_shouldUpdateLocalMessage() throws Exception {
+        messageCountInRemoteFolder(1);
+        Message remoteMessage = hasDownloadedLocalCopyOfRemoteMessage();
+        LocalMessage localMessage = localFolder.getMessage(MESSAGE_UID1);
+        when(remoteMessage.isSet(Flag.SEEN)).thenReturn(true);
+        when(remoteFolder.getHighestModSeq()).thenReturn(100L);
+        when(localFolder.getHighestModSeq()).thenReturn(90L);
+        when(remoteFolder.fetchChangedFlags(any(List.class), eq(90L)))
+                .thenReturn(Collections.singletonList(remoteMessage));
+
+        imapSync.sync(account, FOLDER_NAME, listener, remoteFolder);
+
+        verify(localMessage).setFlag(Flag.SEEN, true);
+    }
+
+    @Test
+    public void sync_withUnchangedHighestModSeq_shouldNotFetchFlags() throws Exception {
+        messageCountInRemoteFolder(1);
+        Message remoteMessage = hasDownloadedLocalCopyOfRemoteMessage();
+        when(remoteFolder.getHighestModSeq()).thenReturn(100L);
+        when(localFolder.getHighestModSeq()).thenReturn(100L);
+
+        imapSync.sync(account, FOLDER_NAME, listener, remoteFolder);
+
+        verify(remoteFolder, never()).fetchChangedFlags(any(List.class), anyLong());
+        verify(remoteFolder, never()).fetch(eq(Collections.singletonList(remoteMessage)), any(FetchProfile.class),
+                any(MessageRetrievalListener.class));
+        verify(localFolder, never()).setHighestModSeq(anyLong());
+    }
+
+    @Test
+    public void sync_withStoredHighestModSeqNewerThanServer_shouldFetchFlagsOfAllMessages() throws Exception {
+        messageCountInRemoteFolder(1);
+        Message remoteMessage = hasDownloadedLocalCopyOfRemoteMessage();
+        when(remoteFolder.getHighestModSeq()).thenReturn(100L);
+        when(localFolder.getHighestModSeq()).thenReturn(200L);
+
+        imapSync.sync(account, FOLDER_NAME, listener, remoteFolder);
+
+        verify(remoteFolder).fetch(eq(Collections.singletonList(remoteMessage)), any(FetchProfile.class),
+                any(MessageRetrievalListener.class));
+        verify(remoteFolder, never()).fetchChangedFlags(any(List.class), anyLong());
+        verify(localFolder).setHighestModSeq(100L);
+    }
+
     private void respondToFetchEnvelopesWithMessage(final Message message) throws MessagingException {
         doAnswer(new Answer() {
             @Override
@@ -344,6 +425,18 @@ public class ImapSyncTest {
         return localMessage;
     }
 
+    private Message hasDownloadedLocalCopyOfRemoteMessage() throws MessagingException {
+        Message remoteMessage = mock(Message.class);
+        LocalMessage localMessage = mock(LocalMessage.class);
+        when(remoteMessage.getUid()).thenReturn(MESSAGE_UID1);
+        when(localMessage.getUid()).thenReturn(MESSAGE_UID1);
+        when(localMessage.isSet(Flag.X_DOWNLOADED_FULL)).thenReturn(true);
+        when(localFolder.getMessage(MESSAGE_UID1)).thenReturn(localMessage);
+        when(remoteFolder.getMessages(anyInt(), anyInt(), any(Date.class), any(MessageRetrievalListener.class)))
+                .thenReturn(Collections.singletonList(remoteMessage));
+        return remoteMessage;
+    }
+
     private void hasUnsyncedRemoteMessage() throws MessagingException {
         String messageUid = "UID";
         Message remoteMessage = mock(Message.class);